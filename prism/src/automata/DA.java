@@ -223,6 +223,34 @@ public class DA<Symbol, Acceptance extends AcceptanceOmega>
 		return distsToAcc;
 	}
 
+	/**
+	 * Get the states from which a goal state can be reached (including the goal states themselves),
+	 * if the acceptance type is AcceptanceReach; returns null otherwise.
+	 * From all other states, the distance to acceptance is infinite.
+	 */
+	public BitSet getStatesReachingGoal()
+	{
+		if (!(acceptance instanceof AcceptanceReach)) {
+			return null;
+		}
+		BitSet result = (BitSet) ((AcceptanceReach) acceptance).getGoalStates().clone();
+		Deque<Integer> queue = new ArrayDeque<Integer>();
+		for (int i = result.nextSetBit(0); i >= 0; i = result.nextSetBit(i + 1)) {
+			queue.add(i);
+		}
+		// Backwards search over inverted edges
+		while (!queue.isEmpty()) {
+			int q = queue.poll();
+			for (Edge e : invertedEdges.get(q)) {
+				if (!result.get(e.dest)) {
+					result.set(e.dest);
+					queue.add(e.dest);
+				}
+			}
+		}
+		return result;
+	}
+
 	/**
 	 * Print the automaton in Dot format to an output stream.
 	 */
@@ -0,0 +1,882 @@
+//==============================================================================
+//
+//	Copyright (c) 2002-
+//	Authors:
+//	* Dave Parker <david.parker@comlab.ox.ac.uk> (University of Oxford)
+//
+//------------------------------------------------------------------------------
+//
+//	This file is part of PRISM.
+//
+//	PRISM is free software; you can redistribute it and/or modify
+//	it under the terms of the GNU General Public License as published by
+//	the Free Software Foundation; either version 2 of the License, or
+//	(at your option) any later version.
+//
+//	PRISM is distributed in the hope that it will be useful,
+//	but WITHOUT ANY WARRANTY; without even the implied warranty of
+//	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//	GNU General Public License for more details.
+//
+//	You should have received a copy of the GNU General Public License
+//	along with PRISM; if not, write to the Free Software Foundation,
+//	Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+//
+//==============================================================================
+
+package explicit;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import parser.State;
+import parser.VarList;
+import parser.ast.Declaration;
+import parser.ast.DeclarationBool;
+import parser.ast.DeclarationInt;
+import parser.ast.DeclarationType;
+import parser.ast.Expression;
+import parser.ast.ExpressionIdent;
+import parser.ast.Module;
+import parser.ast.ModulesFile;
+import parser.ast.RewardStruct;
+import parser.type.TypeBool;
+import parser.type.TypeInt;
+import prism.ModelType;
+import prism.PrismException;
+import prism.PrismNotSupportedException;
+import explicit.rewards.MCRewards;
+import explicit.rewards.MDPRewards;
+import explicit.rewards.MDPRewardsSimple;
+import explicit.rewards.Rewards;
+import explicit.rewards.StateRewardsArray;
+
+/**
+ * Binary file format for explicit-state models (DTMCs, CTMCs, MDPs), designed to be
+ * loaded by memory-mapping the file, rather than parsing text as for .tra/.sta/.lab files.
+ * <br><br>
+ * The file comprises a fixed-size header, a table of sections and then the sections themselves,
+ * each of which starts on an 8-byte boundary. The transition function is stored in
+ * compressed sparse row form, i.e. exactly the arrays used by {@link MDPSparse},
+ * so the sections can be used in place (see {@link SparseStorage}).
+ * For DTMCs/CTMCs, each state has exactly one "choice". All data is written in the byte order
+ * of the machine that created the file; this is recorded in the header and respected on loading.
+ * <br><br>
+ * Header (40 bytes): magic "PRISMBIN"; byte-order mark (1); format version; model type;
+ * numStates; numChoices; numTransitions; number of sections; (reserved).
+ * Each section table entry (24 bytes): tag; (reserved); offset (long); length in bytes (long).
+ */
+public class BinaryModelFile
+{
+	/** Magic string at the start of every file */
+	public static final String MAGIC = "PRISMBIN";
+	/** Current version of the file format */
+	public static final int VERSION = 1;
+
+	// Section tags
+	/** Start of the choices for each state (int[numStates+1]) */
+	public static final int SECTION_ROW_STARTS = 1;
+	/** Start of the transitions for each choice (int[numChoices+1]) */
+	public static final int SECTION_CHOICE_STARTS = 2;
+	/** Destination state for each transition (int[numTransitions]) */
+	public static final int SECTION_COLS = 3;
+	/** Probability/rate for each transition (double[numTransitions]) */
+	public static final int SECTION_VALUES = 4;
+	/** Initial states (int[]) */
+	public static final int SECTION_INITIAL = 5;
+	/** Deadlock states (int[]) */
+	public static final int SECTION_DEADLOCKS = 6;
+	/** Variable info: number of variables, then name, type, low, high for each */
+	public static final int SECTION_VARS = 7;
+	/** Variable values for each state (int[numStates*numVars]; booleans are 0/1) */
+	public static final int SECTION_STATES = 8;
+	/** Labels: number of labels, then name, number of words and BitSet words for each */
+	public static final int SECTION_LABELS = 9;
+	/** Action labels: number of distinct actions, their names, then an index for each choice (-1 = none) */
+	public static final int SECTION_ACTIONS = 10;
+	/** A reward structure: name, whether there are transition rewards, then state/transition rewards */
+	public static final int SECTION_REWARDS = 11;
+
+	// Encoding of model types/variable types
+	protected static final int TYPE_DTMC = 1;
+	protected static final int TYPE_CTMC = 2;
+	protected static final int TYPE_MDP = 3;
+	protected static final int VAR_INT = 0;
+	protected static final int VAR_BOOL = 1;
+
+	protected static final int HEADER_SIZE = 40;
+	protected static final int SECTION_ENTRY_SIZE = 24;
+	protected static final Charset UTF8 = Charset.forName("UTF-8");
+
+	// Info about a loaded file
+
+	/** The file */
+	protected File file;
+	/** The contents of the file (memory-mapped, read-only) */
+	protected List<MappedByteBuffer> sectionBuffers = new ArrayList<MappedByteBuffer>();
+	/** Tags of the sections (same order as sectionBuffers) */
+	protected List<Integer> sectionTags = new ArrayList<Integer>();
+	/** Byte order of the file */
+	protected ByteOrder order;
+	protected ModelType modelType;
+	protected int numStates;
+	protected int numChoices;
+	protected int numTransitions;
+	// Variable info (null if not present)
+	protected String varNames[];
+	protected int varTypes[];
+	protected int varLows[];
+	protected int varHighs[];
+	// Labels and reward structures (read on demand)
+	protected Map<String, BitSet> labels;
+	protected List<String> rewardNames;
+	protected List<Rewards> rewards;
+
+	// Loading
+
+	/**
+	 * Open a binary model file and read its header and section table.
+	 * The sections are memory-mapped (read-only) but not yet read.
+	 */
+	public BinaryModelFile(File file) throws PrismException
+	{
+		this.file = file;
+		try {
+			RandomAccessFile raf = new RandomAccessFile(file, "r");
+			try {
+				FileChannel channel = raf.getChannel();
+				// Header
+				if (channel.size() < HEADER_SIZE) {
+					throw new PrismException("file is too short");
+				}
+				ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+				byte magic[] = new byte[MAGIC.length()];
+				header.get(magic);
+				if (!MAGIC.equals(new String(magic, UTF8))) {
+					throw new PrismException("not a PRISM binary model file");
+				}
+				header.order(ByteOrder.BIG_ENDIAN);
+				order = header.getInt(8) == 1 ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN;
+				header.order(order);
+				if (header.getInt(8) != 1) {
+					throw new PrismException("invalid byte-order mark");
+				}
+				int version = header.getInt(12);
+				if (version > VERSION) {
+					throw new PrismException("unsupported format version " + version);
+				}
+				modelType = decodeModelType(header.getInt(16));
+				numStates = header.getInt(20);
+				numChoices = header.getInt(24);
+				numTransitions = header.getInt(28);
+				int numSections = header.getInt(32);
+				// Section table
+				ByteBuffer table = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE, (long) numSections * SECTION_ENTRY_SIZE);
+				table.order(order);
+				for (int i = 0; i < numSections; i++) {
+					int tag = table.getInt(i * SECTION_ENTRY_SIZE);
+					long offset = table.getLong(i * SECTION_ENTRY_SIZE + 8);
+					long length = table.getLong(i * SECTION_ENTRY_SIZE + 16);
+					if (offset + length > channel.size()) {
+						throw new PrismException("section " + tag + " extends beyond end of file");
+					}
+					if (length > Integer.MAX_VALUE) {
+						throw new PrismException("section " + tag + " is too large");
+					}
+					// (the mapping remains valid after the channel is closed)
+					MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+					buf.order(order);
+					sectionTags.add(tag);
+					sectionBuffers.add(buf);
+				}
+			} finally {
+				raf.close();
+			}
+		} catch (IOException e) {
+			throw new PrismException("Could not read binary model file \"" + file + "\": " + e.getMessage());
+		} catch (PrismException e) {
+			throw new PrismException("Error in binary model file \"" + file + "\": " + e.getMessage());
+		}
+		readVarInfo();
+	}
+
+	/**
+	 * Get the type of the model in the file.
+	 */
+	public ModelType getModelType()
+	{
+		return modelType;
+	}
+
+	/**
+	 * Get the number of states of the model in the file.
+	 */
+	public int getNumStates()
+	{
+		return numStates;
+	}
+
+	/**
+	 * Build a ModulesFile corresponding to the model in the file.
+	 * As for {@link parser.ExplicitFiles2ModulesFile}, this just stores the model type,
+	 * variable info and (placeholders for) the names of the labels and reward structures stored in the file.
+	 */
+	public ModulesFile buildModulesFile() throws PrismException
+	{
+		ModulesFile modulesFile = new ModulesFile();
+		Module m = new Module("M");
+		if (varNames != null) {
+			for (int i = 0; i < varNames.length; i++) {
+				DeclarationType dt;
+				Declaration d;
+				if (varTypes[i] == VAR_INT) {
+					dt = new DeclarationInt(Expression.Int(varLows[i]), Expression.Int(varHighs[i]));
+					d = new Declaration(varNames[i], dt);
+					d.setStart(Expression.Int(varLows[i]));
+				} else {
+					dt = new DeclarationBool();
+					d = new Declaration(varNames[i], dt);
+					d.setStart(Expression.False());
+				}
+				m.addDeclaration(d);
+			}
+		} else {
+			// No variable info: just use the state index
+			DeclarationType dt = new DeclarationInt(Expression.Int(0), Expression.Int(Math.max(numStates - 1, 1)));
+			Declaration d = new Declaration("x", dt);
+			d.setStart(Expression.Int(0));
+			m.addDeclaration(d);
+		}
+		modulesFile.addModule(m);
+		// Labels are attached to the model itself (and take precedence),
+		// so the definitions here are only needed for the names to be known when parsing
+		for (String label : getLabels().keySet()) {
+			modulesFile.getLabelList().addLabel(new ExpressionIdent(label), Expression.False());
+		}
+		// Likewise, reward structures are placeholders (with no items), for the names/indices
+		// of those stored in the file to be known; the stored ones (see getRewards()) are used instead
+		for (String rewardName : getRewardNames()) {
+			RewardStruct rewStruct = new RewardStruct();
+			rewStruct.setName(rewardName);
+			modulesFile.addRewardStruct(rewStruct);
+		}
+		modulesFile.setModelType(modelType);
+		modulesFile.tidyUp();
+		return modulesFile;
+	}
+
+	/**
+	 * Build the model stored in the file, as an {@link MDPSparse}, {@link DTMCSparse} or {@link CTMCSparse}
+	 * whose (off-heap) storage is a view of the (memory-mapped) file, i.e. the transitions and action labels are not copied.
+	 * @param varList The variable list for the model (optional, can be null)
+	 */
+	public ModelExplicit buildModel(VarList varList) throws PrismException
+	{
+		ModelExplicit model;
+		SparseStorage storage;
+		IntBuffer rowStarts = getSection(SECTION_ROW_STARTS, true).asIntBuffer();
+		IntBuffer choiceStarts = getSection(SECTION_CHOICE_STARTS, true).asIntBuffer();
+		IntBuffer cols = getSection(SECTION_COLS, true).asIntBuffer();
+		DoubleBuffer nonZeros = getSection(SECTION_VALUES, true).asDoubleBuffer();
+		if (rowStarts.limit() != numStates + 1 || choiceStarts.limit() != numChoices + 1 || cols.limit() != numTransitions || nonZeros.limit() != numTransitions) {
+			throw new PrismException("Error in binary model file \"" + file + "\": inconsistent transition sections");
+		}
+		switch (modelType) {
+		case MDP:
+			List<Object> actionList = new ArrayList<Object>();
+			IntBuffer actionIndices = readActions(actionList);
+			storage = SparseStorage.wrap(rowStarts, choiceStarts, cols, nonZeros, actionIndices, true);
+			model = new MDPSparse(numStates, storage, actionIndices == null ? null : actionList);
+			break;
+		case DTMC:
+		case CTMC:
+			// One choice per state
+			if (numChoices != numStates) {
+				throw new PrismException("Error in binary model file \"" + file + "\": inconsistent transition sections");
+			}
+			storage = SparseStorage.wrap(rowStarts, choiceStarts, cols, nonZeros, null, true);
+			model = modelType == ModelType.CTMC ? new CTMCSparse(numStates, storage) : new DTMCSparse(numStates, storage);
+			break;
+		default:
+			throw new PrismNotSupportedException("Binary import not supported for " + modelType + "s");
+		}
+		// Initial states/deadlocks
+		IntBuffer initial = getSection(SECTION_INITIAL, true).asIntBuffer();
+		for (int i = 0; i < initial.limit(); i++) {
+			model.addInitialState(initial.get(i));
+		}
+		ByteBuffer buf = getSection(SECTION_DEADLOCKS, false);
+		if (buf != null) {
+			IntBuffer deadlocks = buf.asIntBuffer();
+			for (int i = 0; i < deadlocks.limit(); i++) {
+				model.addDeadlockState(deadlocks.get(i));
+			}
+		}
+		// States
+		buf = getSection(SECTION_STATES, false);
+		if (varNames != null && buf != null) {
+			IntBuffer values = buf.asIntBuffer();
+			int numVars = varNames.length;
+			List<State> statesList = new ArrayList<State>(numStates);
+			for (int s = 0; s < numStates; s++) {
+				State state = new State(numVars);
+				for (int v = 0; v < numVars; v++) {
+					int val = values.get(s * numVars + v);
+					state.setValue(v, varTypes[v] == VAR_INT ? (Object) val : (Object) (val != 0));
+				}
+				statesList.add(state);
+			}
+			model.setStatesList(statesList);
+		}
+		model.setVarList(varList);
+		// Labels
+		for (Map.Entry<String, BitSet> e : getLabels().entrySet()) {
+			model.addLabel(e.getKey(), e.getValue());
+		}
+		return model;
+	}
+
+	/**
+	 * Get the labels stored in the file, as a mapping from names to sets of states.
+	 */
+	public Map<String, BitSet> getLabels() throws PrismException
+	{
+		if (labels == null) {
+			labels = new LinkedHashMap<String, BitSet>();
+			ByteBuffer buf = getSection(SECTION_LABELS, false);
+			if (buf != null) {
+				int numLabels = buf.getInt();
+				for (int i = 0; i < numLabels; i++) {
+					String name = getString(buf);
+					long words[] = new long[buf.getInt()];
+					for (int j = 0; j < words.length; j++) {
+						words[j] = buf.getLong();
+					}
+					labels.put(name, BitSet.valueOf(words));
+				}
+			}
+		}
+		return labels;
+	}
+
+	/**
+	 * Get the names of the reward structures stored in the file.
+	 */
+	public List<String> getRewardNames() throws PrismException
+	{
+		readRewards();
+		return rewardNames;
+	}
+
+	/**
+	 * Get the reward structures stored in the file (for the model returned by {@link #buildModel(VarList)}).
+	 * These are {@link MCRewards} for DTMCs/CTMCs and {@link MDPRewards} for MDPs.
+	 */
+	public List<Rewards> getRewards() throws PrismException
+	{
+		readRewards();
+		return rewards;
+	}
+
+	/**
+	 * Read the variable info section (if present).
+	 */
+	protected void readVarInfo() throws PrismException
+	{
+		ByteBuffer buf = getSection(SECTION_VARS, false);
+		if (buf == null) {
+			return;
+		}
+		int numVars = buf.getInt();
+		varNames = new String[numVars];
+		varTypes = new int[numVars];
+		varLows = new int[numVars];
+		varHighs = new int[numVars];
+		for (int i = 0; i < numVars; i++) {
+			varNames[i] = getString(buf);
+			varTypes[i] = buf.getInt();
+			varLows[i] = buf.getInt();
+			varHighs[i] = buf.getInt();
+		}
+	}
+
+	/**
+	 * Read the action labels section (if present): the (distinct) action labels are added to {@code actionList}
+	 * and a view of the action label index for each choice (-1 = none) is returned (or null if there is no such section).
+	 */
+	protected IntBuffer readActions(List<Object> actionList) throws PrismException
+	{
+		ByteBuffer buf = getSection(SECTION_ACTIONS, false);
+		if (buf == null) {
+			return null;
+		}
+		int numNames = buf.getInt();
+		for (int i = 0; i < numNames; i++) {
+			actionList.add(getString(buf));
+		}
+		IntBuffer actionIndices = buf.slice().order(order).asIntBuffer();
+		if (actionIndices.limit() < numChoices) {
+			throw new PrismException("Error in binary model file \"" + file + "\": inconsistent action labels section");
+		}
+		actionIndices.limit(numChoices);
+		return actionIndices;
+	}
+
+	/**
+	 * Read the reward structure sections (if not done already).
+	 */
+	protected void readRewards() throws PrismException
+	{
+		if (rewards != null) {
+			return;
+		}
+		rewardNames = new ArrayList<String>();
+		rewards = new ArrayList<Rewards>();
+		IntBuffer rowStarts = modelType == ModelType.MDP ? getSection(SECTION_ROW_STARTS, true).asIntBuffer() : null;
+		for (int r = 0; r < sectionTags.size(); r++) {
+			if (sectionTags.get(r) != SECTION_REWARDS) {
+				continue;
+			}
+			ByteBuffer buf = sectionView(r);
+			rewardNames.add(getString(buf));
+			boolean hasTrans = buf.getInt() != 0;
+			buf.position(align8(buf.position()));
+			DoubleBuffer values = buf.slice().order(order).asDoubleBuffer();
+			if (modelType == ModelType.MDP) {
+				MDPRewardsSimple rew = new MDPRewardsSimple(numStates);
+				for (int s = 0; s < numStates; s++) {
+					double d = values.get(s);
+					if (d != 0.0) {
+						rew.setStateReward(s, d);
+					}
+				}
+				if (hasTrans) {
+					for (int s = 0; s < numStates; s++) {
+						int l = rowStarts.get(s), h = rowStarts.get(s + 1);
+						for (int j = l; j < h; j++) {
+							double d = values.get(numStates + j);
+							if (d != 0.0) {
+								rew.setTransitionReward(s, j - l, d);
+							}
+						}
+					}
+				}
+				rewards.add(rew);
+			} else {
+				StateRewardsArray rew = new StateRewardsArray(numStates);
+				for (int s = 0; s < numStates; s++) {
+					rew.setStateReward(s, values.get(s));
+				}
+				rewards.add(rew);
+			}
+		}
+	}
+
+	/**
+	 * Get a (read-only, positioned at 0) view of the first section with tag {@code tag}.
+	 * If there is no such section, returns null or, if {@code required} is true, throws an exception.
+	 */
+	protected ByteBuffer getSection(int tag, boolean required) throws PrismException
+	{
+		int i = sectionTags.indexOf(tag);
+		if (i == -1) {
+			if (required) {
+				throw new PrismException("Error in binary model file \"" + file + "\": missing section " + tag);
+			}
+			return null;
+		}
+		return sectionView(i);
+	}
+
+	/**
+	 * Get a (read-only, positioned at 0) view of the {@code i}th section.
+	 */
+	protected ByteBuffer sectionView(int i)
+	{
+		return sectionBuffers.get(i).duplicate().order(order);
+	}
+
+	protected static ModelType decodeModelType(int code) throws PrismException
+	{
+		switch (code) {
+		case TYPE_DTMC:
+			return ModelType.DTMC;
+		case TYPE_CTMC:
+			return ModelType.CTMC;
+		case TYPE_MDP:
+			return ModelType.MDP;
+		default:
+			throw new PrismException("unknown model type " + code);
+		}
+	}
+
+	// Exporting
+
+	/**
+	 * Export a model, and optionally some reward structures, to a binary file.
+	 * Labels attached to the model are included, as are any passed in {@code extraLabels}.
+	 * @param model The model (a DTMC, CTMC or MDP)
+	 * @param extraLabels Further labels to include (optional, can be null)
+	 * @param rewardNames Names of the reward structures (optional, can be null)
+	 * @param rewards Reward structures (optional, can be null); {@link MCRewards} or {@link MDPRewards}
+	 * @param file The file to export to
+	 */
+	public static void exportModel(Model model, Map<String, BitSet> extraLabels, List<String> rewardNames, List<? extends Rewards> rewards, File file)
+			throws PrismException
+	{
+		ModelType modelType = model.getModelType();
+		int typeCode;
+		switch (modelType) {
+		case DTMC:
+			typeCode = TYPE_DTMC;
+			break;
+		case CTMC:
+			typeCode = TYPE_CTMC;
+			break;
+		case MDP:
+			typeCode = TYPE_MDP;
+			break;
+		default:
+			throw new PrismNotSupportedException("Binary export not supported for " + modelType + "s");
+		}
+		int numStates = model.getNumStates();
+		int numChoices = modelType == ModelType.MDP ? ((MDP) model).getNumChoices() : numStates;
+		int numTransitions = model.getNumTransitions();
+
+		// Collect the info to be stored, and the sizes of the sections
+		List<Integer> tags = new ArrayList<Integer>();
+		List<Long> lengths = new ArrayList<Long>();
+		List<Object> contents = new ArrayList<Object>();
+		addSection(tags, lengths, contents, SECTION_ROW_STARTS, 4L * (numStates + 1), null);
+		addSection(tags, lengths, contents, SECTION_CHOICE_STARTS, 4L * (numChoices + 1), null);
+		addSection(tags, lengths, contents, SECTION_COLS, 4L * numTransitions, null);
+		addSection(tags, lengths, contents, SECTION_VALUES, 8L * numTransitions, null);
+		List<Integer> initial = new ArrayList<Integer>();
+		for (int s : model.getInitialStates()) {
+			initial.add(s);
+		}
+		addSection(tags, lengths, contents, SECTION_INITIAL, 4L * initial.size(), initial);
+		List<Integer> deadlocks = new ArrayList<Integer>();
+		for (int s : model.getDeadlockStates()) {
+			deadlocks.add(s);
+		}
+		addSection(tags, lengths, contents, SECTION_DEADLOCKS, 4L * deadlocks.size(), deadlocks);
+		// Variable info (only if all variables are ints/booleans)
+		VarList varList = model.getVarList();
+		List<State> statesList = model.getStatesList();
+		if (varList != null && statesList != null) {
+			int numVars = varList.getNumVars();
+			boolean ok = true;
+			long len = 4;
+			for (int v = 0; v < numVars; v++) {
+				ok &= varList.getType(v) instanceof TypeInt || varList.getType(v) instanceof TypeBool;
+				len += stringSize(varList.getName(v)) + 12;
+			}
+			if (ok) {
+				addSection(tags, lengths, contents, SECTION_VARS, len, varList);
+				addSection(tags, lengths, contents, SECTION_STATES, 4L * numStates * numVars, statesList);
+			}
+		}
+		// Labels
+		Map<String, BitSet> allLabels = new LinkedHashMap<String, BitSet>();
+		for (String name : model.getLabels()) {
+			allLabels.put(name, model.getLabelStates(name));
+		}
+		if (extraLabels != null) {
+			allLabels.putAll(extraLabels);
+		}
+		if (!allLabels.isEmpty()) {
+			long len = 4;
+			for (Map.Entry<String, BitSet> e : allLabels.entrySet()) {
+				len += stringSize(e.getKey()) + 4 + 8L * e.getValue().toLongArray().length;
+			}
+			addSection(tags, lengths, contents, SECTION_LABELS, len, allLabels);
+		}
+		// Actions
+		if (modelType == ModelType.MDP) {
+			MDP mdp = (MDP) model;
+			Map<String, Integer> actionIndices = new HashMap<String, Integer>();
+			long len = 4 + 4L * numChoices;
+			boolean any = false;
+			for (int s = 0; s < numStates; s++) {
+				int n = mdp.getNumChoices(s);
+				for (int i = 0; i < n; i++) {
+					Object a = mdp.getAction(s, i);
+					if (a != null) {
+						any = true;
+						String name = a.toString();
+						if (!actionIndices.containsKey(name)) {
+							actionIndices.put(name, actionIndices.size());
+							len += stringSize(name);
+						}
+					}
+				}
+			}
+			if (any) {
+				addSection(tags, lengths, contents, SECTION_ACTIONS, len, actionIndices);
+			}
+		}
+		// Rewards
+		if (rewards != null) {
+			for (int r = 0; r < rewards.size(); r++) {
+				String name = rewardNames == null || rewardNames.get(r) == null ? "" : rewardNames.get(r);
+				boolean hasTrans = modelType == ModelType.MDP && rewards.get(r).hasTransitionRewards();
+				long len = align8(stringSize(name) + 4) + 8L * numStates + (hasTrans ? 8L * numChoices : 0);
+				addSection(tags, lengths, contents, SECTION_REWARDS, len, new Object[] { name, rewards.get(r), hasTrans });
+			}
+		}
+
+		// Write the file
+		try {
+			RandomAccessFile raf = new RandomAccessFile(file, "rw");
+			try {
+				raf.setLength(0);
+				FileChannel channel = raf.getChannel();
+				ByteOrder order = ByteOrder.nativeOrder();
+				int numSections = tags.size();
+				// Header and section table
+				ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE + numSections * SECTION_ENTRY_SIZE).order(order);
+				header.put(MAGIC.getBytes(UTF8));
+				header.putInt(1);
+				header.putInt(VERSION);
+				header.putInt(typeCode);
+				header.putInt(numStates);
+				header.putInt(numChoices);
+				header.putInt(numTransitions);
+				header.putInt(numSections);
+				header.putInt(0);
+				long offsets[] = new long[numSections];
+				long offset = align8(header.capacity());
+				for (int i = 0; i < numSections; i++) {
+					offsets[i] = offset;
+					header.putInt(tags.get(i));
+					header.putInt(0);
+					header.putLong(offset);
+					header.putLong(lengths.get(i));
+					offset = align8(offset + lengths.get(i));
+				}
+				header.flip();
+				channel.write(header, 0);
+				// Sections (transition function first, as one pass)
+				ByteBuffer bufs[] = new ByteBuffer[numSections];
+				for (int i = 0; i < numSections; i++) {
+					if (lengths.get(i) > Integer.MAX_VALUE) {
+						throw new PrismException("Model too large for binary export (section " + tags.get(i) + " exceeds 2GB)");
+					}
+					bufs[i] = channel.map(FileChannel.MapMode.READ_WRITE, offsets[i], lengths.get(i)).order(order);
+				}
+				writeTransitions(model, bufs[0].asIntBuffer(), bufs[1].asIntBuffer(), bufs[2].asIntBuffer(), bufs[3].asDoubleBuffer());
+				for (int i = 4; i < numSections; i++) {
+					writeSection(model, tags.get(i), contents.get(i), bufs[i]);
+				}
+				for (ByteBuffer buf : bufs) {
+					((MappedByteBuffer) buf).force();
+				}
+			} finally {
+				raf.close();
+			}
+		} catch (IOException e) {
+			throw new PrismException("Could not write binary model file \"" + file + "\": " + e.getMessage());
+		}
+	}
+
+	private static void addSection(List<Integer> tags, List<Long> lengths, List<Object> contents, int tag, long length, Object content)
+	{
+		tags.add(tag);
+		lengths.add(length);
+		contents.add(content);
+	}
+
+	/**
+	 * Write the transition function of a model in compressed sparse row form.
+	 * Sparse models are copied in bulk (from their storage); other models are traversed, sorting each choice by column.
+	 */
+	protected static void writeTransitions(Model model, IntBuffer rowStarts, IntBuffer choiceStarts, IntBuffer cols, DoubleBuffer nonZeros)
+	{
+		int numStates = model.getNumStates();
+		if (model instanceof MDPSparse) {
+			((MDPSparse) model).storage.copyTo(rowStarts, choiceStarts, cols, nonZeros);
+		} else if (model instanceof DTMCSparse) {
+			((DTMCSparse) model).storage.copyTo(rowStarts, choiceStarts, cols, nonZeros);
+		} else {
+			TreeMap<Integer, Double> sorted = new TreeMap<Integer, Double>();
+			int j = 0, k = 0;
+			for (int s = 0; s < numStates; s++) {
+				rowStarts.put(s, j);
+				int n = model instanceof MDP ? ((MDP) model).getNumChoices(s) : 1;
+				for (int i = 0; i < n; i++) {
+					choiceStarts.put(j++, k);
+					Iterator<Map.Entry<Integer, Double>> iter = model instanceof MDP ? ((MDP) model).getTransitionsIterator(s, i) : ((DTMC) model)
+							.getTransitionsIterator(s);
+					while (iter.hasNext()) {
+						Map.Entry<Integer, Double> e = iter.next();
+						sorted.put(e.getKey(), e.getValue());
+					}
+					for (Map.Entry<Integer, Double> e : sorted.entrySet()) {
+						cols.put(k, e.getKey());
+						nonZeros.put(k, e.getValue());
+						k++;
+					}
+					sorted.clear();
+				}
+			}
+			rowStarts.put(numStates, j);
+			choiceStarts.put(j, k);
+		}
+	}
+
+	/**
+	 * Write the contents of a (non-transition) section.
+	 */
+	@SuppressWarnings("unchecked")
+	protected static void writeSection(Model model, int tag, Object content, ByteBuffer buf)
+	{
+		int numStates = model.getNumStates();
+		switch (tag) {
+		case SECTION_INITIAL:
+		case SECTION_DEADLOCKS:
+			for (int s : (List<Integer>) content) {
+				buf.putInt(s);
+			}
+			break;
+		case SECTION_VARS:
+			VarList varList = (VarList) content;
+			buf.putInt(varList.getNumVars());
+			for (int v = 0; v < varList.getNumVars(); v++) {
+				putString(buf, varList.getName(v));
+				buf.putInt(varList.getType(v) instanceof TypeBool ? VAR_BOOL : VAR_INT);
+				buf.putInt(varList.getLow(v));
+				buf.putInt(varList.getHigh(v));
+			}
+			break;
+		case SECTION_STATES:
+			IntBuffer values = buf.asIntBuffer();
+			for (State state : (List<State>) content) {
+				for (Object val : state.varValues) {
+					values.put(val instanceof Boolean ? (((Boolean) val) ? 1 : 0) : ((Integer) val).intValue());
+				}
+			}
+			break;
+		case SECTION_LABELS:
+			Map<String, BitSet> labels = (Map<String, BitSet>) content;
+			buf.putInt(labels.size());
+			for (Map.Entry<String, BitSet> e : labels.entrySet()) {
+				putString(buf, e.getKey());
+				long words[] = e.getValue().toLongArray();
+				buf.putInt(words.length);
+				for (long w : words) {
+					buf.putLong(w);
+				}
+			}
+			break;
+		case SECTION_ACTIONS:
+			Map<String, Integer> actionIndices = (Map<String, Integer>) content;
+			String names[] = new String[actionIndices.size()];
+			for (Map.Entry<String, Integer> e : actionIndices.entrySet()) {
+				names[e.getValue()] = e.getKey();
+			}
+			buf.putInt(names.length);
+			for (String name : names) {
+				putString(buf, name);
+			}
+			MDP mdp = (MDP) model;
+			for (int s = 0; s < numStates; s++) {
+				int n = mdp.getNumChoices(s);
+				for (int i = 0; i < n; i++) {
+					Object a = mdp.getAction(s, i);
+					buf.putInt(a == null ? -1 : actionIndices.get(a.toString()));
+				}
+			}
+			break;
+		case SECTION_REWARDS:
+			Object info[] = (Object[]) content;
+			Rewards rew = (Rewards) info[1];
+			boolean hasTrans = (Boolean) info[2];
+			putString(buf, (String) info[0]);
+			buf.putInt(hasTrans ? 1 : 0);
+			buf.position(align8(buf.position()));
+			DoubleBuffer rews = buf.slice().order(buf.order()).asDoubleBuffer();
+			if (rew instanceof MDPRewards) {
+				MDPRewards mdpRew = (MDPRewards) rew;
+				for (int s = 0; s < numStates; s++) {
+					rews.put(mdpRew.getStateReward(s));
+				}
+				if (hasTrans) {
+					MDP mdp2 = (MDP) model;
+					for (int s = 0; s < numStates; s++) {
+						int n = mdp2.getNumChoices(s);
+						for (int i = 0; i < n; i++) {
+							rews.put(mdpRew.getTransitionReward(s, i));
+						}
+					}
+				}
+			} else {
+				MCRewards mcRew = (MCRewards) rew;
+				for (int s = 0; s < numStates; s++) {
+					rews.put(mcRew.getStateReward(s));
+				}
+			}
+			break;
+		}
+	}
+
+	// Utility methods
+
+	/**
+	 * Round up to a multiple of 8.
+	 */
+	protected static int align8(int i)
+	{
+		return (i + 7) & ~7;
+	}
+
+	/**
+	 * Round up to a multiple of 8.
+	 */
+	protected static long align8(long i)
+	{
+		return (i + 7) & ~7L;
+	}
+
+	/**
+	 * Number of bytes used to store a string (length, UTF-8 bytes, padding to a multiple of 4).
+	 */
+	protected static int stringSize(String s)
+	{
+		return 4 + ((s.getBytes(UTF8).length + 3) & ~3);
+	}
+
+	protected static void putString(ByteBuffer buf, String s)
+	{
+		byte bytes[] = s.getBytes(UTF8);
+		buf.putInt(bytes.length);
+		buf.put(bytes);
+		for (int i = bytes.length; (i & 3) != 0; i++) {
+			buf.put((byte) 0);
+		}
+	}
+
+	protected static String getString(ByteBuffer buf)
+	{
+		byte bytes[] = new byte[buf.getInt()];
+		buf.get(bytes);
+		buf.position(buf.position() + (((bytes.length + 3) & ~3) - bytes.length));
+		return new String(bytes, UTF8);
+	}
+}
@@ -27,26 +27,55 @@
 package explicit;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
+import explicit.rewards.MCRewards;
+import explicit.rewards.MDPRewards;
+import explicit.rewards.MDPRewardsSimple;
+import explicit.rewards.Rewards;
+import explicit.rewards.StateRewardsArray;
 import parser.State;
+import prism.ModelType;
 import prism.PrismComponent;
 import prism.PrismException;
 import prism.PrismNotSupportedException;
+import prism.PrismSettings;
 
 /**
  * Class to perform bisimulation minimisation for explicit-state models.
+ * <br>
+ * Minimisation is done by signature-based partition refinement: in each round, the signature of a state
+ * (its outgoing distributions, lifted to the current partition) is computed and hashed,
+ * and each block is split according to the signatures of its states, until the partition is stable.
+ * For MDPs, the signature is the set of (action, lifted distribution) pairs of a state.
+ * Probabilities/rates are compared up to a relative precision of around 1e-12.
  */
 public class Bisimulation extends PrismComponent
 {
+	// Number of states per task when computing signatures in parallel
+	private static final int PARALLEL_BATCH_STATES = 4096;
+
 	// Local storage of partition info
 	protected int numStates;
 	protected int[] partition;
 	protected int numBlocks;
-	protected MDPSimple mdp;
+
+	// Model being minimised, plus info needed for signatures
+	private Model model;
+	private boolean isMDP;
+	private List<? extends Rewards> rewards;
+	// For MDPs: index of first choice of each state, and an index for the action of each choice
+	private int[] choiceStarts;
+	private int[] actionIds;
 
 	/**
 	 * Construct a new Bisimulation object.
@@ -64,166 +93,586 @@ public class Bisimulation extends PrismComponent
 	 */
 	public Model minimise(Model model, List<String> propNames, List<BitSet> propBSs) throws PrismException
 	{
-		switch (model.getModelType()) {
-		case DTMC:
-			return minimiseDTMC((DTMC) model, propNames, propBSs);
-		case CTMC:
-			return minimiseCTMC((CTMC) model, propNames, propBSs);
-		default:
-			throw new PrismNotSupportedException("Bisimulation minimisation not yet supported for " + model.getModelType() + "s");
-		}
+		return minimise(model, propNames, propBSs, null, null);
 	}
 
 	/**
-	 * Perform bisimulation minimisation on a DTMC.
-	 * @param dtmc The DTMC
+	 * Perform bisimulation minimisation on a model, also preserving some reward structures.
+	 * These should be {@link MCRewards} for DTMCs/CTMCs and {@link MDPRewards} for MDPs.
+	 * The corresponding reward structures for the minimised model are added to {@code rewardsNew}.
+	 * Afterwards, {@link #getPartition()} gives the block (state of the minimised model) for each state.
+	 * @param model The model
 	 * @param propNames Names of the propositions in {@code propBSs}
 	 * @param propBSs Propositions (satisfying sets of states) to be preserved by bisimulation.
+	 * @param rewards Reward structures to be preserved by bisimulation (may be null)
+	 * @param rewardsNew List to store reward structures for the minimised model in (may be null if {@code rewards} is)
 	 */
-	private DTMC minimiseDTMC(DTMC dtmc, List<String> propNames, List<BitSet> propBSs)
+	public Model minimise(Model model, List<String> propNames, List<BitSet> propBSs, List<? extends Rewards> rewards, List<Rewards> rewardsNew)
+			throws PrismException
 	{
-		// Create initial partition based on propositions
-		initialisePartitionInfo(dtmc, propBSs);
-		//printPartition(dtmc);
+		switch (model.getModelType()) {
+		case DTMC:
+		case CTMC:
+		case MDP:
+			break;
+		default:
+			throw new PrismNotSupportedException("Bisimulation minimisation not yet supported for " + model.getModelType() + "s");
+		}
+		if (rewards != null) {
+			for (Rewards r : rewards) {
+				if (!(model.getModelType() == ModelType.MDP ? r instanceof MDPRewards : r instanceof MCRewards))
+					throw new PrismException("Reward structure of wrong type for bisimulation minimisation of " + model.getModelType());
+			}
+		}
+		this.model = model;
+		this.isMDP = model.getModelType() == ModelType.MDP;
+		this.rewards = rewards;
+		if (isMDP)
+			indexActions((MDP) model);
 
-		// Iterative splitting
-		boolean changed = true;
-		while (changed)
-			changed = splitDTMC(dtmc);
-		mainLog.println("Minimisation: " + numStates + " to " + numBlocks + " States");
-		//printPartition(dtmc);
+		// Create initial partition based on propositions and rewards
+		initialisePartitionInfo(model, propBSs);
+		//printPartition(model);
+
+		// Refine partition: either with splitters (DTMCs/CTMCs only) or by iterative splitting
+		if (!isMDP && useSplitters()) {
+			int splitters = refineSplitters((DTMC) model);
+			mainLog.println("Minimisation: " + numStates + " to " + numBlocks + " States (" + splitters + " splitters)");
+		} else {
+			int iters = 0;
+			boolean changed = true;
+			while (changed) {
+				changed = split();
+				iters++;
+			}
+			mainLog.println("Minimisation: " + numStates + " to " + numBlocks + " States (" + iters + " refinement rounds)");
+		}
+		//printPartition(model);
 
 		// Build reduced model
-		DTMCSimple dtmcNew = new DTMCSimple(numBlocks);
-		for (int i = 0; i < numBlocks; i++) {
-			for (Map.Entry<Integer, Double> e : mdp.getChoice(i, 0)) {
-				dtmcNew.setProbability((Integer) mdp.getAction(i, 0), e.getKey(), e.getValue());
+		ModelExplicit modelNew;
+		switch (model.getModelType()) {
+		case DTMC:
+			modelNew = buildQuotientDTMC((DTMC) model, new DTMCSimple(numBlocks));
+			break;
+		case CTMC:
+			modelNew = buildQuotientDTMC((DTMC) model, new CTMCSimple(numBlocks));
+			break;
+		default:
+			modelNew = buildQuotientMDP((MDP) model, rewardsNew);
+			break;
+		}
+		if (!isMDP && rewards != null) {
+			for (Rewards r : rewards) {
+				StateRewardsArray rNew = new StateRewardsArray(numBlocks);
+				for (int s = 0; s < numStates; s++)
+					rNew.setStateReward(partition[s], ((MCRewards) r).getStateReward(s));
+				rewardsNew.add(rNew);
 			}
 		}
-		attachStatesAndLabels(dtmc, dtmcNew, propNames, propBSs);
+		attachStatesAndLabels(model, modelNew, propNames, propBSs);
 
-		return dtmcNew;
+		// Don't keep a reference to the original model
+		this.model = null;
+		this.rewards = null;
+		choiceStarts = actionIds = null;
+
+		return modelNew;
 	}
 
 	/**
-	 * Perform bisimulation minimisation on a CTMC.
-	 * @param ctmc The CTMC
-	 * @param propNames Names of the propositions in {@code propBSs}
-	 * @param propBSs Propositions (satisfying sets of states) to be preserved by bisimulation.
+	 * Get the partition computed by the last call to {@code minimise},
+	 * i.e. the index of the block (state of the minimised model) for each state of the original model.
+	 */
+	public int[] getPartition()
+	{
+		return partition;
+	}
+
+	/**
+	 * Get the number of blocks of the partition computed by the last call to {@code minimise}.
 	 */
-	private CTMC minimiseCTMC(CTMC ctmc, List<String> propNames, List<BitSet> propBSs)
+	public int getNumBlocks()
 	{
-		// Create initial partition based on propositions
-		initialisePartitionInfo(ctmc, propBSs);
-		//printPartition(ctmc);
+		return numBlocks;
+	}
 
-		// Iterative splitting
-		boolean changed = true;
-		while (changed)
-			changed = splitDTMC(ctmc);
-		mainLog.println("Minimisation: " + numStates + " to " + numBlocks + " States");
-		//printPartition(ctmc);
+	/**
+	 * Map a vector of values over the states of the minimised model (from the last call to {@code minimise})
+	 * back to a vector over the states of the original model.
+	 */
+	public double[] liftToOriginalModel(double[] solnNew)
+	{
+		double soln[] = new double[numStates];
+		for (int s = 0; s < numStates; s++)
+			soln[s] = solnNew[partition[s]];
+		return soln;
+	}
 
-		// Build reduced model
-		CTMCSimple ctmcNew = new CTMCSimple(numBlocks);
-		for (int i = 0; i < numBlocks; i++) {
-			for (Map.Entry<Integer, Double> e : mdp.getChoice(i, 0)) {
-				ctmcNew.setProbability((Integer) mdp.getAction(i, 0), e.getKey(), e.getValue());
+	/**
+	 * Index the actions of an MDP, storing in {@code choiceStarts} and {@code actionIds}.
+	 */
+	private void indexActions(MDP mdp)
+	{
+		int n = mdp.getNumStates();
+		choiceStarts = new int[n + 1];
+		for (int s = 0; s < n; s++)
+			choiceStarts[s + 1] = choiceStarts[s] + mdp.getNumChoices(s);
+		actionIds = new int[choiceStarts[n]];
+		HashMap<Object, Integer> actionIndex = new HashMap<Object, Integer>();
+		for (int s = 0; s < n; s++) {
+			int numChoices = mdp.getNumChoices(s);
+			for (int i = 0; i < numChoices; i++) {
+				Object action = mdp.getAction(s, i);
+				Integer id = actionIndex.get(action);
+				if (id == null) {
+					id = actionIndex.size();
+					actionIndex.put(action, id);
+				}
+				actionIds[choiceStarts[s] + i] = id;
 			}
 		}
-		attachStatesAndLabels(ctmc, ctmcNew, propNames, propBSs);
-
-		return ctmcNew;
 	}
 
 	/**
-	 * Construct the initial partition based on a set of proposition bitsets.
+	 * Construct the initial partition based on a set of proposition bitsets
+	 * (and the state rewards of any reward structures being preserved).
 	 * Store info in {@code numStates}, {@code numBlocks} and {@code partition}.
 	 */
 	private void initialisePartitionInfo(Model model, List<BitSet> propBSs)
 	{
-		BitSet bs1, bs0;
 		numStates = model.getNumStates();
 		partition = new int[numStates];
+		int numProps = propBSs.size();
+		int numRewards = rewards == null ? 0 : rewards.size();
+		int numWords = (numProps + 63) / 64;
 
-		// Compute all non-empty combinations of propositions
-		List<BitSet> all = new ArrayList<BitSet>();
-		bs1 = (BitSet) propBSs.get(0).clone();
-		bs0 = (BitSet) bs1.clone();
-		bs0.flip(0, numStates);
-		all.add(bs1);
-		all.add(bs0);
-		int n = propBSs.size();
-		for (int i = 1; i < n; i++) {
-			BitSet bs = propBSs.get(i);
-			int m = all.size();
-			for (int j = 0; j < m; j++) {
-				bs1 = all.get(j);
-				bs0 = (BitSet) bs1.clone();
- 				bs0.andNot(bs);
-				bs1.and(bs);
-				if (bs1.isEmpty()) {
-					all.set(j, bs0);
-				} else {
-					if (!bs0.isEmpty())
-						all.add(bs0);
-				}
+		// Key for each state: propositions satisfied (as a bit vector), then state rewards
+		HashMap<Signature, Integer> blocks = new HashMap<Signature, Integer>();
+		numBlocks = 0;
+		for (int s = 0; s < numStates; s++) {
+			long key[] = new long[numWords + numRewards];
+			for (int j = 0; j < numProps; j++) {
+				if (propBSs.get(j).get(s))
+					key[j / 64] |= 1L << (j % 64);
+			}
+			for (int j = 0; j < numRewards; j++) {
+				Rewards r = rewards.get(j);
+				double rew = isMDP ? ((MDPRewards) r).getStateReward(s) : ((MCRewards) r).getStateReward(s);
+				key[numWords + j] = Double.doubleToLongBits(rew);
 			}
+			partition[s] = blockIndex(blocks, new Signature(key));
 		}
+	}
 
-		// Construct initial partition
-		numBlocks = all.size();
-		for (int j = 0; j < numBlocks; j++) {
-			BitSet bs = all.get(j);
-			for (int i = bs.nextSetBit(0); i >= 0; i = bs.nextSetBit(i + 1)) {
-				partition[i] = j;
-			}
+	/**
+	 * Get the index of the block for signature {@code sig}, creating a new block if needed.
+	 */
+	private int blockIndex(HashMap<Signature, Integer> blocks, Signature sig)
+	{
+		Integer b = blocks.get(sig);
+		if (b == null) {
+			b = numBlocks++;
+			blocks.put(sig, b);
 		}
+		return b;
 	}
 
 	/**
 	 * Perform a split of the current partition, if possible, updating {@code numBlocks} and {@code partition}.
+	 * Signatures are computed in parallel, if enabled and the model is large enough.
 	 * @return whether or not the partition was split 
 	 */
-	private boolean splitDTMC(DTMC dtmc)
+	private boolean split()
 	{
-		int s, a, i, numBlocksNew, numChoicesOld;
-		Distribution distrNew;
-		int partitionNew[];
-
-		partitionNew = new int[numStates];
-		numBlocksNew = 0;
-		// Compute the signature for each state (i.e. the distribution for outgoing
-		// transitions, lifted to the current partition)
-		// For convenience, we just store them as an MDP, with action label equal to the index of the block
-		mdp = new MDPSimple(numBlocks);
-		for (s = 0; s < numStates; s++) {
-			// Build lifted distribution
-			Iterator<Map.Entry<Integer, Double>> iter = dtmc.getTransitionsIterator(s);
-			distrNew = new Distribution();
-			while (iter.hasNext()) {
-				Map.Entry<Integer, Double> e = iter.next();
-				distrNew.add(partition[e.getKey()], e.getValue());
+		// Compute the signature for each state (i.e. the distributions for outgoing
+		// transitions, lifted to the current partition, plus the current block)
+		final Signature sigs[] = new Signature[numStates];
+		ForkJoinPool pool = ProbModelChecker.getParallelPool(settings, numStates);
+		if (pool == null) {
+			computeSignatures(sigs, 0, numStates);
+		} else {
+			List<ForkJoinTask<?>> tasks = new ArrayList<ForkJoinTask<?>>();
+			for (int lo = 0; lo < numStates; lo += PARALLEL_BATCH_STATES) {
+				final int from = lo, to = Math.min(numStates, lo + PARALLEL_BATCH_STATES);
+				tasks.add(pool.submit(new Runnable()
+				{
+					@Override
+					public void run()
+					{
+						computeSignatures(sigs, from, to);
+					}
+				}));
 			}
-			// Store in MDP, update new partition
-			a = partition[s];
-			numChoicesOld = mdp.getNumChoices(a);
-			i = mdp.addChoice(a, distrNew);
-			if (i == numChoicesOld)
-				mdp.setAction(a, i, numBlocksNew++);
-			partitionNew[s] = (Integer) mdp.getAction(a, i);
+			for (ForkJoinTask<?> task : tasks) {
+				task.join();
+			}
+		}
+
+		// Build new partition, numbering blocks in order of first occurrence
+		int numBlocksOld = numBlocks;
+		int partitionNew[] = new int[numStates];
+		HashMap<Signature, Integer> blocks = new HashMap<Signature, Integer>();
+		numBlocks = 0;
+		for (int s = 0; s < numStates; s++) {
+			partitionNew[s] = blockIndex(blocks, sigs[s]);
+			sigs[s] = null;
 		}
 		// Debug info
 		//mainLog.println("New partition: " + java.util.Arrays.toString(partitionNew));
-		//mainLog.println("Signatures MDP: " + mdp.infoString());
-		//mainLog.println("Signatures MDP: " + mdp);
-		//try { mdp.exportToDotFile("mdp.dot"); } catch (PrismException e) {}
-		// Update info
-		boolean changed = numBlocks != numBlocksNew;
 		partition = partitionNew;
-		numBlocks = numBlocksNew;
 
-		return changed;
+		// The current block is part of each signature, so blocks can only be split
+		return numBlocks != numBlocksOld;
+	}
+
+	/**
+	 * Whether to use splitter-based refinement for DTMCs/CTMCs, as specified by {@link PrismSettings#PRISM_BISIM_METHOD}.
+	 */
+	private boolean useSplitters()
+	{
+		return settings == null || !"Signatures".equals(settings.getString(PrismSettings.PRISM_BISIM_METHOD));
+	}
+
+	/**
+	 * Refine the initial partition for a DTMC/CTMC to the coarsest (ordinary) lumping,
+	 * updating {@code numBlocks} and {@code partition}.
+	 * This uses a queue of splitters, in the style of Valmari and Franceschinis ("Simple O(m log n) time
+	 * Markov chain lumping", TACAS'10): for each splitter block, the probability (or rate) of moving to it is
+	 * summed over the predecessors of its states, and only the blocks of those predecessors are split.
+	 * When a block is split, all parts except the largest become splitters (unless the block was already
+	 * waiting to be one), so each state is in O(log n) splitters and the time is O(m log n).
+	 * @return the number of splitters processed
+	 */
+	private int refineSplitters(DTMC dtmc)
+	{
+		int n = numStates;
+
+		// Build predecessor relation, with probabilities/rates (CSR)
+		int preStarts[] = new int[n + 1];
+		for (int s = 0; s < n; s++) {
+			Iterator<Map.Entry<Integer, Double>> iter = dtmc.getTransitionsIterator(s);
+			while (iter.hasNext())
+				preStarts[iter.next().getKey() + 1]++;
+		}
+		for (int s = 0; s < n; s++)
+			preStarts[s + 1] += preStarts[s];
+		int preStates[] = new int[preStarts[n]];
+		double preProbs[] = new double[preStarts[n]];
+		int fill[] = Arrays.copyOf(preStarts, n);
+		for (int s = 0; s < n; s++) {
+			Iterator<Map.Entry<Integer, Double>> iter = dtmc.getTransitionsIterator(s);
+			while (iter.hasNext()) {
+				Map.Entry<Integer, Double> e = iter.next();
+				int k = fill[e.getKey()]++;
+				preStates[k] = s;
+				preProbs[k] = e.getValue();
+			}
+		}
+		fill = null;
+
+		// Blocks are contiguous ranges of the array elems (loc gives the position of each state);
+		// initially, sort states by block of the initial partition
+		int elems[] = new int[n];
+		int loc[] = new int[n];
+		int blockOf[] = partition.clone();
+		int blockStart[] = new int[n + 1];
+		int blockEnd[] = new int[n + 1];
+		for (int s = 0; s < n; s++)
+			blockEnd[blockOf[s]]++;
+		for (int b = 0, pos = 0; b < numBlocks; b++) {
+			blockStart[b] = pos;
+			pos += blockEnd[b];
+			blockEnd[b] = blockStart[b];
+		}
+		for (int s = 0; s < n; s++) {
+			loc[s] = blockEnd[blockOf[s]]++;
+			elems[loc[s]] = s;
+		}
+
+		// All initial blocks are splitters (a stack suffices: the order does not matter,
+		// and each block is added at most once, when it is created)
+		int splitters[] = new int[n];
+		int numSplitters = 0;
+		for (int b = 0; b < numBlocks; b++) {
+			splitters[numSplitters++] = b;
+		}
+
+		// Storage for processing a splitter: its states, the predecessors touched (and their weights),
+		// and the blocks touched (with the number of touched states, which are moved to the front of the block)
+		int splitterStates[] = new int[n];
+		double weight[] = new double[n];
+		int stamp[] = new int[n];
+		Arrays.fill(stamp, -1);
+		int touchedBlocks[] = new int[n];
+		int marks[] = new int[n];
+		long keys[] = new long[16];
+		int buffer[] = new int[16];
+		int sorted[] = new int[16];
+		int counts[] = new int[17];
+
+		int numProcessed = 0;
+		while (numSplitters > 0) {
+			int c = splitters[--numSplitters];
+			// Copy states of the splitter, since it may itself be rearranged below
+			int size = blockEnd[c] - blockStart[c];
+			System.arraycopy(elems, blockStart[c], splitterStates, 0, size);
+			// Compute weight of each predecessor for the splitter, marking predecessors
+			int numTouchedBlocks = 0;
+			for (int j = 0; j < size; j++) {
+				int t = splitterStates[j];
+				for (int k = preStarts[t]; k < preStarts[t + 1]; k++) {
+					int p = preStates[k];
+					if (stamp[p] != numProcessed) {
+						stamp[p] = numProcessed;
+						weight[p] = 0.0;
+						// Move p to the marked part at the front of its block
+						int b = blockOf[p];
+						if (marks[b] == 0)
+							touchedBlocks[numTouchedBlocks++] = b;
+						int pos = loc[p], posNew = blockStart[b] + marks[b]++;
+						int other = elems[posNew];
+						elems[posNew] = p;
+						loc[p] = posNew;
+						elems[pos] = other;
+						loc[other] = pos;
+					}
+					weight[p] += preProbs[k];
+				}
+			}
+			numProcessed++;
+
+			// Split each touched block according to weights
+			for (int i = 0; i < numTouchedBlocks; i++) {
+				int b = touchedBlocks[i];
+				int start = blockStart[b], mid = start + marks[b], end = blockEnd[b];
+				marks[b] = 0;
+				int k = mid - start;
+				if (keys.length < k) {
+					keys = new long[Math.max(k, 2 * keys.length)];
+					buffer = new int[keys.length];
+					sorted = new int[keys.length];
+					counts = new int[keys.length + 1];
+				}
+				// Sort the marked states by (quantised) weight, using a counting sort on the ranks of distinct weights
+				for (int j = 0; j < k; j++)
+					keys[j] = quantise(weight[elems[start + j]]);
+				Arrays.sort(keys, 0, k);
+				int numDistinct = 0;
+				for (int j = 0; j < k; j++) {
+					if (j == 0 || keys[j] != keys[numDistinct - 1])
+						keys[numDistinct++] = keys[j];
+				}
+				// Nothing to split if all states of the block have the same weight
+				if (numDistinct == 1 && mid == end)
+					continue;
+				Arrays.fill(counts, 0, numDistinct + 1, 0);
+				for (int j = 0; j < k; j++) {
+					int rank = Arrays.binarySearch(keys, 0, numDistinct, quantise(weight[elems[start + j]]));
+					buffer[j] = rank;
+					counts[rank + 1]++;
+				}
+				for (int r = 0; r < numDistinct; r++)
+					counts[r + 1] += counts[r];
+				for (int j = 0; j < k; j++)
+					sorted[counts[buffer[j]]++] = elems[start + j];
+				for (int j = 0; j < k; j++) {
+					elems[start + j] = sorted[j];
+					loc[sorted[j]] = start + j;
+				}
+				// Groups are now: one per distinct weight (ending at counts[r]), then the unmarked states
+				int numGroups = numDistinct + (mid < end ? 1 : 0);
+				int largest = 0, largestSize = -1;
+				for (int g = 0; g < numGroups; g++) {
+					int gStart = g == 0 ? start : start + counts[g - 1];
+					int gEnd = g < numDistinct ? start + counts[g] : end;
+					if (gEnd - gStart > largestSize) {
+						largest = g;
+						largestSize = gEnd - gStart;
+					}
+				}
+				// Largest group keeps the block index; others become new blocks and splitters
+				for (int g = 0; g < numGroups; g++) {
+					int gStart = g == 0 ? start : start + counts[g - 1];
+					int gEnd = g < numDistinct ? start + counts[g] : end;
+					if (g == largest) {
+						blockStart[b] = gStart;
+						blockEnd[b] = gEnd;
+						continue;
+					}
+					int bNew = numBlocks++;
+					blockStart[bNew] = gStart;
+					blockEnd[bNew] = gEnd;
+					for (int pos = gStart; pos < gEnd; pos++)
+						blockOf[elems[pos]] = bNew;
+					splitters[numSplitters++] = bNew;
+				}
+			}
+		}
+
+		// Renumber blocks in order of first occurrence (as for signature-based refinement)
+		int renumber[] = new int[numBlocks];
+		Arrays.fill(renumber, -1);
+		int count = 0;
+		for (int s = 0; s < n; s++) {
+			if (renumber[blockOf[s]] == -1)
+				renumber[blockOf[s]] = count++;
+			partition[s] = renumber[blockOf[s]];
+		}
+
+		return numProcessed;
+	}
+
+	/**
+	 * Compute the signatures of states {@code from}, ..., {@code to}-1 and store in {@code sigs}.
+	 */
+	private void computeSignatures(Signature sigs[], int from, int to)
+	{
+		LiftedDistribution lifted = new LiftedDistribution();
+		List<long[]> choices = new ArrayList<long[]>();
+		for (int s = from; s < to; s++) {
+			if (isMDP) {
+				MDP mdp = (MDP) model;
+				int numChoices = mdp.getNumChoices(s);
+				choices.clear();
+				for (int i = 0; i < numChoices; i++) {
+					lifted.lift(mdp.getTransitionsIterator(s, i));
+					choices.add(lifted.encode(choiceHeader(s, i)));
+				}
+				sigs[s] = new Signature(concatChoices(partition[s], choices));
+			} else {
+				lifted.lift(((DTMC) model).getTransitionsIterator(s));
+				sigs[s] = new Signature(lifted.encode(new long[] { partition[s] }));
+			}
+		}
+	}
+
+	/**
+	 * Get the part of the signature of choice {@code i} of (MDP) state {@code s} other than its distribution,
+	 * i.e. its action and any transition rewards.
+	 */
+	private long[] choiceHeader(int s, int i)
+	{
+		int numRewards = rewards == null ? 0 : rewards.size();
+		long header[] = new long[1 + numRewards];
+		header[0] = actionIds[choiceStarts[s] + i];
+		for (int j = 0; j < numRewards; j++) {
+			MDPRewards r = (MDPRewards) rewards.get(j);
+			header[1 + j] = r.hasTransitionRewards() ? Double.doubleToLongBits(r.getTransitionReward(s, i)) : 0;
+		}
+		return header;
+	}
+
+	/**
+	 * Build an MDP state's signature from its current block and the (encoded) signatures of its choices.
+	 * Choices are sorted and duplicates removed, so that the signature represents the set of choices.
+	 */
+	private static long[] concatChoices(int block, List<long[]> choices)
+	{
+		Collections.sort(choices, CHOICE_ORDER);
+		int len = 1, n = choices.size();
+		for (int i = 0; i < n; i++) {
+			if (i == 0 || CHOICE_ORDER.compare(choices.get(i - 1), choices.get(i)) != 0)
+				len += choices.get(i).length;
+		}
+		long sig[] = new long[len];
+		sig[0] = block;
+		int pos = 1;
+		for (int i = 0; i < n; i++) {
+			if (i == 0 || CHOICE_ORDER.compare(choices.get(i - 1), choices.get(i)) != 0) {
+				long choice[] = choices.get(i);
+				System.arraycopy(choice, 0, sig, pos, choice.length);
+				pos += choice.length;
+			}
+		}
+		return sig;
+	}
+
+	/** Lexicographic order on encoded choices */
+	private static final Comparator<long[]> CHOICE_ORDER = new Comparator<long[]>()
+	{
+		@Override
+		public int compare(long[] a, long[] b)
+		{
+			int n = Math.min(a.length, b.length);
+			for (int i = 0; i < n; i++) {
+				if (a[i] != b[i])
+					return a[i] < b[i] ? -1 : 1;
+			}
+			return a.length - b.length;
+		}
+	};
+
+	/**
+	 * Build the minimised DTMC/CTMC, using one representative state from each block.
+	 */
+	private ModelExplicit buildQuotientDTMC(DTMC dtmc, DTMCSimple dtmcNew)
+	{
+		LiftedDistribution lifted = new LiftedDistribution();
+		BitSet done = new BitSet(numBlocks);
+		for (int s = 0; s < numStates; s++) {
+			int b = partition[s];
+			if (done.get(b))
+				continue;
+			done.set(b);
+			lifted.lift(dtmc.getTransitionsIterator(s));
+			for (int j = 0; j < lifted.size; j++)
+				dtmcNew.setProbability(b, lifted.blocks[j], lifted.probs[j]);
+		}
+		return dtmcNew;
+	}
+
+	/**
+	 * Build the minimised MDP, using one representative state from each block
+	 * (and removing duplicate choices), plus the corresponding reward structures.
+	 */
+	private ModelExplicit buildQuotientMDP(MDP mdp, List<Rewards> rewardsNew)
+	{
+		int numRewards = rewards == null ? 0 : rewards.size();
+		MDPSimple mdpNew = new MDPSimple(numBlocks);
+		// Duplicates are removed below, based on signatures
+		mdpNew.allowDupes = true;
+		MDPRewardsSimple rNew[] = new MDPRewardsSimple[numRewards];
+		for (int j = 0; j < numRewards; j++)
+			rNew[j] = new MDPRewardsSimple(numBlocks);
+		LiftedDistribution lifted = new LiftedDistribution();
+		BitSet done = new BitSet(numBlocks);
+		for (int s = 0; s < numStates; s++) {
+			int b = partition[s];
+			if (done.get(b))
+				continue;
+			done.set(b);
+			for (int j = 0; j < numRewards; j++)
+				rNew[j].setStateReward(b, ((MDPRewards) rewards.get(j)).getStateReward(s));
+			int numChoices = mdp.getNumChoices(s);
+			List<long[]> seen = new ArrayList<long[]>();
+			for (int i = 0; i < numChoices; i++) {
+				lifted.lift(mdp.getTransitionsIterator(s, i));
+				long choice[] = lifted.encode(choiceHeader(s, i));
+				boolean dupe = false;
+				for (long[] other : seen) {
+					if (Arrays.equals(choice, other)) {
+						dupe = true;
+						break;
+					}
+				}
+				if (dupe)
+					continue;
+				seen.add(choice);
+				Distribution distr = new Distribution();
+				for (int k = 0; k < lifted.size; k++)
+					distr.add(lifted.blocks[k], lifted.probs[k]);
+				int iNew = mdpNew.addActionLabelledChoice(b, distr, mdp.getAction(s, i));
+				for (int j = 0; j < numRewards; j++) {
+					MDPRewards r = (MDPRewards) rewards.get(j);
+					if (r.hasTransitionRewards())
+						rNew[j].setTransitionReward(b, iNew, r.getTransitionReward(s, i));
+				}
+			}
+		}
+		for (int j = 0; j < numRewards; j++)
+			rewardsNew.add(rNew[j]);
+		return mdpNew;
 	}
 
 	/**
@@ -248,7 +697,8 @@ public class Bisimulation extends PrismComponent
 	 * Attach a list of states to the minimised model by adding a representative state
 	 * from the original model.
 	 * Also attach information about the propositions (used for bisimulation minimisation)
-	 * to the minimised model, in the form of labels (stored as BitSets).
+	 * to the minimised model, in the form of labels (stored as BitSets),
+	 * and mark the blocks containing initial states as initial.
 	 * @param model The original model
 	 * @param modelNew The minimised model
 	 * @param propNames The names of the propositions
@@ -270,6 +720,13 @@ public class Bisimulation extends PrismComponent
 			modelNew.setStatesList(statesListNew);
 		}
 
+		// Initial states
+		BitSet initNew = new BitSet(numBlocks);
+		for (int s : model.getInitialStates())
+			initNew.set(partition[s]);
+		for (int b = initNew.nextSetBit(0); b >= 0; b = initNew.nextSetBit(b + 1))
+			modelNew.addInitialState(b);
+
 		// Build/attach new labels
 		int numProps = propBSs.size();
 		for (int i = 0; i < numProps; i++) {
@@ -281,4 +738,109 @@ public class Bisimulation extends PrismComponent
 			modelNew.addLabel(propName, propBSnew);
 		}
 	}
+
+	/**
+	 * Round a probability/rate to a relative precision of around 1e-12
+	 * (by rounding the mantissa of its IEEE representation to 40 bits),
+	 * so that values differing only by round-off give identical signatures.
+	 */
+	private static long quantise(double p)
+	{
+		return (Double.doubleToLongBits(p) + (1L << 11)) & ~((1L << 12) - 1);
+	}
+
+	/**
+	 * A state signature (an encoded sequence of longs), with a precomputed hash code.
+	 */
+	private static final class Signature
+	{
+		private final long[] data;
+		private final int hash;
+
+		Signature(long[] data)
+		{
+			this.data = data;
+			this.hash = Arrays.hashCode(data);
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object o)
+		{
+			if (!(o instanceof Signature))
+				return false;
+			Signature other = (Signature) o;
+			return hash == other.hash && Arrays.equals(data, other.data);
+		}
+	}
+
+	/**
+	 * Scratch storage for a distribution lifted to the current partition
+	 * (blocks in ascending order, with summed probabilities). One per thread.
+	 */
+	private final class LiftedDistribution
+	{
+		int size;
+		int blocks[] = new int[16];
+		double probs[] = new double[16];
+		long keys[] = new long[16];
+		double succProbs[] = new double[16];
+
+		/**
+		 * Lift the distribution given by transitions iterator {@code iter}.
+		 */
+		void lift(Iterator<Map.Entry<Integer, Double>> iter)
+		{
+			// Collect (block, index) keys for successors and sort them
+			int n = 0;
+			while (iter.hasNext()) {
+				Map.Entry<Integer, Double> e = iter.next();
+				if (n == keys.length) {
+					keys = Arrays.copyOf(keys, 2 * n);
+					succProbs = Arrays.copyOf(succProbs, 2 * n);
+				}
+				keys[n] = ((long) partition[e.getKey()] << 32) | n;
+				succProbs[n] = e.getValue();
+				n++;
+			}
+			Arrays.sort(keys, 0, n);
+			// Sum probabilities per block
+			if (blocks.length < n) {
+				blocks = new int[keys.length];
+				probs = new double[keys.length];
+			}
+			size = 0;
+			for (int k = 0; k < n; k++) {
+				int b = (int) (keys[k] >>> 32);
+				double p = succProbs[(int) keys[k]];
+				if (size > 0 && blocks[size - 1] == b) {
+					probs[size - 1] += p;
+				} else {
+					blocks[size] = b;
+					probs[size] = p;
+					size++;
+				}
+			}
+		}
+
+		/**
+		 * Encode the lifted distribution, prefixed by {@code header}, as a sequence of longs.
+		 */
+		long[] encode(long[] header)
+		{
+			long code[] = Arrays.copyOf(header, header.length + 1 + 2 * size);
+			int pos = header.length;
+			code[pos++] = size;
+			for (int k = 0; k < size; k++) {
+				code[pos++] = blocks[k];
+				code[pos++] = quantise(probs[k]);
+			}
+			return code;
+		}
+	}
 }
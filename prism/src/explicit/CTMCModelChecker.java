@@ -28,10 +28,12 @@ package explicit;
 
 import java.io.File;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
 
 import explicit.rewards.MCRewards;
 import explicit.rewards.Rewards;
 import explicit.rewards.StateRewardsArray;
+import parser.Values;
 import parser.ast.*;
 import parser.type.*;
 import prism.*;
@@ -194,8 +196,7 @@ public class CTMCModelChecker extends ProbModelChecker
 			else if (lTime == 0) {
 				// nb: uTime != 0 since would be caught above (trivial case)
 				b1.andNot(b2);
-				res = computeTransientBackwardsProbs((CTMC) model, b2, b1, uTime, null);
-				probs = StateValues.createFromDoubleArray(res.soln, model);
+				probs = StateValues.createFromDoubleArray(computeTransientBackwardsProbsForSweep((CTMC) model, b2, b1, expr, uTime), model);
 				// set values to exactly 1 for target (b2) states
 				// (these are computed inexactly during uniformisation)
 				int n = model.getNumStates();
@@ -217,8 +218,104 @@ public class CTMCModelChecker extends ProbModelChecker
 		return probs;
 	}
 
+	/**
+	 * Compute backwards transient probabilities for time bound {@code t}, as for
+	 * {@link #computeTransientBackwardsProbs(CTMC, BitSet, BitSet, double, double[])} with no multiplication vector,
+	 * where {@code t} is the (upper) time bound of {@code expr}. If an experiment is being run over
+	 * properties file constants (see {@link #setPFConstantsSweep(List)}) on which only the time bound depends,
+	 * the probabilities for the time bounds of all its steps are computed in a single pass and stored
+	 * in the model's analysis cache, from which the later steps take their results.
+	 */
+	protected double[] computeTransientBackwardsProbsForSweep(CTMC ctmc, BitSet target, BitSet nonAbs, ExpressionTemporal expr, double t) throws PrismException
+	{
+		ModelAnalysisCache cache = ctmc.getAnalysisCache();
+		double soln[] = cache.getTransientBackwardsProbs(ctmc, target, nonAbs, termCritParam, t);
+		if (soln != null) {
+			mainLog.println("\nUsing transient probabilities already computed for time bound " + t);
+			return soln;
+		}
+		double ts[] = getSweptTimeBounds(expr, t);
+		if (ts.length == 1 || nonAbs.isEmpty()) {
+			return computeTransientBackwardsProbs(ctmc, target, nonAbs, t, null).soln;
+		}
+		ModelCheckerResult res[] = computeTransientBackwardsProbs(ctmc, target, nonAbs, ts, null);
+		double solns[][] = new double[ts.length][];
+		for (int j = 0; j < ts.length; j++) {
+			solns[j] = res[j].soln;
+			if (ts[j] == t)
+				soln = res[j].soln;
+		}
+		cache.setTransientBackwardsProbs(ctmc, target, nonAbs, termCritParam, ts, solns);
+		return soln;
+	}
+
+	/**
+	 * Get the (distinct, valid) values of the upper time bound of {@code expr} over the steps of the
+	 * current experiment (see {@link #setPFConstantsSweep(List)}), including the current value {@code t}.
+	 * Just {@code t} is returned if there is no experiment, or if the operands of {@code expr}
+	 * also depend on the constants being varied (since results could not then be shared).
+	 */
+	protected double[] getSweptTimeBounds(ExpressionTemporal expr, double t) throws PrismException
+	{
+		if (pfConstantsSweep == null || pfConstantsSweep.size() < 2) {
+			return new double[] { t };
+		}
+		Vector<String> opConsts = new Vector<String>();
+		if (expr.getOperand1() != null)
+			opConsts.addAll(expr.getOperand1().getAllConstants());
+		opConsts.addAll(expr.getOperand2().getAllConstants());
+		if (expr.getLowerBound() != null)
+			opConsts.addAll(expr.getLowerBound().getAllConstants());
+		TreeSet<Double> ts = new TreeSet<Double>();
+		ts.add(t);
+		for (Values sweepValues : pfConstantsSweep) {
+			for (int i = 0; i < sweepValues.getNumValues(); i++) {
+				if (opConsts.contains(sweepValues.getName(i))) {
+					return new double[] { t };
+				}
+			}
+			Values vals = new Values(constantValues);
+			vals.setValues(sweepValues);
+			double tSweep = expr.getUpperBound().evaluateDouble(vals);
+			if (tSweep > 0) {
+				ts.add(tSweep);
+			}
+		}
+		double res[] = new double[ts.size()];
+		int j = 0;
+		for (double tSweep : ts) {
+			res[j++] = tSweep;
+		}
+		return res;
+	}
+
 	// Steady-state/transient probability computation
 
+	/**
+	 * Compute steady-state probability distribution (forwards).
+	 * Start from initial state (or uniform distribution over multiple initial states).
+	 */
+	public StateValues doSteadyState(CTMC ctmc) throws PrismException
+	{
+		return doSteadyState(ctmc, (StateValues) null);
+	}
+
+	/**
+	 * Compute steady-state probability distribution (forwards).
+	 * Optionally, use the passed in vector initDist as the initial probability distribution (time 0).
+	 * If null, start from initial state (or uniform distribution over multiple initial states).
+	 * For reasons of efficiency, when a vector is passed in, it will be trampled over,
+	 * so if you wanted it, take a copy. 
+	 * @param ctmc The CTMC
+	 * @param initDist Initial distribution (will be overwritten)
+	 */
+	public StateValues doSteadyState(CTMC ctmc, StateValues initDist) throws PrismException
+	{
+		StateValues initDistNew = (initDist == null) ? buildInitialDistribution(ctmc) : initDist;
+		ModelCheckerResult res = computeSteadyStateProbs(ctmc, initDistNew.getDoubleArray());
+		return StateValues.createFromDoubleArray(res.soln, ctmc);
+	}
+
 	/**
 	 * Compute transient probability distribution (forwards).
 	 * Start from initial state (or uniform distribution over multiple initial states).
@@ -277,6 +374,44 @@ public class CTMCModelChecker extends ProbModelChecker
 
 	// Numerical computation functions
 
+	/**
+	 * Compute (forwards) steady-state probabilities
+	 * i.e. compute the long-run probability of being in each state,
+	 * assuming the initial distribution {@code initDist}. 
+	 * This is done on the uniformised DTMC (which has the same steady-state probabilities),
+	 * re-using the BSCCs of the CTMC if they have already been computed.
+	 * For space efficiency, the initial distribution vector will be modified and values over-written,  
+	 * so if you wanted it, take a copy. 
+	 * @param ctmc The CTMC
+	 * @param initDist Initial distribution (will be overwritten)
+	 */
+	public ModelCheckerResult computeSteadyStateProbs(CTMC ctmc, double initDist[]) throws PrismException
+	{
+		mainLog.println("\nBuilding uniformised DTMC...");
+		DTMC dtmcUnif = ctmc.buildImplicitUniformisedDTMC(ctmc.getDefaultUniformisationRate());
+		DTMCModelChecker mcDTMC = createDTMCModelChecker();
+		return mcDTMC.computeSteadyStateProbs(dtmcUnif, initDist, mcDTMC.computeBSCCs(ctmc));
+	}
+
+	/**
+	 * Perform (backwards) steady-state probabilities, as required for (e.g. CSL) model checking.
+	 * Compute, for each initial state s, the sum over all states s'
+	 * of the steady-state probability of being in s'
+	 * multiplied by the corresponding probability in the vector {@code multProbs}.
+	 * If {@code multProbs} is null, it is assumed to be all 1s.
+	 * This is done on the uniformised DTMC (which has the same steady-state probabilities),
+	 * re-using the BSCCs of the CTMC if they have already been computed.
+	 * @param ctmc The CTMC
+	 * @param multProbs Multiplication vector (optional: null means all 1s)
+	 */
+	public ModelCheckerResult computeSteadyStateBackwardsProbs(CTMC ctmc, double multProbs[]) throws PrismException
+	{
+		mainLog.println("\nBuilding uniformised DTMC...");
+		DTMC dtmcUnif = ctmc.buildImplicitUniformisedDTMC(ctmc.getDefaultUniformisationRate());
+		DTMCModelChecker mcDTMC = createDTMCModelChecker();
+		return mcDTMC.computeSteadyStateBackwardsProbs(dtmcUnif, multProbs, mcDTMC.computeBSCCs(ctmc));
+	}
+
 	/**
 	 * Compute next=state probabilities.
 	 * i.e. compute the probability of being in a state in {@code target} in the next step.
@@ -362,19 +497,37 @@ public class CTMCModelChecker extends ProbModelChecker
 	 * @param t Time bound
 	 */
 	public ModelCheckerResult computeTimeBoundedUntilProbs(CTMC ctmc, BitSet remain, BitSet target, double t) throws PrismException
+	{
+		return computeTimeBoundedUntilProbs(ctmc, remain, target, new double[] { t })[0];
+	}
+
+	/**
+	 * Compute time-bounded until probabilities for several time bounds at once,
+	 * i.e. compute, for each time bound {@code ts[j]}, the probability of reaching a state in {@code target},
+	 * within time {@code ts[j]}, and while remaining in states in {@code remain}.
+	 * This is done with a single pass of uniformisation (up to the largest time bound),
+	 * rather than one per time bound.
+	 * @param ctmc The CTMC
+	 * @param remain Remain in these states (optional: null means "all")
+	 * @param target Target states
+	 * @param ts Time bounds
+	 */
+	public ModelCheckerResult[] computeTimeBoundedUntilProbs(CTMC ctmc, BitSet remain, BitSet target, double ts[]) throws PrismException
 	{
 		BitSet nonAbs = null;
 		if (remain != null) {
 			nonAbs = (BitSet) remain.clone();
 			nonAbs.andNot(target);
 		}
-		ModelCheckerResult res = computeTransientBackwardsProbs(ctmc, target, nonAbs, t, null);
+		ModelCheckerResult res[] = computeTransientBackwardsProbs(ctmc, target, nonAbs, ts, null);
 		// Set values to exactly 1 for target states
 		// (these are computed inexactly during uniformisation)
 		int n = ctmc.getNumStates();
-		for (int i = 0; i < n; i++) {
-			if (target.get(i))
-				res.soln[i] = 1.0;
+		for (int j = 0; j < ts.length; j++) {
+			for (int i = 0; i < n; i++) {
+				if (target.get(i))
+					res[j].soln[i] = 1.0;
+			}
 		}
 		return res;
 	}
@@ -395,14 +548,6 @@ public class CTMCModelChecker extends ProbModelChecker
 	public ModelCheckerResult computeTransientBackwardsProbs(CTMC ctmc, BitSet target, BitSet nonAbs, double t, double multProbs[]) throws PrismException
 	{
 		ModelCheckerResult res = null;
-		int i, n, iters;
-		double soln[], soln2[], tmpsoln[], sum[];
-		DTMC dtmc;
-		long timer;
-		// Fox-Glynn stuff
-		FoxGlynn fg;
-		int left, right;
-		double q, qt, acc, weights[], totalWeight;
 
 		// Optimisations: If (nonAbs is empty or t = 0) and multProbs is null, this is easy.
 		if (((nonAbs != null && nonAbs.isEmpty()) || (t == 0)) && multProbs == null) {
@@ -411,42 +556,76 @@ public class CTMCModelChecker extends ProbModelChecker
 			return res;
 		}
 
+		return computeTransientBackwardsProbs(ctmc, target, nonAbs, new double[] { t }, multProbs)[0];
+	}
+
+	/**
+	 * Perform transient probability computation, as for
+	 * {@link #computeTransientBackwardsProbs(CTMC, BitSet, BitSet, double, double[])},
+	 * but for several time bounds {@code ts[j]} at once. This is done with a single pass
+	 * of uniformisation, up to the right truncation point for the largest time bound,
+	 * accumulating a separate (Fox-Glynn weighted) sum for each time bound.
+	 * @param ctmc The CTMC
+	 * @param target Target states
+	 * @param nonAbs States *not* to be made absorbing (optional: null means "all")
+	 * @param ts Time bounds
+	 * @param multProbs Multiplication vector (optional: null means all 1s)
+	 */
+	public ModelCheckerResult[] computeTransientBackwardsProbs(CTMC ctmc, BitSet target, BitSet nonAbs, double ts[], double multProbs[]) throws PrismException
+	{
+		ModelCheckerResult res[] = null;
+		int i, j, n, iters, numTimes, maxRight;
+		double soln[], soln2[], tmpsoln[], sums[][];
+		UniformisedMatrix unif;
+		ForkJoinPool pool;
+		long timer;
+		// Fox-Glynn stuff
+		FoxGlynn fg;
+		int left[], right[];
+		double q, qt, acc, weights[][];
+
 		// Start backwards transient computation
 		timer = System.currentTimeMillis();
-		mainLog.println("\nStarting backwards transient probability computation...");
+		numTimes = ts.length;
+		mainLog.println("\nStarting backwards transient probability computation" + (numTimes > 1 ? " for " + numTimes + " time bounds" : "") + "...");
 
 		// Store num states
 		n = ctmc.getNumStates();
 
-		// Get uniformisation rate; do Fox-Glynn
+		// Get uniformisation rate; do Fox-Glynn for each time bound
+		// (for a time bound of 0, the result is just the initial vector)
 		q = ctmc.getDefaultUniformisationRate(nonAbs);
-		qt = q * t;
-		mainLog.println("\nUniformisation: q.t = " + q + " x " + t + " = " + qt);
 		acc = termCritParam / 8.0;
-		fg = new FoxGlynn(qt, 1e-300, 1e+300, acc);
-		left = fg.getLeftTruncationPoint();
-		right = fg.getRightTruncationPoint();
-		if (right < 0) {
-			throw new PrismException("Overflow in Fox-Glynn computation (time bound too big?)");
-		}
-		weights = fg.getWeights();
-		totalWeight = fg.getTotalWeight();
-		for (i = left; i <= right; i++) {
-			weights[i - left] /= totalWeight;
+		left = new int[numTimes];
+		right = new int[numTimes];
+		weights = new double[numTimes][];
+		maxRight = 0;
+		for (j = 0; j < numTimes; j++) {
+			if (ts[j] == 0) {
+				weights[j] = new double[] { 1.0 };
+				continue;
+			}
+			qt = q * ts[j];
+			mainLog.println("\nUniformisation: q.t = " + q + " x " + ts[j] + " = " + qt);
+			fg = computeFoxGlynn(qt, acc);
+			left[j] = fg.getLeftTruncationPoint();
+			right[j] = fg.getRightTruncationPoint();
+			weights[j] = fg.getWeights();
+			maxRight = Math.max(maxRight, right[j]);
 		}
-		mainLog.println("Fox-Glynn (" + acc + "): left = " + left + ", right = " + right);
 
-		// Build (implicit) uniformised DTMC
-		dtmc = ctmc.buildImplicitUniformisedDTMC(q);
+		// Get (cached) uniformised matrix
+		unif = UniformisedMatrix.getUniformisedMatrix(ctmc, q);
+		pool = getParallelPool(n);
 
 		// Create solution vector(s)
 		soln = new double[n];
 		soln2 = new double[n];
-		sum = new double[n];
+		sums = new double[numTimes][n];
 
 		// Initialise solution vectors.
 		// Vectors soln/soln2 are 1 for target states, or multProbs[i] if supplied.
-		// Vector sum is all zeros (done by array creation).
+		// Vectors in sums are all zeros (done by array creation).
 		if (multProbs != null) {
 			for (i = 0; i < n; i++)
 				soln[i] = soln2[i] = target.get(i) ? multProbs[i] : 0.0;
@@ -455,24 +634,30 @@ public class CTMCModelChecker extends ProbModelChecker
 				soln[i] = soln2[i] = target.get(i) ? 1.0 : 0.0;
 		}
 
-		// If necessary, do 0th element of summation (doesn't require any matrix powers)
-		if (left == 0)
-			for (i = 0; i < n; i++)
-				sum[i] += weights[0] * soln[i];
+		// If necessary, do 0th element of summations (doesn't require any matrix powers)
+		for (j = 0; j < numTimes; j++) {
+			if (left[j] == 0)
+				for (i = 0; i < n; i++)
+					sums[j][i] += weights[j][0] * soln[i];
+		}
 
 		// Start iterations
 		iters = 1;
-		while (iters <= right) {
+		while (iters <= maxRight) {
 			// Matrix-vector multiply
-			dtmc.mvMult(soln, soln2, nonAbs, false);
+			unif.mvMult(soln, soln2, nonAbs, pool);
 			// Swap vectors for next iter
 			tmpsoln = soln;
 			soln = soln2;
 			soln2 = tmpsoln;
-			// Add to sum
-			if (iters >= left) {
-				for (i = 0; i < n; i++)
-					sum[i] += weights[iters - left] * soln[i];
+			// Add to sums
+			for (j = 0; j < numTimes; j++) {
+				if (iters >= left[j] && iters <= right[j]) {
+					double w = weights[j][iters - left[j]];
+					double sum[] = sums[j];
+					for (i = 0; i < n; i++)
+						sum[i] += w * soln[i];
+				}
 			}
 			iters++;
 		}
@@ -483,12 +668,15 @@ public class CTMCModelChecker extends ProbModelChecker
 		mainLog.println(" took " + iters + " iters and " + timer / 1000.0 + " seconds.");
 
 		// Return results
-		res = new ModelCheckerResult();
-		res.soln = sum;
-		res.lastSoln = soln2;
-		res.numIters = iters;
-		res.timeTaken = timer / 1000.0;
-		res.timePre = 0.0;
+		res = new ModelCheckerResult[numTimes];
+		for (j = 0; j < numTimes; j++) {
+			res[j] = new ModelCheckerResult();
+			res[j].soln = sums[j];
+			res[j].lastSoln = soln2;
+			res[j].numIters = iters;
+			res[j].timeTaken = timer / 1000.0;
+			res[j].timePre = 0.0;
+		}
 		return res;
 	}
 
@@ -509,7 +697,7 @@ public class CTMCModelChecker extends ProbModelChecker
 		// Fox-Glynn stuff
 		FoxGlynn fg;
 		int left, right;
-		double q, qt, acc, weights[], totalWeight;
+		double q, qt, acc, weights[];
 
 		// Optimisation: If t = 0, this is easy.
 		if (t == 0) {
@@ -530,17 +718,11 @@ public class CTMCModelChecker extends ProbModelChecker
 		qt = q * t;
 		mainLog.println("\nUniformisation: q.t = " + q + " x " + t + " = " + qt);
 		acc = termCritParam / 8.0;
-		fg = new FoxGlynn(qt, 1e-300, 1e+300, acc);
+		fg = computeFoxGlynn(qt, acc);
 		left = fg.getLeftTruncationPoint();
 		right = fg.getRightTruncationPoint();
-		if (right < 0) {
-			throw new PrismException("Overflow in Fox-Glynn computation (time bound too big?)");
-		}
-		weights = fg.getWeights();
-		totalWeight = fg.getTotalWeight();
-		for (i = left; i <= right; i++) {
-			weights[i - left] /= totalWeight;
-		}
+		// (take a copy of the weights, since they are modified below)
+		weights = fg.getWeights().clone();
 
 		// modify the poisson probabilities to what we need for this computation
 		// first make the kth value equal to the sum of the values for 0...k
@@ -551,10 +733,10 @@ public class CTMCModelChecker extends ProbModelChecker
 		for (i = left; i <= right; i++) {
 			weights[i - left] = (1 - weights[i - left]) / q;
 		}
-		mainLog.println("Fox-Glynn (" + acc + "): left = " + left + ", right = " + right);
 
-		// Build (implicit) uniformised DTMC
-		DTMC dtmcUnif = ctmc.buildImplicitUniformisedDTMC(q);
+		// Get (cached) uniformised matrix
+		UniformisedMatrix unif = UniformisedMatrix.getUniformisedMatrix(ctmc, q);
+		ForkJoinPool pool = getParallelPool(n);
 
 		// Create solution vector(s)
 		soln = new double[n];
@@ -578,7 +760,7 @@ public class CTMCModelChecker extends ProbModelChecker
 		iters = 1;
 		while (iters <= right) {
 			// Matrix-vector multiply
-			dtmcUnif.mvMult(soln, soln2, null, false);
+			unif.mvMult(soln, soln2, null, pool);
 			// Swap vectors for next iter
 			tmpsoln = soln;
 			soln = soln2;
@@ -648,7 +830,7 @@ public class CTMCModelChecker extends ProbModelChecker
 		// Fox-Glynn stuff
 		FoxGlynn fg;
 		int left, right;
-		double q, qt, acc, weights[], totalWeight;
+		double q, qt, acc, weights[];
 
 		// Store num states
 		n = ctmc.getNumStates();
@@ -671,22 +853,15 @@ public class CTMCModelChecker extends ProbModelChecker
 		qt = q * t;
 		mainLog.println("\nUniformisation: q.t = " + q + " x " + t + " = " + qt);
 		acc = termCritParam / 8.0;
-		fg = new FoxGlynn(qt, 1e-300, 1e+300, acc);
+		fg = computeFoxGlynn(qt, acc);
 		left = fg.getLeftTruncationPoint();
 		right = fg.getRightTruncationPoint();
-		if (right < 0) {
-			throw new PrismException("Overflow in Fox-Glynn computation (time bound too big?)");
-		}
 		weights = fg.getWeights();
-		totalWeight = fg.getTotalWeight();
-		for (i = left; i <= right; i++) {
-			weights[i - left] /= totalWeight;
-		}
 
-		mainLog.println("Fox-Glynn (" + acc + "): left = " + left + ", right = " + right);
 
-		// Build (implicit) uniformised DTMC
-		DTMC dtmcUnif = ctmc.buildImplicitUniformisedDTMC(q);
+		// Get (cached) uniformised matrix
+		UniformisedMatrix unif = UniformisedMatrix.getUniformisedMatrix(ctmc, q);
+		ForkJoinPool pool = getParallelPool(n);
 
 		// Create solution vector(s)
 		soln = new double[n];
@@ -706,7 +881,7 @@ public class CTMCModelChecker extends ProbModelChecker
 		iters = 1;
 		while (iters <= right) {
 			// Matrix-vector multiply
-			dtmcUnif.mvMult(soln, soln2, null, false);
+			unif.mvMult(soln, soln2, null, pool);
 			// Swap vectors for next iter
 			tmpsoln = soln;
 			soln = soln2;
@@ -771,12 +946,13 @@ public class CTMCModelChecker extends ProbModelChecker
 		ModelCheckerResult res = null;
 		int i, n, iters;
 		double soln[], soln2[], tmpsoln[], sum[];
-		DTMC dtmc;
+		UniformisedMatrix unif;
+		ForkJoinPool pool;
 		long timer;
 		// Fox-Glynn stuff
 		FoxGlynn fg;
 		int left, right;
-		double q, qt, acc, weights[], totalWeight;
+		double q, qt, acc, weights[];
 
 		// Start bounded probabilistic reachability
 		timer = System.currentTimeMillis();
@@ -791,21 +967,14 @@ public class CTMCModelChecker extends ProbModelChecker
 		mainLog.println("\nUniformisation: q.t = " + q + " x " + t + " = " + qt);
 		termCritParam = 1e-6;
 		acc = termCritParam / 8.0;
-		fg = new FoxGlynn(qt, 1e-300, 1e+300, acc);
+		fg = computeFoxGlynn(qt, acc);
 		left = fg.getLeftTruncationPoint();
 		right = fg.getRightTruncationPoint();
-		if (right < 0) {
-			throw new PrismException("Overflow in Fox-Glynn computation (time bound too big?)");
-		}
 		weights = fg.getWeights();
-		totalWeight = fg.getTotalWeight();
-		for (i = left; i <= right; i++) {
-			weights[i - left] /= totalWeight;
-		}
-		mainLog.println("Fox-Glynn (" + acc + "): left = " + left + ", right = " + right);
 
-		// Build (implicit) uniformised DTMC
-		dtmc = ctmc.buildImplicitUniformisedDTMC(q);
+		// Get (cached) uniformised matrix
+		unif = UniformisedMatrix.getUniformisedMatrix(ctmc, q);
+		pool = getParallelPool(n);
 
 		// Create solution vector(s)
 		// For soln, we just use init (since we are free to modify this vector)
@@ -827,7 +996,7 @@ public class CTMCModelChecker extends ProbModelChecker
 		iters = 1;
 		while (iters <= right) {
 			// Matrix-vector multiply
-			dtmc.vmMult(soln, soln2);
+			unif.vmMult(soln, soln2, pool);
 			// Swap vectors for next iter
 			tmpsoln = soln;
 			soln = soln2;
@@ -856,6 +1025,21 @@ public class CTMCModelChecker extends ProbModelChecker
 	}
 
 	// Utility methods
+
+	/**
+	 * Get the (normalised) Fox-Glynn weights for q.t = {@code qt} and accuracy {@code acc},
+	 * and log the truncation points. Weights are memoised (see {@link FoxGlynn#getNormalised(double, double)})
+	 * and must not be modified.
+	 */
+	private FoxGlynn computeFoxGlynn(double qt, double acc) throws PrismException
+	{
+		FoxGlynn fg = FoxGlynn.getNormalised(qt, acc);
+		if (fg.getRightTruncationPoint() < 0) {
+			throw new PrismException("Overflow in Fox-Glynn computation (time bound too big?)");
+		}
+		mainLog.println("Fox-Glynn (" + acc + "): left = " + fg.getLeftTruncationPoint() + ", right = " + fg.getRightTruncationPoint());
+		return fg;
+	}
 	
 	/**
 	 * Create a new DTMC model checker with the same settings as this one. 
@@ -0,0 +1,293 @@
+//==============================================================================
+//
+//	Copyright (c) 2002-
+//	Authors:
+//	* Dave Parker <david.parker@comlab.ox.ac.uk> (University of Oxford)
+//
+//------------------------------------------------------------------------------
+//
+//	This file is part of PRISM.
+//
+//	PRISM is free software; you can redistribute it and/or modify
+//	it under the terms of the GNU General Public License as published by
+//	the Free Software Foundation; either version 2 of the License, or
+//	(at your option) any later version.
+//
+//	PRISM is distributed in the hope that it will be useful,
+//	but WITHOUT ANY WARRANTY; without even the implied warranty of
+//	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//	GNU General Public License for more details.
+//
+//	You should have received a copy of the GNU General Public License
+//	along with PRISM; if not, write to the Free Software Foundation,
+//	Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+//
+//==============================================================================
+
+package explicit;
+
+import java.util.BitSet;
+
+import prism.ModelType;
+import prism.PrismException;
+
+/**
+ * Sparse matrix (non-mutable) explicit-state representation of a CTMC,
+ * stored as for {@link DTMCSparse} (with rates in place of probabilities).
+ * <br><br>
+ * Since the rates cannot be modified, {@link #uniformise(double)} is not supported, and the
+ * "implicit" embedded/uniformised DTMCs are built explicitly, as {@link DTMCSparse}s
+ * whose storage is of the same type as this CTMC's, rather than computed on the fly.
+ */
+public class CTMCSparse extends DTMCSparse implements CTMC
+{
+	/**
+	 * The cached embedded DTMC (see {@link #getImplicitEmbeddedDTMC()}).
+	 */
+	private DTMCSparse cachedEmbeddedDTMC = null;
+
+	// Constructors
+
+	/**
+	 * Constructor: CTMC with transition rates in {@code storage} (see {@link DTMCSparse#DTMCSparse(int, SparseStorage)}).
+	 */
+	public CTMCSparse(int numStates, SparseStorage storage)
+	{
+		super(numStates, storage);
+	}
+
+	// Mutators (for ModelSimple)
+
+	@Override
+	public void buildFromPrismExplicit(String filename) throws PrismException
+	{
+		CTMCSimple ctmc = new CTMCSimple();
+		ctmc.buildFromPrismExplicit(filename);
+		initialise(ctmc.getNumStates());
+		copyFrom(ctmc);
+		storage = copyTransitions(ctmc, SparseStorage.Type.HEAP);
+		numTransitions = storage.getChoiceStart(numStates);
+	}
+
+	// Accessors (for Model)
+
+	@Override
+	public ModelType getModelType()
+	{
+		return ModelType.CTMC;
+	}
+
+	// Accessors (for CTMC)
+
+	@Override
+	public double getExitRate(int i)
+	{
+		int k, h;
+		double d = 0.0;
+		h = storage.getChoiceStart(i + 1);
+		for (k = storage.getChoiceStart(i); k < h; k++) {
+			d += storage.getNonZero(k);
+		}
+		return d;
+	}
+
+	@Override
+	public double getMaxExitRate()
+	{
+		int i;
+		double d, max = Double.NEGATIVE_INFINITY;
+		for (i = 0; i < numStates; i++) {
+			d = getExitRate(i);
+			if (d > max)
+				max = d;
+		}
+		return max;
+	}
+
+	@Override
+	public double getMaxExitRate(BitSet subset)
+	{
+		int i;
+		double d, max = Double.NEGATIVE_INFINITY;
+		for (i = subset.nextSetBit(0); i >= 0; i = subset.nextSetBit(i + 1)) {
+			d = getExitRate(i);
+			if (d > max)
+				max = d;
+		}
+		return max;
+	}
+
+	@Override
+	public double getDefaultUniformisationRate()
+	{
+		return 1.02 * getMaxExitRate();
+	}
+
+	@Override
+	public double getDefaultUniformisationRate(BitSet nonAbs)
+	{
+		return 1.02 * getMaxExitRate(nonAbs);
+	}
+
+	@Override
+	public DTMC buildImplicitEmbeddedDTMC()
+	{
+		DTMCSparse dtmc = buildSparseDTMC(-1);
+		if (cachedEmbeddedDTMC != null) {
+			// replace cached DTMC
+			cachedEmbeddedDTMC = dtmc;
+		}
+		return dtmc;
+	}
+
+	@Override
+	public DTMC getImplicitEmbeddedDTMC()
+	{
+		if (cachedEmbeddedDTMC == null) {
+			cachedEmbeddedDTMC = buildSparseDTMC(-1);
+		}
+		return cachedEmbeddedDTMC;
+	}
+
+	@Override
+	public DTMCSimple buildEmbeddedDTMC()
+	{
+		DTMCSimple dtmc;
+		int i, k, h;
+		double d;
+		dtmc = new DTMCSimple(numStates);
+		for (int in : getInitialStates()) {
+			dtmc.addInitialState(in);
+		}
+		for (i = 0; i < numStates; i++) {
+			d = getExitRate(i);
+			if (d == 0) {
+				dtmc.setProbability(i, i, 1.0);
+			} else {
+				h = storage.getChoiceStart(i + 1);
+				for (k = storage.getChoiceStart(i); k < h; k++) {
+					dtmc.setProbability(i, storage.getCol(k), storage.getNonZero(k) / d);
+				}
+			}
+		}
+		return dtmc;
+	}
+
+	@Override
+	public void uniformise(double q)
+	{
+		throw new UnsupportedOperationException("Can't uniformise a " + getClass().getSimpleName() + " since it cannot be modified");
+	}
+
+	@Override
+	public DTMC buildImplicitUniformisedDTMC(double q)
+	{
+		return buildSparseDTMC(q);
+	}
+
+	@Override
+	public DTMCSimple buildUniformisedDTMC(double q)
+	{
+		DTMCSimple dtmc;
+		int i, k, h;
+		double d;
+		dtmc = new DTMCSimple(numStates);
+		for (int in : getInitialStates()) {
+			dtmc.addInitialState(in);
+		}
+		for (i = 0; i < numStates; i++) {
+			// Add scaled off-diagonal entries
+			h = storage.getChoiceStart(i + 1);
+			for (k = storage.getChoiceStart(i); k < h; k++) {
+				dtmc.setProbability(i, storage.getCol(k), storage.getNonZero(k) / q);
+			}
+			// Add diagonal, if needed
+			d = getOffDiagonalRate(i);
+			if (d < q) {
+				dtmc.setProbability(i, i, 1 - (d / q));
+			}
+		}
+		return dtmc;
+	}
+
+	/**
+	 * Build the embedded DTMC (if {@code q} is negative) or the uniformised DTMC with rate {@code q}
+	 * (as for {@link DTMCEmbeddedSimple} and {@link DTMCUniformisedSimple}, respectively)
+	 * in storage of the same type as this CTMC's.
+	 */
+	private DTMCSparse buildSparseDTMC(double q)
+	{
+		int i, j, k, h, col, numTrans;
+		double d;
+		boolean embedded = q < 0;
+		try {
+			// Count transitions
+			numTrans = 0;
+			for (i = 0; i < numStates; i++) {
+				if (embedded) {
+					numTrans += getExitRate(i) == 0 ? 1 : getNumTransitions(i);
+				} else {
+					numTrans += getNumTransitions(i) - (isSuccessor(i, i) ? 1 : 0) + (getOffDiagonalRate(i) < q ? 1 : 0);
+				}
+			}
+			SparseStorage storageNew = SparseStorage.create(storage.getType(), numStates, numStates, numTrans, false);
+			j = 0;
+			for (i = 0; i < numStates; i++) {
+				storageNew.setRowStart(i, i);
+				storageNew.setChoiceStart(i, j);
+				h = storage.getChoiceStart(i + 1);
+				if (embedded) {
+					d = getExitRate(i);
+					if (d == 0) {
+						storageNew.setCol(j, i);
+						storageNew.setNonZero(j++, 1.0);
+					} else {
+						for (k = storage.getChoiceStart(i); k < h; k++) {
+							storageNew.setCol(j, storage.getCol(k));
+							storageNew.setNonZero(j++, storage.getNonZero(k) / d);
+						}
+					}
+				} else {
+					// Non-diagonal entries are rate/q; the diagonal entry (if non-zero) is
+					// 1 - (sum of non-diagonal rates)/q, stored last (as it is added last in DTMCUniformisedSimple)
+					for (k = storage.getChoiceStart(i); k < h; k++) {
+						col = storage.getCol(k);
+						if (col != i) {
+							storageNew.setCol(j, col);
+							storageNew.setNonZero(j++, storage.getNonZero(k) / q);
+						}
+					}
+					d = getOffDiagonalRate(i);
+					if (d < q) {
+						storageNew.setCol(j, i);
+						storageNew.setNonZero(j++, 1 - d / q);
+					}
+				}
+			}
+			storageNew.setRowStart(numStates, numStates);
+			storageNew.setChoiceStart(numStates, j);
+			DTMCSparse dtmc = new DTMCSparse(numStates, storageNew);
+			dtmc.copyFrom(this);
+			return dtmc;
+		} catch (PrismException e) {
+			// Only possible for off-heap storage (e.g. if a temporary file cannot be created)
+			throw new RuntimeException(e.getMessage());
+		}
+	}
+
+	/**
+	 * Get the sum of the rates of the non-diagonal entries for state {@code i}.
+	 */
+	private double getOffDiagonalRate(int i)
+	{
+		int k, h;
+		double d = 0.0;
+		h = storage.getChoiceStart(i + 1);
+		for (k = storage.getChoiceStart(i); k < h; k++) {
+			if (storage.getCol(k) != i) {
+				d += storage.getNonZero(k);
+			}
+		}
+		return d;
+	}
+}
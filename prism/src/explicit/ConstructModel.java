@@ -44,6 +44,7 @@ import prism.PrismException;
 import prism.PrismLog;
 import prism.PrismNotSupportedException;
 import prism.PrismPrintStreamLog;
+import prism.PrismSettings;
 import prism.ProgressDisplay;
 import prism.UndefinedConstants;
 
@@ -67,6 +68,10 @@ public class ConstructModel extends PrismComponent
 	protected boolean distinguishActions = true;
 	/** Should labels be processed and attached to the model? */
 	protected boolean attachLabels = true; 
+	/** Where to store the transition function of sparse models */
+	protected SparseStorage.Type storageType = SparseStorage.Type.HEAP;
+	/** Symmetry reduction to apply to states as they are found (null if none) */
+	protected SymmetryReduction symmetryReduction = null;
 
 	// Details of built model:
 
@@ -76,6 +81,18 @@ public class ConstructModel extends PrismComponent
 	public ConstructModel(PrismComponent parent) throws PrismException
 	{
 		super(parent);
+
+		// If present, initialise settings from PrismSettings
+		if (settings != null) {
+			String s = settings.getString(PrismSettings.PRISM_EXPLICIT_STORAGE);
+			if (s.equals("Off-heap")) {
+				setStorageType(SparseStorage.Type.OFF_HEAP);
+			} else if (s.equals("Memory-mapped")) {
+				setStorageType(SparseStorage.Type.MEMORY_MAPPED);
+			} else {
+				setStorageType(SparseStorage.Type.HEAP);
+			}
+		}
 	}
 
 	/**
@@ -104,6 +121,25 @@ public class ConstructModel extends PrismComponent
 		this.buildSparse = buildSparse;
 	}
 
+	/**
+	 * Set the symmetry reduction to apply during construction (null means none).
+	 * Each state is replaced by its canonical representative before being looked up/stored,
+	 * so the model built is the quotient of the full model under the symmetry.
+	 */
+	public void setSymmetryReduction(SymmetryReduction symmetryReduction)
+	{
+		this.symmetryReduction = symmetryReduction;
+	}
+
+	/**
+	 * Where to store the transition function of sparse models (if built)?
+	 * (on the Java heap, or outside it, in direct or memory-mapped buffers; see {@link SparseStorage})
+	 */
+	public void setStorageType(SparseStorage.Type storageType)
+	{
+		this.storageType = storageType;
+	}
+
 	/**
 	 * Should actions be attached to distributions (and used to distinguish them)?
 	 */
@@ -159,6 +195,7 @@ public class ConstructModel extends PrismComponent
 		DTMCSimple dtmc = null;
 		CTMCSimple ctmc = null;
 		MDPSimple mdp = null;
+		MDPSparseBuilder mdpBuilder = null;
 		CTMDPSimple ctmdp = null;
 		ModelExplicit model = null;
 		Distribution distr = null;
@@ -194,8 +231,13 @@ public class ConstructModel extends PrismComponent
 				ctmc.setVarList(varList);
 				break;
 			case MDP:
-				modelSimple = mdp = new MDPSimple();
-				mdp.setVarList(varList);
+				// Sparse MDPs are built directly, without an intermediate MDPSimple
+				if (buildSparse) {
+					mdpBuilder = new MDPSparseBuilder(storageType);
+				} else {
+					modelSimple = mdp = new MDPSimple();
+					mdp.setVarList(varList);
+				}
 				break;
 			case CTMDP:
 				modelSimple = ctmdp = new CTMDPSimple();
@@ -213,11 +255,20 @@ public class ConstructModel extends PrismComponent
 		explore = new LinkedList<State>();
 		// Add initial state(s) to 'explore', 'states' and to the model
 		for (State initState : modelGen.getInitialStates()) {
+			if (symmetryReduction != null) {
+				initState = symmetryReduction.canonicalise(initState);
+			}
+			if (!states.add(initState)) {
+				continue;
+			}
 			explore.add(initState);
-			states.add(initState);
 			if (!justReach) {
-				modelSimple.addState();
-				modelSimple.addInitialState(modelSimple.getNumStates() - 1);
+				if (mdpBuilder != null) {
+					mdpBuilder.addInitialState(mdpBuilder.addState());
+				} else {
+					modelSimple.addState();
+					modelSimple.addInitialState(modelSimple.getNumStates() - 1);
+				}
 			}
 		}
 		// Explore...
@@ -240,12 +291,17 @@ public class ConstructModel extends PrismComponent
 				nt = modelGen.getNumTransitions(i);
 				for (j = 0; j < nt; j++) {
 					stateNew = modelGen.computeTransitionTarget(i, j);
+					if (symmetryReduction != null) {
+						stateNew = symmetryReduction.canonicalise(stateNew);
+					}
 					// Is this a new state?
 					if (states.add(stateNew)) {
 						// If so, add to the explore list
 						explore.add(stateNew);
 						// And to model
-						if (!justReach) {
+						if (mdpBuilder != null) {
+							mdpBuilder.addState();
+						} else if (!justReach) {
 							modelSimple.addState();
 						}
 					}
@@ -273,7 +329,9 @@ public class ConstructModel extends PrismComponent
 				}
 				// For nondet models, add collated transition to model 
 				if (!justReach) {
-					if (modelType == ModelType.MDP) {
+					if (mdpBuilder != null) {
+						mdpBuilder.addChoice(src, distr, distinguishActions ? modelGen.getChoiceAction(i) : null);
+					} else if (modelType == ModelType.MDP) {
 						if (distinguishActions) {
 							mdp.addActionLabelledChoice(src, distr, modelGen.getChoiceAction(i));
 						} else {
@@ -303,7 +361,11 @@ public class ConstructModel extends PrismComponent
 
 		// Find/fix deadlocks (if required)
 		if (!justReach && findDeadlocks) {
-			modelSimple.findDeadlocks(fixDeadlocks);
+			if (mdpBuilder != null) {
+				mdpBuilder.findDeadlocks(fixDeadlocks);
+			} else {
+				modelSimple.findDeadlocks(fixDeadlocks);
+			}
 		}
 
 		boolean sort = true;
@@ -332,8 +394,10 @@ public class ConstructModel extends PrismComponent
 				model = sort ? new CTMCSimple(ctmc, permut) : (CTMCSimple) ctmc;
 				break;
 			case MDP:
-				if (buildSparse) {
-					model = sort ? new MDPSparse(mdp, true, permut) : new MDPSparse(mdp);
+				if (mdpBuilder != null) {
+					model = mdpBuilder.build(sort ? permut : null);
+					model.setVarList(varList);
+					mdpBuilder = null;
 				} else {
 					model = sort ? new MDPSimple(mdp, permut) : mdp;
 				}
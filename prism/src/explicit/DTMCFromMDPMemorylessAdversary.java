@@ -209,15 +209,18 @@ public class DTMCFromMDPMemorylessAdversary extends DTMCExplicit
 
 	public void prob0step(BitSet subset, BitSet u, BitSet result)
 	{
-		// TODO
-		throw new Error("Not yet supported");
+		for (int s = 0; s < numStates; s++) {
+			if (subset.get(s)) {
+				result.set(s, adv[s] >= 0 && mdp.someSuccessorsInSet(s, adv[s], u));
+			}
+		}
 	}
 
 	public void prob1step(BitSet subset, BitSet u, BitSet v, BitSet result)
 	{
 		for (int s = 0; s < numStates; s++) {
 			if (subset.get(s)) {
-				result.set(s, mdp.prob1stepSingle(s, adv[s], u, v));
+				result.set(s, adv[s] >= 0 && mdp.prob1stepSingle(s, adv[s], u, v));
 			}
 		}
 	}
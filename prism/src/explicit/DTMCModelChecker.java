@@ -27,10 +27,15 @@
 package explicit;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.BitSet;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 import parser.VarList;
 import parser.ast.Declaration;
@@ -38,6 +43,7 @@ import parser.ast.DeclarationIntUnbounded;
 import parser.ast.Expression;
 import prism.Prism;
 import prism.PrismComponent;
+import prism.PrismDevNullLog;
 import prism.PrismException;
 import prism.PrismFileLog;
 import prism.PrismNotSupportedException;
@@ -53,6 +59,12 @@ import explicit.rewards.Rewards;
  */
 public class DTMCModelChecker extends ProbModelChecker
 {
+	// Number of iterations after which GMRES is restarted
+	protected static final int GMRES_RESTART = 50;
+
+	// BSCCs with at most this many states are solved directly (sparse LU) for steady-state probabilities
+	protected static final int STEADY_STATE_DIRECT_MAX = 2000;
+
 	/**
 	 * Create a new DTMCModelChecker, inherit basic state from parent (unless null).
 	 */
@@ -315,9 +327,7 @@ public class DTMCModelChecker extends ProbModelChecker
 		mainLog.println("\nStarting total reward computation...");
 
 		// Compute bottom strongly connected components (BSCCs)
-		SCCComputer sccComputer = SCCComputer.createSCCComputer(this, dtmc);
-		sccComputer.computeBSCCs();
-		List<BitSet> bsccs = sccComputer.getBSCCs();
+		List<BitSet> bsccs = computeBSCCs(dtmc);
 		numBSCCs = bsccs.size();
 
 		// Find BSCCs with non-zero reward
@@ -519,11 +529,17 @@ public class DTMCModelChecker extends ProbModelChecker
 		LinEqMethod linEqMethod = this.linEqMethod;
 
 		// Switch to a supported method, if necessary
-		if (!(linEqMethod == LinEqMethod.POWER || linEqMethod == LinEqMethod.GAUSS_SEIDEL)) {
+		if (solnMethod != SolnMethod.INTERVAL_ITERATION && solnMethod != SolnMethod.OPTIMISTIC_VALUE_ITERATION
+				&& !(linEqMethod == LinEqMethod.POWER || linEqMethod == LinEqMethod.GAUSS_SEIDEL || linEqMethod.isSparseSolverMethod())) {
 			linEqMethod = LinEqMethod.GAUSS_SEIDEL;
 			mainLog.printWarning("Switching to linear equation solution method \"" + linEqMethod.fullName() + "\"");
 		}
 
+		// Check for some unsupported combinations
+		if (solnMethod == SolnMethod.INTERVAL_ITERATION && !(precomp && prob0)) {
+			throw new PrismException("Precomputation (Prob0) must be enabled for interval iteration");
+		}
+
 		// Start probabilistic reachability
 		timer = System.currentTimeMillis();
 		mainLog.println("\nStarting probabilistic reachability...");
@@ -591,15 +607,26 @@ public class DTMCModelChecker extends ProbModelChecker
 		mainLog.println("target=" + target.cardinality() + ", yes=" + numYes + ", no=" + numNo + ", maybe=" + (n - (numYes + numNo)));
 
 		// Compute probabilities
-		switch (linEqMethod) {
-		case POWER:
-			res = computeReachProbsValIter(dtmc, no, yes, init, known);
-			break;
-		case GAUSS_SEIDEL:
-			res = computeReachProbsGaussSeidel(dtmc, no, yes, init, known);
-			break;
-		default:
-			throw new PrismException("Unknown linear equation solution method " + linEqMethod.fullName());
+		if (solnMethod == SolnMethod.INTERVAL_ITERATION) {
+			res = computeReachProbsIntervalIter(dtmc, no, yes, init, known);
+		} else if (solnMethod == SolnMethod.OPTIMISTIC_VALUE_ITERATION) {
+			res = computeReachProbsOptimistic(dtmc, no, yes, init, known);
+		} else {
+			switch (linEqMethod) {
+			case POWER:
+				res = computeReachProbsValIter(dtmc, no, yes, init, known);
+				break;
+			case GAUSS_SEIDEL:
+				res = computeReachProbsGaussSeidel(dtmc, no, yes, init, known);
+				break;
+			case BICGSTAB:
+			case GMRES:
+			case SPARSE_LU:
+				res = computeReachProbsSparseLinEq(dtmc, no, yes, init, known, linEqMethod);
+				break;
+			default:
+				throw new PrismException("Unknown linear equation solution method " + linEqMethod.fullName());
+			}
 		}
 
 		// Finished probabilistic reachability
@@ -629,6 +656,11 @@ public class DTMCModelChecker extends ProbModelChecker
 		BitSet canReachTarget, result;
 		long timer;
 
+		// Re-use previously computed result, if available
+		BitSet cached = getCachedPrecompResult(dtmc, "Prob0", remain, target, false);
+		if (cached != null)
+			return cached;
+
 		// Start precomputation
 		timer = System.currentTimeMillis();
 		mainLog.println("Starting Prob0...");
@@ -643,7 +675,7 @@ public class DTMCModelChecker extends ProbModelChecker
 		// calculate all states that can reach 'target'
 		// while remaining in 'remain' in the underlying graph,
 		// where all the 'target' states are made absorbing
-		canReachTarget = pre.calculatePreStar(remain, target, target);
+		canReachTarget = pre.calculatePreStar(remain, target, target, getParallelPool(dtmc.getNumStates()));
 
 		// prob0 = complement of 'canReachTarget'
 		result = new BitSet();
@@ -655,6 +687,8 @@ public class DTMCModelChecker extends ProbModelChecker
 		mainLog.print("Prob0");
 		mainLog.println(" took " + timer / 1000.0 + " seconds.");
 
+		cachePrecompResult(dtmc, "Prob0", remain, target, false, result);
+
 		return result;
 	}
 
@@ -673,6 +707,11 @@ public class DTMCModelChecker extends ProbModelChecker
 		boolean u_done;
 		long timer;
 
+		// Re-use previously computed result, if available
+		BitSet cached = getCachedPrecompResult(dtmc, "Prob0", remain, target, false);
+		if (cached != null)
+			return cached;
+
 		// Start precomputation
 		timer = System.currentTimeMillis();
 		mainLog.println("Starting Prob0...");
@@ -722,6 +761,8 @@ public class DTMCModelChecker extends ProbModelChecker
 		mainLog.print("Prob0");
 		mainLog.println(" took " + iters + " iterations and " + timer / 1000.0 + " seconds.");
 
+		cachePrecompResult(dtmc, "Prob0", remain, target, false, u);
+
 		return u;
 	}
 
@@ -739,6 +780,11 @@ public class DTMCModelChecker extends ProbModelChecker
 		// Baier, Katoen: Principles of Model Checking (Corollary 10.31 Qualitative Constrained Reachability)
 		long timer;
 
+		// Re-use previously computed result, if available
+		BitSet cached = getCachedPrecompResult(dtmc, "Prob1", remain, target, false);
+		if (cached != null)
+			return cached;
+
 		// Start precomputation
 		timer = System.currentTimeMillis();
 		mainLog.println("Starting Prob1...");
@@ -766,7 +812,8 @@ public class DTMCModelChecker extends ProbModelChecker
 
 		// the set of states that satisfy E [ F target ] in M'
 		// Pre*(target)
-		BitSet canReachTarget = pre.calculatePreStar(null, target, absorbing);
+		ForkJoinPool pool = getParallelPool(dtmc.getNumStates());
+		BitSet canReachTarget = pre.calculatePreStar(null, target, absorbing, pool);
 
 		// complement canReachTarget
 		// S\Pre*(target)
@@ -776,7 +823,7 @@ public class DTMCModelChecker extends ProbModelChecker
 
 		// the set of states that can reach a canNotReachTarget state in M'
 		// Pre*(S\Pre*(target))
-		BitSet probTargetNot1 = pre.calculatePreStar(null, canNotReachTarget, absorbing);
+		BitSet probTargetNot1 = pre.calculatePreStar(null, canNotReachTarget, absorbing, pool);
 
 		// complement probTargetNot1
 		// S\Pre*(S\Pre*(target))
@@ -789,6 +836,8 @@ public class DTMCModelChecker extends ProbModelChecker
 		mainLog.print("Prob1");
 		mainLog.println(" took " + timer / 1000.0 + " seconds.");
 
+		cachePrecompResult(dtmc, "Prob1", remain, target, false, result);
+
 		return result;
 	}
 
@@ -807,6 +856,11 @@ public class DTMCModelChecker extends ProbModelChecker
 		boolean u_done, v_done;
 		long timer;
 
+		// Re-use previously computed result, if available
+		BitSet cached = getCachedPrecompResult(dtmc, "Prob1", remain, target, false);
+		if (cached != null)
+			return cached;
+
 		// Start precomputation
 		timer = System.currentTimeMillis();
 		mainLog.println("Starting Prob1...");
@@ -864,6 +918,8 @@ public class DTMCModelChecker extends ProbModelChecker
 		mainLog.print("Prob1");
 		mainLog.println(" took " + iters + " iterations and " + timer / 1000.0 + " seconds.");
 
+		cachePrecompResult(dtmc, "Prob1", remain, target, false, u);
+
 		return u;
 	}
 
@@ -1040,6 +1096,330 @@ public class DTMCModelChecker extends ProbModelChecker
 		return res;
 	}
 
+	/**
+	 * Compute reachability probabilities by solving the linear equation system over
+	 * the remaining states with one of the sparse Krylov/direct methods of {@link SparseLinEqSolver}
+	 * (BiCGSTAB, GMRES or sparse LU). States which cannot reach a state with a known value
+	 * (e.g. in an induced DTMC where Prob0 was done on the MDP) get probability 0,
+	 * so that the system is non-singular.
+	 * @param dtmc The DTMC
+	 * @param no Probability 0 states
+	 * @param yes Probability 1 states
+	 * @param init Optionally, an initial solution vector (used as the initial guess for iterative methods; will be overwritten)
+	 * @param known Optionally, a set of states for which the exact answer is known
+	 * @param method The solution method
+	 * Note: if 'known' is specified (i.e. is non-null, 'init' must also be given and is used for the exact values.
+	 */
+	protected ModelCheckerResult computeReachProbsSparseLinEq(DTMC dtmc, BitSet no, BitSet yes, double init[], BitSet known, LinEqMethod method)
+			throws PrismException
+	{
+		ModelCheckerResult res;
+		BitSet unknown, fixed;
+		SparseLinEqSolver solver;
+		int i, n, iters;
+		double soln[];
+		long timer;
+
+		// Start solution
+		timer = System.currentTimeMillis();
+		mainLog.println("Starting " + method.fullName() + "...");
+
+		// Store num states
+		n = dtmc.getNumStates();
+
+		// Create/initialise solution vector: use (where available) the following in order of preference:
+		// (1) exact answer, if already known; (2) 1.0/0.0 if in yes/no; (3) passed in initial value; (4) 0.0
+		soln = (init == null) ? new double[n] : init;
+		for (i = 0; i < n; i++) {
+			if (known != null && known.get(i))
+				soln[i] = init[i];
+			else
+				soln[i] = yes.get(i) ? 1.0 : no.get(i) ? 0.0 : (init == null) ? 0.0 : init[i];
+		}
+
+		// Determine set of states actually need to compute values for
+		// (removing any that can never reach a state whose value is fixed)
+		unknown = new BitSet();
+		unknown.set(0, n);
+		unknown.andNot(yes);
+		unknown.andNot(no);
+		if (known != null)
+			unknown.andNot(known);
+		fixed = (BitSet) unknown.clone();
+		fixed.flip(0, n);
+		BitSet never = prob0(dtmc, null, fixed);
+		for (i = never.nextSetBit(0); i >= 0; i = never.nextSetBit(i + 1)) {
+			soln[i] = 0.0;
+		}
+		unknown.andNot(never);
+
+		// Build and solve linear equation system
+		solver = new SparseLinEqSolver(dtmc, unknown, soln);
+		iters = solveSparseLinEq(solver, soln, method);
+
+		// Finished solution
+		timer = System.currentTimeMillis() - timer;
+		mainLog.print(method.fullName());
+		mainLog.println(" (" + solver.getSize() + " unknowns) took " + iters + " iterations and " + timer / 1000.0 + " seconds.");
+
+		// Return results
+		res = new ModelCheckerResult();
+		res.soln = soln;
+		res.numIters = iters;
+		res.timeTaken = timer / 1000.0;
+		return res;
+	}
+
+	/**
+	 * Solve a linear equation system built by {@link SparseLinEqSolver} with the specified method,
+	 * storing the solution in {@code soln} (whose entries for unknown states are used as the initial
+	 * guess for iterative methods). Returns the number of iterations performed (0 for direct methods).
+	 */
+	protected int solveSparseLinEq(SparseLinEqSolver solver, double soln[], LinEqMethod method) throws PrismException
+	{
+		try {
+			switch (method) {
+			case BICGSTAB:
+				solver.solveBiCGSTAB(soln, termCritParam, termCrit == TermCrit.ABSOLUTE, maxIters);
+				break;
+			case GMRES:
+				solver.solveGMRES(soln, termCritParam, termCrit == TermCrit.ABSOLUTE, maxIters, GMRES_RESTART);
+				break;
+			case SPARSE_LU:
+				solver.solveLU(soln);
+				break;
+			default:
+				throw new PrismException("Unknown linear equation solution method " + method.fullName());
+			}
+		} catch (PrismException e) {
+			// Non-convergence is an error (usually)
+			if (errorOnNonConverge || method == LinEqMethod.SPARSE_LU) {
+				String msg = e.getMessage();
+				if (method != LinEqMethod.SPARSE_LU)
+					msg += ".\nConsider using a different numerical method or increasing the maximum number of iterations";
+				throw new PrismException(msg);
+			}
+		}
+		return solver.getNumIters();
+	}
+
+	/**
+	 * Compute reachability probabilities using interval iteration,
+	 * i.e. value iteration from below and from above at the same time,
+	 * stopping when the two bounds are within the required precision.
+	 * Requires Prob0 precomputation to have been done.
+	 * @param dtmc The DTMC
+	 * @param no Probability 0 states
+	 * @param yes Probability 1 states
+	 * @param init Optionally, an initial solution vector (only used for 'known' states) 
+	 * @param known Optionally, a set of states for which the exact answer is known
+	 * Note: if 'known' is specified (i.e. is non-null, 'init' must also be given and is used for the exact values.  
+	 */
+	protected ModelCheckerResult computeReachProbsIntervalIter(DTMC dtmc, BitSet no, BitSet yes, double init[], BitSet known) throws PrismException
+	{
+		ModelCheckerResult res;
+		BitSet unknown;
+		int i, n, iters;
+		double lower[], lower2[], upper[], upper2[], tmpsoln[];
+		boolean done;
+		long timer;
+
+		// Start interval iteration
+		timer = System.currentTimeMillis();
+		mainLog.println("Starting interval iteration...");
+
+		// Store num states
+		n = dtmc.getNumStates();
+
+		// Create solution vectors
+		lower = new double[n];
+		lower2 = new double[n];
+		upper = new double[n];
+		upper2 = new double[n];
+
+		// Initialise solution vectors. Use (where available) the following in order of preference:
+		// (1) exact answer, if already known; (2) 1.0/0.0 if in yes/no; (3) 0.0 (lower) or 1.0 (upper)
+		for (i = 0; i < n; i++) {
+			if (known != null && known.get(i)) {
+				lower[i] = lower2[i] = upper[i] = upper2[i] = init[i];
+			} else {
+				lower[i] = lower2[i] = yes.get(i) ? 1.0 : 0.0;
+				upper[i] = upper2[i] = no.get(i) ? 0.0 : 1.0;
+			}
+		}
+
+		// Determine set of states actually need to compute values for
+		unknown = new BitSet();
+		unknown.set(0, n);
+		unknown.andNot(yes);
+		unknown.andNot(no);
+		if (known != null)
+			unknown.andNot(known);
+
+		// Start iterations
+		iters = 0;
+		done = false;
+		while (!done && iters < maxIters) {
+			iters++;
+			// Matrix-vector multiply
+			dtmc.mvMult(lower, lower2, unknown, false);
+			dtmc.mvMult(upper, upper2, unknown, false);
+			// Check termination
+			done = PrismUtils.doublesAreClose(lower2, upper2, termCritParam, termCrit == TermCrit.ABSOLUTE);
+			// Swap vectors for next iter
+			tmpsoln = lower;
+			lower = lower2;
+			lower2 = tmpsoln;
+			tmpsoln = upper;
+			upper = upper2;
+			upper2 = tmpsoln;
+		}
+
+		// Finished interval iteration
+		timer = System.currentTimeMillis() - timer;
+		mainLog.print("Interval iteration");
+		mainLog.println(" took " + iters + " iterations and " + timer / 1000.0 + " seconds.");
+
+		// Non-convergence is an error (usually)
+		if (!done && errorOnNonConverge) {
+			String msg = "Iterative method did not converge within " + iters + " iterations.";
+			msg += "\nConsider using a different numerical method or increasing the maximum number of iterations";
+			throw new PrismException(msg);
+		}
+
+		// Return results (midpoint of the two bounds)
+		res = new ModelCheckerResult();
+		res.soln = PrismUtils.midpoint(lower, upper);
+		res.numIters = iters;
+		res.timeTaken = timer / 1000.0;
+		return res;
+	}
+
+	/**
+	 * Compute reachability probabilities using optimistic value iteration.
+	 * Gauss-Seidel is run from below until successive solutions are close.
+	 * Then an upper bound is guessed (the lower bound plus the termination threshold)
+	 * and verified by iterating from above until a sweep no longer increases any value
+	 * (which makes it a guaranteed upper bound). If instead it drops below the lower bound, the threshold for the iteration from below is halved and the process repeated.
+	 * The certified lower/upper bounds are stored in the result, and the solution is their midpoint.
+	 * @param dtmc The DTMC
+	 * @param no Probability 0 states
+	 * @param yes Probability 1 states
+	 * @param init Optionally, an initial solution vector (only used for 'known' states; will be overwritten) 
+	 * @param known Optionally, a set of states for which the exact answer is known
+	 * Note: if 'known' is specified (i.e. is non-null, 'init' must also be given and is used for the exact values.  
+	 */
+	protected ModelCheckerResult computeReachProbsOptimistic(DTMC dtmc, BitSet no, BitSet yes, double init[], BitSet known) throws PrismException
+	{
+		ModelCheckerResult res;
+		BitSet unknown;
+		int i, j, n, iters, verifs, verifIters;
+		double lower[], upper[], d, maxDiff, epsilon;
+		boolean done, absolute, increased, decreased, crossed;
+		long timer;
+
+		// Start optimistic value iteration
+		timer = System.currentTimeMillis();
+		mainLog.println("Starting optimistic value iteration...");
+
+		// Store num states
+		n = dtmc.getNumStates();
+
+		// Create solution vectors
+		lower = (init == null) ? new double[n] : init;
+		upper = new double[n];
+
+		// Initialise solution vectors. Use (where available) the following in order of preference:
+		// (1) exact answer, if already known; (2) 1.0/0.0 if in yes/no; (3) 0.0
+		// (the initial value for the lower bound needs to be a lower bound too, so other values in 'init' are ignored)
+		for (i = 0; i < n; i++) {
+			lower[i] = upper[i] = (known != null && known.get(i)) ? init[i] : yes.get(i) ? 1.0 : 0.0;
+		}
+
+		// Determine set of states actually need to compute values for
+		unknown = new BitSet();
+		unknown.set(0, n);
+		unknown.andNot(yes);
+		unknown.andNot(no);
+		if (known != null)
+			unknown.andNot(known);
+
+		// Start iterations
+		absolute = (termCrit == TermCrit.ABSOLUTE);
+		epsilon = termCritParam;
+		iters = verifs = 0;
+		done = false;
+		while (!done && iters < maxIters) {
+			iters++;
+			// Matrix-vector multiply (in place)
+			maxDiff = dtmc.mvMultGS(lower, unknown, false, absolute);
+			if (maxDiff >= epsilon) {
+				continue;
+			}
+			// Guess an upper bound
+			for (i = unknown.nextSetBit(0); i >= 0; i = unknown.nextSetBit(i + 1)) {
+				upper[i] = Math.min(1.0, absolute ? lower[i] + termCritParam : lower[i] * (1.0 + termCritParam));
+			}
+			// Verify it: iterate (in place) from above until a sweep no longer increases any value
+			// (then the upper bound is inductive, and thus a true upper bound) or it drops below
+			// the lower bound or stops decreasing (the guess failed); at most as many sweeps as iterations so far
+			verifIters = iters;
+			for (j = 0; j < verifIters && iters < maxIters; j++) {
+				iters++;
+				verifs++;
+				increased = decreased = crossed = false;
+				for (i = unknown.nextSetBit(0); i >= 0; i = unknown.nextSetBit(i + 1)) {
+					d = dtmc.mvMultSingle(i, upper);
+					// (values are never raised, so the upper bound only decreases)
+					if (d > upper[i]) {
+						increased = true;
+						continue;
+					}
+					if (d < upper[i]) {
+						decreased = true;
+					}
+					upper[i] = d;
+					if (d < lower[i]) {
+						crossed = true;
+						break;
+					}
+				}
+				if (crossed || (increased && !decreased)) {
+					break;
+				}
+				if (!increased) {
+					done = true;
+					break;
+				}
+			}
+			// If verification failed, iterate further from below
+			if (!done) {
+				epsilon /= 2;
+			}
+		}
+
+		// Finished optimistic value iteration
+		timer = System.currentTimeMillis() - timer;
+		mainLog.print("Optimistic value iteration");
+		mainLog.println(" took " + iters + " iterations (" + verifs + " verification sweeps) and " + timer / 1000.0 + " seconds.");
+
+		// Non-convergence is an error (usually)
+		if (!done && errorOnNonConverge) {
+			String msg = "Iterative method did not converge within " + iters + " iterations.";
+			msg += "\nConsider using a different numerical method or increasing the maximum number of iterations";
+			throw new PrismException(msg);
+		}
+
+		// Return results (midpoint of the two bounds)
+		res = new ModelCheckerResult();
+		res.lowerBound = lower;
+		res.upperBound = upper;
+		res.soln = PrismUtils.midpoint(lower.clone(), upper);
+		res.numIters = iters;
+		res.timeTaken = timer / 1000.0;
+		return res;
+	}
+
 	/**
 	 * Compute bounded reachability probabilities.
 	 * i.e. compute the probability of reaching a state in {@code target} within k steps.
@@ -1080,7 +1460,8 @@ public class DTMCModelChecker extends ProbModelChecker
 	public ModelCheckerResult computeBoundedReachProbs(DTMC dtmc, BitSet remain, BitSet target, int k, double init[], double results[]) throws PrismException
 	{
 		ModelCheckerResult res = null;
-		BitSet unknown;
+		BitSet unknown, active = null;
+		int layers[] = null, layerEnd[] = null;
 		int i, n, iters;
 		double soln[], soln2[], tmpsoln[];
 		long timer;
@@ -1118,13 +1499,30 @@ public class DTMCModelChecker extends ProbModelChecker
 		if (remain != null)
 			unknown.and(remain);
 
+		// If the initial values are 0 outside of the target, the value of a state can only become
+		// positive once the number of steps reaches its (backward) distance to the target.
+		// So, we precompute a BFS layering and restrict each step to the states
+		// within the current number of steps of the target (states further away are never touched)
+		if (init == null && preRel && k > 0) {
+			layerEnd = new int[k + 1];
+			layers = dtmc.getPredecessorRelation(this, true).calculateLayers(remain, target, k, layerEnd);
+			active = new BitSet(n);
+			mainLog.println("States within " + k + " steps of target: " + layers.length + " (of " + unknown.cardinality() + ")");
+		}
+
 		// Start iterations
 		iters = 0;
 		while (iters < k) {
 
 			iters++;
+			// Add the next BFS layer, if present, to the active states
+			if (layers != null) {
+				for (i = layerEnd[iters - 1]; i < layerEnd[iters]; i++) {
+					active.set(layers[i]);
+				}
+			}
 			// Matrix-vector multiply
-			dtmc.mvMult(soln, soln2, unknown, false);
+			dtmc.mvMult(soln, soln2, layers == null ? unknown : active, false);
 			// Store intermediate results if required
 			// (compute min/max value over initial states for this step)
 			if (results != null) {
@@ -1182,7 +1580,8 @@ public class DTMCModelChecker extends ProbModelChecker
 		LinEqMethod linEqMethod = this.linEqMethod;
 
 		// Switch to a supported method, if necessary
-		if (!(linEqMethod == LinEqMethod.POWER)) {
+		if (solnMethod != SolnMethod.INTERVAL_ITERATION && solnMethod != SolnMethod.OPTIMISTIC_VALUE_ITERATION
+				&& !(linEqMethod == LinEqMethod.POWER || linEqMethod.isSparseSolverMethod())) {
 			linEqMethod = LinEqMethod.POWER;
 			mainLog.printWarning("Switching to linear equation solution method \"" + linEqMethod.fullName() + "\"");
 		}
@@ -1220,12 +1619,23 @@ public class DTMCModelChecker extends ProbModelChecker
 		mainLog.println("target=" + numTarget + ", inf=" + numInf + ", rest=" + (n - (numTarget + numInf)));
 
 		// Compute rewards
-		switch (linEqMethod) {
-		case POWER:
-			res = computeReachRewardsValIter(dtmc, mcRewards, target, inf, init, known);
-			break;
-		default:
-			throw new PrismException("Unknown linear equation solution method " + linEqMethod.fullName());
+		if (solnMethod == SolnMethod.INTERVAL_ITERATION) {
+			res = computeReachRewardsIntervalIter(dtmc, mcRewards, target, inf, init, known);
+		} else if (solnMethod == SolnMethod.OPTIMISTIC_VALUE_ITERATION) {
+			res = computeReachRewardsOptimistic(dtmc, mcRewards, target, inf, init, known);
+		} else {
+			switch (linEqMethod) {
+			case POWER:
+				res = computeReachRewardsValIter(dtmc, mcRewards, target, inf, init, known);
+				break;
+			case BICGSTAB:
+			case GMRES:
+			case SPARSE_LU:
+				res = computeReachRewardsSparseLinEq(dtmc, mcRewards, target, inf, init, known, linEqMethod);
+				break;
+			default:
+				throw new PrismException("Unknown linear equation solution method " + linEqMethod.fullName());
+			}
 		}
 
 		// Finished expected reachability
@@ -1329,6 +1739,376 @@ public class DTMCModelChecker extends ProbModelChecker
 		return res;
 	}
 
+	/**
+	 * Compute expected reachability rewards by solving the linear equation system over
+	 * the remaining states with one of the sparse Krylov/direct methods of {@link SparseLinEqSolver}
+	 * (BiCGSTAB, GMRES or sparse LU). States which do not reach the target with probability 1
+	 * (without passing through {@code inf}) get infinite reward, so that the system is non-singular.
+	 * @param dtmc The DTMC
+	 * @param mcRewards The rewards
+	 * @param target Target states
+	 * @param inf States for which reward is infinite
+	 * @param init Optionally, an initial solution vector (used as the initial guess for iterative methods; will be overwritten)
+	 * @param known Optionally, a set of states for which the exact answer is known
+	 * @param method The solution method
+	 * Note: if 'known' is specified (i.e. is non-null, 'init' must also be given and is used for the exact values.
+	 */
+	protected ModelCheckerResult computeReachRewardsSparseLinEq(DTMC dtmc, MCRewards mcRewards, BitSet target, BitSet inf, double init[], BitSet known,
+			LinEqMethod method) throws PrismException
+	{
+		ModelCheckerResult res;
+		BitSet unknown, fixed, remain;
+		SparseLinEqSolver solver;
+		int i, n, iters;
+		double soln[];
+		long timer;
+
+		// Start solution
+		timer = System.currentTimeMillis();
+		mainLog.println("Starting " + method.fullName() + "...");
+
+		// Store num states
+		n = dtmc.getNumStates();
+
+		// Create/initialise solution vector: use (where available) the following in order of preference:
+		// (1) exact answer, if already known; (2) 0.0/infinity if in target/inf; (3) passed in initial value; (4) 0.0
+		soln = (init == null) ? new double[n] : init;
+		for (i = 0; i < n; i++) {
+			if (known != null && known.get(i))
+				soln[i] = init[i];
+			else
+				soln[i] = target.get(i) ? 0.0 : inf.get(i) ? Double.POSITIVE_INFINITY : (init == null) ? 0.0 : init[i];
+		}
+
+		// Determine set of states actually need to compute values for
+		// (removing any that do not reach a state with a known, finite value with probability 1)
+		unknown = new BitSet();
+		unknown.set(0, n);
+		unknown.andNot(target);
+		unknown.andNot(inf);
+		if (known != null)
+			unknown.andNot(known);
+		fixed = new BitSet();
+		for (i = unknown.nextClearBit(0); i < n; i = unknown.nextClearBit(i + 1)) {
+			if (soln[i] != Double.POSITIVE_INFINITY)
+				fixed.set(i);
+		}
+		remain = (BitSet) fixed.clone();
+		remain.or(unknown);
+		BitSet finite = prob1(dtmc, remain, fixed);
+		for (i = unknown.nextSetBit(0); i >= 0; i = unknown.nextSetBit(i + 1)) {
+			if (!finite.get(i)) {
+				soln[i] = Double.POSITIVE_INFINITY;
+				unknown.clear(i);
+			}
+		}
+
+		// Build and solve linear equation system
+		solver = new SparseLinEqSolver(dtmc, unknown, soln);
+		for (i = unknown.nextSetBit(0); i >= 0; i = unknown.nextSetBit(i + 1)) {
+			solver.addToRHS(i, mcRewards.getStateReward(i));
+		}
+		iters = solveSparseLinEq(solver, soln, method);
+
+		// Finished solution
+		timer = System.currentTimeMillis() - timer;
+		mainLog.print(method.fullName());
+		mainLog.println(" (" + solver.getSize() + " unknowns) took " + iters + " iterations and " + timer / 1000.0 + " seconds.");
+
+		// Return results
+		res = new ModelCheckerResult();
+		res.soln = soln;
+		res.numIters = iters;
+		res.timeTaken = timer / 1000.0;
+		return res;
+	}
+
+	/**
+	 * Compute expected reachability rewards using interval iteration,
+	 * i.e. value iteration from below and from above at the same time,
+	 * stopping when the two bounds are within the required precision.
+	 * The initial upper bound is computed by {@link #computeReachRewardsUpperBound}.
+	 * @param dtmc The DTMC
+	 * @param mcRewards The rewards
+	 * @param target Target states
+	 * @param inf States for which reward is infinite
+	 * @param init Optionally, an initial solution vector (only used for 'known' states) 
+	 * @param known Optionally, a set of states for which the exact answer is known
+	 * Note: if 'known' is specified (i.e. is non-null, 'init' must also be given and is used for the exact values.
+	 */
+	protected ModelCheckerResult computeReachRewardsIntervalIter(DTMC dtmc, MCRewards mcRewards, BitSet target, BitSet inf, double init[], BitSet known)
+			throws PrismException
+	{
+		ModelCheckerResult res;
+		BitSet unknown, rest;
+		int i, n, iters;
+		double lower[], lower2[], upper[], upper2[], tmpsoln[], upperBound;
+		boolean done;
+		long timer;
+
+		// Start interval iteration
+		timer = System.currentTimeMillis();
+		mainLog.println("Starting interval iteration...");
+
+		// Store num states
+		n = dtmc.getNumStates();
+
+		// Compute initial upper bound (for all states not in target/inf)
+		rest = new BitSet();
+		rest.set(0, n);
+		rest.andNot(target);
+		rest.andNot(inf);
+		upperBound = computeReachRewardsUpperBound(dtmc, mcRewards, target, rest);
+		mainLog.println("Upper bound for rewards: " + upperBound);
+
+		// Create solution vectors
+		lower = new double[n];
+		lower2 = new double[n];
+		upper = new double[n];
+		upper2 = new double[n];
+
+		// Initialise solution vectors. Use (where available) the following in order of preference:
+		// (1) exact answer, if already known; (2) 0.0/infinity if in target/inf; (3) 0.0 (lower) or the upper bound (upper)
+		for (i = 0; i < n; i++) {
+			if (known != null && known.get(i)) {
+				lower[i] = lower2[i] = upper[i] = upper2[i] = init[i];
+			} else if (target.get(i)) {
+				lower[i] = lower2[i] = upper[i] = upper2[i] = 0.0;
+			} else if (inf.get(i)) {
+				lower[i] = lower2[i] = upper[i] = upper2[i] = Double.POSITIVE_INFINITY;
+			} else {
+				lower[i] = lower2[i] = 0.0;
+				upper[i] = upper2[i] = upperBound;
+			}
+		}
+
+		// Determine set of states actually need to compute values for
+		unknown = (BitSet) rest.clone();
+		if (known != null)
+			unknown.andNot(known);
+
+		// Start iterations
+		iters = 0;
+		done = false;
+		while (!done && iters < maxIters) {
+			iters++;
+			// Matrix-vector multiply
+			dtmc.mvMultRew(lower, mcRewards, lower2, unknown, false);
+			dtmc.mvMultRew(upper, mcRewards, upper2, unknown, false);
+			// Check termination
+			done = PrismUtils.doublesAreClose(lower2, upper2, termCritParam, termCrit == TermCrit.ABSOLUTE);
+			// Swap vectors for next iter
+			tmpsoln = lower;
+			lower = lower2;
+			lower2 = tmpsoln;
+			tmpsoln = upper;
+			upper = upper2;
+			upper2 = tmpsoln;
+		}
+
+		// Finished interval iteration
+		timer = System.currentTimeMillis() - timer;
+		mainLog.print("Interval iteration");
+		mainLog.println(" took " + iters + " iterations and " + timer / 1000.0 + " seconds.");
+
+		// Non-convergence is an error (usually)
+		if (!done && errorOnNonConverge) {
+			String msg = "Iterative method did not converge within " + iters + " iterations.";
+			msg += "\nConsider using a different numerical method or increasing the maximum number of iterations";
+			throw new PrismException(msg);
+		}
+
+		// Return results (midpoint of the two bounds)
+		res = new ModelCheckerResult();
+		res.soln = PrismUtils.midpoint(lower, upper);
+		res.numIters = iters;
+		res.timeTaken = timer / 1000.0;
+		return res;
+	}
+
+	/**
+	 * Compute expected reachability rewards using optimistic value iteration.
+	 * Value iteration is run from below until successive solutions are close.
+	 * Then an upper bound is guessed (the lower bound plus the termination threshold)
+	 * and verified by iterating from above until a sweep no longer increases any value
+	 * (which makes it a guaranteed upper bound). If instead it drops below the lower bound, the threshold for the iteration from below is halved and the process repeated.
+	 * The certified lower/upper bounds are stored in the result, and the solution is their midpoint.
+	 * @param dtmc The DTMC
+	 * @param mcRewards The rewards
+	 * @param target Target states
+	 * @param inf States for which reward is infinite
+	 * @param init Optionally, an initial solution vector (only used for 'known' states; will be overwritten) 
+	 * @param known Optionally, a set of states for which the exact answer is known
+	 * Note: if 'known' is specified (i.e. is non-null, 'init' must also be given and is used for the exact values.
+	 */
+	protected ModelCheckerResult computeReachRewardsOptimistic(DTMC dtmc, MCRewards mcRewards, BitSet target, BitSet inf, double init[], BitSet known)
+			throws PrismException
+	{
+		ModelCheckerResult res;
+		BitSet unknown;
+		int i, j, n, iters, verifs, verifIters;
+		double soln[], soln2[], tmpsoln[], upper[], d, epsilon;
+		boolean done, absolute, increased, decreased, crossed;
+		long timer;
+
+		// Start optimistic value iteration
+		timer = System.currentTimeMillis();
+		mainLog.println("Starting optimistic value iteration...");
+
+		// Store num states
+		n = dtmc.getNumStates();
+
+		// Create solution vectors
+		soln = new double[n];
+		soln2 = (init == null) ? new double[n] : init;
+		upper = new double[n];
+
+		// Initialise solution vectors. Use (where available) the following in order of preference:
+		// (1) exact answer, if already known; (2) 0.0/infinity if in target/inf; (3) 0.0
+		// (the initial value for the lower bound needs to be a lower bound too, so other values in 'init' are ignored)
+		for (i = 0; i < n; i++) {
+			soln[i] = soln2[i] = upper[i] = (known != null && known.get(i)) ? init[i] : inf.get(i) ? Double.POSITIVE_INFINITY : 0.0;
+		}
+
+		// Determine set of states actually need to compute values for
+		unknown = new BitSet();
+		unknown.set(0, n);
+		unknown.andNot(target);
+		unknown.andNot(inf);
+		if (known != null)
+			unknown.andNot(known);
+
+		// Start iterations
+		absolute = (termCrit == TermCrit.ABSOLUTE);
+		epsilon = termCritParam;
+		iters = verifs = 0;
+		done = false;
+		while (!done && iters < maxIters) {
+			iters++;
+			// Matrix-vector multiply
+			dtmc.mvMultRew(soln, mcRewards, soln2, unknown, false);
+			// Swap vectors for next iter
+			tmpsoln = soln;
+			soln = soln2;
+			soln2 = tmpsoln;
+			if (!PrismUtils.doublesAreClose(soln, soln2, epsilon, absolute)) {
+				continue;
+			}
+			// Guess an upper bound
+			for (i = unknown.nextSetBit(0); i >= 0; i = unknown.nextSetBit(i + 1)) {
+				upper[i] = absolute ? soln[i] + termCritParam : soln[i] * (1.0 + termCritParam);
+			}
+			// Verify it: iterate (in place) from above until a sweep no longer increases any value
+			// (then the upper bound is inductive, and thus a true upper bound) or it drops below
+			// the lower bound or stops decreasing (the guess failed); at most as many sweeps as iterations so far
+			verifIters = iters;
+			for (j = 0; j < verifIters && iters < maxIters; j++) {
+				iters++;
+				verifs++;
+				increased = decreased = crossed = false;
+				for (i = unknown.nextSetBit(0); i >= 0; i = unknown.nextSetBit(i + 1)) {
+					d = dtmc.mvMultRewSingle(i, upper, mcRewards);
+					// (values are never raised, so the upper bound only decreases)
+					if (d > upper[i]) {
+						increased = true;
+						continue;
+					}
+					if (d < upper[i]) {
+						decreased = true;
+					}
+					upper[i] = d;
+					if (d < soln[i]) {
+						crossed = true;
+						break;
+					}
+				}
+				if (crossed || (increased && !decreased)) {
+					break;
+				}
+				if (!increased) {
+					done = true;
+					break;
+				}
+			}
+			// If verification failed, iterate further from below
+			if (!done) {
+				epsilon /= 2;
+			}
+		}
+
+		// Finished optimistic value iteration
+		timer = System.currentTimeMillis() - timer;
+		mainLog.print("Optimistic value iteration");
+		mainLog.println(" took " + iters + " iterations (" + verifs + " verification sweeps) and " + timer / 1000.0 + " seconds.");
+
+		// Non-convergence is an error (usually)
+		if (!done && errorOnNonConverge) {
+			String msg = "Iterative method did not converge within " + iters + " iterations.";
+			msg += "\nConsider using a different numerical method or increasing the maximum number of iterations";
+			throw new PrismException(msg);
+		}
+
+		// Return results (midpoint of the two bounds)
+		res = new ModelCheckerResult();
+		res.lowerBound = soln;
+		res.upperBound = upper;
+		res.soln = PrismUtils.midpoint(soln.clone(), upper);
+		res.numIters = iters;
+		res.timeTaken = timer / 1000.0;
+		return res;
+	}
+
+	/**
+	 * Compute an upper bound on the expected reward to reach {@code target}
+	 * from any of the states in {@code rest}, from all of which target is reached with probability 1.
+	 * This uses k-step bounded reachability probabilities: if, from all states in {@code rest}, target is reached
+	 * within k steps with probability at least p, then the expected number of steps to reach target is at most k/p,
+	 * and the expected reward at most k/p times the maximum reward per step.
+	 * k is increased until p is at least 1/2 (or k reaches maxIters), keeping the best bound found.
+	 */
+	protected double computeReachRewardsUpperBound(DTMC dtmc, MCRewards mcRewards, BitSet target, BitSet rest) throws PrismException
+	{
+		int n = dtmc.getNumStates();
+		double soln[] = new double[n];
+		double soln2[] = new double[n];
+		double tmpsoln[];
+
+		// Maximum reward for one step
+		double maxRew = 0.0;
+		for (int s = rest.nextSetBit(0); s >= 0; s = rest.nextSetBit(s + 1)) {
+			maxRew = Math.max(maxRew, dtmc.mvMultRewSingle(s, soln, mcRewards));
+		}
+		if (maxRew == 0.0 || rest.isEmpty()) {
+			return 0.0;
+		}
+
+		// Compute bounded reachability probabilities and the best bound k/p over k
+		for (int s = target.nextSetBit(0); s >= 0; s = target.nextSetBit(s + 1)) {
+			soln[s] = soln2[s] = 1.0;
+		}
+		double bestSteps = Double.POSITIVE_INFINITY;
+		int k = 0;
+		double p = 0.0;
+		while (p < 0.5 && k < maxIters) {
+			k++;
+			dtmc.mvMult(soln, soln2, rest, false);
+			tmpsoln = soln;
+			soln = soln2;
+			soln2 = tmpsoln;
+			p = 1.0;
+			for (int s = rest.nextSetBit(0); s >= 0; s = rest.nextSetBit(s + 1)) {
+				p = Math.min(p, soln[s]);
+			}
+			if (p > 0.0) {
+				bestSteps = Math.min(bestSteps, k / p);
+			}
+		}
+		if (Double.isInfinite(bestSteps)) {
+			throw new PrismException("Could not compute an upper bound for expected rewards (target not reached within " + k + " steps)");
+		}
+		return maxRew * bestSteps;
+	}
+
 	/**
 	 * Compute (forwards) steady-state probabilities
 	 * i.e. compute the long-run probability of being in each state,
@@ -1339,6 +2119,18 @@ public class DTMCModelChecker extends ProbModelChecker
 	 * @param initDist Initial distribution (will be overwritten)
 	 */
 	public ModelCheckerResult computeSteadyStateProbs(DTMC dtmc, double initDist[]) throws PrismException
+	{
+		return computeSteadyStateProbs(dtmc, initDist, computeBSCCs(dtmc));
+	}
+
+	/**
+	 * Compute (forwards) steady-state probabilities, as for {@link #computeSteadyStateProbs(DTMC, double[])},
+	 * but using an existing BSCC decomposition (e.g. of a CTMC which {@code dtmc} was derived from). 
+	 * @param dtmc The DTMC
+	 * @param initDist Initial distribution (will be overwritten)
+	 * @param bsccs The BSCCs of {@code dtmc}
+	 */
+	public ModelCheckerResult computeSteadyStateProbs(DTMC dtmc, double initDist[], List<BitSet> bsccs) throws PrismException
 	{
 		ModelCheckerResult res;
 		BitSet startNot, bscc;
@@ -1353,12 +2145,12 @@ public class DTMCModelChecker extends ProbModelChecker
 		// Create results vector
 		solnProbs = new double[n];
 
-		// Compute bottom strongly connected components (BSCCs)
-		SCCComputer sccComputer = SCCComputer.createSCCComputer(this, dtmc);
-		sccComputer.computeBSCCs();
-		List<BitSet> bsccs = sccComputer.getBSCCs();
-		BitSet notInBSCCs = sccComputer.getNotInBSCCs();
+		// Determine states not in bottom strongly connected components (BSCCs)
 		numBSCCs = bsccs.size();
+		BitSet notInBSCCs = new BitSet();
+		notInBSCCs.set(0, n);
+		for (int b = 0; b < numBSCCs; b++)
+			notInBSCCs.andNot(bsccs.get(b));
 
 		// See which states in the initial distribution do *not* have non-zero prob
 		startNot = new BitSet();
@@ -1403,11 +2195,9 @@ public class DTMCModelChecker extends ProbModelChecker
 			}
 
 			// Compute steady-state probabilities for each BSCC 
+			computeSteadyStateProbsForBSCCs(dtmc, bsccs, solnProbs);
 			for (int b = 0; b < numBSCCs; b++) {
-				mainLog.println("\nComputing steady-state probabilities for BSCC " + (b + 1));
 				bscc = bsccs.get(b);
-				// Compute steady-state probabilities for the BSCC
-				computeSteadyStateProbsForBSCC(dtmc, bscc, solnProbs);
 				// Multiply by BSCC reach prob
 				for (int i = bscc.nextSetBit(0); i >= 0; i = bscc.nextSetBit(i + 1))
 					solnProbs[i] *= probBSCCs[b];
@@ -1432,6 +2222,18 @@ public class DTMCModelChecker extends ProbModelChecker
 	 * @param multProbs Multiplication vector (optional: null means all 1s)
 	 */
 	public ModelCheckerResult computeSteadyStateBackwardsProbs(DTMC dtmc, double multProbs[]) throws PrismException
+	{
+		return computeSteadyStateBackwardsProbs(dtmc, multProbs, computeBSCCs(dtmc));
+	}
+
+	/**
+	 * Perform (backwards) steady-state probabilities, as for {@link #computeSteadyStateBackwardsProbs(DTMC, double[])},
+	 * but using an existing BSCC decomposition (e.g. of a CTMC which {@code dtmc} was derived from). 
+	 * @param dtmc The DTMC
+	 * @param multProbs Multiplication vector (optional: null means all 1s)
+	 * @param bsccs The BSCCs of {@code dtmc}
+	 */
+	public ModelCheckerResult computeSteadyStateBackwardsProbs(DTMC dtmc, double multProbs[], List<BitSet> bsccs) throws PrismException
 	{
 		ModelCheckerResult res;
 		BitSet bscc;
@@ -1444,21 +2246,19 @@ public class DTMCModelChecker extends ProbModelChecker
 		// Store num states
 		n = dtmc.getNumStates();
 
-		// Compute bottom strongly connected components (BSCCs)
-		SCCComputer sccComputer = SCCComputer.createSCCComputer(this, dtmc);
-		sccComputer.computeBSCCs();
-		List<BitSet> bsccs = sccComputer.getBSCCs();
-		BitSet notInBSCCs = sccComputer.getNotInBSCCs();
+		// Determine states not in bottom strongly connected components (BSCCs)
 		numBSCCs = bsccs.size();
+		BitSet notInBSCCs = new BitSet();
+		notInBSCCs.set(0, n);
+		for (int b = 0; b < numBSCCs; b++)
+			notInBSCCs.andNot(bsccs.get(b));
 
 		// Compute steady-state probability for each BSCC...
 		probBSCCs = new double[numBSCCs];
 		ssProbs = new double[n];
+		computeSteadyStateProbsForBSCCs(dtmc, bsccs, ssProbs);
 		for (int b = 0; b < numBSCCs; b++) {
-			mainLog.println("\nComputing steady state probabilities for BSCC " + (b + 1));
 			bscc = bsccs.get(b);
-			// Compute steady-state probabilities for the BSCC
-			computeSteadyStateProbsForBSCC(dtmc, bscc, ssProbs);
 			// Compute weighted sum of probabilities with multProbs
 			probBSCCs[b] = 0.0;
 			if (multProbs == null) {
@@ -1515,6 +2315,64 @@ public class DTMCModelChecker extends ProbModelChecker
 		return res;
 	}
 
+	/**
+	 * Compute steady-state probabilities for each of a list of BSCCs,
+	 * storing them in the relevant portions of {@code result}.
+	 * If there are several BSCCs and parallel computation is enabled (see {@link #getParallelPool(int)}),
+	 * the BSCCs are solved in parallel.
+	 * @param dtmc The DTMC
+	 * @param bsccs The BSCCs to be analysed
+	 * @param result Storage for result (size equals the number of states in the DTMC)
+	 */
+	protected void computeSteadyStateProbsForBSCCs(final DTMC dtmc, List<BitSet> bsccs, final double result[]) throws PrismException
+	{
+		int numBSCCs = bsccs.size();
+		ForkJoinPool pool = numBSCCs > 1 ? getParallelPool(dtmc.getNumStates()) : null;
+
+		// Sequential case
+		if (pool == null) {
+			for (int b = 0; b < numBSCCs; b++) {
+				mainLog.println("\nComputing steady-state probabilities for BSCC " + (b + 1));
+				computeSteadyStateProbsForBSCC(dtmc, bsccs.get(b), result);
+			}
+			return;
+		}
+
+		// Parallel case: one task per BSCC, each with its own model checker (without logging);
+		// the BSCCs are disjoint, so the tasks write to disjoint parts of the result vector
+		long timer = System.currentTimeMillis();
+		mainLog.println("\nComputing steady-state probabilities for " + numBSCCs + " BSCCs in parallel (" + pool.getParallelism() + " threads)...");
+		List<ForkJoinTask<Object>> tasks = new ArrayList<ForkJoinTask<Object>>(numBSCCs);
+		for (final BitSet bscc : bsccs) {
+			final DTMCModelChecker mcBSCC = new DTMCModelChecker(this);
+			mcBSCC.inheritSettings(this);
+			mcBSCC.setLog(new PrismDevNullLog());
+			tasks.add(pool.submit(new Callable<Object>()
+			{
+				@Override
+				public Object call() throws PrismException
+				{
+					mcBSCC.computeSteadyStateProbsForBSCC(dtmc, bscc, result);
+					return null;
+				}
+			}));
+		}
+		for (ForkJoinTask<Object> task : tasks) {
+			try {
+				task.get();
+			} catch (ExecutionException e) {
+				if (e.getCause() instanceof PrismException) {
+					throw (PrismException) e.getCause();
+				}
+				throw new PrismException("Error in steady-state computation for BSCC: " + e.getCause());
+			} catch (InterruptedException e) {
+				throw new PrismException("Steady-state computation for BSCCs was interrupted");
+			}
+		}
+		timer = System.currentTimeMillis() - timer;
+		mainLog.println("Steady-state computation for BSCCs took " + timer / 1000.0 + " seconds.");
+	}
+
 	/**
 	 * Compute steady-state probabilities for a BSCC
 	 * i.e. compute the long-run probability of being in each state of the BSCC.
@@ -1522,11 +2380,32 @@ public class DTMCModelChecker extends ProbModelChecker
 	 * The result will be stored in the relevant portion of a full vector,
 	 * whose size equals the number of states in the DTMC.
 	 * Optionally, pass in an existing vector to be used for this purpose.
+	 * The power method is used if selected as the linear equation solution method;
+	 * otherwise, a linear equation system is solved (see {@link #computeSteadyStateProbsForBSCCLinEq}).
 	 * @param dtmc The DTMC
 	 * @param bscc The BSCC to be analysed
 	 * @param result Storage for result (ignored if null)
 	 */
 	public ModelCheckerResult computeSteadyStateProbsForBSCC(DTMC dtmc, BitSet bscc, double result[]) throws PrismException
+	{
+		if (linEqMethod == LinEqMethod.POWER) {
+			return computeSteadyStateProbsForBSCCPower(dtmc, bscc, result);
+		} else {
+			return computeSteadyStateProbsForBSCCLinEq(dtmc, bscc, result);
+		}
+	}
+
+	/**
+	 * Compute steady-state probabilities for a BSCC, using the power method.
+	 * The result will be stored in the relevant portion of a full vector,
+	 * whose size equals the number of states in the DTMC.
+	 * Optionally, pass in an existing vector to be used for this purpose
+	 * (only the entries for the BSCC are modified).
+	 * @param dtmc The DTMC
+	 * @param bscc The BSCC to be analysed
+	 * @param result Storage for result (ignored if null)
+	 */
+	public ModelCheckerResult computeSteadyStateProbsForBSCCPower(DTMC dtmc, BitSet bscc, double result[]) throws PrismException
 	{
 		ModelCheckerResult res;
 		int n, iters;
@@ -1542,8 +2421,7 @@ public class DTMCModelChecker extends ProbModelChecker
 		n = dtmc.getNumStates();
 
 		// Create solution vector(s)
-		// Use the passed in vector, if present
-		soln = result == null ? new double[n] : result;
+		soln = new double[n];
 		soln2 = new double[n];
 
 		// Initialise solution vectors. Equiprobable for BSCC states.
@@ -1578,6 +2456,81 @@ public class DTMCModelChecker extends ProbModelChecker
 			throw new PrismException(msg);
 		}
 
+		// Copy results for BSCC, if required
+		if (result != null) {
+			for (int i = bscc.nextSetBit(0); i >= 0; i = bscc.nextSetBit(i + 1))
+				result[i] = soln[i];
+			soln = result;
+		}
+
+		// Return results
+		res = new ModelCheckerResult();
+		res.soln = soln;
+		res.numIters = iters;
+		res.timeTaken = timer / 1000.0;
+		return res;
+	}
+
+	/**
+	 * Compute steady-state probabilities for a BSCC, by solving the linear equation system
+	 * built by {@link SparseLinEqSolver#createForSteadyState(DTMC, BitSet, int)} and normalising.
+	 * If BiCGSTAB, GMRES or sparse LU is the selected linear equation solution method, this is used.
+	 * Otherwise, small BSCCs (at most {@link #STEADY_STATE_DIRECT_MAX} states) are solved directly,
+	 * with sparse LU, and larger ones with BiCGSTAB.
+	 * The result will be stored in the relevant portion of a full vector,
+	 * whose size equals the number of states in the DTMC.
+	 * Optionally, pass in an existing vector to be used for this purpose
+	 * (only the entries for the BSCC are modified).
+	 * @param dtmc The DTMC
+	 * @param bscc The BSCC to be analysed
+	 * @param result Storage for result (ignored if null)
+	 */
+	public ModelCheckerResult computeSteadyStateProbsForBSCCLinEq(DTMC dtmc, BitSet bscc, double result[]) throws PrismException
+	{
+		ModelCheckerResult res;
+		SparseLinEqSolver solver;
+		LinEqMethod method;
+		int n, iters;
+		double soln[], sum;
+		long timer;
+
+		// Pick solution method
+		if (linEqMethod.isSparseSolverMethod()) {
+			method = linEqMethod;
+		} else {
+			method = bscc.cardinality() <= STEADY_STATE_DIRECT_MAX ? LinEqMethod.SPARSE_LU : LinEqMethod.BICGSTAB;
+		}
+
+		// Start solution
+		timer = System.currentTimeMillis();
+		mainLog.println("Starting " + method.fullName() + "...");
+
+		// Store num states
+		n = dtmc.getNumStates();
+
+		// Create solution vector
+		// Use the passed in vector, if present
+		soln = result == null ? new double[n] : result;
+
+		// Build and solve linear equation system, relative to the first state of the BSCC
+		// (initial guess: equiprobable)
+		solver = SparseLinEqSolver.createForSteadyState(dtmc, bscc, bscc.nextSetBit(0));
+		for (int i = bscc.nextSetBit(0); i >= 0; i = bscc.nextSetBit(i + 1))
+			soln[i] = 1.0;
+		iters = solveSparseLinEq(solver, soln, method);
+
+		// Normalise
+		sum = 0.0;
+		for (int i = bscc.nextSetBit(0); i >= 0; i = bscc.nextSetBit(i + 1))
+			sum += soln[i];
+		for (int i = bscc.nextSetBit(0); i >= 0; i = bscc.nextSetBit(i + 1))
+			soln[i] /= sum;
+
+		// Finished solution
+		timer = System.currentTimeMillis() - timer;
+		mainLog.print(method.fullName());
+		mainLog.println(" (" + solver.getSize() + " unknowns) took " + iters + " iterations and " + timer / 1000.0 + " seconds.");
+
 		// Return results
 		res = new ModelCheckerResult();
 		res.soln = soln;
@@ -1586,6 +2539,26 @@ public class DTMCModelChecker extends ProbModelChecker
 		return res;
 	}
 
+	/**
+	 * Compute the bottom strongly connected components (BSCCs) of a model.
+	 * The result is stored in the model's analysis cache (see {@link Model#getAnalysisCache()}),
+	 * so that e.g. repeated steady-state queries on the same model do not recompute it.
+	 * @param model The model
+	 */
+	protected List<BitSet> computeBSCCs(Model model) throws PrismException
+	{
+		List<BitSet> bsccs = model.getAnalysisCache().getBSCCs(model);
+		if (bsccs != null) {
+			mainLog.println("\nRe-using previously computed BSCCs");
+			return bsccs;
+		}
+		SCCComputer sccComputer = SCCComputer.createSCCComputer(this, model);
+		sccComputer.computeBSCCs();
+		bsccs = sccComputer.getBSCCs();
+		model.getAnalysisCache().setBSCCs(model, bsccs);
+		return bsccs;
+	}
+
 	/**
 	 * Compute transient probabilities
 	 * i.e. compute the probability of being in each state at time step {@code k},
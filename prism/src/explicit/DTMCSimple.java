@@ -113,6 +113,7 @@ public class DTMCSimple extends DTMCExplicit implements ModelSimple
 		if (i >= numStates || i < 0)
 			return;
 		// Clear data structures and update stats
+		clearAnalysisCache();
 		numTransitions -= trans.get(i).size();
 		trans.get(i).clear();
 	}
@@ -127,6 +128,7 @@ public class DTMCSimple extends DTMCExplicit implements ModelSimple
 	@Override
 	public void addStates(int numToAdd)
 	{
+		clearAnalysisCache();
 		for (int i = 0; i < numToAdd; i++) {
 			trans.add(new Distribution());
 			numStates++;
@@ -189,6 +191,7 @@ public class DTMCSimple extends DTMCExplicit implements ModelSimple
 	 */
 	public void setProbability(int i, int j, double prob)
 	{
+		clearAnalysisCache();
 		Distribution distr = trans.get(i);
 		if (distr.get(j) != 0.0)
 			numTransitions--;
@@ -202,6 +205,7 @@ public class DTMCSimple extends DTMCExplicit implements ModelSimple
 	 */
 	public void addToProbability(int i, int j, double prob)
 	{
+		clearAnalysisCache();
 		if (!trans.get(i).add(j, prob)) {
 			if (prob != 0.0)
 				numTransitions++;
@@ -0,0 +1,388 @@
+//==============================================================================
+//
+//	Copyright (c) 2002-
+//	Authors:
+//	* Dave Parker <david.parker@comlab.ox.ac.uk> (University of Oxford)
+//
+//------------------------------------------------------------------------------
+//
+//	This file is part of PRISM.
+//
+//	PRISM is free software; you can redistribute it and/or modify
+//	it under the terms of the GNU General Public License as published by
+//	the Free Software Foundation; either version 2 of the License, or
+//	(at your option) any later version.
+//
+//	PRISM is distributed in the hope that it will be useful,
+//	but WITHOUT ANY WARRANTY; without even the implied warranty of
+//	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//	GNU General Public License for more details.
+//
+//	You should have received a copy of the GNU General Public License
+//	along with PRISM; if not, write to the Free Software Foundation,
+//	Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+//
+//==============================================================================
+
+package explicit;
+
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.Map.Entry;
+
+import common.IterableStateSet;
+import explicit.rewards.MCRewards;
+import prism.PrismException;
+
+/**
+ * Sparse matrix (non-mutable) explicit-state representation of a DTMC.
+ * As for {@link MDPSparse}, the transition function is kept in a {@link SparseStorage}
+ * (on the Java heap, or outside it), here with a single choice for each state,
+ * i.e. the transitions of state s are those from choiceStarts[s] to choiceStarts[s+1]-1.
+ */
+public class DTMCSparse extends DTMCExplicit
+{
+	/** Storage for the transition function (one choice per state) */
+	protected SparseStorage storage;
+
+	// Other statistics
+	protected int numTransitions;
+
+	// Constructors
+
+	/**
+	 * Constructor: DTMC with transition function in {@code storage}, which should
+	 * contain one choice per state, with at most one transition to each state.
+	 * Initial states (and other model info) should be added separately afterwards.
+	 * @param numStates Number of states
+	 * @param storage Storage for the transition function
+	 */
+	public DTMCSparse(int numStates, SparseStorage storage)
+	{
+		initialise(numStates);
+		this.storage = storage;
+		numTransitions = storage.getChoiceStart(numStates);
+	}
+
+	/**
+	 * Copy the transition function of a DTMC into new storage of type {@code type}
+	 * (sorting the transitions of each state by column index).
+	 */
+	public static SparseStorage copyTransitions(DTMC dtmc, SparseStorage.Type type) throws PrismException
+	{
+		int numStates = dtmc.getNumStates();
+		SparseStorage storage = SparseStorage.create(type, numStates, numStates, dtmc.getNumTransitions(), false);
+		int k = 0;
+		for (int s = 0; s < numStates; s++) {
+			storage.setRowStart(s, s);
+			storage.setChoiceStart(s, k);
+			Iterator<Entry<Integer, Double>> iter = dtmc.getTransitionsIterator(s);
+			while (iter.hasNext()) {
+				Entry<Integer, Double> e = iter.next();
+				// Insertion sort (rows are typically small)
+				int pos = k++;
+				while (pos > storage.getChoiceStart(s) && storage.getCol(pos - 1) > e.getKey()) {
+					storage.setCol(pos, storage.getCol(pos - 1));
+					storage.setNonZero(pos, storage.getNonZero(pos - 1));
+					pos--;
+				}
+				storage.setCol(pos, e.getKey());
+				storage.setNonZero(pos, e.getValue());
+			}
+		}
+		storage.setRowStart(numStates, numStates);
+		storage.setChoiceStart(numStates, k);
+		return storage;
+	}
+
+	// Mutators (for ModelSimple)
+
+	@Override
+	public void buildFromPrismExplicit(String filename) throws PrismException
+	{
+		DTMCSimple dtmc = new DTMCSimple();
+		dtmc.buildFromPrismExplicit(filename);
+		initialise(dtmc.getNumStates());
+		copyFrom(dtmc);
+		storage = copyTransitions(dtmc, SparseStorage.Type.HEAP);
+		numTransitions = storage.getChoiceStart(numStates);
+	}
+
+	// Accessors (for Model)
+
+	@Override
+	public int getNumTransitions()
+	{
+		return numTransitions;
+	}
+
+	@Override
+	public Iterator<Integer> getSuccessorsIterator(final int s)
+	{
+		// There is at most one transition to each state, so no duplicates
+		return new Iterator<Integer>()
+		{
+			int k = storage.getChoiceStart(s);
+			final int end = storage.getChoiceStart(s + 1);
+
+			@Override
+			public boolean hasNext()
+			{
+				return k < end;
+			}
+
+			@Override
+			public Integer next()
+			{
+				return storage.getCol(k++);
+			}
+
+			@Override
+			public void remove()
+			{
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+	@Override
+	public boolean isSuccessor(int s1, int s2)
+	{
+		int h = storage.getChoiceStart(s1 + 1);
+		for (int k = storage.getChoiceStart(s1); k < h; k++) {
+			if (storage.getCol(k) == s2) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public boolean allSuccessorsInSet(int s, BitSet set)
+	{
+		int h = storage.getChoiceStart(s + 1);
+		for (int k = storage.getChoiceStart(s); k < h; k++) {
+			if (!set.get(storage.getCol(k))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public boolean someSuccessorsInSet(int s, BitSet set)
+	{
+		int h = storage.getChoiceStart(s + 1);
+		for (int k = storage.getChoiceStart(s); k < h; k++) {
+			if (set.get(storage.getCol(k))) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public void findDeadlocks(boolean fix) throws PrismException
+	{
+		for (int i = 0; i < numStates; i++) {
+			if (getNumTransitions(i) == 0) {
+				addDeadlockState(i);
+				if (fix) {
+					throw new PrismException("Can't fix deadlocks in a " + getClass().getSimpleName() + " since it cannot be modified after construction");
+				}
+			}
+		}
+	}
+
+	@Override
+	public void checkForDeadlocks(BitSet except) throws PrismException
+	{
+		for (int i = 0; i < numStates; i++) {
+			if (getNumTransitions(i) == 0 && (except == null || !except.get(i)))
+				throw new PrismException(getModelType() + " has a deadlock in state " + i);
+		}
+	}
+
+	// Accessors (for DTMC)
+
+	@Override
+	public int getNumTransitions(int s)
+	{
+		return storage.getChoiceStart(s + 1) - storage.getChoiceStart(s);
+	}
+
+	@Override
+	public Iterator<Entry<Integer, Double>> getTransitionsIterator(final int s)
+	{
+		return new Iterator<Entry<Integer, Double>>()
+		{
+			int k = storage.getChoiceStart(s);
+			final int end = storage.getChoiceStart(s + 1);
+
+			@Override
+			public boolean hasNext()
+			{
+				return k < end;
+			}
+
+			@Override
+			public Entry<Integer, Double> next()
+			{
+				final int key = storage.getCol(k);
+				final double value = storage.getNonZero(k);
+				k++;
+				return new Entry<Integer, Double>()
+				{
+					@Override
+					public Integer getKey()
+					{
+						return key;
+					}
+
+					@Override
+					public Double getValue()
+					{
+						return value;
+					}
+
+					@Override
+					public Double setValue(Double arg0)
+					{
+						throw new UnsupportedOperationException();
+					}
+				};
+			}
+
+			@Override
+			public void remove()
+			{
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+	@Override
+	public void prob0step(BitSet subset, BitSet u, BitSet result)
+	{
+		for (int i : new IterableStateSet(subset, numStates)) {
+			result.set(i, someSuccessorsInSet(i, u));
+		}
+	}
+
+	@Override
+	public void prob1step(BitSet subset, BitSet u, BitSet v, BitSet result)
+	{
+		for (int i : new IterableStateSet(subset, numStates)) {
+			result.set(i, someSuccessorsInSet(i, v) && allSuccessorsInSet(i, u));
+		}
+	}
+
+	@Override
+	public double mvMultSingle(int s, double vect[])
+	{
+		int k, h;
+		double d = 0.0;
+		h = storage.getChoiceStart(s + 1);
+		for (k = storage.getChoiceStart(s); k < h; k++) {
+			d += storage.getNonZero(k) * vect[storage.getCol(k)];
+		}
+		return d;
+	}
+
+	@Override
+	public double mvMultJacSingle(int s, double vect[])
+	{
+		int k, h, col;
+		double diag = 1.0, d = 0.0;
+		h = storage.getChoiceStart(s + 1);
+		for (k = storage.getChoiceStart(s); k < h; k++) {
+			col = storage.getCol(k);
+			if (col != s) {
+				d += storage.getNonZero(k) * vect[col];
+			} else {
+				diag -= storage.getNonZero(k);
+			}
+		}
+		if (diag > 0)
+			d /= diag;
+		return d;
+	}
+
+	@Override
+	public double mvMultRewSingle(int s, double vect[], MCRewards mcRewards)
+	{
+		int k, h;
+		double d = mcRewards.getStateReward(s);
+		h = storage.getChoiceStart(s + 1);
+		for (k = storage.getChoiceStart(s); k < h; k++) {
+			d += storage.getNonZero(k) * vect[storage.getCol(k)];
+		}
+		return d;
+	}
+
+	@Override
+	public void vmMult(double vect[], double result[])
+	{
+		int i, k, h;
+		// Initialise result to 0
+		for (i = 0; i < numStates; i++) {
+			result[i] = 0;
+		}
+		// Go through matrix elements (by row)
+		for (i = 0; i < numStates; i++) {
+			h = storage.getChoiceStart(i + 1);
+			for (k = storage.getChoiceStart(i); k < h; k++) {
+				result[storage.getCol(k)] += storage.getNonZero(k) * vect[i];
+			}
+		}
+	}
+
+	// Standard methods
+
+	@Override
+	public String toString()
+	{
+		int i, k, h;
+		String s = "trans: [ ";
+		for (i = 0; i < numStates; i++) {
+			if (i > 0)
+				s += ", ";
+			s += i + ": {";
+			h = storage.getChoiceStart(i + 1);
+			for (k = storage.getChoiceStart(i); k < h; k++) {
+				if (k > storage.getChoiceStart(i))
+					s += ", ";
+				s += storage.getCol(k) + "=" + storage.getNonZero(k);
+			}
+			s += "}";
+		}
+		s += " ]";
+		return s;
+	}
+
+	@Override
+	public boolean equals(Object o)
+	{
+		if (o == null || !(o instanceof DTMCSparse))
+			return false;
+		DTMCSparse dtmc = (DTMCSparse) o;
+		if (numStates != dtmc.numStates)
+			return false;
+		if (!initialStates.equals(dtmc.initialStates))
+			return false;
+		if (!Utils.doubleArraysAreEqual(storage.getNonZeros(), dtmc.storage.getNonZeros()))
+			return false;
+		if (!Utils.intArraysAreEqual(storage.getCols(), dtmc.storage.getCols()))
+			return false;
+		if (!Utils.intArraysAreEqual(storage.getChoiceStarts(), dtmc.storage.getChoiceStarts()))
+			return false;
+		return true;
+	}
+
+	@Override
+	public int hashCode()
+	{
+		// Simple hash code (consistent with equals)
+		return 31 * numStates + numTransitions;
+	}
+}
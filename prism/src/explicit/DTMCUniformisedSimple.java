@@ -26,6 +26,8 @@
 
 package explicit;
 
+import java.util.AbstractMap;
+import java.util.ArrayList;
 import java.util.BitSet;
 import java.util.Iterator;
 import java.util.List;
@@ -37,6 +39,7 @@ import parser.Values;
 import prism.ModelType;
 import prism.PrismException;
 import prism.PrismNotSupportedException;
+import common.IterableStateSet;
 import explicit.rewards.MCRewards;
 
 /**
@@ -136,26 +139,38 @@ public class DTMCUniformisedSimple extends DTMCExplicit
 
 	public Iterator<Integer> getSuccessorsIterator(final int s)
 	{
-		// TODO
-		throw new Error("Not yet supported");
+		List<Integer> succs = new ArrayList<Integer>();
+		Iterator<Entry<Integer, Double>> it = getTransitionsIterator(s);
+		while (it.hasNext()) {
+			succs.add(it.next().getKey());
+		}
+		return succs.iterator();
 	}
 	
 	public boolean isSuccessor(int s1, int s2)
 	{
-		// TODO
-		throw new Error("Not yet supported");
+		// Self-loop present iff total (non-diagonal) exit rate is below q
+		return s1 == s2 ? ctmc.getTransitions(s1).sumAllBut(s1) < q : ctmc.isSuccessor(s1, s2);
 	}
 
 	public boolean allSuccessorsInSet(int s, BitSet set)
 	{
-		// TODO
-		throw new Error("Not yet supported");
+		Iterator<Integer> it = getSuccessorsIterator(s);
+		while (it.hasNext()) {
+			if (!set.get(it.next()))
+				return false;
+		}
+		return true;
 	}
 
 	public boolean someSuccessorsInSet(int s, BitSet set)
 	{
-		// TODO
-		throw new Error("Not yet supported");
+		Iterator<Integer> it = getSuccessorsIterator(s);
+		while (it.hasNext()) {
+			if (set.get(it.next()))
+				return true;
+		}
+		return false;
 	}
 
 	public int getNumChoices(int s)
@@ -201,26 +216,47 @@ public class DTMCUniformisedSimple extends DTMCExplicit
 
 	public int getNumTransitions(int s)
 	{
-		// TODO
-		throw new RuntimeException("Not implemented yet");
+		int num = 0;
+		Iterator<Entry<Integer, Double>> it = getTransitionsIterator(s);
+		while (it.hasNext()) {
+			it.next();
+			num++;
+		}
+		return num;
 	}
 
 	public Iterator<Entry<Integer,Double>> getTransitionsIterator(int s)
 	{
-		// TODO
-		throw new RuntimeException("Not implemented yet");
+		// As for mvMultSingle: non-diagonal entries are rate/q,
+		// and the diagonal entry (if non-zero) is 1 - (sum of non-diagonal rates)/q
+		List<Entry<Integer, Double>> trans = new ArrayList<Entry<Integer, Double>>();
+		double sum = 0.0;
+		for (Map.Entry<Integer, Double> e : ctmc.getTransitions(s)) {
+			int k = e.getKey();
+			double rate = e.getValue();
+			if (k != s) {
+				sum += rate;
+				trans.add(new AbstractMap.SimpleImmutableEntry<Integer, Double>(k, rate / q));
+			}
+		}
+		if (sum < q) {
+			trans.add(new AbstractMap.SimpleImmutableEntry<Integer, Double>(s, 1 - sum / q));
+		}
+		return trans.iterator();
 	}
 
 	public void prob0step(BitSet subset, BitSet u, BitSet result)
 	{
-		// TODO
-		throw new Error("Not yet supported");
+		for (int i : new IterableStateSet(subset, numStates)) {
+			result.set(i, someSuccessorsInSet(i, u));
+		}
 	}
 
 	public void prob1step(BitSet subset, BitSet u, BitSet v, BitSet result)
 	{
-		// TODO
-		throw new Error("Not yet supported");
+		for (int i : new IterableStateSet(subset, numStates)) {
+			result.set(i, someSuccessorsInSet(i, v) && allSuccessorsInSet(i, u));
+		}
 	}
 
 	@Override
@@ -24,16 +24,20 @@
 //	Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
 //	
 //==============================================================================
-
 package explicit;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.BitSet;
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
-import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import prism.PrismComponent;
 import prism.PrismException;
@@ -42,15 +46,66 @@ import prism.PrismException;
  * Explicit maximal end component computer for a nondeterministic model such as an MDP.
  * Implements the algorithm from p.48 of:
  * Luca de Alfaro. Formal Verification of Probabilistic Systems. Ph.D. thesis, Stanford University (1997)
+ * <p>
+ * The decomposition is done in place on a sparse (CSR) copy of the model's transition graph,
+ * with a mask of the choices that are still enabled, rather than by constructing sub-models.
+ * Candidate components are kept on a worklist; a component is only split into SCCs again
+ * if it actually lost some choices (or states) since it was last decomposed.
+ * The MECs of the full model, once computed, are reused as the starting point
+ * for subsequent calls that restrict to a subset of states, since every MEC of a
+ * restricted model lies within a MEC of the full model. They are also stored in the
+ * model's analysis cache (see {@link Model#getAnalysisCache()}) for later re-use.
+ * <p>
+ * Candidate components are independent of each other, so for large models, if several threads
+ * are enabled, they are refined in parallel (on a work-stealing fork/join pool).
  */
 public class ECComputerDefault extends ECComputer
 {
+	/** Minimum total number of states in a batch of components to be refined as a separate parallel task **/
+	private static final int PARALLEL_BATCH_STATES = 4096;
+
 	/** The model to compute (M)ECs for **/
 	private NondetModel model;
 
 	/** Computed list of MECs **/
 	private List<BitSet> mecs = new ArrayList<BitSet>();
 
+	/** MECs of the whole model (if already computed), used to seed restricted computations **/
+	private List<BitSet> allMECs = null;
+
+	// Sparse storage of the model's transition graph:
+	// the choices of state s are rowStarts[s], ..., rowStarts[s+1]-1 and
+	// the successors of choice j are succs[choiceStarts[j]], ..., succs[choiceStarts[j+1]-1]
+	private int numStates;
+	private int rowStarts[];
+	private int choiceStarts[];
+	private int succs[];
+	// Predecessor choices of state t are predChoices[predStarts[t]], ..., predChoices[predStarts[t+1]-1],
+	// and the state that choice j belongs to is choiceStates[j]
+	private int predStarts[];
+	private int predChoices[];
+	private int choiceStates[];
+
+	// Working data for an MEC computation.
+	// Each candidate component is only ever modified by one task at a time, and the entries
+	// of these arrays for its states (and their choices) are only written by that task.
+	// Entries for states in other components may be read concurrently, but only
+	// to check that they are not in the current component, which is unaffected.
+	/** Component that each state currently belongs to (-1 if none) */
+	private int comp[];
+	/** Which choices (indices as in rowStarts) are still enabled */
+	private boolean enabled[];
+	/** Number of enabled choices for each state */
+	private int numEnabled[];
+	/** Index of each state within its component (used for SCC decomposition) */
+	private int localIndex[];
+	/** Next component id */
+	private AtomicInteger nextComp;
+	/** Number of initial components (which are not known to be strongly connected) */
+	private int numSeeds;
+	/** Acceptance set for the current computation (or null) */
+	private BitSet accept;
+
 	/**
 	 * Build (M)EC computer for a given model.
 	 */
@@ -65,7 +120,16 @@ public class ECComputerDefault extends ECComputer
 	@Override
 	public void computeMECStates() throws PrismException
 	{
-		mecs = findEndComponents(null, null);
+		// MECs of the whole model are stored in the model's analysis cache
+		mecs = model.getAnalysisCache().getMECs(model);
+		if (mecs == null) {
+			mecs = findEndComponents(null, null);
+			model.getAnalysisCache().setMECs(model, mecs);
+		}
+		allMECs = new ArrayList<BitSet>(mecs.size());
+		for (BitSet mec : mecs) {
+			allMECs.add((BitSet) mec.clone());
+		}
 	}
 
 	@Override
@@ -94,146 +158,411 @@ public class ECComputerDefault extends ECComputer
 	 * where acceptance is defined as those which intersect with {@code accept}.
 	 * If {@code restrict} is null, we look at the whole model, not a submodel.
 	 * If {@code accept} is null, the acceptance condition is trivially satisfied.
+	 * The MECs are returned ordered by their lowest-indexed state.
 	 * @param restrict BitSet for the set of states to restrict to
 	 * @param accept BitSet for the set of accepting states
 	 * @return a list of BitSets representing the MECs
 	 */
 	private List<BitSet> findEndComponents(BitSet restrict, BitSet accept) throws PrismException
 	{
-		// If restrict is null, look within set of all reachable states
-		if (restrict == null) {
-			restrict = new BitSet();
-			restrict.set(0, model.getNumStates());
-		}
-		// Initialise L with set of all states to look in (if non-empty)
-		List<BitSet> L = new ArrayList<BitSet>();
-		if (restrict.isEmpty())
-			return L;
-		L.add(restrict);
-		// Find MECs
-		boolean changed = true;
-		while (changed) {
-			changed = false;
-			BitSet E = L.remove(0);
-			SubNondetModel submodel = restrict(model, E);
-			List<BitSet> sccs = translateStates(submodel, computeSCCs(submodel));
-			L = replaceEWithSCCs(L, E, sccs);
-			changed = canLBeChanged(L, E);
-		}
-		// Filter and return those that contain a state in accept
-		if (accept != null) {
-			int i = 0;
-			while (i < L.size()) {
-				if (!L.get(i).intersects(accept)) {
-					L.remove(i);
-				} else {
-					i++;
-				}
+		List<BitSet> result = new ArrayList<BitSet>();
+		buildSparseStorage();
+
+		// Set up the initial candidate components: the restrict set, or its
+		// intersection with each MEC of the whole model, if these are known
+		List<BitSet> seeds = new ArrayList<BitSet>();
+		if (allMECs != null) {
+			for (BitSet mec : allMECs) {
+				BitSet seed = (BitSet) mec.clone();
+				if (restrict != null)
+					seed.and(restrict);
+				if (!seed.isEmpty() && (accept == null || seed.intersects(accept)))
+					seeds.add(seed);
 			}
+		} else {
+			BitSet seed = new BitSet();
+			if (restrict == null)
+				seed.set(0, numStates);
+			else
+				seed.or(restrict);
+			if (!seed.isEmpty() && (accept == null || seed.intersects(accept)))
+				seeds.add(seed);
 		}
-		return L;
-	}
+		if (seeds.isEmpty())
+			return result;
 
-	private Set<BitSet> processedSCCs = new HashSet<BitSet>();
+		// Initialise working data
+		this.accept = accept;
+		comp = new int[numStates];
+		Arrays.fill(comp, -1);
+		enabled = new boolean[rowStarts[numStates]];
+		numEnabled = new int[numStates];
+		localIndex = new int[numStates];
+		numSeeds = seeds.size();
+		nextComp = new AtomicInteger(numSeeds);
+		for (int c = 0; c < numSeeds; c++) {
+			BitSet seed = seeds.get(c);
+			for (int s = seed.nextSetBit(0); s >= 0; s = seed.nextSetBit(s + 1)) {
+				comp[s] = c;
+				Arrays.fill(enabled, rowStarts[s], rowStarts[s + 1], true);
+				numEnabled[s] = rowStarts[s + 1] - rowStarts[s];
+			}
+		}
 
-	private boolean canLBeChanged(List<BitSet> L, BitSet E)
-	{
-		processedSCCs.add(E);
-		for (int i = 0; i < L.size(); i++) {
-			if (!processedSCCs.contains(L.get(i))) {
-				return true;
+		// Work through candidate components
+		ForkJoinPool pool = ProbModelChecker.getParallelPool(settings, numStates);
+		if (pool == null) {
+			Deque<BitSet> todo = new ArrayDeque<BitSet>(seeds);
+			while (!todo.isEmpty()) {
+				todo.addAll(refineComponent(todo.removeFirst(), result));
 			}
+		} else {
+			pool.invoke(new RefineTask(seeds, Collections.synchronizedList(result)));
 		}
-		return false;
+
+		// Free working data
+		comp = null;
+		enabled = null;
+		numEnabled = null;
+		localIndex = null;
+		this.accept = null;
+
+		Collections.sort(result, new Comparator<BitSet>()
+		{
+			@Override
+			public int compare(BitSet b1, BitSet b2)
+			{
+				return Integer.compare(b1.nextSetBit(0), b2.nextSetBit(0));
+			}
+		});
+		return result;
 	}
 
-	private List<BitSet> replaceEWithSCCs(List<BitSet> L, BitSet E, List<BitSet> sccs)
+	/**
+	 * Fork/join task that refines a batch of candidate components. Sub-components that
+	 * result from splitting a component are refined by the same task, unless there are
+	 * enough of them to be worth handing out (in batches) to new tasks.
+	 */
+	private class RefineTask extends RecursiveAction
 	{
-		if (sccs.size() > 0) {
-			List<BitSet> toAdd = new ArrayList<BitSet>();
-			for (int i = 0; i < sccs.size(); i++) {
-				if (!L.contains(sccs.get(i))) {
-					toAdd.add(sccs.get(i));
+		private static final long serialVersionUID = 1L;
+		private List<BitSet> comps;
+		private List<BitSet> result;
+
+		public RefineTask(List<BitSet> comps, List<BitSet> result)
+		{
+			this.comps = comps;
+			this.result = result;
+		}
+
+		@Override
+		protected void compute()
+		{
+			List<RefineTask> forked = new ArrayList<RefineTask>();
+			Deque<BitSet> todo = new ArrayDeque<BitSet>(comps);
+			while (!todo.isEmpty()) {
+				List<BitSet> subs = refineComponent(todo.removeFirst(), result);
+				int total = 0;
+				for (BitSet sub : subs) {
+					total += sub.cardinality();
+				}
+				if (total < 2 * PARALLEL_BATCH_STATES) {
+					todo.addAll(subs);
+					continue;
 				}
+				// Split into batches, each a new task
+				List<BitSet> batch = new ArrayList<BitSet>();
+				int size = 0;
+				for (BitSet sub : subs) {
+					batch.add(sub);
+					size += sub.cardinality();
+					if (size >= PARALLEL_BATCH_STATES) {
+						RefineTask task = new RefineTask(batch, result);
+						task.fork();
+						forked.add(task);
+						batch = new ArrayList<BitSet>();
+						size = 0;
+					}
+				}
+				todo.addAll(batch);
+			}
+			for (RefineTask task : forked) {
+				task.join();
+			}
+		}
+	}
+
+	/**
+	 * Refine candidate component {@code C}: remove choices and states that cannot
+	 * stay within it, and split it into SCCs if needed. Any MECs found are added to
+	 * {@code result}; the remaining sub-components that still need processing are returned.
+	 */
+	private List<BitSet> refineComponent(BitSet C, List<BitSet> result)
+	{
+		List<BitSet> subs = new ArrayList<BitSet>();
+		int c = comp[C.nextSetBit(0)];
+		// Remove choices that leave C, and then states with no choices left
+		boolean changed = restrictToComponent(C, c);
+		if (C.isEmpty() || (accept != null && !C.intersects(accept))) {
+			return subs;
+		}
+		// If nothing changed, C is still strongly connected, so is an MEC
+		if (!changed && c >= numSeeds) {
+			result.add(C);
+			return subs;
+		}
+		// Otherwise, split into SCCs (trivial ones are dealt with directly)
+		List<BitSet> sccs = decompose(C, c, result);
+		if (sccs.size() == 1 && sccs.get(0).cardinality() == C.cardinality()) {
+			result.add(C);
+			return subs;
+		}
+		for (BitSet D : sccs) {
+			int d = (accept == null || D.intersects(accept)) ? nextComp.getAndIncrement() : -1;
+			for (int s = D.nextSetBit(0); s >= 0; s = D.nextSetBit(s + 1)) {
+				comp[s] = d;
 			}
-			if (toAdd.size() > 0) {
-				L.addAll(toAdd);
+			if (d != -1) {
+				subs.add(D);
 			}
 		}
-		return L;
+		return subs;
 	}
 
-	private SubNondetModel restrict(NondetModel model, BitSet states)
+	/**
+	 * Disable all choices of states in component {@code C} (with id {@code c})
+	 * that can leave it, and then (repeatedly) remove states that have no enabled choices.
+	 * Returns true if any choices were disabled.
+	 */
+	private boolean restrictToComponent(BitSet C, int c)
 	{
-		Map<Integer, BitSet> actions = new HashMap<Integer, BitSet>();
-		BitSet initialStates = new BitSet();
-		initialStates.set(states.nextSetBit(0));
-
-		boolean changed = true;
-		while (changed) {
-			changed = false;
-			actions.clear();
-			for (int i = 0; i < model.getNumStates(); i++) {
-				BitSet act = new BitSet();
-				if (states.get(i)) {
-					for (int j = 0; j < model.getNumChoices(i); j++) {
-						if (model.allSuccessorsInSet(i, j, states)) {
-							act.set(j);
+		boolean changed = false;
+		int removeStack[] = new int[C.cardinality()];
+		int sp = 0;
+		for (int s = C.nextSetBit(0); s >= 0; s = C.nextSetBit(s + 1)) {
+			if (comp[s] != c)
+				continue;
+			for (int j = rowStarts[s]; j < rowStarts[s + 1]; j++) {
+				if (!enabled[j])
+					continue;
+				for (int k = choiceStarts[j]; k < choiceStarts[j + 1]; k++) {
+					if (comp[succs[k]] != c) {
+						enabled[j] = false;
+						changed = true;
+						if (--numEnabled[s] == 0) {
+							comp[s] = -1;
+							removeStack[sp++] = s;
 						}
+						break;
 					}
-					if (act.isEmpty()) {
-						states.clear(i);
-						changed = true;
+				}
+			}
+		}
+		// Removing a state disables the choices leading to it
+		while (sp > 0) {
+			int t = removeStack[--sp];
+			C.clear(t);
+			for (int k = predStarts[t]; k < predStarts[t + 1]; k++) {
+				int j = predChoices[k];
+				int s = choiceStates[j];
+				if (comp[s] == c && enabled[j]) {
+					enabled[j] = false;
+					if (--numEnabled[s] == 0) {
+						comp[s] = -1;
+						removeStack[sp++] = s;
 					}
-					actions.put(i, act);
 				}
 			}
 		}
-
-		return new SubNondetModel(model, states, actions, initialStates);
+		return changed;
 	}
 
-	private List<BitSet> computeSCCs(NondetModel model) throws PrismException
+	/**
+	 * Split component {@code C} (with id {@code c}) into its SCCs, using only enabled choices,
+	 * and return the non-trivial ones (iterative version of Tarjan's algorithm).
+	 * Singleton SCCs are resolved immediately: the state is either an MEC on its own
+	 * (if it has a self-loop choice), which is added to {@code result} if it is accepting,
+	 * or is removed from consideration.
+	 */
+	private List<BitSet> decompose(BitSet C, int c, List<BitSet> result)
 	{
-		SCCComputer sccc = SCCComputer.createSCCComputer(this, model);
-		sccc.computeSCCs();
-		return sccc.getSCCs();
+		List<BitSet> sccs = new ArrayList<BitSet>();
+		// Per-state data, indexed by position within C
+		int m = C.cardinality();
+		int index[] = new int[m];
+		int lowlink[] = new int[m];
+		int stack[] = new int[m];
+		boolean onStack[] = new boolean[m];
+		int dfsStack[] = new int[m];
+		// Current choice and successor position, for each state on the DFS stack
+		int curChoice[] = new int[m];
+		int curSucc[] = new int[m];
+		int nextIndex = 0, sp = 0, dfsSp = 0;
+
+		int i = 0;
+		for (int s = C.nextSetBit(0); s >= 0; s = C.nextSetBit(s + 1)) {
+			localIndex[s] = i;
+			index[i++] = -1;
+		}
+		for (int s = C.nextSetBit(0); s >= 0; s = C.nextSetBit(s + 1)) {
+			int ls = localIndex[s];
+			if (index[ls] != -1)
+				continue;
+			index[ls] = lowlink[ls] = nextIndex++;
+			curChoice[ls] = rowStarts[s] - 1;
+			curSucc[ls] = 0;
+			stack[sp++] = s;
+			onStack[ls] = true;
+			dfsStack[dfsSp++] = s;
+			while (dfsSp > 0) {
+				int v = dfsStack[dfsSp - 1];
+				int lv = localIndex[v];
+				// Find next successor of v via an enabled choice
+				int t = -1;
+				while (curChoice[lv] < rowStarts[v + 1]) {
+					if (curChoice[lv] >= rowStarts[v] && curSucc[lv] < choiceStarts[curChoice[lv] + 1]) {
+						t = succs[curSucc[lv]++];
+						break;
+					}
+					do {
+						curChoice[lv]++;
+					} while (curChoice[lv] < rowStarts[v + 1] && !enabled[curChoice[lv]]);
+					if (curChoice[lv] < rowStarts[v + 1]) {
+						curSucc[lv] = choiceStarts[curChoice[lv]];
+					}
+				}
+				if (t >= 0) {
+					if (comp[t] != c) {
+						continue;
+					}
+					int lt = localIndex[t];
+					if (index[lt] == -1) {
+						index[lt] = lowlink[lt] = nextIndex++;
+						curChoice[lt] = rowStarts[t] - 1;
+						curSucc[lt] = 0;
+						stack[sp++] = t;
+						onStack[lt] = true;
+						dfsStack[dfsSp++] = t;
+					} else if (onStack[lt]) {
+						lowlink[lv] = Math.min(lowlink[lv], index[lt]);
+					}
+				} else {
+					dfsSp--;
+					if (lowlink[lv] == index[lv]) {
+						if (stack[sp - 1] == v) {
+							// Singleton SCC
+							sp--;
+							onStack[lv] = false;
+							comp[v] = -1;
+							if (hasSelfLoopChoice(v) && (accept == null || accept.get(v))) {
+								BitSet mec = new BitSet();
+								mec.set(v);
+								result.add(mec);
+							}
+						} else {
+							BitSet component = new BitSet();
+							int u;
+							do {
+								u = stack[--sp];
+								onStack[localIndex[u]] = false;
+								component.set(u);
+							} while (u != v);
+							sccs.add(component);
+						}
+					}
+					if (dfsSp > 0) {
+						int lp = localIndex[dfsStack[dfsSp - 1]];
+						lowlink[lp] = Math.min(lowlink[lp], lowlink[lv]);
+					}
+				}
+			}
+		}
+		return sccs;
 	}
 
-	private List<BitSet> translateStates(SubNondetModel model, List<BitSet> sccs)
+	/**
+	 * Check whether state {@code s} has an enabled choice that stays in {@code s}.
+	 */
+	private boolean hasSelfLoopChoice(int s)
 	{
-		List<BitSet> r = new ArrayList<BitSet>();
-		for (int i = 0; i < sccs.size(); i++) {
-			BitSet set = sccs.get(i);
-			BitSet set2 = new BitSet();
-			r.add(set2);
-			for (int j = set.nextSetBit(0); j >= 0; j = set.nextSetBit(j + 1)) {
-				set2.set(model.translateState(j));
-
+		for (int j = rowStarts[s]; j < rowStarts[s + 1]; j++) {
+			if (!enabled[j])
+				continue;
+			boolean loop = true;
+			for (int k = choiceStarts[j]; k < choiceStarts[j + 1]; k++) {
+				if (succs[k] != s) {
+					loop = false;
+					break;
+				}
 			}
+			if (loop)
+				return true;
 		}
-		return r;
+		return false;
 	}
 
-	private boolean isMEC(BitSet b)
+	/**
+	 * Build the sparse (successor and predecessor) storage for the model, if not done already.
+	 */
+	private void buildSparseStorage()
 	{
-		if (b.isEmpty())
-			return false;
-
-		int state = b.nextSetBit(0);
-		while (state != -1) {
-			boolean atLeastOneAction = false;
-			for (int i = 0; i < model.getNumChoices(state); i++) {
-				if (model.allSuccessorsInSet(state, i, b)) {
-					atLeastOneAction = true;
+		if (rowStarts != null)
+			return;
+		numStates = model.getNumStates();
+		if (model instanceof MDPSparse) {
+			// Reuse the storage of MDPSparse directly
+			MDPSparse mdp = (MDPSparse) model;
+			rowStarts = mdp.storage.getRowStarts();
+			choiceStarts = mdp.storage.getChoiceStarts();
+			succs = mdp.storage.getCols();
+		} else {
+			int numChoices = 0;
+			rowStarts = new int[numStates + 1];
+			for (int s = 0; s < numStates; s++) {
+				rowStarts[s] = numChoices;
+				numChoices += model.getNumChoices(s);
+			}
+			rowStarts[numStates] = numChoices;
+			choiceStarts = new int[numChoices + 1];
+			succs = new int[Math.max(16, model.getNumTransitions())];
+			int j = 0, k = 0;
+			for (int s = 0; s < numStates; s++) {
+				int n = model.getNumChoices(s);
+				for (int i = 0; i < n; i++, j++) {
+					choiceStarts[j] = k;
+					Iterator<Integer> it = model.getSuccessorsIterator(s, i);
+					while (it.hasNext()) {
+						if (k == succs.length) {
+							succs = Arrays.copyOf(succs, 2 * succs.length);
+						}
+						succs[k++] = it.next();
+					}
 				}
 			}
-			if (!atLeastOneAction) {
-				return false;
+			choiceStarts[numChoices] = k;
+		}
+		// Build predecessor storage (by counting sort)
+		int numChoices = rowStarts[numStates];
+		int numSuccs = choiceStarts[numChoices];
+		choiceStates = new int[numChoices];
+		predStarts = new int[numStates + 1];
+		for (int s = 0; s < numStates; s++) {
+			for (int j = rowStarts[s]; j < rowStarts[s + 1]; j++) {
+				choiceStates[j] = s;
+			}
+		}
+		for (int k = 0; k < numSuccs; k++) {
+			predStarts[succs[k] + 1]++;
+		}
+		for (int t = 0; t < numStates; t++) {
+			predStarts[t + 1] += predStarts[t];
+		}
+		predChoices = new int[numSuccs];
+		int pos[] = Arrays.copyOf(predStarts, numStates);
+		for (int j = 0; j < numChoices; j++) {
+			for (int k = choiceStarts[j]; k < choiceStarts[j + 1]; k++) {
+				predChoices[pos[succs[k]]++] = j;
 			}
-			state = b.nextSetBit(state + 1);
 		}
-
-		return true;
 	}
 }
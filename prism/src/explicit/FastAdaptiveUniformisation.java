@@ -34,21 +34,29 @@ import java.io.FileReader;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.ListIterator;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 import parser.ast.Expression;
 import parser.ast.ExpressionIdent;
 import parser.ast.LabelList;
+import parser.ast.ModulesFile;
 import parser.ast.RewardStruct;
 import parser.type.TypeDouble;
 import parser.Values;
 import parser.State;
 import prism.*;
 import prism.Model;
+import simulator.ModulesFileModelGenerator;
 
 /*
  * TODO
@@ -108,6 +116,8 @@ public final class FastAdaptiveUniformisation extends PrismComponent
 		private int references;
 		/** true if and only if state probability above relevance threshold */
 		private boolean alive;
+		/** index of this state in the list of states stored */
+		private int index;
 		
 		/**
 		 * Constructs a new state property object.
@@ -124,6 +134,26 @@ public final class FastAdaptiveUniformisation extends PrismComponent
 			alive = true;
 		}
 		
+		/**
+		 * Sets index of this state in the list of states stored.
+		 * 
+		 * @param index index to set
+		 */
+		void setIndex(int index)
+		{
+			this.index = index;
+		}
+
+		/**
+		 * Gets index of this state in the list of states stored.
+		 * 
+		 * @return index of this state
+		 */
+		int getIndex()
+		{
+			return index;
+		}
+
 		/**
 		 * Set current state probability.
 		 * 
@@ -393,6 +423,19 @@ public final class FastAdaptiveUniformisation extends PrismComponent
 		}
 	}
 	
+	/**
+	 * Successor states of a state, and the rates to them, as found during
+	 * exploration, before they are linked to the states stored.
+	 * If {@code succStates} is null, the state is to be made absorbing.
+	 */
+	private final static class Successors
+	{
+		/** successor states */
+		private State[] succStates;
+		/** rates to successor states */
+		private double[] succRates;
+	}
+
 	/**
 	 * Enum to store type of analysis to perform.
 	 */
@@ -459,6 +502,21 @@ public final class FastAdaptiveUniformisation extends PrismComponent
 	private double totalProbLoss;
 	/** probability mass intentionally set to zero */
 	private double totalProbSetZero;
+
+	/** minimal number of states for propagation steps to be done in parallel */
+	private static final int PARALLEL_MIN_STATES = 10000;
+	/** minimal number of states to explore for exploration to be done in parallel */
+	private static final int PARALLEL_MIN_EXPLORE = 100;
+	/** number of threads to use */
+	private int numThreads;
+	/** model exploration components for parallel exploration, one per thread (null if not available) */
+	private ModelGenerator[] workerModelGens;
+	/** special labels (as for {@code specialLabels}) for parallel exploration, one per thread */
+	private LabelList[] workerSpecialLabels;
+	/** states stored, in the same order as in {@code states}; each StateProp stores its index in this list */
+	private ArrayList<StateProp> stateList;
+	/** next-state probabilities computed by each thread during parallel propagation */
+	private double[][] workerNextProbs;
 	
 	/**
 	 * Constructor.
@@ -478,9 +536,43 @@ public final class FastAdaptiveUniformisation extends PrismComponent
 		rewStruct = null;
 		target = Expression.False();
 		sink = Expression.False();
-		specialLabels = new LabelList();
-		specialLabels.addLabel(new ExpressionIdent("deadlock"), new ExpressionIdent("deadlock"));
-		specialLabels.addLabel(new ExpressionIdent("init"), new ExpressionIdent("init"));
+		specialLabels = createSpecialLabels();
+		numThreads = settings.getInteger(PrismSettings.PRISM_NUM_THREADS);
+		if (numThreads <= 0) {
+			numThreads = Runtime.getRuntime().availableProcessors();
+		}
+	}
+
+	/**
+	 * Constructor, for a PRISM model (whose constants have all been defined).
+	 * If several threads are to be used (see {@link PrismSettings#PRISM_NUM_THREADS}),
+	 * one model exploration component is created for each thread, so that the
+	 * successors of newly relevant states can be explored in parallel.
+	 */
+	public FastAdaptiveUniformisation(PrismComponent parent, ModulesFile modulesFile) throws PrismException
+	{
+		this(parent, new ModulesFileModelGenerator(modulesFile, parent));
+		if (numThreads > 1) {
+			workerModelGens = new ModelGenerator[numThreads];
+			workerSpecialLabels = new LabelList[numThreads];
+			for (int i = 0; i < numThreads; i++) {
+				workerModelGens[i] = new ModulesFileModelGenerator(modulesFile, parent);
+				workerSpecialLabels[i] = createSpecialLabels();
+			}
+		}
+	}
+
+	/**
+	 * Creates list of special labels ("deadlock", "init") used when evaluating expressions.
+	 * 
+	 * @return list of special labels
+	 */
+	private static LabelList createSpecialLabels()
+	{
+		LabelList labels = new LabelList();
+		labels.addLabel(new ExpressionIdent("deadlock"), new ExpressionIdent("deadlock"));
+		labels.addLabel(new ExpressionIdent("init"), new ExpressionIdent("init"));
+		return labels;
 	}
 
 	/**
@@ -685,6 +777,7 @@ public final class FastAdaptiveUniformisation extends PrismComponent
 		addDistr = new ArrayList<State>();
 		deleteStates = new ArrayList<State>();
 		states = new LinkedHashMap<State,StateProp>(initSize);
+		stateList = new ArrayList<StateProp>(initSize);
 		value = 0.0;
 		initStates = new HashSet<State>();
 		ListIterator<State> it = initDist.statesList.listIterator();
@@ -740,6 +833,7 @@ public final class FastAdaptiveUniformisation extends PrismComponent
 			addDistr = new ArrayList<State>();
 			deleteStates = new ArrayList<State>();
 			states = new LinkedHashMap<State,StateProp>(initSize);
+			stateList = new ArrayList<StateProp>(initSize);
 			value = 0.0;
 			prepareInitialDistribution();
 		}
@@ -816,11 +910,7 @@ public final class FastAdaptiveUniformisation extends PrismComponent
 				birthProcTimer = System.currentTimeMillis() - birthProcTimer;
 				birthProbSum += prob;
 				collectValuePostIter(prob, birthProbSum);
-				for (StateProp prop : states.values()) {
-					prop.addToSum(prob);
-				}
-				
-				mvMult(maxRate);
+				mvMult(maxRate, prob);
 				updateStates();
 				iters++;
 			}
@@ -1035,8 +1125,8 @@ public final class FastAdaptiveUniformisation extends PrismComponent
 				prop.delete();
 			}
 		}
+		computeStateRatesAndRewards(addDistr);
 		for (int stateNr = 0; stateNr < addDistr.size(); stateNr++) {
-			computeStateRatesAndRewards(addDistr.get(stateNr));
 			maxRate = Math.max(maxRate, states.get(addDistr.get(stateNr)).sumRates());
 		}
 		maxRate *= 1.02;
@@ -1061,10 +1151,21 @@ public final class FastAdaptiveUniformisation extends PrismComponent
 				unchanged = false;
 			}
 		}
-		if (!keepSumProb) {
+		if (!keepSumProb && !deleteStates.isEmpty()) {
 			for (int i = 0; i < deleteStates.size(); i++) {
 				states.remove(deleteStates.get(i));
 			}
+			// compact list of states, updating indices
+			int numKept = 0;
+			for (int i = 0; i < stateList.size(); i++) {
+				StateProp prop = stateList.get(i);
+				if (!prop.canRemove()) {
+					prop.setIndex(numKept);
+					stateList.set(numKept, prop);
+					numKept++;
+				}
+			}
+			stateList.subList(numKept, stateList.size()).clear();
 		}
 		if (unchanged) {
 			itersUnchanged++;
@@ -1145,11 +1246,27 @@ public final class FastAdaptiveUniformisation extends PrismComponent
 	 * @throws PrismException thrown if something wrong happens in underlying methods
 	 */
 	private void addToModel(State state) throws PrismException
+	{
+		addToModel(state, computeRewards(state, modelGen));
+	}
+
+	/**
+	 * Adds @a state, with reward @a reward, to model.
+	 * Creates entry in map and list of states, and updates number of states
+	 * 
+	 * @param state state to add
+	 * @param reward reward of the state
+	 * @return property object of the new state
+	 */
+	private StateProp addToModel(State state, double reward)
 	{
 		StateProp prop = new StateProp();
-		prop.setReward(computeRewards(state));
+		prop.setReward(reward);
+		prop.setIndex(stateList.size());
 		states.put(state, prop);
+		stateList.add(prop);
 		maxNumStates = Math.max(maxNumStates, states.size());
+		return prop;
 	}
 
 	/**
@@ -1162,45 +1279,156 @@ public final class FastAdaptiveUniformisation extends PrismComponent
 	 */
 	private void computeStateRatesAndRewards(State state) throws PrismException
 	{
-		double[] succRates;
-		StateProp[] succStates;
-		modelGen.exploreState(state);
-		specialLabels.setLabel(0, modelGen.getNumTransitions() == 0 ? Expression.True() : Expression.False());
-		specialLabels.setLabel(1, initStates.contains(state) ? Expression.True() : Expression.False());
-		Expression evSink = sink.deepCopy();
-		evSink = (Expression) evSink.expandLabels(specialLabels);
-		if (evSink.evaluateBoolean(constantValues, state)) {
-			succRates = new double[1];
-			succStates = new StateProp[1];
-			succRates[0] = 1.0;
-			succStates[0] = states.get(state);
+		computeStateRatesAndRewards(Collections.singletonList(state));
+	}
+
+	/**
+	 * Computes successor rates for a list of states, adding any new
+	 * successor states to the model (and computing their rewards).
+	 * If there are enough states, and per-thread model exploration components
+	 * are available, the states are explored in parallel; the successors are
+	 * then linked to the states stored sequentially, in the order given, so that
+	 * the result does not depend on the number of threads.
+	 * 
+	 * @param toExplore states to compute successor rates and rewards for
+	 * @throws PrismException thrown if something goes wrong
+	 */
+	private void computeStateRatesAndRewards(final List<State> toExplore) throws PrismException
+	{
+		int numExplore = toExplore.size();
+		final Successors[] succs = new Successors[numExplore];
+		ForkJoinPool pool = workerModelGens == null ? null : getParallelPool(numExplore, PARALLEL_MIN_EXPLORE);
+		if (pool == null) {
+			for (int i = 0; i < numExplore; i++) {
+				succs[i] = exploreSuccessors(toExplore.get(i), modelGen, specialLabels);
+			}
 		} else {
-			int nc = modelGen.getNumChoices();
-			succRates = new double[nc];
-			succStates = new StateProp[nc];
-			for (int i = 0; i < nc; i++) {
-				int nt = modelGen.getNumTransitions(i);
-				for (int j = 0; j < nt; j++) {
-					State succState = modelGen.computeTransitionTarget(i, j);
-					StateProp succProp = states.get(succState);
-					if (null == succProp) {
-						addToModel(succState);
-						modelGen.exploreState(state);
-						succProp = states.get(succState);
+			doParallel(pool, numExplore, new BlockOp()
+			{
+				@Override
+				public void apply(int block, int lo, int hi) throws PrismException
+				{
+					for (int i = lo; i < hi; i++) {
+						succs[i] = exploreSuccessors(toExplore.get(i), workerModelGens[block], workerSpecialLabels[block]);
 					}
-					succRates[i] = modelGen.getTransitionProbability(i, j);
-					succStates[i] = succProp;
 				}
-			}
-			if (nc == 0) {
+			});
+		}
+
+		/* link successors, adding new states to the model */
+		final List<State> newStates = new ArrayList<State>();
+		final List<StateProp> newProps = new ArrayList<StateProp>();
+		for (int i = 0; i < numExplore; i++) {
+			StateProp prop = states.get(toExplore.get(i));
+			double[] succRates;
+			StateProp[] succStates;
+			if (succs[i].succStates == null) {
 				succRates = new double[1];
 				succStates = new StateProp[1];
 				succRates[0] = 1.0;
-				succStates[0] = states.get(state);
+				succStates[0] = prop;
+			} else {
+				int numSuccs = succs[i].succStates.length;
+				succRates = succs[i].succRates;
+				succStates = new StateProp[numSuccs];
+				for (int succNr = 0; succNr < numSuccs; succNr++) {
+					State succState = succs[i].succStates[succNr];
+					StateProp succProp = states.get(succState);
+					if (null == succProp) {
+						succProp = addToModel(succState, 0.0);
+						newStates.add(succState);
+						newProps.add(succProp);
+					}
+					succStates[succNr] = succProp;
+				}
+			}
+			prop.setSuccRates(succRates);
+			prop.setSuccStates(succStates);
+		}
+
+		/* compute rewards of new states */
+		if (!isRewardAnalysis()) {
+			return;
+		}
+		pool = workerModelGens == null ? null : getParallelPool(newStates.size(), PARALLEL_MIN_EXPLORE);
+		if (pool == null) {
+			for (int i = 0; i < newStates.size(); i++) {
+				newProps.get(i).setReward(computeRewards(newStates.get(i), modelGen));
+			}
+		} else {
+			doParallel(pool, newStates.size(), new BlockOp()
+			{
+				@Override
+				public void apply(int block, int lo, int hi) throws PrismException
+				{
+					for (int i = lo; i < hi; i++) {
+						newProps.get(i).setReward(computeRewards(newStates.get(i), workerModelGens[block]));
+					}
+				}
+			});
+		}
+	}
+
+	/**
+	 * Explores a state, i.e. computes its successor states and the rates to them.
+	 * States which are sink states, or which are deadlocks, are to be made absorbing.
+	 * Only reads the fields of this object, so it can be called concurrently
+	 * (with different model exploration components and label lists).
+	 * 
+	 * @param state state to explore
+	 * @param gen model exploration component to use
+	 * @param labels special labels to use
+	 * @return successors of the state
+	 * @throws PrismException thrown if something goes wrong
+	 */
+	private Successors exploreSuccessors(State state, ModelGenerator gen, LabelList labels) throws PrismException
+	{
+		Successors succs = new Successors();
+		gen.exploreState(state);
+		labels.setLabel(0, gen.getNumTransitions() == 0 ? Expression.True() : Expression.False());
+		labels.setLabel(1, initStates.contains(state) ? Expression.True() : Expression.False());
+		Expression evSink = sink.deepCopy();
+		evSink = (Expression) evSink.expandLabels(labels);
+		if (evSink.evaluateBoolean(constantValues, state)) {
+			return succs;
+		}
+		int nc = gen.getNumChoices();
+		if (nc == 0) {
+			return succs;
+		}
+		succs.succRates = new double[nc];
+		succs.succStates = new State[nc];
+		for (int i = 0; i < nc; i++) {
+			int nt = gen.getNumTransitions(i);
+			for (int j = 0; j < nt; j++) {
+				succs.succStates[i] = gen.computeTransitionTarget(i, j);
+				succs.succRates[i] = gen.getTransitionProbability(i, j);
 			}
 		}
-		states.get(state).setSuccRates(succRates);
-		states.get(state).setSuccStates(succStates);
+		return succs;
+	}
+
+	/**
+	 * Perform a single matrix-vector multiplication, after first adding
+	 * the current probability of each state times {@code prob} to its
+	 * weighted sum probability. For enough states, this is done in parallel
+	 * (see {@link #mvMultParallel(double, double, ForkJoinPool)}).
+	 * 
+	 * @param maxRate maximal total leaving rate sum in living states
+	 * @param prob birth process probability for the current step
+	 * @throws PrismException thrown if something goes wrong
+	 */
+	private void mvMult(double maxRate, double prob) throws PrismException
+	{
+		ForkJoinPool pool = getParallelPool(stateList.size(), PARALLEL_MIN_STATES);
+		if (pool != null) {
+			mvMultParallel(maxRate, prob, pool);
+			return;
+		}
+		for (StateProp prop : states.values()) {
+			prop.addToSum(prob);
+		}
+		mvMult(maxRate);
 	}
 
 	/**
@@ -1229,6 +1457,133 @@ public final class FastAdaptiveUniformisation extends PrismComponent
 		}
 	}
 
+	/**
+	 * Perform a single matrix-vector multiplication in parallel, as for {@link #mvMult(double, double)}.
+	 * The states are split into contiguous blocks (by index), one per thread. In a first phase,
+	 * each thread propagates the probabilities of its states into its own next-state probability
+	 * vector; in a second phase, each thread sums up these vectors for its states.
+	 * 
+	 * @param maxRate maximal total leaving rate sum in living states
+	 * @param prob birth process probability for the current step
+	 * @param pool fork/join pool to use
+	 * @throws PrismException thrown if something goes wrong
+	 */
+	private void mvMultParallel(final double maxRate, final double prob, ForkJoinPool pool) throws PrismException
+	{
+		int numStates = stateList.size();
+		final int numBlocks = getNumBlocks(pool, numStates);
+		if (workerNextProbs == null || workerNextProbs.length < numBlocks || workerNextProbs[0].length < numStates) {
+			workerNextProbs = new double[numBlocks][numStates + numStates / 2];
+		}
+		doParallel(pool, numStates, new BlockOp()
+		{
+			@Override
+			public void apply(int block, int lo, int hi)
+			{
+				double[] nextProbs = workerNextProbs[block];
+				for (int stateNr = lo; stateNr < hi; stateNr++) {
+					StateProp prop = stateList.get(stateNr);
+					prop.addToSum(prob);
+					double[] succRates = prop.getSuccRates();
+					StateProp[] succStates = prop.getSuccStates();
+					double stateProb = prop.getProb();
+					if (null != succStates) {
+						double sumRates = 0.0;
+						for (int succ = 0; succ < succStates.length; succ++) {
+							double rate = succRates[succ];
+							sumRates += rate;
+							nextProbs[succStates[succ].getIndex()] += (rate / maxRate) * stateProb;
+						}
+						nextProbs[stateNr] += ((maxRate - sumRates) / maxRate) * stateProb;
+					}
+				}
+			}
+		});
+		doParallel(pool, numStates, new BlockOp()
+		{
+			@Override
+			public void apply(int block, int lo, int hi)
+			{
+				for (int stateNr = lo; stateNr < hi; stateNr++) {
+					double nextProb = 0.0;
+					for (int b = 0; b < numBlocks; b++) {
+						nextProb += workerNextProbs[b][stateNr];
+						workerNextProbs[b][stateNr] = 0.0;
+					}
+					stateList.get(stateNr).setProb(nextProb);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Get the fork/join pool to use for a parallel operation on {@code num} states,
+	 * or null if it should be done sequentially (only one thread, or fewer than {@code min} states).
+	 */
+	private ForkJoinPool getParallelPool(int num, int min)
+	{
+		if (numThreads <= 1 || num < min) {
+			return null;
+		}
+		return ProbModelChecker.getSharedParallelPool(numThreads);
+	}
+
+	/**
+	 * Operation on a contiguous block of states [lo,hi), executed by a single thread.
+	 */
+	private interface BlockOp
+	{
+		/**
+		 * Apply the operation to states lo,...,hi-1; {@code block} is the index of the block
+		 * (which is less than the number of threads).
+		 */
+		public void apply(int block, int lo, int hi) throws PrismException;
+	}
+
+	/**
+	 * Get the number of blocks into which {@code num} states are split for parallel operations.
+	 */
+	private int getNumBlocks(ForkJoinPool pool, int num)
+	{
+		return Math.max(1, Math.min(Math.min(pool.getParallelism(), numThreads), num));
+	}
+
+	/**
+	 * Split {@code num} states into contiguous blocks, one per thread of {@code pool},
+	 * and apply {@code op} to each block in parallel.
+	 */
+	private void doParallel(ForkJoinPool pool, int num, final BlockOp op) throws PrismException
+	{
+		int numBlocks = getNumBlocks(pool, num);
+		List<ForkJoinTask<Object>> tasks = new ArrayList<ForkJoinTask<Object>>(numBlocks);
+		for (int b = 0; b < numBlocks; b++) {
+			final int block = b;
+			final int lo = (int) ((long) num * b / numBlocks);
+			final int hi = (int) ((long) num * (b + 1) / numBlocks);
+			tasks.add(pool.submit(new Callable<Object>()
+			{
+				@Override
+				public Object call() throws PrismException
+				{
+					op.apply(block, lo, hi);
+					return null;
+				}
+			}));
+		}
+		for (ForkJoinTask<Object> task : tasks) {
+			try {
+				task.get();
+			} catch (ExecutionException e) {
+				if (e.getCause() instanceof PrismException) {
+					throw (PrismException) e.getCause();
+				}
+				throw new PrismException("Error in parallel fast adaptive uniformisation: " + e.getCause());
+			} catch (InterruptedException e) {
+				throw new PrismException("Parallel fast adaptive uniformisation was interrupted");
+			}
+		}
+	}
+
 	/**
 	 * Checks if rewards are needed for analysis.
 	 * 
@@ -1246,18 +1601,19 @@ public final class FastAdaptiveUniformisation extends PrismComponent
 	 * rewards are transformed into equivalent state rewards.
 	 * 
 	 * @param state the state to compute the reward of
+	 * @param gen model exploration component to use
 	 * @return the reward for state @a state
 	 * @throws PrismException thrown if problems occur in PRISM functions called
 	 */
-	private double computeRewards(State state) throws PrismException
+	private double computeRewards(State state, ModelGenerator gen) throws PrismException
 	{
 		if (!isRewardAnalysis()) {
 			return 0.0;
 		}
 		int numChoices = 0;
 		if (AnalysisType.REW_CUMUL == analysisType) {
-			modelGen.exploreState(state);
-			numChoices = modelGen.getNumChoices();
+			gen.exploreState(state);
+			numChoices = gen.getNumChoices();
 		}
 		double sumReward = 0.0;
 		int numStateItems = rewStruct.getNumItems();
@@ -1269,14 +1625,14 @@ public final class FastAdaptiveUniformisation extends PrismComponent
 				if (action != null) {
 					if (AnalysisType.REW_CUMUL == analysisType) {
 						for (int j = 0; j < numChoices; j++) {
-							int numTransitions = modelGen.getNumTransitions(j);
+							int numTransitions = gen.getNumTransitions(j);
 							for (int k = 0; k < numTransitions; k++) {
-								String tAction = modelGen.getTransitionAction(j, k).toString();
+								String tAction = gen.getTransitionAction(j, k).toString();
 								if (tAction == null) {
 									tAction = "";
 								}
 								if (tAction.equals(action)) {
-									sumReward += reward * modelGen.getTransitionProbability(j, k);
+									sumReward += reward * gen.getTransitionProbability(j, k);
 								}
 							}
 						}
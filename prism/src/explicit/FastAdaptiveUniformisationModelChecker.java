@@ -40,7 +40,6 @@ import prism.PrismComponent;
 import prism.PrismException;
 import prism.PrismNotSupportedException;
 import prism.Result;
-import simulator.ModulesFileModelGenerator;
 
 /**
  * CTMC model checker based on fast adaptive uniformisation.
@@ -156,8 +155,7 @@ public class FastAdaptiveUniformisationModelChecker extends PrismComponent
 		}
 
 		mainLog.println("Starting transient probability computation using fast adaptive uniformisation...");
-		ModulesFileModelGenerator prismModelGen = new ModulesFileModelGenerator(modulesFile, this);
-		FastAdaptiveUniformisation fau = new FastAdaptiveUniformisation(this, prismModelGen);
+		FastAdaptiveUniformisation fau = new FastAdaptiveUniformisation(this, modulesFile);
 		fau.setConstantValues(constantValues);
 
 		Expression op1 = exprTemp.getOperand1();
@@ -224,8 +222,7 @@ public class FastAdaptiveUniformisationModelChecker extends PrismComponent
 	private Result checkExpressionReward(ExpressionReward expr) throws PrismException
 	{
 		mainLog.println("Starting transient probability computation using fast adaptive uniformisation...");
-		ModulesFileModelGenerator prismModelGen = new ModulesFileModelGenerator(modulesFile, this);
-		FastAdaptiveUniformisation fau = new FastAdaptiveUniformisation(this, prismModelGen);
+		FastAdaptiveUniformisation fau = new FastAdaptiveUniformisation(this, modulesFile);
 		ExpressionTemporal temporal = (ExpressionTemporal) expr.getExpression();
 		switch (temporal.getOperator()) {
 		case ExpressionTemporal.R_I:
@@ -27,6 +27,11 @@
 
 package explicit;
 
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
 import prism.PrismException;
 
 public final class FoxGlynn
@@ -40,6 +45,17 @@ public final class FoxGlynn
 	private double totalWeight;
 	private double[] weights;
 
+	// Cache of normalised results (see getNormalised), indexed by [q_tmax, accuracy]
+	private static final int CACHE_SIZE = 64;
+	private static final Map<List<Double>, FoxGlynn> cache = new LinkedHashMap<List<Double>, FoxGlynn>(16, 0.75f, true)
+	{
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<List<Double>, FoxGlynn> eldest)
+		{
+			return size() > CACHE_SIZE;
+		}
+	};
+
 	public FoxGlynn(double qtmax, double uf, double of, double acc) throws PrismException
 	{
 		q_tmax = qtmax;
@@ -49,6 +65,36 @@ public final class FoxGlynn
 		run();
 	}
 
+	/**
+	 * Get the Fox-Glynn truncation points and weights for {@code qtmax} and accuracy {@code acc}
+	 * (with underflow/overflow values 1e-300/1e+300), where the weights have already been
+	 * normalised, i.e. divided by the total weight (so {@link #getTotalWeight()} returns 1).
+	 * Results are memoised, so that repeated computations for the same q.t (e.g. for the same time bound
+	 * in different properties) do not redo them; several time bounds are instead batched by the model checker.
+	 * The returned object (and its weights array) is shared and must not be modified.
+	 */
+	public static FoxGlynn getNormalised(double qtmax, double acc) throws PrismException
+	{
+		List<Double> key = Arrays.asList(qtmax, acc);
+		synchronized (cache) {
+			FoxGlynn fg = cache.get(key);
+			if (fg != null) {
+				return fg;
+			}
+		}
+		FoxGlynn fg = new FoxGlynn(qtmax, 1e-300, 1e+300, acc);
+		if (fg.right >= 0) {
+			for (int i = fg.left; i <= fg.right; i++) {
+				fg.weights[i - fg.left] /= fg.totalWeight;
+			}
+			fg.totalWeight = 1.0;
+			synchronized (cache) {
+				cache.put(key, fg);
+			}
+		}
+		return fg;
+	}
+
 	public final double[] getWeights()
 	{
 		return weights;
@@ -695,10 +695,14 @@ public class LTLModelChecker extends PrismComponent
 	 */
 	public BitSet findAcceptingBSCCs(Model model, AcceptanceOmega acceptance) throws PrismException
 	{
-		// Compute bottom strongly connected components (BSCCs)
-		SCCComputer sccComputer = SCCComputer.createSCCComputer(this, model);
-		sccComputer.computeBSCCs();
-		List<BitSet> bsccs = sccComputer.getBSCCs();
+		// Compute bottom strongly connected components (BSCCs), or re-use if known
+		List<BitSet> bsccs = model.getAnalysisCache().getBSCCs(model);
+		if (bsccs == null) {
+			SCCComputer sccComputer = SCCComputer.createSCCComputer(this, model);
+			sccComputer.computeBSCCs();
+			bsccs = sccComputer.getBSCCs();
+			model.getAnalysisCache().setBSCCs(model, bsccs);
+		}
 
 		BitSet result = new BitSet();
 
@@ -770,6 +774,13 @@ public class LTLModelChecker extends PrismComponent
 		BitSet allAcceptingStates = new BitSet();
 		int numStates = model.getNumStates();
 		
+		// Use a single MEC computer for all pairs; if there are several,
+		// first compute the MECs of the whole model, which it then reuses
+		ECComputer ecComputer = ECComputer.createECComputer(this, model);
+		if (acceptance.size() > 1) {
+			ecComputer.computeMECStates();
+		}
+
 		// Go through the DRA acceptance pairs (L_i, K_i) 
 		for (int i = 0; i < acceptance.size(); i++) {
 			// Find model states *not* satisfying L_i
@@ -784,7 +795,6 @@ public class LTLModelChecker extends PrismComponent
 			if (statesLi_not.cardinality() == 0)
 				continue;
 			// Compute accepting maximum end components (MECs) in !L_i
-			ECComputer ecComputer = ECComputer.createECComputer(this, model);
 			ecComputer.computeMECStates(statesLi_not, acceptance.get(i).getK());
 			List<BitSet> mecs = ecComputer.getMECStates();
 			// Union MEC states
@@ -849,7 +859,7 @@ public class LTLModelChecker extends PrismComponent
 			} else if (restrict.isEmpty()) {
 				// nothing to do
 			} else {
-				ecComputer = ECComputer.createECComputer(this, model);
+				// (reusing the MEC computer, which already knows the MECs of the whole model)
 				ecComputer.computeMECStates(restrict);
 				for (BitSet mecs : ecComputer.getMECStates()) {
 					ECandPairs newEcp = new ECandPairs();
@@ -873,6 +883,12 @@ public class LTLModelChecker extends PrismComponent
 		BitSet allAcceptingStates = new BitSet();
 		int numStates = model.getNumStates();
 		
+		// Use a single MEC computer for all pairs (see findAcceptingECStatesForRabin)
+		ECComputer ecComputer = ECComputer.createECComputer(this, model);
+		if (acceptance.size() > 1) {
+			ecComputer.computeMECStates();
+		}
+
 		// Go through the GR acceptance pairs (L_i, K_i_1, ..., K_i_n) 
 		for (int i = 0; i < acceptance.size(); i++) {
 			
@@ -888,7 +904,6 @@ public class LTLModelChecker extends PrismComponent
 			if (statesLi_not.cardinality() == 0)
 				continue;
 			// Compute maximum end components (MECs) in !L_i
-			ECComputer ecComputer = ECComputer.createECComputer(this, model);
 			ecComputer.computeMECStates(statesLi_not);
 			List<BitSet> mecs = ecComputer.getMECStates();
 			// Check which MECs contain a state from each K_i_j
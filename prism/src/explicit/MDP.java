@@ -116,6 +116,21 @@ public interface MDP extends NondetModel
 	 */
 	public void mvMultMinMax(double vect[], boolean min, double result[], BitSet subset, boolean complement, int strat[]);
 
+	/**
+	 * Do a matrix-vector multiplication followed by min/max, as for
+	 * {@link #mvMultMinMax(double[], boolean, double[], BitSet, boolean, int[])},
+	 * but for {@code k} vectors at once, stored interleaved, i.e. the value of state s in vector j
+	 * is {@code vect[s*k+j]}. The transitions of each state are only read once for all vectors.
+	 * For vector j, the result is only stored for states in {@code unknown[j]} (other values are left unchanged).
+	 * @param vect Vectors to multiply by (interleaved)
+	 * @param k Number of vectors
+	 * @param min Min or max for (true=min, false=max)
+	 * @param result Vectors to store result in (interleaved)
+	 * @param subset Only do multiplication for these rows (should contain the union of the sets in {@code unknown})
+	 * @param unknown For each vector, the rows for which the result is stored
+	 */
+	public void mvMultMinMaxMulti(double vect[], int k, boolean min, double result[], BitSet subset, BitSet unknown[]);
+
 	/**
 	 * Do a single row of matrix-vector multiplication followed by min/max,
 	 * i.e. return min/max_k { sum_j P_k(s,j)*vect[j] }
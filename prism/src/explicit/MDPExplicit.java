@@ -240,6 +240,45 @@ public abstract class MDPExplicit extends ModelExplicit implements MDP
 		}
 	}
 
+	@Override
+	public void mvMultMinMaxMulti(double vect[], int k, boolean min, double result[], BitSet subset, BitSet unknown[])
+	{
+		double d[] = new double[k], minmax[] = new double[k];
+		for (int s = subset.nextSetBit(0); s >= 0; s = subset.nextSetBit(s + 1)) {
+			int numChoices = getNumChoices(s);
+			for (int j = 0; j < k; j++) {
+				minmax[j] = 0.0;
+			}
+			for (int i = 0; i < numChoices; i++) {
+				// Compute sums for this distribution
+				for (int j = 0; j < k; j++) {
+					d[j] = 0.0;
+				}
+				Iterator<Map.Entry<Integer, Double>> iter = getTransitionsIterator(s, i);
+				while (iter.hasNext()) {
+					Map.Entry<Integer, Double> e = iter.next();
+					double prob = e.getValue();
+					int base = e.getKey() * k;
+					for (int j = 0; j < k; j++) {
+						d[j] += prob * vect[base + j];
+					}
+				}
+				// Check whether we have exceeded min/max so far
+				for (int j = 0; j < k; j++) {
+					if (i == 0 || (min && d[j] < minmax[j]) || (!min && d[j] > minmax[j])) {
+						minmax[j] = d[j];
+					}
+				}
+			}
+			int base = s * k;
+			for (int j = 0; j < k; j++) {
+				if (unknown[j].get(s)) {
+					result[base + j] = minmax[j];
+				}
+			}
+		}
+	}
+
 	@Override
 	public double mvMultGSMinMax(double vect[], boolean min, BitSet subset, boolean complement, boolean absolute, int strat[])
 	{
@@ -0,0 +1,412 @@
+//==============================================================================
+//
+//	Copyright (c) 2002-
+//	Authors:
+//	* Dave Parker <d.a.parker@cs.bham.ac.uk> (University of Birmingham)
+//
+//------------------------------------------------------------------------------
+//
+//	This file is part of PRISM.
+//
+//	PRISM is free software; you can redistribute it and/or modify
+//	it under the terms of the GNU General Public License as published by
+//	the Free Software Foundation; either version 2 of the License, or
+//	(at your option) any later version.
+//
+//	PRISM is distributed in the hope that it will be useful,
+//	but WITHOUT ANY WARRANTY; without even the implied warranty of
+//	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//	GNU General Public License for more details.
+//
+//	You should have received a copy of the GNU General Public License
+//	along with PRISM; if not, write to the Free Software Foundation,
+//	Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+//
+//==============================================================================
+
+package explicit;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Reduction of an MDP, for the computation of reachability probabilities,
+ * to the "maybe" states, i.e. those whose probability is not already known to be 0 or 1
+ * (the "no" and "yes" states, from precomputation).
+ * <br>
+ * The reduced model is an {@link MDPSparse} comprising the maybe states, plus two absorbing states,
+ * representing all yes states and all no states, respectively. Further:
+ * <ul>
+ * <li> maybe states whose choices all move with probability 1 to the same state
+ *      (ignoring self-loops, for max) are removed, and replaced by the end of the chain of such states;
+ * <li> for max, choices that are (after the above) self-loops with probability 1 are removed;
+ * <li> choices of a state that are identical (after the above) are merged.
+ * </ul>
+ * The min/max reachability probabilities of the yes states of the reduced model
+ * are those of the original model (see {@link #liftToOriginalModel(double[])}).
+ * Strategies are not preserved.
+ */
+public class MDPMaybeReduction
+{
+	/** Number of states in the original model */
+	private int numStates;
+	/** Number of states in the reduced model (including the yes/no states) */
+	private int numStatesReduced;
+	/** Index of each state of the original model in the reduced model */
+	private int map[];
+	/** State of the original model for each maybe state of the reduced model */
+	private int kept[];
+	/** The reduced model */
+	private MDPSparse reduced;
+
+	// Statistics
+	private int numMaybe;
+	private int numMaybeChoices;
+
+	/**
+	 * Construct the reduction of an MDP to its maybe states.
+	 * @param mdp The MDP
+	 * @param no Probability 0 states
+	 * @param yes Probability 1 states
+	 * @param min Min or max probabilities (true=min, false=max)
+	 * @param known Optionally, a set of states for which the exact answer is known (these are not removed)
+	 */
+	public MDPMaybeReduction(MDP mdp, BitSet no, BitSet yes, boolean min, BitSet known)
+	{
+		numStates = mdp.getNumStates();
+		int n = numStates;
+		BitSet maybe = new BitSet(n);
+		maybe.set(0, n);
+		maybe.andNot(yes);
+		maybe.andNot(no);
+		numMaybe = maybe.cardinality();
+
+		// For each maybe state that can be removed, the state it moves to with probability 1 (or -1)
+		int next[] = new int[n];
+		Arrays.fill(next, -1);
+		for (int s = maybe.nextSetBit(0); s >= 0; s = maybe.nextSetBit(s + 1)) {
+			numMaybeChoices += mdp.getNumChoices(s);
+			if (known == null || !known.get(s)) {
+				next[s] = getDiracSuccessor(mdp, s, min);
+			}
+		}
+
+		// Find the representative of each state, i.e. the end of its chain
+		// (the states of a cycle of such chains, if any, are kept)
+		int rep[] = new int[n];
+		for (int s = 0; s < n; s++) {
+			rep[s] = s;
+		}
+		// status: 0 = not visited, 1 = on the current chain, 2 = done
+		byte status[] = new byte[n];
+		int chain[] = new int[n];
+		for (int s = maybe.nextSetBit(0); s >= 0; s = maybe.nextSetBit(s + 1)) {
+			int len = 0, t = s;
+			while (next[t] >= 0 && status[t] == 0) {
+				status[t] = 1;
+				chain[len++] = t;
+				t = next[t];
+			}
+			if (next[t] >= 0 && status[t] == 1) {
+				// Cycle: its states (from t onwards) are kept
+				int start = len - 1;
+				while (chain[start] != t) {
+					start--;
+				}
+				for (int i = start; i < len; i++) {
+					next[chain[i]] = -1;
+					status[chain[i]] = 2;
+				}
+				len = start;
+			}
+			for (int i = 0; i < len; i++) {
+				rep[chain[i]] = rep[t];
+				status[chain[i]] = 2;
+			}
+		}
+
+		// Number the remaining maybe states, then the yes/no states
+		map = new int[n];
+		int m = 0;
+		kept = new int[numMaybe];
+		for (int s = maybe.nextSetBit(0); s >= 0; s = maybe.nextSetBit(s + 1)) {
+			if (rep[s] == s) {
+				map[s] = m;
+				kept[m++] = s;
+			}
+		}
+		kept = Arrays.copyOf(kept, m);
+		numStatesReduced = m + 2;
+		for (int s = 0; s < n; s++) {
+			if (yes.get(s)) {
+				map[s] = m;
+			} else if (no.get(s)) {
+				map[s] = m + 1;
+			}
+		}
+		for (int s = maybe.nextSetBit(0); s >= 0; s = maybe.nextSetBit(s + 1)) {
+			map[s] = map[rep[s]];
+		}
+
+		buildReducedModel(mdp, min);
+	}
+
+	/**
+	 * If all choices of state {@code s} move with probability 1 to the same (other) state,
+	 * return that state, otherwise -1. For max, self-loops are ignored.
+	 */
+	private static int getDiracSuccessor(MDP mdp, int s, boolean min)
+	{
+		int succ = -1;
+		int numChoices = mdp.getNumChoices(s);
+		for (int i = 0; i < numChoices; i++) {
+			Iterator<Map.Entry<Integer, Double>> it = mdp.getTransitionsIterator(s, i);
+			if (!it.hasNext())
+				return -1;
+			Map.Entry<Integer, Double> e = it.next();
+			if (it.hasNext() || e.getValue() != 1.0)
+				return -1;
+			int t = e.getKey();
+			if (t == s) {
+				// For min, the probability from a self-loop is 0 (so s should be a no state anyway)
+				if (min)
+					return -1;
+				continue;
+			}
+			if (succ == -1) {
+				succ = t;
+			} else if (succ != t) {
+				return -1;
+			}
+		}
+		return succ;
+	}
+
+	/**
+	 * Build the reduced model, remapping the successors of the choices of the kept maybe states.
+	 */
+	private void buildReducedModel(MDP mdp, boolean min)
+	{
+		int m = kept.length;
+		int rowStarts[] = new int[numStatesReduced + 1];
+		int choiceStarts[] = new int[Math.max(16, numMaybeChoices + 3)];
+		int cols[] = new int[Math.max(16, numMaybeChoices + 2)];
+		double nonZeros[] = new double[cols.length];
+		int hashes[] = new int[16];
+		// Accumulation of the probabilities of each choice, over reduced states
+		double weight[] = new double[numStatesReduced];
+		int stamp[] = new int[numStatesReduced];
+		Arrays.fill(stamp, -1);
+		int touched[] = new int[numStatesReduced];
+		int numChoices = 0, numTransitions = 0, stampNext = 0;
+
+		for (int r = 0; r < m; r++) {
+			int s = kept[r];
+			rowStarts[r] = numChoices;
+			boolean droppedSelfLoop = false;
+			int nc = mdp.getNumChoices(s);
+			for (int i = 0; i < nc; i++) {
+				// Remap and sum the probabilities of each successor
+				int numTouched = 0;
+				int st = stampNext++;
+				Iterator<Map.Entry<Integer, Double>> it = mdp.getTransitionsIterator(s, i);
+				while (it.hasNext()) {
+					Map.Entry<Integer, Double> e = it.next();
+					int t = map[e.getKey()];
+					if (stamp[t] != st) {
+						stamp[t] = st;
+						weight[t] = 0.0;
+						touched[numTouched++] = t;
+					}
+					weight[t] += e.getValue();
+				}
+				// For max, probability 1 self-loops can be dropped
+				if (!min && numTouched == 1 && touched[0] == r && weight[r] == 1.0) {
+					droppedSelfLoop = true;
+					continue;
+				}
+				Arrays.sort(touched, 0, numTouched);
+				// Add the choice
+				if (numTransitions + numTouched > cols.length) {
+					int len = Math.max(2 * cols.length, numTransitions + numTouched);
+					cols = Arrays.copyOf(cols, len);
+					nonZeros = Arrays.copyOf(nonZeros, len);
+				}
+				int hash = 0;
+				for (int j = 0; j < numTouched; j++) {
+					int t = touched[j];
+					cols[numTransitions + j] = t;
+					nonZeros[numTransitions + j] = weight[t];
+					hash = 31 * hash + t;
+					hash = 31 * hash + Double.valueOf(weight[t]).hashCode();
+				}
+				// Unless it is identical to an existing choice of the state
+				if (isDuplicate(rowStarts[r], numChoices, choiceStarts, cols, nonZeros, hashes, hash, numTransitions, numTouched))
+					continue;
+				if (numChoices + 2 >= choiceStarts.length)
+					choiceStarts = Arrays.copyOf(choiceStarts, 2 * choiceStarts.length);
+				if (numChoices >= hashes.length)
+					hashes = Arrays.copyOf(hashes, 2 * hashes.length);
+				choiceStarts[numChoices] = numTransitions;
+				hashes[numChoices] = hash;
+				numChoices++;
+				numTransitions += numTouched;
+			}
+			// If all choices were self-loops, keep one
+			if (droppedSelfLoop && numChoices == rowStarts[r]) {
+				if (numTransitions + 1 > cols.length) {
+					cols = Arrays.copyOf(cols, 2 * cols.length);
+					nonZeros = Arrays.copyOf(nonZeros, 2 * nonZeros.length);
+				}
+				if (numChoices + 2 >= choiceStarts.length)
+					choiceStarts = Arrays.copyOf(choiceStarts, 2 * choiceStarts.length);
+				choiceStarts[numChoices++] = numTransitions;
+				cols[numTransitions] = r;
+				nonZeros[numTransitions++] = 1.0;
+			}
+		}
+		// The yes/no states are absorbing
+		if (numTransitions + 2 > cols.length) {
+			cols = Arrays.copyOf(cols, numTransitions + 2);
+			nonZeros = Arrays.copyOf(nonZeros, numTransitions + 2);
+		}
+		if (numChoices + 3 > choiceStarts.length)
+			choiceStarts = Arrays.copyOf(choiceStarts, numChoices + 3);
+		for (int r = m; r < m + 2; r++) {
+			rowStarts[r] = numChoices;
+			choiceStarts[numChoices++] = numTransitions;
+			cols[numTransitions] = r;
+			nonZeros[numTransitions++] = 1.0;
+		}
+		rowStarts[m + 2] = numChoices;
+		choiceStarts[numChoices] = numTransitions;
+
+		reduced = new MDPSparse(numStatesReduced, rowStarts, Arrays.copyOf(choiceStarts, numChoices + 1), Arrays.copyOf(cols, numTransitions),
+				Arrays.copyOf(nonZeros, numTransitions));
+	}
+
+	/**
+	 * Check whether the choice stored at {@code start}, ..., {@code start+len-1} of {@code cols}/{@code nonZeros}
+	 * is identical to one of the (previously added) choices {@code from}, ..., {@code to-1}.
+	 */
+	private static boolean isDuplicate(int from, int to, int choiceStarts[], int cols[], double nonZeros[], int hashes[], int hash, int start, int len)
+	{
+		for (int c = from; c < to; c++) {
+			if (hashes[c] != hash)
+				continue;
+			int cStart = choiceStarts[c];
+			int cLen = (c + 1 < to ? choiceStarts[c + 1] : start) - cStart;
+			if (cLen != len)
+				continue;
+			boolean same = true;
+			for (int j = 0; j < len && same; j++) {
+				same = cols[cStart + j] == cols[start + j] && nonZeros[cStart + j] == nonZeros[start + j];
+			}
+			if (same)
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Get the reduced model.
+	 */
+	public MDPSparse getReducedModel()
+	{
+		return reduced;
+	}
+
+	/**
+	 * Get the probability 1 states of the reduced model (a single absorbing state).
+	 */
+	public BitSet getYes()
+	{
+		BitSet yes = new BitSet(numStatesReduced);
+		yes.set(numStatesReduced - 2);
+		return yes;
+	}
+
+	/**
+	 * Get the probability 0 states of the reduced model (a single absorbing state).
+	 */
+	public BitSet getNo()
+	{
+		BitSet no = new BitSet(numStatesReduced);
+		no.set(numStatesReduced - 1);
+		return no;
+	}
+
+	/**
+	 * Get the number of maybe states of the original model.
+	 */
+	public int getNumMaybeStates()
+	{
+		return numMaybe;
+	}
+
+	/**
+	 * Get the number of choices of the maybe states of the original model.
+	 */
+	public int getNumMaybeChoices()
+	{
+		return numMaybeChoices;
+	}
+
+	/**
+	 * Map a vector over the states of the original model (e.g. an initial solution) to the reduced model.
+	 * The values of the yes/no states are 1 and 0, respectively.
+	 */
+	public double[] mapToReducedModel(double vect[])
+	{
+		if (vect == null)
+			return null;
+		double vectReduced[] = new double[numStatesReduced];
+		for (int r = 0; r < kept.length; r++) {
+			vectReduced[r] = vect[kept[r]];
+		}
+		vectReduced[numStatesReduced - 2] = 1.0;
+		return vectReduced;
+	}
+
+	/**
+	 * Map a set of states of the original model to the (maybe states of the) reduced model.
+	 */
+	public BitSet mapToReducedModel(BitSet set)
+	{
+		if (set == null)
+			return null;
+		BitSet setReduced = new BitSet(numStatesReduced);
+		for (int r = 0; r < kept.length; r++) {
+			if (set.get(kept[r]))
+				setReduced.set(r);
+		}
+		return setReduced;
+	}
+
+	/**
+	 * Lift a vector over the states of the reduced model to the original model.
+	 */
+	public double[] liftToOriginalModel(double vectReduced[])
+	{
+		if (vectReduced == null)
+			return null;
+		double vect[] = new double[numStates];
+		for (int s = 0; s < numStates; s++) {
+			vect[s] = vectReduced[map[s]];
+		}
+		return vect;
+	}
+
+	/**
+	 * Lift the vectors of a result for the reduced model (solution, bounds) to the original model.
+	 */
+	public void liftToOriginalModel(ModelCheckerResult res)
+	{
+		res.soln = liftToOriginalModel(res.soln);
+		res.lastSoln = liftToOriginalModel(res.lastSoln);
+		res.lowerBound = liftToOriginalModel(res.lowerBound);
+		res.upperBound = liftToOriginalModel(res.upperBound);
+	}
+}
@@ -30,12 +30,14 @@ import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.BitSet;
+import java.util.Collections;
 import java.util.Deque;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Vector;
+import java.util.concurrent.ForkJoinPool;
 
 import parser.VarList;
 import parser.ast.Declaration;
@@ -51,6 +53,8 @@ import prism.PrismDevNullLog;
 import prism.PrismException;
 import prism.PrismFileLog;
 import prism.PrismLog;
+import prism.PrismSettings;
+import prism.PrismNotSupportedException;
 import prism.PrismUtils;
 import strat.MDStrategyArray;
 import strat.MDStrategy;
@@ -513,7 +517,16 @@ public class MDPModelChecker extends ProbModelChecker
 		mainLog.println("\nComputing reachability probabilities...");
 		mcProduct = new MDPModelChecker(this);
 		mcProduct.inheritSettings(this);
-		probsProduct = StateValues.createFromDoubleArray(mcProduct.computeReachProbs((MDP)product.getProductModel(), acc, false).soln, product.getProductModel());
+		double solnProduct[];
+		if (useProductBisim()) {
+			// Solve on the product, minimised w.r.t. the accepting states
+			Bisimulation bisim = new Bisimulation(this);
+			MDP productMin = (MDP) bisim.minimise(product.getProductModel(), Collections.singletonList("acc"), Collections.singletonList(acc));
+			solnProduct = bisim.liftToOriginalModel(mcProduct.computeReachProbs(productMin, productMin.getLabelStates("acc"), false).soln);
+		} else {
+			solnProduct = mcProduct.computeReachProbs((MDP)product.getProductModel(), acc, false).soln;
+		}
+		probsProduct = StateValues.createFromDoubleArray(solnProduct, product.getProductModel());
 
 		// Subtract from 1 if we're model checking a negated formula for regular Pmin
 		if (minMax.isMin()) {
@@ -536,6 +549,24 @@ public class MDPModelChecker extends ProbModelChecker
 		return probs;
 	}
 
+	/**
+	 * Whether to perform bisimulation minimisation on LTL products before solving them.
+	 * This is not done if a strategy/adversary is needed, since that would be for the minimised product.
+	 */
+	protected boolean useProductBisim()
+	{
+		return settings != null && settings.getBoolean(PrismSettings.PRISM_PRODUCT_BISIM) && !genStrat && !exportAdv;
+	}
+
+	/**
+	 * Whether to solve reachability probabilities on a model reduced to the "maybe" states
+	 * (see {@link MDPMaybeReduction}).
+	 */
+	protected boolean useMaybeReduction()
+	{
+		return settings != null && settings.getBoolean(PrismSettings.PRISM_REDUCE_MAYBE);
+	}
+
 	/**
 	 * Compute rewards for a co-safe LTL reward operator.
 	 */
@@ -592,7 +623,19 @@ public class MDPModelChecker extends ProbModelChecker
 		mainLog.println("\nComputing reachability rewards...");
 		mcProduct = new MDPModelChecker(this);
 		mcProduct.inheritSettings(this);
-		rewardsProduct = StateValues.createFromDoubleArray(mcProduct.computeReachRewards(product.getProductModel(), productRewards, acc, minMax.isMin()).soln, product.getProductModel());
+		double solnProduct[];
+		if (useProductBisim()) {
+			// Solve on the product, minimised w.r.t. the accepting states and rewards
+			Bisimulation bisim = new Bisimulation(this);
+			List<Rewards> productRewardsMin = new ArrayList<Rewards>();
+			MDP productMin = (MDP) bisim.minimise(product.getProductModel(), Collections.singletonList("acc"), Collections.singletonList(acc),
+					Collections.singletonList(productRewards), productRewardsMin);
+			MDPRewards rewardsMin = (MDPRewards) productRewardsMin.get(0);
+			solnProduct = bisim.liftToOriginalModel(mcProduct.computeReachRewards(productMin, rewardsMin, productMin.getLabelStates("acc"), minMax.isMin()).soln);
+		} else {
+			solnProduct = mcProduct.computeReachRewards(product.getProductModel(), productRewards, acc, minMax.isMin()).soln;
+		}
+		rewardsProduct = StateValues.createFromDoubleArray(solnProduct, product.getProductModel());
 		
 		// Output vector over product, if required
 		if (getExportProductVector()) {
@@ -741,6 +784,9 @@ public class MDPModelChecker extends ProbModelChecker
 				throw new PrismException("Policy iteration methods cannot be passed 'known' values for some states");
 			}
 		}
+		if (mdpSolnMethod == MDPSolnMethod.INTERVAL_ITERATION && !(precomp && prob0)) {
+			throw new PrismException("Precomputation (Prob0) must be enabled for interval iteration");
+		}
 
 		// Start probabilistic reachability
 		timer = System.currentTimeMillis();
@@ -825,6 +871,22 @@ public class MDPModelChecker extends ProbModelChecker
 
 		// Compute probabilities (if needed)
 		if (numYes + numNo < n) {
+			// If required, solve on a reduced model, comprising just the maybe states
+			MDPMaybeReduction reduction = null;
+			if (useMaybeReduction() && strat == null) {
+				long timerReduce = System.currentTimeMillis();
+				reduction = new MDPMaybeReduction(mdp, no, yes, min, known);
+				MDPSparse mdpReduced = reduction.getReducedModel();
+				timerReduce = System.currentTimeMillis() - timerReduce;
+				mainLog.print("Reduced maybe states: " + reduction.getNumMaybeStates() + " states, " + reduction.getNumMaybeChoices() + " choices");
+				mainLog.print(" to " + (mdpReduced.getNumStates() - 2) + " states, " + (mdpReduced.getNumChoices() - 2) + " choices");
+				mainLog.println(" (" + timerReduce / 1000.0 + " seconds)");
+				mdp = mdpReduced;
+				no = reduction.getNo();
+				yes = reduction.getYes();
+				init = reduction.mapToReducedModel(init);
+				known = reduction.mapToReducedModel(known);
+			}
 			switch (mdpSolnMethod) {
 			case VALUE_ITERATION:
 				res = computeReachProbsValIter(mdp, no, yes, min, init, known, strat);
@@ -838,9 +900,18 @@ public class MDPModelChecker extends ProbModelChecker
 			case MODIFIED_POLICY_ITERATION:
 				res = computeReachProbsModPolIter(mdp, no, yes, min, strat);
 				break;
+			case INTERVAL_ITERATION:
+				res = computeReachProbsIntervalIter(mdp, no, yes, min, init, known, strat);
+				break;
+			case OPTIMISTIC_VALUE_ITERATION:
+				res = computeReachProbsOptimistic(mdp, no, yes, min, init, known, strat);
+				break;
 			default:
 				throw new PrismException("Unknown MDP solution method " + mdpSolnMethod.fullName());
 			}
+			if (reduction != null) {
+				reduction.liftToOriginalModel(res);
+			}
 		} else {
 			res = new ModelCheckerResult();
 			res.soln = Utils.bitsetToDoubleArray(yes, n);
@@ -872,6 +943,100 @@ public class MDPModelChecker extends ProbModelChecker
 		return res;
 	}
 
+	/**
+	 * Compute reachability probabilities for several target sets at once,
+	 * i.e. compute, for each target set in {@code targets}, the min/max probability of reaching a state in it.
+	 * See {@link #computeUntilProbsMulti(MDP, BitSet, List, boolean)}.
+	 * @param mdp The MDP
+	 * @param targets Target state sets
+	 * @param min Min or max probabilities (true=min, false=max)
+	 */
+	public List<ModelCheckerResult> computeReachProbsMulti(MDP mdp, List<BitSet> targets, boolean min) throws PrismException
+	{
+		return computeUntilProbsMulti(mdp, null, targets, min);
+	}
+
+	/**
+	 * Compute until probabilities for several target sets at once,
+	 * i.e. compute, for each target set in {@code targets}, the min/max probability of reaching a state in it,
+	 * while remaining in those in {@code remain}.
+	 * Precomputation (Prob0/Prob1) is done separately for each target set, but the numerical
+	 * computation is a single value iteration over all of them, storing the solution vectors
+	 * interleaved, so that the transitions of each state are read once per iteration for all targets
+	 * (see {@link MDP#mvMultMinMaxMulti(double[], int, boolean, double[], BitSet, BitSet[])}).
+	 * Strategy generation is not supported. Results are returned in the same order as {@code targets}.
+	 * @param mdp The MDP
+	 * @param remain Remain in these states (optional: null means "all")
+	 * @param targets Target state sets
+	 * @param min Min or max probabilities (true=min, false=max)
+	 */
+	public List<ModelCheckerResult> computeUntilProbsMulti(MDP mdp, BitSet remain, List<BitSet> targets, boolean min) throws PrismException
+	{
+		List<ModelCheckerResult> res;
+		List<BitSet> nos, yeses;
+		BitSet no, yes;
+		int n, k, numYes, numNo;
+		long timer, timerProb0, timerProb1;
+
+		// Check for some unsupported combinations
+		if (valIterDir == ValIterDir.ABOVE) {
+			if (!(precomp && prob0))
+				throw new PrismException("Precomputation (Prob0) must be enabled for value iteration from above");
+			if (!min)
+				throw new PrismException("Value iteration from above only works for minimum probabilities");
+		}
+		if (genStrat || exportAdv) {
+			throw new PrismNotSupportedException("Strategy generation is not supported for multiple targets");
+		}
+
+		// Start probabilistic reachability
+		timer = System.currentTimeMillis();
+		k = targets.size();
+		mainLog.println("\nStarting probabilistic reachability (" + (min ? "min" : "max") + ") for " + k + " targets...");
+
+		// Store num states
+		n = mdp.getNumStates();
+		if ((long) n * k > Integer.MAX_VALUE) {
+			throw new PrismException("Too many targets (" + k + ") for batched probabilistic reachability");
+		}
+
+		// Precomputation, for each target
+		nos = new ArrayList<BitSet>(k);
+		yeses = new ArrayList<BitSet>(k);
+		timerProb0 = timerProb1 = 0;
+		for (BitSet target : targets) {
+			// Check for deadlocks in non-target state (because breaks e.g. prob1)
+			mdp.checkForDeadlocks(target);
+			long timerPre = System.currentTimeMillis();
+			no = (precomp && prob0) ? prob0(mdp, remain, target, min, null) : new BitSet();
+			timerProb0 += System.currentTimeMillis() - timerPre;
+			timerPre = System.currentTimeMillis();
+			yes = (precomp && prob1) ? prob1(mdp, remain, target, min, null) : (BitSet) target.clone();
+			timerProb1 += System.currentTimeMillis() - timerPre;
+			numYes = yes.cardinality();
+			numNo = no.cardinality();
+			mainLog.println("target=" + target.cardinality() + ", yes=" + numYes + ", no=" + numNo + ", maybe=" + (n - (numYes + numNo)));
+			nos.add(no);
+			yeses.add(yes);
+		}
+
+		// Compute probabilities
+		res = computeReachProbsValIterMulti(mdp, nos, yeses, min);
+
+		// Finished probabilistic reachability
+		timer = System.currentTimeMillis() - timer;
+		mainLog.println("Probabilistic reachability took " + timer / 1000.0 + " seconds.");
+
+		// Update time taken
+		for (ModelCheckerResult r : res) {
+			r.timeTaken = timer / 1000.0;
+			r.timeProb0 = timerProb0 / 1000.0;
+			r.timePre = (timerProb0 + timerProb1) / 1000.0;
+		}
+
+		return res;
+	}
+
 	/**
 	 * Prob0 precomputation algorithm.
 	 * i.e. determine the states of an MDP which, with min/max probability 0,
@@ -891,6 +1056,18 @@ public class MDPModelChecker extends ProbModelChecker
 		boolean u_done;
 		long timer;
 
+		// Use predecessor-based algorithm, if enabled
+		if (preRel) {
+			return prob0(mdp, remain, target, min, strat, mdp.getPredecessorRelation(this, true));
+		}
+
+		// Re-use previously computed result, if available (and no strategy is needed)
+		if (strat == null) {
+			BitSet cached = getCachedPrecompResult(mdp, "Prob0 (" + (min ? "min" : "max") + ")", remain, target, min);
+			if (cached != null)
+				return cached;
+		}
+
 		// Start precomputation
 		timer = System.currentTimeMillis();
 		mainLog.println("Starting Prob0 (" + (min ? "min" : "max") + ")...");
@@ -923,7 +1100,9 @@ public class MDPModelChecker extends ProbModelChecker
 		soln.or(target);
 		while (!u_done) {
 			iters++;
-			// Single step of Prob0
+			// Single step of Prob0 (the iteration is monotonic,
+			// so states already in u need not be considered again)
+			unknown.andNot(u);
 			mdp.prob0step(unknown, u, min, soln);
 			// Check termination
 			u_done = soln.equals(u);
@@ -949,12 +1128,14 @@ public class MDPModelChecker extends ProbModelChecker
 				for (int k = 0; k < numChoices; k++) {
 					if (mdp.allSuccessorsInSet(i, k, u)) {
 						strat[i] = k;
-						continue;
+						break;
 					}
 				}
 			}
 		}
 
+		cachePrecompResult(mdp, "Prob0 (" + (min ? "min" : "max") + ")", remain, target, min, u);
+
 		return u;
 	}
 
@@ -973,10 +1154,22 @@ public class MDPModelChecker extends ProbModelChecker
 	public BitSet prob1(MDP mdp, BitSet remain, BitSet target, boolean min, int strat[])
 	{
 		int n, iters;
-		BitSet u, v, soln, unknown;
+		BitSet u, v, soln, unknown, todo;
 		boolean u_done, v_done;
 		long timer;
 
+		// Use predecessor-based algorithm, if enabled
+		if (preRel) {
+			return prob1(mdp, remain, target, min, strat, mdp.getPredecessorRelation(this, true));
+		}
+
+		// Re-use previously computed result, if available (and no strategy is needed)
+		if (strat == null) {
+			BitSet cached = getCachedPrecompResult(mdp, "Prob1 (" + (min ? "min" : "max") + ")", remain, target, min);
+			if (cached != null)
+				return cached;
+		}
+
 		// Start precomputation
 		timer = System.currentTimeMillis();
 		mainLog.println("Starting Prob1 (" + (min ? "min" : "max") + ")...");
@@ -1004,6 +1197,7 @@ public class MDPModelChecker extends ProbModelChecker
 		u_done = false;
 		// Greatest fixed point
 		u.set(0, n);
+		todo = new BitSet(n);
 		while (!u_done) {
 			v_done = false;
 			// Least fixed point - should start from 0 but we optimise by
@@ -1012,13 +1206,17 @@ public class MDPModelChecker extends ProbModelChecker
 			v.or(target);
 			soln.clear();
 			soln.or(target);
+			todo.clear();
+			todo.or(unknown);
 			while (!v_done) {
 				iters++;
-				// Single step of Prob1
+				// Single step of Prob1 (the inner iteration is monotonic,
+				// so states already in v need not be considered again)
+				todo.andNot(v);
 				if (min)
-					mdp.prob1Astep(unknown, u, v, soln);
+					mdp.prob1Astep(todo, u, v, soln);
 				else
-					mdp.prob1Estep(unknown, u, v, soln, null);
+					mdp.prob1Estep(todo, u, v, soln, null);
 				// Check termination (inner)
 				v_done = soln.equals(v);
 				// v = soln
@@ -1047,6 +1245,7 @@ public class MDPModelChecker extends ProbModelChecker
 			soln.clear();
 			soln.or(target);
 			while (!v_done) {
+				unknown.andNot(v);
 				mdp.prob1Estep(unknown, u, v, soln, strat);
 				v_done = soln.equals(v);
 				v.clear();
@@ -1060,9 +1259,142 @@ public class MDPModelChecker extends ProbModelChecker
 		mainLog.print("Prob1 (" + (min ? "min" : "max") + ")");
 		mainLog.println(" took " + iters + " iterations and " + timer / 1000.0 + " seconds.");
 
+		cachePrecompResult(mdp, "Prob1 (" + (min ? "min" : "max") + ")", remain, target, min, u);
+
 		return u;
 	}
 
+	/**
+	 * Prob0 precomputation algorithm (using predecessor relation),
+	 * i.e. determine the states of an MDP which, with min/max probability 0,
+	 * reach a state in {@code target}, while remaining in those in {@code remain}.
+	 * For max, this is the complement of backwards reachability from {@code target};
+	 * for min, it is the complement of the attractor of {@code target}
+	 * (see {@link PredecessorRelation#calculatePreStarForall(BitSet, BitSet)}).
+	 * Optionally, for min only, store optimal (memoryless) strategy info for 0 states. 
+	 * @param mdp The MDP
+	 * @param remain Remain in these states (optional: null means "all")
+	 * @param target Target states
+	 * @param min Min or max probabilities (true=min, false=max)
+	 * @param strat Storage for (memoryless) strategy choice indices (ignored if null)
+	 * @param pre The predecessor relation of the MDP
+	 */
+	public BitSet prob0(MDP mdp, BitSet remain, BitSet target, boolean min, int strat[], PredecessorRelation pre)
+	{
+		BitSet result;
+		long timer;
+
+		// Re-use previously computed result, if available (and no strategy is needed)
+		if (strat == null) {
+			BitSet cached = getCachedPrecompResult(mdp, "Prob0 (" + (min ? "min" : "max") + ")", remain, target, min);
+			if (cached != null)
+				return cached;
+		}
+
+		// Start precomputation
+		timer = System.currentTimeMillis();
+		mainLog.println("Starting Prob0 (" + (min ? "min" : "max") + ")...");
+
+		// Special case: no target states
+		if (target.isEmpty()) {
+			result = new BitSet(mdp.getNumStates());
+			result.set(0, mdp.getNumStates());
+			return result;
+		}
+
+		// Compute states that can (for max) or must (for min) reach target with positive probability
+		// (with large search frontiers expanded in parallel, if enabled)
+		ForkJoinPool pool = getParallelPool(mdp.getNumStates());
+		if (min) {
+			result = pre.calculatePreStarForall(remain, target, pool);
+		} else {
+			result = pre.calculatePreStar(remain, target, target, pool);
+		}
+		// Negate
+		result.flip(0, mdp.getNumStates());
+
+		// Finished precomputation
+		timer = System.currentTimeMillis() - timer;
+		mainLog.print("Prob0 (" + (min ? "min" : "max") + ")");
+		mainLog.println(" took " + timer / 1000.0 + " seconds.");
+
+		// If required, generate strategy (for min probs):
+		// for all "no" states, pick the first choice for which all transitions stay in "no"
+		if (strat != null) {
+			for (int i = result.nextSetBit(0); i >= 0; i = result.nextSetBit(i + 1)) {
+				int numChoices = mdp.getNumChoices(i);
+				for (int k = 0; k < numChoices; k++) {
+					if (mdp.allSuccessorsInSet(i, k, result)) {
+						strat[i] = k;
+						break;
+					}
+				}
+			}
+		}
+
+		cachePrecompResult(mdp, "Prob0 (" + (min ? "min" : "max") + ")", remain, target, min, result);
+
+		return result;
+	}
+
+	/**
+	 * Prob1 precomputation algorithm (using predecessor relation),
+	 * i.e. determine the states of an MDP which, with min/max probability 1,
+	 * reach a state in {@code target}, while remaining in those in {@code remain}.
+	 * For min (Prob1A), these are the states that cannot reach (via states in {@code remain}
+	 * but not {@code target}) a state with min probability 0; for max (Prob1E),
+	 * see {@link PredecessorRelation#calculateProb1E(BitSet, BitSet, int[])}.
+	 * Optionally, for max only, store optimal (memoryless) strategy info for 1 states. 
+	 * @param mdp The MDP
+	 * @param remain Remain in these states (optional: null means "all")
+	 * @param target Target states
+	 * @param min Min or max probabilities (true=min, false=max)
+	 * @param strat Storage for (memoryless) strategy choice indices (ignored if null)
+	 * @param pre The predecessor relation of the MDP
+	 */
+	public BitSet prob1(MDP mdp, BitSet remain, BitSet target, boolean min, int strat[], PredecessorRelation pre)
+	{
+		BitSet result;
+		long timer;
+
+		// Re-use previously computed result, if available (and no strategy is needed)
+		if (strat == null) {
+			BitSet cached = getCachedPrecompResult(mdp, "Prob1 (" + (min ? "min" : "max") + ")", remain, target, min);
+			if (cached != null)
+				return cached;
+		}
+
+		// Start precomputation
+		timer = System.currentTimeMillis();
+		mainLog.println("Starting Prob1 (" + (min ? "min" : "max") + ")...");
+
+		// Special case: no target states
+		if (target.isEmpty()) {
+			return new BitSet(mdp.getNumStates());
+		}
+
+		ForkJoinPool pool = getParallelPool(mdp.getNumStates());
+		if (min) {
+			// States with min probability 0 (including those outside remain)
+			BitSet zero = pre.calculatePreStarForall(remain, target, pool);
+			zero.flip(0, mdp.getNumStates());
+			// States that can reach them (target states are absorbing)
+			result = pre.calculatePreStar(remain, zero, target, pool);
+			result.flip(0, mdp.getNumStates());
+		} else {
+			result = pre.calculateProb1E(remain, target, strat, pool);
+		}
+
+		// Finished precomputation
+		timer = System.currentTimeMillis() - timer;
+		mainLog.print("Prob1 (" + (min ? "min" : "max") + ")");
+		mainLog.println(" took " + timer / 1000.0 + " seconds.");
+
+		cachePrecompResult(mdp, "Prob1 (" + (min ? "min" : "max") + ")", remain, target, min, result);
+
+		return result;
+	}
+
 	
 	protected MDPRewards buildMixRewards(MDP mdp, BitSet acc, MDPRewards progRewards, MDPRewards prodCosts)
 	{		
@@ -1493,7 +1825,7 @@ public class MDPModelChecker extends ProbModelChecker
 		while (!done && iters < maxIters) {
 			iters++;
 			// Matrix-vector multiply and min/max ops
-			mdp.mvMultMinMax(soln, min, soln2, unknown, false, strat);
+			mvMultMinMax(mdp, soln, min, soln2, unknown, false, strat);
 			// Check termination
 			done = PrismUtils.doublesAreClose(soln, soln2, termCritParam, termCrit == TermCrit.ABSOLUTE);
 			// Swap vectors for next iter
@@ -1522,6 +1854,93 @@ public class MDPModelChecker extends ProbModelChecker
 		return res;
 	}
 
+	/**
+	 * Compute reachability probabilities for several target sets at once using value iteration,
+	 * with the solution vectors stored interleaved (the value of state s for target j is at index s*k+j).
+	 * @param mdp The MDP
+	 * @param nos Probability 0 states, for each target
+	 * @param yeses Probability 1 states, for each target
+	 * @param min Min or max probabilities (true=min, false=max)
+	 */
+	protected List<ModelCheckerResult> computeReachProbsValIterMulti(MDP mdp, List<BitSet> nos, List<BitSet> yeses, boolean min) throws PrismException
+	{
+		List<ModelCheckerResult> res;
+		BitSet unknown[], unknownAll, no, yes;
+		int i, j, n, k, iters;
+		double soln[], soln2[], tmpsoln[], initVal;
+		boolean done;
+		long timer;
+
+		// Start value iteration
+		timer = System.currentTimeMillis();
+		k = nos.size();
+		mainLog.println("Starting value iteration (" + (min ? "min" : "max") + ") for " + k + " targets...");
+
+		// Store num states
+		n = mdp.getNumStates();
+
+		// Create solution vectors (interleaved)
+		soln = new double[n * k];
+		soln2 = new double[n * k];
+
+		// Initialise solution vectors, and determine, for each target,
+		// the set of states actually need to compute values for
+		initVal = (valIterDir == ValIterDir.BELOW) ? 0.0 : 1.0;
+		unknown = new BitSet[k];
+		unknownAll = new BitSet();
+		for (j = 0; j < k; j++) {
+			no = nos.get(j);
+			yes = yeses.get(j);
+			for (i = 0; i < n; i++)
+				soln[i * k + j] = soln2[i * k + j] = yes.get(i) ? 1.0 : no.get(i) ? 0.0 : initVal;
+			unknown[j] = new BitSet();
+			unknown[j].set(0, n);
+			unknown[j].andNot(yes);
+			unknown[j].andNot(no);
+			unknownAll.or(unknown[j]);
+		}
+
+		// Start iterations
+		iters = 0;
+		done = unknownAll.isEmpty();
+		while (!done && iters < maxIters) {
+			iters++;
+			// Matrix-vector multiply and min/max ops
+			mdp.mvMultMinMaxMulti(soln, k, min, soln2, unknownAll, unknown);
+			// Check termination
+			done = PrismUtils.doublesAreClose(soln, soln2, termCritParam, termCrit == TermCrit.ABSOLUTE);
+			// Swap vectors for next iter
+			tmpsoln = soln;
+			soln = soln2;
+			soln2 = tmpsoln;
+		}
+
+		// Finished value iteration
+		timer = System.currentTimeMillis() - timer;
+		mainLog.print("Value iteration (" + (min ? "min" : "max") + ")");
+		mainLog.println(" took " + iters + " iterations and " + timer / 1000.0 + " seconds.");
+
+		// Non-convergence is an error (usually)
+		if (!done && errorOnNonConverge) {
+			String msg = "Iterative method did not converge within " + iters + " iterations.";
+			msg += "\nConsider using a different numerical method or increasing the maximum number of iterations";
+			throw new PrismException(msg);
+		}
+
+		// Return results (de-interleaved)
+		res = new ArrayList<ModelCheckerResult>(k);
+		for (j = 0; j < k; j++) {
+			ModelCheckerResult r = new ModelCheckerResult();
+			r.soln = new double[n];
+			for (i = 0; i < n; i++)
+				r.soln[i] = soln[i * k + j];
+			r.numIters = iters;
+			r.timeTaken = timer / 1000.0;
+			res.add(r);
+		}
+		return res;
+	}
+
 	/**
 	 * Compute reachability probabilities using Gauss-Seidel (including Jacobi-style updates).
 	 * @param mdp The MDP
@@ -1584,7 +2003,7 @@ public class MDPModelChecker extends ProbModelChecker
 		while (!done && iters < maxIters) {
 			iters++;
 			// Matrix-vector multiply
-			maxDiff = mdp.mvMultGSMinMax(soln, min, unknown, false, termCrit == TermCrit.ABSOLUTE, strat);
+			maxDiff = mvMultGSMinMax(mdp, soln, min, unknown, false, termCrit == TermCrit.ABSOLUTE, strat);
 			// Check termination
 			done = maxDiff < termCritParam;
 		}
@@ -1610,70 +2029,335 @@ public class MDPModelChecker extends ProbModelChecker
 	}
 
 	/**
-	 * Compute reachability probabilities using policy iteration.
-	 * Optionally, store optimal (memoryless) strategy info. 
-	 * @param mdp: The MDP
-	 * @param no: Probability 0 states
-	 * @param yes: Probability 1 states
-	 * @param min: Min or max probabilities (true=min, false=max)
+	 * Compute reachability probabilities using interval iteration,
+	 * i.e. value iteration from below and from above at the same time,
+	 * stopping when the two bounds are within the required precision.
+	 * For max probabilities, the upper bound is computed on the MDP in which
+	 * maximal end components (MECs) of the unknown states are collapsed, without which it would not converge.
+	 * Requires Prob0 precomputation to have been done (for min probabilities). 
+	 * @param mdp The MDP
+	 * @param no Probability 0 states
+	 * @param yes Probability 1 states
+	 * @param min Min or max probabilities (true=min, false=max)
+	 * @param init Optionally, an initial solution vector (only used for 'known' states) 
+	 * @param known Optionally, a set of states for which the exact answer is known
 	 * @param strat Storage for (memoryless) strategy choice indices (ignored if null)
+	 * Note: if 'known' is specified (i.e. is non-null, 'init' must also be given and is used for the exact values.  
 	 */
-	protected ModelCheckerResult computeReachProbsPolIter(MDP mdp, BitSet no, BitSet yes, boolean min, int strat[]) throws PrismException
+	protected ModelCheckerResult computeReachProbsIntervalIter(MDP mdp, BitSet no, BitSet yes, boolean min, double init[], BitSet known, int strat[])
+			throws PrismException
 	{
 		ModelCheckerResult res;
-		int i, n, iters, totalIters;
-		double soln[], soln2[];
+		BitSet unknown;
+		List<BitSet> mecs = null;
+		int i, n, iters;
+		double lower[], lower2[], upper[], upper2[], tmpsoln[];
 		boolean done;
 		long timer;
-		DTMCModelChecker mcDTMC;
-		DTMC dtmc;
-
-		// Re-use solution to solve each new policy (strategy)?
-		boolean reUseSoln = true;
 
-		// Start policy iteration
+		// Start interval iteration
 		timer = System.currentTimeMillis();
-		mainLog.println("Starting policy iteration (" + (min ? "min" : "max") + ")...");
-
-		// Create a DTMC model checker (for solving policies)
-		mcDTMC = new DTMCModelChecker(this);
-		mcDTMC.inheritSettings(this);
-		mcDTMC.setLog(new PrismDevNullLog());
+		mainLog.println("Starting interval iteration (" + (min ? "min" : "max") + ")...");
 
 		// Store num states
 		n = mdp.getNumStates();
 
 		// Create solution vectors
-		soln = new double[n];
-		soln2 = new double[n];
-
-		// Initialise solution vectors.
-		for (i = 0; i < n; i++)
-			soln[i] = soln2[i] = yes.get(i) ? 1.0 : 0.0;
+		lower = new double[n];
+		lower2 = new double[n];
+		upper = new double[n];
+		upper2 = new double[n];
 
-		// If not passed in, create new storage for strategy and initialise
-		// Initial strategy just picks first choice (0) everywhere
-		if (strat == null) {
-			strat = new int[n];
-			for (i = 0; i < n; i++)
-				strat[i] = 0;
-		}
-		// Otherwise, just initialise for states not in yes/no
-		// (Optimal choices for yes/no should already be known)
-		else {
-			for (i = 0; i < n; i++)
-				if (!(no.get(i) || yes.get(i)))
-					strat[i] = 0;
+		// Initialise solution vectors. Use (where available) the following in order of preference:
+		// (1) exact answer, if already known; (2) 1.0/0.0 if in yes/no; (3) 0.0 (lower) or 1.0 (upper)
+		for (i = 0; i < n; i++) {
+			if (known != null && known.get(i)) {
+				lower[i] = lower2[i] = upper[i] = upper2[i] = init[i];
+			} else {
+				lower[i] = lower2[i] = yes.get(i) ? 1.0 : 0.0;
+				upper[i] = upper2[i] = no.get(i) ? 0.0 : 1.0;
+			}
 		}
 
-		// Start iterations
-		iters = totalIters = 0;
+		// Determine set of states actually need to compute values for
+		unknown = new BitSet();
+		unknown.set(0, n);
+		unknown.andNot(yes);
+		unknown.andNot(no);
+		if (known != null)
+			unknown.andNot(known);
+
+		// For max, find MECs amongst unknown states (to be collapsed for the upper bound)
+		if (!min) {
+			ECComputer ecComputer = ECComputer.createECComputer(this, mdp);
+			ecComputer.computeMECStates((BitSet) unknown.clone());
+			mecs = ecComputer.getMECStates();
+			mainLog.println("Found " + mecs.size() + " MECs amongst unknown states");
+		}
+
+		// Start iterations
+		iters = 0;
+		done = false;
+		while (!done && iters < maxIters) {
+			iters++;
+			// Matrix-vector multiply and min/max ops
+			mdp.mvMultMinMax(lower, min, lower2, unknown, false, strat);
+			mdp.mvMultMinMax(upper, min, upper2, unknown, false, null);
+			if (mecs != null) {
+				collapseMECsMax(mdp, mecs, upper, upper2);
+			}
+			// Check termination
+			done = PrismUtils.doublesAreClose(lower2, upper2, termCritParam, termCrit == TermCrit.ABSOLUTE);
+			// Swap vectors for next iter
+			tmpsoln = lower;
+			lower = lower2;
+			lower2 = tmpsoln;
+			tmpsoln = upper;
+			upper = upper2;
+			upper2 = tmpsoln;
+		}
+
+		// Finished interval iteration
+		timer = System.currentTimeMillis() - timer;
+		mainLog.print("Interval iteration (" + (min ? "min" : "max") + ")");
+		mainLog.println(" took " + iters + " iterations and " + timer / 1000.0 + " seconds.");
+
+		// Non-convergence is an error (usually)
+		if (!done && errorOnNonConverge) {
+			String msg = "Iterative method did not converge within " + iters + " iterations.";
+			msg += "\nConsider using a different numerical method or increasing the maximum number of iterations";
+			throw new PrismException(msg);
+		}
+
+		// Return results (midpoint of the two bounds)
+		res = new ModelCheckerResult();
+		res.soln = PrismUtils.midpoint(lower, upper);
+		res.numIters = iters;
+		res.timeTaken = timer / 1000.0;
+		return res;
+	}
+
+	/**
+	 * For interval iteration (max), update the upper bounds {@code result}, computed from {@code vect},
+	 * for states in MECs, as if each MEC was collapsed into a single state:
+	 * all states of an MEC get the maximum value over choices that leave the MEC.
+	 */
+	protected void collapseMECsMax(MDP mdp, List<BitSet> mecs, double vect[], double result[])
+	{
+		for (BitSet mec : mecs) {
+			double d = 0.0;
+			for (int s = mec.nextSetBit(0); s >= 0; s = mec.nextSetBit(s + 1)) {
+				int numChoices = mdp.getNumChoices(s);
+				for (int i = 0; i < numChoices; i++) {
+					if (!mdp.allSuccessorsInSet(s, i, mec)) {
+						d = Math.max(d, mdp.mvMultSingle(s, i, vect));
+					}
+				}
+			}
+			for (int s = mec.nextSetBit(0); s >= 0; s = mec.nextSetBit(s + 1)) {
+				result[s] = Math.min(result[s], d);
+			}
+		}
+	}
+
+	/**
+	 * Compute reachability probabilities using optimistic value iteration.
+	 * Gauss-Seidel value iteration is run from below until successive solutions are close.
+	 * Then an upper bound is guessed (the lower bound plus the termination threshold)
+	 * and verified by iterating from above until a sweep no longer increases any value,
+	 * at which point it is guaranteed to be an upper bound on the solution (the least fixed point of the operator).
+	 * If instead it drops below the lower bound, the threshold for the iteration from below is halved and the process repeated.
+	 * The certified lower/upper bounds are stored in the result, and the solution is their midpoint.
+	 * @param mdp The MDP
+	 * @param no Probability 0 states
+	 * @param yes Probability 1 states
+	 * @param min Min or max probabilities (true=min, false=max)
+	 * @param init Optionally, an initial solution vector (only used for 'known' states; will be overwritten) 
+	 * @param known Optionally, a set of states for which the exact answer is known
+	 * @param strat Storage for (memoryless) strategy choice indices (ignored if null)
+	 * Note: if 'known' is specified (i.e. is non-null, 'init' must also be given and is used for the exact values.  
+	 */
+	protected ModelCheckerResult computeReachProbsOptimistic(MDP mdp, BitSet no, BitSet yes, boolean min, double init[], BitSet known, int strat[])
+			throws PrismException
+	{
+		ModelCheckerResult res;
+		BitSet unknown;
+		int i, j, n, iters, verifs, verifIters;
+		double lower[], upper[], d, maxDiff, epsilon;
+		boolean done, absolute, increased, decreased, crossed;
+		long timer;
+
+		// Start optimistic value iteration
+		timer = System.currentTimeMillis();
+		mainLog.println("Starting optimistic value iteration (" + (min ? "min" : "max") + ")...");
+
+		// Store num states
+		n = mdp.getNumStates();
+
+		// Create solution vectors
+		lower = (init == null) ? new double[n] : init;
+		upper = new double[n];
+
+		// Initialise solution vectors. Use (where available) the following in order of preference:
+		// (1) exact answer, if already known; (2) 1.0/0.0 if in yes/no; (3) 0.0
+		// (the initial value for the lower bound needs to be a lower bound too, so other values in 'init' are ignored)
+		for (i = 0; i < n; i++) {
+			lower[i] = upper[i] = (known != null && known.get(i)) ? init[i] : yes.get(i) ? 1.0 : 0.0;
+		}
+
+		// Determine set of states actually need to compute values for
+		unknown = new BitSet();
+		unknown.set(0, n);
+		unknown.andNot(yes);
+		unknown.andNot(no);
+		if (known != null)
+			unknown.andNot(known);
+
+		// Start iterations
+		absolute = (termCrit == TermCrit.ABSOLUTE);
+		epsilon = termCritParam;
+		iters = verifs = 0;
+		done = false;
+		while (!done && iters < maxIters) {
+			iters++;
+			// Matrix-vector multiply (in place)
+			maxDiff = mdp.mvMultGSMinMax(lower, min, unknown, false, absolute, strat);
+			if (maxDiff >= epsilon) {
+				continue;
+			}
+			// Guess an upper bound
+			for (i = unknown.nextSetBit(0); i >= 0; i = unknown.nextSetBit(i + 1)) {
+				upper[i] = Math.min(1.0, absolute ? lower[i] + termCritParam : lower[i] * (1.0 + termCritParam));
+			}
+			// Verify it: iterate (in place) from above until a sweep no longer increases any value
+			// (then the upper bound is inductive, and thus a true upper bound) or it drops below
+			// the lower bound or stops decreasing (the guess failed); at most as many sweeps as iterations so far
+			verifIters = iters;
+			for (j = 0; j < verifIters && iters < maxIters; j++) {
+				iters++;
+				verifs++;
+				increased = decreased = crossed = false;
+				for (i = unknown.nextSetBit(0); i >= 0; i = unknown.nextSetBit(i + 1)) {
+					d = mdp.mvMultMinMaxSingle(i, upper, min, null);
+					// (values are never raised, so the upper bound only decreases)
+					if (d > upper[i]) {
+						increased = true;
+						continue;
+					}
+					if (d < upper[i]) {
+						decreased = true;
+					}
+					upper[i] = d;
+					if (d < lower[i]) {
+						crossed = true;
+						break;
+					}
+				}
+				if (crossed || (increased && !decreased)) {
+					break;
+				}
+				if (!increased) {
+					done = true;
+					break;
+				}
+			}
+			// If verification failed, iterate further from below
+			if (!done) {
+				epsilon /= 2;
+			}
+		}
+
+		// Finished optimistic value iteration
+		timer = System.currentTimeMillis() - timer;
+		mainLog.print("Optimistic value iteration (" + (min ? "min" : "max") + ")");
+		mainLog.println(" took " + iters + " iterations (" + verifs + " verification sweeps) and " + timer / 1000.0 + " seconds.");
+
+		// Non-convergence is an error (usually)
+		if (!done && errorOnNonConverge) {
+			String msg = "Iterative method did not converge within " + iters + " iterations.";
+			msg += "\nConsider using a different numerical method or increasing the maximum number of iterations";
+			throw new PrismException(msg);
+		}
+
+		// Return results (midpoint of the two bounds)
+		res = new ModelCheckerResult();
+		res.lowerBound = lower;
+		res.upperBound = upper;
+		res.soln = PrismUtils.midpoint(lower.clone(), upper);
+		res.numIters = iters;
+		res.timeTaken = timer / 1000.0;
+		return res;
+	}
+
+	/**
+	 * Compute reachability probabilities using policy iteration.
+	 * Optionally, store optimal (memoryless) strategy info. 
+	 * @param mdp: The MDP
+	 * @param no: Probability 0 states
+	 * @param yes: Probability 1 states
+	 * @param min: Min or max probabilities (true=min, false=max)
+	 * @param strat Storage for (memoryless) strategy choice indices (ignored if null)
+	 */
+	protected ModelCheckerResult computeReachProbsPolIter(MDP mdp, BitSet no, BitSet yes, boolean min, int strat[]) throws PrismException
+	{
+		ModelCheckerResult res;
+		int i, n, iters, totalIters;
+		double soln[], soln2[];
+		boolean done;
+		long timer;
+		DTMCModelChecker mcDTMC;
+		DTMC dtmc;
+
+		// Re-use solution to solve each new policy (strategy)?
+		boolean reUseSoln = true;
+
+		// Start policy iteration
+		timer = System.currentTimeMillis();
+		mainLog.println("Starting policy iteration (" + (min ? "min" : "max") + ")...");
+
+		// Create a DTMC model checker (for solving policies)
+		mcDTMC = new DTMCModelChecker(this);
+		mcDTMC.inheritSettings(this);
+		mcDTMC.setLog(new PrismDevNullLog());
+
+		// Store num states
+		n = mdp.getNumStates();
+
+		// Create solution vectors
+		soln = new double[n];
+		soln2 = new double[n];
+
+		// Initialise solution vectors.
+		for (i = 0; i < n; i++)
+			soln[i] = soln2[i] = yes.get(i) ? 1.0 : 0.0;
+
+		// If not passed in, create new storage for strategy and initialise
+		// Initial strategy just picks first choice (0) everywhere
+		if (strat == null) {
+			strat = new int[n];
+			for (i = 0; i < n; i++)
+				strat[i] = 0;
+		}
+		// Otherwise, just initialise for states not in yes/no
+		// (Optimal choices for yes/no should already be known)
+		else {
+			for (i = 0; i < n; i++)
+				if (!(no.get(i) || yes.get(i)))
+					strat[i] = 0;
+		}
+
+		// Start iterations
+		iters = totalIters = 0;
 		done = false;
 		while (!done) {
 			iters++;
 			// Solve induced DTMC for strategy
 			dtmc = new DTMCFromMDPMemorylessAdversary(mdp, strat);
-			res = mcDTMC.computeReachProbsGaussSeidel(dtmc, no, yes, reUseSoln ? soln : null, null);
+			if (linEqMethod.isSparseSolverMethod()) {
+				res = mcDTMC.computeReachProbsSparseLinEq(dtmc, no, yes, reUseSoln ? soln : null, null, linEqMethod);
+			} else {
+				res = mcDTMC.computeReachProbsGaussSeidel(dtmc, no, yes, reUseSoln ? soln : null, null);
+			}
 			soln = res.soln;
 			totalIters += res.numIters;
 			// Check if optimal, improve non-optimal choices
@@ -1685,11 +2369,13 @@ public class MDPModelChecker extends ProbModelChecker
 				if (no.get(i) || yes.get(i))
 					continue;
 				if (!PrismUtils.doublesAreClose(soln[i], soln2[i], termCritParam, termCrit == TermCrit.ABSOLUTE)) {
-					done = false;
 					List<Integer> opt = mdp.mvMultMinMaxSingleChoices(i, soln, min, soln2[i]);
 					// Only update strategy if strictly better
-					if (!opt.contains(strat[i]))
+					// (and only continue if it changed: the solution may be inexact)
+					if (!opt.contains(strat[i])) {
 						strat[i] = opt.get(0);
+						done = false;
+					}
 				}
 			}
 		}
@@ -1867,7 +2553,8 @@ public class MDPModelChecker extends ProbModelChecker
 			throws PrismException
 	{
 		ModelCheckerResult res = null;
-		BitSet unknown;
+		BitSet unknown, active = null;
+		int layers[] = null, layerEnd[] = null;
 		int i, n, iters;
 		double soln[], soln2[], tmpsoln[];
 		long timer;
@@ -1905,12 +2592,29 @@ public class MDPModelChecker extends ProbModelChecker
 		if (remain != null)
 			unknown.and(remain);
 
+		// If the initial values are 0 outside of the target, the value of a state can only become
+		// positive once the number of steps reaches its (backward) distance to the target.
+		// So, we precompute a BFS layering and restrict each step to the states
+		// within the current number of steps of the target (states further away are never touched)
+		if (init == null && preRel && k > 0) {
+			layerEnd = new int[k + 1];
+			layers = mdp.getPredecessorRelation(this, true).calculateLayers(remain, target, k, layerEnd);
+			active = new BitSet(n);
+			mainLog.println("States within " + k + " steps of target: " + layers.length + " (of " + unknown.cardinality() + ")");
+		}
+
 		// Start iterations
 		iters = 0;
 		while (iters < k) {
 			iters++;
+			// Add the next BFS layer, if present, to the active states
+			if (layers != null) {
+				for (i = layerEnd[iters - 1]; i < layerEnd[iters]; i++) {
+					active.set(layers[i]);
+				}
+			}
 			// Matrix-vector multiply and min/max ops
-			mdp.mvMultMinMax(soln, min, soln2, unknown, false, null);
+			mvMultMinMax(mdp, soln, min, soln2, layers == null ? unknown : active, false, null);
 			// Store intermediate results if required
 			// (compute min/max value over initial states for this step)
 			if (results != null) {
@@ -1985,7 +2689,7 @@ public class MDPModelChecker extends ProbModelChecker
 		while (!done && iters < maxIters) {
 			iters++;
 			// Matrix-vector multiply and min/max ops
-			mdp.mvDiscountedMultRewMinMax(soln, mdpRewards, min, soln2, discount, null, false, strat);
+			mvDiscountedMultRewMinMax(mdp, soln, mdpRewards, min, soln2, discount, null, false, strat);
 			// Swap vectors for next iter
 			done = PrismUtils.doublesAreClose(soln, soln2, termCritParam, termCrit == TermCrit.ABSOLUTE);
 			tmpsoln = soln;
@@ -2045,7 +2749,7 @@ public class MDPModelChecker extends ProbModelChecker
 		while (iters < k) {
 			iters++;
 			// Matrix-vector multiply and min/max ops
-			mdp.mvMultRewMinMax(soln, mdpRewards, min, soln2, null, false, null);
+			mvMultRewMinMax(mdp, soln, mdpRewards, min, soln2, null, false, null);
 			// Swap vectors for next iter
 			tmpsoln = soln;
 			soln = soln2;
@@ -2102,7 +2806,8 @@ public class MDPModelChecker extends ProbModelChecker
 		MDPSolnMethod mdpSolnMethod = this.mdpSolnMethod;
 
 		// Switch to a supported method, if necessary
-		if (!(mdpSolnMethod == MDPSolnMethod.VALUE_ITERATION || mdpSolnMethod == MDPSolnMethod.GAUSS_SEIDEL || mdpSolnMethod == MDPSolnMethod.POLICY_ITERATION)) {
+		if (!(mdpSolnMethod == MDPSolnMethod.VALUE_ITERATION || mdpSolnMethod == MDPSolnMethod.GAUSS_SEIDEL || mdpSolnMethod == MDPSolnMethod.POLICY_ITERATION
+				|| mdpSolnMethod == MDPSolnMethod.INTERVAL_ITERATION || mdpSolnMethod == MDPSolnMethod.OPTIMISTIC_VALUE_ITERATION)) {
 			mdpSolnMethod = MDPSolnMethod.GAUSS_SEIDEL;
 			mainLog.printWarning("Switching to MDP solution method \"" + mdpSolnMethod.fullName() + "\"");
 		}
@@ -2203,6 +2908,12 @@ public class MDPModelChecker extends ProbModelChecker
 		case POLICY_ITERATION:
 			res = computeReachRewardsPolIter(mdp, mdpRewards, target, inf, min, strat);
 			break;
+		case INTERVAL_ITERATION:
+			res = computeReachRewardsIntervalIter(mdp, mdpRewards, target, inf, min, init, known, strat);
+			break;
+		case OPTIMISTIC_VALUE_ITERATION:
+			res = computeReachRewardsOptimistic(mdp, mdpRewards, target, inf, min, init, known, strat);
+			break;
 		default:
 			throw new PrismException("Unknown MDP solution method " + mdpSolnMethod.fullName());
 		}
@@ -2296,7 +3007,7 @@ public class MDPModelChecker extends ProbModelChecker
 			//mainLog.println(soln);
 			iters++;
 			// Matrix-vector multiply and min/max ops
-			mdp.mvMultRewMinMax(soln, mdpRewards, min, soln2, unknown, false, strat);
+			mvMultRewMinMax(mdp, soln, mdpRewards, min, soln2, unknown, false, strat);
 			// Check termination
 			done = PrismUtils.doublesAreClose(soln, soln2, termCritParam, termCrit == TermCrit.ABSOLUTE);
 			// Swap vectors for next iter
@@ -2388,7 +3099,7 @@ public class MDPModelChecker extends ProbModelChecker
 			//mainLog.println(soln);
 			iters++;
 			// Matrix-vector multiply and min/max ops
-			maxDiff = mdp.mvMultRewGSMinMax(soln, mdpRewards, min, unknown, false, termCrit == TermCrit.ABSOLUTE, strat);
+			maxDiff = mvMultRewGSMinMax(mdp, soln, mdpRewards, min, unknown, false, termCrit == TermCrit.ABSOLUTE, strat);
 			// Check termination
 			done = maxDiff < termCritParam;
 		}
@@ -2413,6 +3124,312 @@ public class MDPModelChecker extends ProbModelChecker
 		return res;
 	}
 
+	/**
+	 * Compute expected reachability rewards using interval iteration,
+	 * i.e. value iteration from below and from above at the same time,
+	 * stopping when the two bounds are within the required precision.
+	 * The initial upper bound is computed by {@link #computeReachRewardsUpperBound}.
+	 * Note: for min rewards, if there are end components with zero reward amongst the unknown states,
+	 * the lower bound may not converge, in which case an error is reported.
+	 * @param mdp The MDP
+	 * @param mdpRewards The rewards
+	 * @param target Target states
+	 * @param inf States for which reward is infinite
+	 * @param min Min or max rewards (true=min, false=max)
+	 * @param init Optionally, an initial solution vector (only used for 'known' states) 
+	 * @param known Optionally, a set of states for which the exact answer is known
+	 * @param strat Storage for (memoryless) strategy choice indices (ignored if null)
+	 * Note: if 'known' is specified (i.e. is non-null, 'init' must also be given and is used for the exact values.
+	 */
+	protected ModelCheckerResult computeReachRewardsIntervalIter(MDP mdp, MDPRewards mdpRewards, BitSet target, BitSet inf, boolean min, double init[],
+			BitSet known, int strat[]) throws PrismException
+	{
+		ModelCheckerResult res;
+		BitSet unknown;
+		int i, n, iters;
+		double lower[], lower2[], upper[], upper2[], tmpsoln[], upperBound;
+		boolean done;
+		long timer;
+
+		// Start interval iteration
+		timer = System.currentTimeMillis();
+		mainLog.println("Starting interval iteration (" + (min ? "min" : "max") + ")...");
+
+		// Store num states
+		n = mdp.getNumStates();
+
+		// Determine set of states actually need to compute values for
+		unknown = new BitSet();
+		unknown.set(0, n);
+		unknown.andNot(target);
+		unknown.andNot(inf);
+		if (known != null)
+			unknown.andNot(known);
+
+		// Compute initial upper bound (for all states not in target/inf)
+		BitSet rest = new BitSet();
+		rest.set(0, n);
+		rest.andNot(target);
+		rest.andNot(inf);
+		upperBound = computeReachRewardsUpperBound(mdp, mdpRewards, target, rest, min);
+		mainLog.println("Upper bound for rewards: " + upperBound);
+
+		// Create solution vectors
+		lower = new double[n];
+		lower2 = new double[n];
+		upper = new double[n];
+		upper2 = new double[n];
+
+		// Initialise solution vectors. Use (where available) the following in order of preference:
+		// (1) exact answer, if already known; (2) 0.0/infinity if in target/inf; (3) 0.0 (lower) or the upper bound (upper)
+		for (i = 0; i < n; i++) {
+			if (known != null && known.get(i)) {
+				lower[i] = lower2[i] = upper[i] = upper2[i] = init[i];
+			} else if (target.get(i)) {
+				lower[i] = lower2[i] = upper[i] = upper2[i] = 0.0;
+			} else if (inf.get(i)) {
+				lower[i] = lower2[i] = upper[i] = upper2[i] = Double.POSITIVE_INFINITY;
+			} else {
+				lower[i] = lower2[i] = 0.0;
+				upper[i] = upper2[i] = upperBound;
+			}
+		}
+
+		// Start iterations
+		iters = 0;
+		done = false;
+		while (!done && iters < maxIters) {
+			iters++;
+			// Matrix-vector multiply and min/max ops
+			mdp.mvMultRewMinMax(lower, mdpRewards, min, lower2, unknown, false, strat);
+			mdp.mvMultRewMinMax(upper, mdpRewards, min, upper2, unknown, false, null);
+			// Check termination
+			done = PrismUtils.doublesAreClose(lower2, upper2, termCritParam, termCrit == TermCrit.ABSOLUTE);
+			// Swap vectors for next iter
+			tmpsoln = lower;
+			lower = lower2;
+			lower2 = tmpsoln;
+			tmpsoln = upper;
+			upper = upper2;
+			upper2 = tmpsoln;
+		}
+
+		// Finished interval iteration
+		timer = System.currentTimeMillis() - timer;
+		mainLog.print("Interval iteration (" + (min ? "min" : "max") + ")");
+		mainLog.println(" took " + iters + " iterations and " + timer / 1000.0 + " seconds.");
+
+		// Non-convergence is an error (usually)
+		if (!done && errorOnNonConverge) {
+			String msg = "Iterative method did not converge within " + iters + " iterations.";
+			msg += "\nConsider using a different numerical method or increasing the maximum number of iterations";
+			throw new PrismException(msg);
+		}
+
+		// Return results (midpoint of the two bounds)
+		res = new ModelCheckerResult();
+		res.soln = PrismUtils.midpoint(lower, upper);
+		res.numIters = iters;
+		res.timeTaken = timer / 1000.0;
+		return res;
+	}
+
+	/**
+	 * Compute an upper bound on the (min or max) expected reward to reach {@code target}
+	 * from any of the states in {@code rest}, from all of which target is reached with probability 1
+	 * (for max, under all strategies; for min, under some strategy that remains in {@code rest}).
+	 * This uses k-step bounded reachability probabilities: if, from all states in {@code rest}, target is reached
+	 * within k steps with probability at least p (for min, under some strategy; for max, under all strategies),
+	 * then the expected number of steps to reach target is at most k/p, and the expected reward at most
+	 * k/p times the maximum reward per step. k is increased until p is at least 1/2 (or k reaches maxIters),
+	 * keeping the best bound found.
+	 */
+	protected double computeReachRewardsUpperBound(MDP mdp, MDPRewards mdpRewards, BitSet target, BitSet rest, boolean min) throws PrismException
+	{
+		int n = mdp.getNumStates();
+		double soln[] = new double[n];
+		double soln2[] = new double[n];
+		double tmpsoln[];
+
+		// Maximum reward for one step
+		double maxRew = 0.0;
+		for (int s = rest.nextSetBit(0); s >= 0; s = rest.nextSetBit(s + 1)) {
+			maxRew = Math.max(maxRew, mdp.mvMultRewMinMaxSingle(s, soln, mdpRewards, false, null));
+		}
+		if (maxRew == 0.0 || rest.isEmpty()) {
+			return 0.0;
+		}
+
+		// Compute bounded reachability probabilities (maximised for min rewards, and vice versa)
+		// and the best bound k/p over k. For min, only choices that remain in rest/target are used.
+		BitSet restOrTarget = (BitSet) rest.clone();
+		restOrTarget.or(target);
+		for (int s = target.nextSetBit(0); s >= 0; s = target.nextSetBit(s + 1)) {
+			soln[s] = soln2[s] = 1.0;
+		}
+		double bestSteps = Double.POSITIVE_INFINITY;
+		int k = 0;
+		double p = 0.0;
+		while (p < 0.5 && k < maxIters) {
+			k++;
+			p = 1.0;
+			for (int s = rest.nextSetBit(0); s >= 0; s = rest.nextSetBit(s + 1)) {
+				int numChoices = mdp.getNumChoices(s);
+				double d = min ? 0.0 : 1.0;
+				for (int i = 0; i < numChoices; i++) {
+					if (min) {
+						if (mdp.allSuccessorsInSet(s, i, restOrTarget)) {
+							d = Math.max(d, mdp.mvMultSingle(s, i, soln));
+						}
+					} else {
+						d = Math.min(d, mdp.mvMultSingle(s, i, soln));
+					}
+				}
+				soln2[s] = d;
+				p = Math.min(p, d);
+			}
+			tmpsoln = soln;
+			soln = soln2;
+			soln2 = tmpsoln;
+			if (p > 0.0) {
+				bestSteps = Math.min(bestSteps, k / p);
+			}
+		}
+		if (Double.isInfinite(bestSteps)) {
+			throw new PrismException("Could not compute an upper bound for expected rewards (target not reached within " + k + " steps)");
+		}
+		return maxRew * bestSteps;
+	}
+
+	/**
+	 * Compute expected reachability rewards using optimistic value iteration.
+	 * Gauss-Seidel value iteration is run from below until successive solutions are close.
+	 * Then an upper bound is guessed (the lower bound plus the termination threshold)
+	 * and verified by iterating from above until a sweep no longer increases any value
+	 * (which makes it a guaranteed upper bound). If instead it drops below the lower bound, the threshold for the iteration from below is halved and the process repeated.
+	 * The certified lower/upper bounds are stored in the result, and the solution is their midpoint.
+	 * @param mdp The MDP
+	 * @param mdpRewards The rewards
+	 * @param target Target states
+	 * @param inf States for which reward is infinite
+	 * @param min Min or max rewards (true=min, false=max)
+	 * @param init Optionally, an initial solution vector (only used for 'known' states; will be overwritten) 
+	 * @param known Optionally, a set of states for which the exact answer is known
+	 * @param strat Storage for (memoryless) strategy choice indices (ignored if null)
+	 * Note: if 'known' is specified (i.e. is non-null, 'init' must also be given and is used for the exact values.
+	 */
+	protected ModelCheckerResult computeReachRewardsOptimistic(MDP mdp, MDPRewards mdpRewards, BitSet target, BitSet inf, boolean min, double init[],
+			BitSet known, int strat[]) throws PrismException
+	{
+		ModelCheckerResult res;
+		BitSet unknown;
+		int i, j, n, iters, verifs, verifIters;
+		double lower[], upper[], d, maxDiff, epsilon;
+		boolean done, absolute, increased, decreased, crossed;
+		long timer;
+
+		// Start optimistic value iteration
+		timer = System.currentTimeMillis();
+		mainLog.println("Starting optimistic value iteration (" + (min ? "min" : "max") + ")...");
+
+		// Store num states
+		n = mdp.getNumStates();
+
+		// Create solution vectors
+		lower = (init == null) ? new double[n] : init;
+		upper = new double[n];
+
+		// Initialise solution vectors. Use (where available) the following in order of preference:
+		// (1) exact answer, if already known; (2) 0.0/infinity if in target/inf; (3) 0.0
+		// (the initial value for the lower bound needs to be a lower bound too, so other values in 'init' are ignored)
+		for (i = 0; i < n; i++) {
+			lower[i] = upper[i] = (known != null && known.get(i)) ? init[i] : inf.get(i) ? Double.POSITIVE_INFINITY : 0.0;
+		}
+
+		// Determine set of states actually need to compute values for
+		unknown = new BitSet();
+		unknown.set(0, n);
+		unknown.andNot(target);
+		unknown.andNot(inf);
+		if (known != null)
+			unknown.andNot(known);
+
+		// Start iterations
+		absolute = (termCrit == TermCrit.ABSOLUTE);
+		epsilon = termCritParam;
+		iters = verifs = 0;
+		done = false;
+		while (!done && iters < maxIters) {
+			iters++;
+			// Matrix-vector multiply (in place)
+			maxDiff = mdp.mvMultRewGSMinMax(lower, mdpRewards, min, unknown, false, absolute, strat);
+			if (maxDiff >= epsilon) {
+				continue;
+			}
+			// Guess an upper bound
+			for (i = unknown.nextSetBit(0); i >= 0; i = unknown.nextSetBit(i + 1)) {
+				upper[i] = absolute ? lower[i] + termCritParam : lower[i] * (1.0 + termCritParam);
+			}
+			// Verify it: iterate (in place) from above until a sweep no longer increases any value
+			// (then the upper bound is inductive, and thus a true upper bound) or it drops below
+			// the lower bound or stops decreasing (the guess failed); at most as many sweeps as iterations so far
+			verifIters = iters;
+			for (j = 0; j < verifIters && iters < maxIters; j++) {
+				iters++;
+				verifs++;
+				increased = decreased = crossed = false;
+				for (i = unknown.nextSetBit(0); i >= 0; i = unknown.nextSetBit(i + 1)) {
+					d = mdp.mvMultRewMinMaxSingle(i, upper, mdpRewards, min, null);
+					// (values are never raised, so the upper bound only decreases)
+					if (d > upper[i]) {
+						increased = true;
+						continue;
+					}
+					if (d < upper[i]) {
+						decreased = true;
+					}
+					upper[i] = d;
+					if (d < lower[i]) {
+						crossed = true;
+						break;
+					}
+				}
+				if (crossed || (increased && !decreased)) {
+					break;
+				}
+				if (!increased) {
+					done = true;
+					break;
+				}
+			}
+			// If verification failed, iterate further from below
+			if (!done) {
+				epsilon /= 2;
+			}
+		}
+
+		// Finished optimistic value iteration
+		timer = System.currentTimeMillis() - timer;
+		mainLog.print("Optimistic value iteration (" + (min ? "min" : "max") + ")");
+		mainLog.println(" took " + iters + " iterations (" + verifs + " verification sweeps) and " + timer / 1000.0 + " seconds.");
+
+		// Non-convergence is an error (usually)
+		if (!done && errorOnNonConverge) {
+			String msg = "Iterative method did not converge within " + iters + " iterations.";
+			msg += "\nConsider using a different numerical method or increasing the maximum number of iterations";
+			throw new PrismException(msg);
+		}
+
+		// Return results (midpoint of the two bounds)
+		res = new ModelCheckerResult();
+		res.lowerBound = lower;
+		res.upperBound = upper;
+		res.soln = PrismUtils.midpoint(lower.clone(), upper);
+		res.numIters = iters;
+		res.timeTaken = timer / 1000.0;
+		return res;
+	}
+
 	/**
 	 * Compute expected reachability rewards using policy iteration.
 	 * The array {@code strat} is used both to pass in the initial strategy for policy iteration,
@@ -2477,7 +3494,11 @@ public class MDPModelChecker extends ProbModelChecker
 			// Solve induced DTMC for strategy
 			dtmc = new DTMCFromMDPMemorylessAdversary(mdp, strat);
 			mcRewards = new MCRewardsFromMDPRewards(mdpRewards, strat);
-			res = mcDTMC.computeReachRewardsValIter(dtmc, mcRewards, target, inf, reUseSoln ? soln : null, null);
+			if (linEqMethod.isSparseSolverMethod()) {
+				res = mcDTMC.computeReachRewardsSparseLinEq(dtmc, mcRewards, target, inf, reUseSoln ? soln : null, null, linEqMethod);
+			} else {
+				res = mcDTMC.computeReachRewardsValIter(dtmc, mcRewards, target, inf, reUseSoln ? soln : null, null);
+			}
 			soln = res.soln;
 			totalIters += res.numIters;
 			// Check if optimal, improve non-optimal choices
@@ -2489,11 +3510,13 @@ public class MDPModelChecker extends ProbModelChecker
 				if (target.get(i) || inf.get(i))
 					continue;
 				if (!PrismUtils.doublesAreClose(soln[i], soln2[i], termCritParam, termCrit == TermCrit.ABSOLUTE)) {
-					done = false;
 					List<Integer> opt = mdp.mvMultRewMinMaxSingleChoices(i, soln, mdpRewards, min, soln2[i]);
 					// Only update strategy if strictly better
-					if (!opt.contains(strat[i]))
+					// (and only continue if it changed: the solution may be inexact)
+					if (!opt.contains(strat[i])) {
 						strat[i] = opt.get(0);
+						done = false;
+					}
 				}
 			}
 		}
@@ -2586,6 +3609,85 @@ public class MDPModelChecker extends ProbModelChecker
 		return res;
 	}
 
+	// Matrix-vector operations (done in parallel where possible)
+
+	/**
+	 * Do a matrix-vector multiplication followed by min/max (see {@link MDP#mvMultMinMax}),
+	 * in parallel if the MDP is an {@link MDPSparse} and parallelism is enabled and worthwhile
+	 * (see {@link #getParallelPool(int)}).
+	 */
+	protected void mvMultMinMax(MDP mdp, double vect[], boolean min, double result[], BitSet subset, boolean complement, int strat[])
+	{
+		ForkJoinPool pool = (mdp instanceof MDPSparse) ? getParallelPool(mdp.getNumStates()) : null;
+		if (pool != null) {
+			((MDPSparse) mdp).mvMultMinMaxParallel(vect, min, result, subset, complement, strat, pool);
+		} else {
+			mdp.mvMultMinMax(vect, min, result, subset, complement, strat);
+		}
+	}
+
+	/**
+	 * Do a Gauss-Seidel-style matrix-vector multiplication followed by min/max (see {@link MDP#mvMultGSMinMax}),
+	 * using parallel block Gauss-Seidel if the MDP is an {@link MDPSparse} and parallelism is enabled and worthwhile
+	 * (see {@link #getParallelPool(int)}).
+	 */
+	protected double mvMultGSMinMax(MDP mdp, double vect[], boolean min, BitSet subset, boolean complement, boolean absolute, int strat[])
+	{
+		ForkJoinPool pool = (mdp instanceof MDPSparse) ? getParallelPool(mdp.getNumStates()) : null;
+		if (pool != null) {
+			return ((MDPSparse) mdp).mvMultGSMinMaxParallel(vect, min, subset, complement, absolute, strat, pool);
+		} else {
+			return mdp.mvMultGSMinMax(vect, min, subset, complement, absolute, strat);
+		}
+	}
+
+	/**
+	 * Do a matrix-vector multiplication and sum of rewards followed by min/max (see {@link MDP#mvMultRewMinMax}),
+	 * in parallel if the MDP is an {@link MDPSparse} and parallelism is enabled and worthwhile
+	 * (see {@link #getParallelPool(int)}).
+	 */
+	protected void mvMultRewMinMax(MDP mdp, double vect[], MDPRewards mdpRewards, boolean min, double result[], BitSet subset, boolean complement, int strat[])
+	{
+		ForkJoinPool pool = (mdp instanceof MDPSparse) ? getParallelPool(mdp.getNumStates()) : null;
+		if (pool != null) {
+			((MDPSparse) mdp).mvMultRewMinMaxParallel(vect, mdpRewards, min, result, subset, complement, strat, pool);
+		} else {
+			mdp.mvMultRewMinMax(vect, mdpRewards, min, result, subset, complement, strat);
+		}
+	}
+
+	/**
+	 * Do a Gauss-Seidel-style matrix-vector multiplication and sum of rewards followed by min/max (see {@link MDP#mvMultRewGSMinMax}),
+	 * using parallel block Gauss-Seidel if the MDP is an {@link MDPSparse} and parallelism is enabled and worthwhile
+	 * (see {@link #getParallelPool(int)}).
+	 */
+	protected double mvMultRewGSMinMax(MDP mdp, double vect[], MDPRewards mdpRewards, boolean min, BitSet subset, boolean complement, boolean absolute,
+			int strat[])
+	{
+		ForkJoinPool pool = (mdp instanceof MDPSparse) ? getParallelPool(mdp.getNumStates()) : null;
+		if (pool != null) {
+			return ((MDPSparse) mdp).mvMultRewGSMinMaxParallel(vect, mdpRewards, min, subset, complement, absolute, strat, pool);
+		} else {
+			return mdp.mvMultRewGSMinMax(vect, mdpRewards, min, subset, complement, absolute, strat);
+		}
+	}
+
+	/**
+	 * Do a matrix-vector multiplication and sum of discounted rewards followed by min/max (see {@link MDP#mvDiscountedMultRewMinMax}),
+	 * in parallel if the MDP is an {@link MDPSparse} and parallelism is enabled and worthwhile
+	 * (see {@link #getParallelPool(int)}).
+	 */
+	protected void mvDiscountedMultRewMinMax(MDP mdp, double vect[], MDPRewards mdpRewards, boolean min, double result[], double discount, BitSet subset,
+			boolean complement, int strat[])
+	{
+		ForkJoinPool pool = (mdp instanceof MDPSparse) ? getParallelPool(mdp.getNumStates()) : null;
+		if (pool != null) {
+			((MDPSparse) mdp).mvDiscountedMultRewMinMaxParallel(vect, mdpRewards, min, result, discount, subset, complement, strat, pool);
+		} else {
+			mdp.mvDiscountedMultRewMinMax(vect, mdpRewards, min, result, discount, subset, complement, strat);
+		}
+	}
+
 	/**
 	 * Simple test program.
 	 */
@@ -199,7 +199,7 @@ public class MDPSimple extends MDPExplicit implements NondetModelSimple
 			}
 		}
 
-		if (mdp.actions != null) {
+		if (mdp.actionList != null) {
 			actions = new ArrayList<List<Object>>(numStates);
 			for (int s = 0; s < numStates; s++)
 				actions.add(null);
@@ -242,6 +242,7 @@ public class MDPSimple extends MDPExplicit implements NondetModelSimple
 		if (s >= numStates || s < 0)
 			return;
 		// Clear data structures and update stats
+		clearAnalysisCache();
 		List<Distribution> list = trans.get(s);
 		numDistrs -= list.size();
 		for (Distribution distr : list) {
@@ -263,6 +264,7 @@ public class MDPSimple extends MDPExplicit implements NondetModelSimple
 	@Override
 	public void addStates(int numToAdd)
 	{
+		clearAnalysisCache();
 		for (int i = 0; i < numToAdd; i++) {
 			trans.add(new ArrayList<Distribution>());
 			if (actions != null)
@@ -360,6 +362,7 @@ public class MDPSimple extends MDPExplicit implements NondetModelSimple
 			if (i != -1)
 				return i;
 		}
+		clearAnalysisCache();
 		set = trans.get(s);
 		set.add(distr);
 		// Add null action if necessary
@@ -391,6 +394,7 @@ public class MDPSimple extends MDPExplicit implements NondetModelSimple
 			if (i != -1)
 				return i;
 		}
+		clearAnalysisCache();
 		set = trans.get(s);
 		set.add(distr);
 		// Add null action if necessary
@@ -993,8 +997,8 @@ public class MDPSimple extends MDPExplicit implements NondetModelSimple
 		for (Distribution distr : step) {
 			j++;
 			diag = 1.0;
-			// Compute sum for this distribution
-			d = mdpRewards.getTransitionReward(s, j);
+			// Compute sum for this distribution (including state reward, since it is also divided by diag)
+			d = mdpRewards.getStateReward(s) + mdpRewards.getTransitionReward(s, j);
 			for (Map.Entry<Integer, Double> e : distr) {
 				k = (Integer) e.getKey();
 				prob = (Double) e.getValue();
@@ -1016,8 +1020,6 @@ public class MDPSimple extends MDPExplicit implements NondetModelSimple
 			}
 			first = false;
 		}
-		// Add state reward (doesn't affect min/max)
-		minmax += mdpRewards.getStateReward(s);
 		// If strategy generation is enabled, store optimal choice
 		if (strat != null & !first) {
 			// For max, only remember strictly better choices
@@ -33,12 +33,16 @@ import java.io.FileReader;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.BitSet;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 import common.IterableStateSet;
 
@@ -52,25 +56,25 @@ import explicit.rewards.MDPRewards;
  * Sparse matrix (non-mutable) explicit-state representation of an MDP.
  * This is much faster to access than e.g. MDPSimple and should also be more compact.
  * The catch is that you have to create the model all in one go and then can't modify it.
+ * <br><br>
+ * The transition function is stored in compressed sparse row form, as four arrays:
+ * nonZeros and cols (the probability and column/destination index of each transition),
+ * choiceStarts (the start of the transitions of each choice) and rowStarts (the start of the choices of each state).
+ * These are kept in a {@link SparseStorage}, either on the Java heap or outside it
+ * (in direct buffers or memory-mapped files), for very large models.
  */
 public class MDPSparse extends MDPExplicit
 {
 	// Sparse matrix storing transition function (Steps)
-	/** Probabilities for each transition (array of size numTransitions) */
-	protected double nonZeros[];
-	/** Column (destination) indices for each transition (array of size numTransitions) */
-	protected int cols[];
-	/** Indices into nonZeros/cols giving the start of the transitions for each choice (distribution);
-	 * array is of size numDistrs+1 and last entry is always equal to numTransitions */
-	protected int choiceStarts[];
-	/** Indices into choiceStarts giving the start of the choices for each state;
-	 * array is of size numStates+1 and last entry is always equal to numDistrs */
-	protected int rowStarts[];
+	/** Storage for the arrays nonZeros and cols (of size numTransitions),
+	 * choiceStarts (of size numDistrs+1, giving indices into nonZeros/cols for each choice; last entry is always numTransitions)
+	 * and rowStarts (of size numStates+1, giving indices into choiceStarts for each state; last entry is always numDistrs) */
+	protected SparseStorage storage;
 
 	// Action labels
-	/** Array of action labels for choices;
-	 * if null, there are no actions; otherwise, is an array of size numDistrs */
-	protected Object actions[];
+	/** List of (distinct) action labels of choices; if null, there are no actions;
+	 * otherwise, the label of each choice is stored as an index into this list (or -1 if none) */
+	protected List<Object> actionList;
 
 	// Other statistics
 	protected int numDistrs;
@@ -95,56 +99,9 @@ public class MDPSparse extends MDPExplicit
 	 */
 	public MDPSparse(MDPSimple mdp, boolean sort)
 	{
-		int i, j, k, n;
-		TreeMap<Integer, Double> sorted = null;
 		initialise(mdp.getNumStates());
 		copyFrom(mdp);
-		// Copy stats
-		numDistrs = mdp.getNumChoices();
-		numTransitions = mdp.getNumTransitions();
-		maxNumDistrs = mdp.getMaxNumChoices();
-		// Copy transition function
-		if (sort) {
-			sorted = new TreeMap<Integer, Double>();
-		}
-		nonZeros = new double[numTransitions];
-		cols = new int[numTransitions];
-		choiceStarts = new int[numDistrs + 1];
-		rowStarts = new int[numStates + 1];
-		actions = mdp.actions == null ? null : new Object[numDistrs];
-		j = k = 0;
-		for (i = 0; i < numStates; i++) {
-			rowStarts[i] = j;
-			if (mdp.actions != null) {
-				n = mdp.getNumChoices(i);
-				for (int l = 0; l < n; l++) {
-					actions[j + l] = mdp.getAction(i, l);
-				}
-			}
-			for (Distribution distr : mdp.trans.get(i)) {
-				choiceStarts[j] = k;
-				for (Map.Entry<Integer, Double> e : distr) {
-					if (sort) {
-						sorted.put(e.getKey(), e.getValue());
-					} else {
-						cols[k] = (Integer) e.getKey();
-						nonZeros[k] = (Double) e.getValue();
-						k++;
-					}
-				}
-				if (sort) {
-					for (Map.Entry<Integer, Double> e : sorted.entrySet()) {
-						cols[k] = (Integer) e.getKey();
-						nonZeros[k] = (Double) e.getValue();
-						k++;
-					}
-					sorted.clear();
-				}
-				j++;
-			}
-		}
-		choiceStarts[numDistrs] = numTransitions;
-		rowStarts[numStates] = numDistrs;
+		copyTransitions(mdp, sort, null);
 	}
 
 	/**
@@ -159,53 +116,70 @@ public class MDPSparse extends MDPExplicit
 	 */
 	public MDPSparse(MDPSimple mdp, boolean sort, int permut[])
 	{
-		int i, j, k, n;
-		TreeMap<Integer, Double> sorted = null;
-		int permutInv[];
 		initialise(mdp.getNumStates());
 		copyFrom(mdp, permut);
+		copyTransitions(mdp, sort, permut);
+	}
+
+	/**
+	 * Copy the transition function (and action labels) of an MDPSimple into (heap) storage,
+	 * for the copy constructors above.
+	 * @param mdp The MDP to copy
+	 * @param sort Whether or not to sort column indices
+	 * @param permut State space permutation (or null if none)
+	 */
+	private void copyTransitions(MDPSimple mdp, boolean sort, int permut[])
+	{
+		int i, j, k, n;
+		TreeMap<Integer, Double> sorted = null;
+		int permutInv[] = null;
 		// Copy stats
 		numDistrs = mdp.getNumChoices();
 		numTransitions = mdp.getNumTransitions();
 		maxNumDistrs = mdp.getMaxNumChoices();
 		// Compute the inverse of the permutation
-		permutInv = new int[numStates];
-		for (i = 0; i < numStates; i++) {
-			permutInv[permut[i]] = i;
+		if (permut != null) {
+			permutInv = new int[numStates];
+			for (i = 0; i < numStates; i++) {
+				permutInv[permut[i]] = i;
+			}
 		}
 		// Copy transition function
 		if (sort) {
 			sorted = new TreeMap<Integer, Double>();
 		}
-		nonZeros = new double[numTransitions];
-		cols = new int[numTransitions];
-		choiceStarts = new int[numDistrs + 1];
-		rowStarts = new int[numStates + 1];
-		actions = mdp.actions == null ? null : new Object[numDistrs];
+		storage = SparseStorage.createHeap(numStates, numDistrs, numTransitions, mdp.actions != null);
+		Map<Object, Integer> actionIndices = null;
+		if (mdp.actions != null) {
+			actionList = new ArrayList<Object>();
+			actionIndices = new HashMap<Object, Integer>();
+		}
 		j = k = 0;
 		for (i = 0; i < numStates; i++) {
-			rowStarts[i] = j;
+			int iOld = permut == null ? i : permutInv[i];
+			storage.setRowStart(i, j);
 			if (mdp.actions != null) {
-				n = mdp.getNumChoices(permutInv[i]);
+				n = mdp.getNumChoices(iOld);
 				for (int l = 0; l < n; l++) {
-					actions[j + l] = mdp.getAction(permutInv[i], l);
+					setAction(j + l, mdp.getAction(iOld, l), actionIndices);
 				}
 			}
-			for (Distribution distr : mdp.trans.get(permutInv[i])) {
-				choiceStarts[j] = k;
+			for (Distribution distr : mdp.trans.get(iOld)) {
+				storage.setChoiceStart(j, k);
 				for (Map.Entry<Integer, Double> e : distr) {
+					int col = permut == null ? e.getKey() : permut[e.getKey()];
 					if (sort) {
-						sorted.put(permut[e.getKey()], e.getValue());
+						sorted.put(col, e.getValue());
 					} else {
-						cols[k] = (Integer) permut[e.getKey()];
-						nonZeros[k] = (Double) e.getValue();
+						storage.setCol(k, col);
+						storage.setNonZero(k, e.getValue());
 						k++;
 					}
 				}
 				if (sort) {
 					for (Map.Entry<Integer, Double> e : sorted.entrySet()) {
-						cols[k] = (Integer) e.getKey();
-						nonZeros[k] = (Double) e.getValue();
+						storage.setCol(k, e.getKey());
+						storage.setNonZero(k, e.getValue());
 						k++;
 					}
 					sorted.clear();
@@ -213,8 +187,8 @@ public class MDPSparse extends MDPExplicit
 				j++;
 			}
 		}
-		choiceStarts[numDistrs] = numTransitions;
-		rowStarts[numStates] = numDistrs;
+		storage.setChoiceStart(numDistrs, numTransitions);
+		storage.setRowStart(numStates, numDistrs);
 	}
 
 	/**
@@ -252,11 +226,9 @@ public class MDPSparse extends MDPExplicit
 				numTransitions += mdp.getNumTransitions(s, a);
 			}
 		}
-		nonZeros = new double[numTransitions];
-		cols = new int[numTransitions];
-		choiceStarts = new int[numDistrs + 1];
-		rowStarts = new int[numStates + 1];
-		this.actions = new Object[numDistrs];
+		storage = SparseStorage.createHeap(numStates, numDistrs, numTransitions, true);
+		actionList = new ArrayList<Object>();
+		Map<Object, Integer> actionIndices = new HashMap<Object, Integer>();
 		int choiceIndex = 0;
 		int colIndex = 0;
 		int[] reverseStates = new int[mdp.getNumStates()];
@@ -265,22 +237,57 @@ public class MDPSparse extends MDPExplicit
 		}
 		for (int i = 0; i < states.size(); i++) {
 			int s = states.get(i);
-			rowStarts[i] = choiceIndex;
+			storage.setRowStart(i, choiceIndex);
 			for (int a : actions.get(s)) {
-				choiceStarts[choiceIndex] = colIndex;
-				this.actions[choiceIndex] = mdp.getAction(s, a);
+				storage.setChoiceStart(choiceIndex, colIndex);
+				setAction(choiceIndex, mdp.getAction(s, a), actionIndices);
 				choiceIndex++;
 				Iterator<Entry<Integer, Double>> it = mdp.getTransitionsIterator(s, a);
 				while (it.hasNext()) {
 					Entry<Integer, Double> next = it.next();
-					cols[colIndex] = reverseStates[next.getKey()];
-					nonZeros[colIndex] = next.getValue();
+					storage.setCol(colIndex, reverseStates[next.getKey()]);
+					storage.setNonZero(colIndex, next.getValue());
 					colIndex++;
 				}
 			}
 		}
-		choiceStarts[numDistrs] = numTransitions;
-		rowStarts[numStates] = numDistrs;
+		storage.setChoiceStart(numDistrs, numTransitions);
+		storage.setRowStart(numStates, numDistrs);
+	}
+
+	/**
+	 * Constructor: build directly from the sparse storage
+	 * (the arrays are not copied, see the corresponding fields for their format).
+	 * There are no action labels or initial states.
+	 * @param numStates Number of states
+	 * @param rowStarts Start of the choices of each state
+	 * @param choiceStarts Start of the transitions of each choice
+	 * @param cols Column (destination) indices of transitions
+	 * @param nonZeros Probabilities of transitions
+	 */
+	MDPSparse(int numStates, int rowStarts[], int choiceStarts[], int cols[], double nonZeros[])
+	{
+		this(numStates, SparseStorage.wrap(rowStarts, choiceStarts, cols, nonZeros), null);
+	}
+
+	/**
+	 * Constructor: build from existing (filled) storage, e.g. created during model construction
+	 * or mapped from a file, without copying it.
+	 * Initial states (and other model info) should be added separately afterwards.
+	 * @param numStates Number of states
+	 * @param storage Storage for the transition function
+	 * @param actionList Action labels, indexed by the action label indices in {@code storage} (null if none)
+	 */
+	public MDPSparse(int numStates, SparseStorage storage, List<Object> actionList)
+	{
+		initialise(numStates);
+		this.storage = storage;
+		this.actionList = actionList;
+		numDistrs = storage.getRowStart(numStates);
+		numTransitions = storage.getChoiceStart(numDistrs);
+		for (int s = 0; s < numStates; s++) {
+			maxNumDistrs = Math.max(maxNumDistrs, storage.getRowStart(s + 1) - storage.getRowStart(s));
+		}
 	}
 
 	// Mutators (other)
@@ -290,7 +297,26 @@ public class MDPSparse extends MDPExplicit
 	{
 		super.initialise(numStates);
 		numDistrs = numTransitions = maxNumDistrs = 0;
-		actions = null;
+		actionList = null;
+	}
+
+	/**
+	 * Set the action label of choice {@code j} (whose index is stored in {@code storage}),
+	 * adding it to {@code actionList} if it is not there already.
+	 * @param actionIndices The index of each action label in {@code actionList}
+	 */
+	private void setAction(int j, Object action, Map<Object, Integer> actionIndices)
+	{
+		if (action == null) {
+			return;
+		}
+		Integer a = actionIndices.get(action);
+		if (a == null) {
+			a = actionList.size();
+			actionList.add(action);
+			actionIndices.put(action, a);
+		}
+		storage.setActionIndex(j, a);
 	}
 
 	@Override
@@ -320,6 +346,7 @@ public class MDPSparse extends MDPExplicit
 			// Store stats
 			numDistrs = Integer.parseInt(ss[1]);
 			numTransitions = Integer.parseInt(ss[2]);
+			storage = SparseStorage.createHeap(n, numDistrs, numTransitions, false);
 			// Go though list of transitions in file
 			iLast = -1;
 			kLast = -1;
@@ -336,16 +363,16 @@ public class MDPSparse extends MDPExplicit
 					prob = Double.parseDouble(ss[3]);
 					// For a new state
 					if (i != iLast) {
-						rowStarts[i] = kCount;
+						storage.setRowStart(i, kCount);
 					}
 					// For a new state or distribution
 					if (i != iLast || k != kLast) {
-						choiceStarts[kCount] = jCount;
+						storage.setChoiceStart(kCount, jCount);
 						kCount++;
 					}
 					// Store transition
-					cols[jCount] = j;
-					nonZeros[jCount] = prob;
+					storage.setCol(jCount, j);
+					storage.setNonZero(jCount, prob);
 					// Prepare for next iter
 					iLast = i;
 					kLast = k;
@@ -354,8 +381,8 @@ public class MDPSparse extends MDPExplicit
 				s = in.readLine();
 				lineNum++;
 			}
-			choiceStarts[numDistrs] = numTransitions;
-			rowStarts[numStates] = numDistrs;
+			storage.setChoiceStart(numDistrs, numTransitions);
+			storage.setRowStart(numStates, numDistrs);
 			// Compute maxNumDistrs
 			maxNumDistrs = 0;
 			for (i = 0; i < numStates; i++) {
@@ -390,11 +417,11 @@ public class MDPSparse extends MDPExplicit
 	{
 		// Need to build set to avoid duplicates
 		// So not necessarily the fastest method to access successors
-		int start = choiceStarts[rowStarts[s]];
-		int end = choiceStarts[rowStarts[s + 1]];
+		int start = storage.getChoiceStart(storage.getRowStart(s));
+		int end = storage.getChoiceStart(storage.getRowStart(s + 1));
 		HashSet<Integer> succs = new HashSet<Integer>();
 		for (int i = start; i < end; i++) {
-			succs.add(cols[i]);
+			succs.add(storage.getCol(i));
 		}
 		return succs.iterator();
 	}
@@ -403,14 +430,14 @@ public class MDPSparse extends MDPExplicit
 	public boolean isSuccessor(int s1, int s2)
 	{
 		int j, k, l1, h1, l2, h2;
-		l1 = rowStarts[s1];
-		h1 = rowStarts[s1 + 1];
+		l1 = storage.getRowStart(s1);
+		h1 = storage.getRowStart(s1 + 1);
 		for (j = l1; j < h1; j++) {
-			l2 = choiceStarts[j];
-			h2 = choiceStarts[j + 1];
+			l2 = storage.getChoiceStart(j);
+			h2 = storage.getChoiceStart(j + 1);
 			for (k = l2; k < h2; k++) {
 				// Assume that only non-zero entries are stored
-				if (cols[k] == s2) {
+				if (storage.getCol(k) == s2) {
 					return true;
 				}
 			}
@@ -422,14 +449,14 @@ public class MDPSparse extends MDPExplicit
 	public boolean allSuccessorsInSet(int s, BitSet set)
 	{
 		int j, k, l1, h1, l2, h2;
-		l1 = rowStarts[s];
-		h1 = rowStarts[s + 1];
+		l1 = storage.getRowStart(s);
+		h1 = storage.getRowStart(s + 1);
 		for (j = l1; j < h1; j++) {
-			l2 = choiceStarts[j];
-			h2 = choiceStarts[j + 1];
+			l2 = storage.getChoiceStart(j);
+			h2 = storage.getChoiceStart(j + 1);
 			for (k = l2; k < h2; k++) {
 				// Assume that only non-zero entries are stored
-				if (!set.get(cols[k])) {
+				if (!set.get(storage.getCol(k))) {
 					return false;
 				}
 			}
@@ -441,14 +468,14 @@ public class MDPSparse extends MDPExplicit
 	public boolean someSuccessorsInSet(int s, BitSet set)
 	{
 		int j, k, l1, h1, l2, h2;
-		l1 = rowStarts[s];
-		h1 = rowStarts[s + 1];
+		l1 = storage.getRowStart(s);
+		h1 = storage.getRowStart(s + 1);
 		for (j = l1; j < h1; j++) {
-			l2 = choiceStarts[j];
-			h2 = choiceStarts[j + 1];
+			l2 = storage.getChoiceStart(j);
+			h2 = storage.getChoiceStart(j + 1);
 			for (k = l2; k < h2; k++) {
 				// Assume that only non-zero entries are stored
-				if (set.get(cols[k])) {
+				if (set.get(storage.getCol(k))) {
 					return true;
 				}
 			}
@@ -484,7 +511,7 @@ public class MDPSparse extends MDPExplicit
 	@Override
 	public int getNumChoices(int s)
 	{
-		return rowStarts[s + 1] - rowStarts[s];
+		return storage.getRowStart(s + 1) - storage.getRowStart(s);
 	}
 
 	@Override
@@ -502,19 +529,22 @@ public class MDPSparse extends MDPExplicit
 	@Override
 	public Object getAction(int s, int i)
 	{
-		return i < 0 || actions == null ? null : actions[rowStarts[s] + i];
+		if (i < 0 || actionList == null)
+			return null;
+		int a = storage.getActionIndex(storage.getRowStart(s) + i);
+		return a < 0 ? null : actionList.get(a);
 	}
 
 	@Override
 	public boolean allSuccessorsInSet(int s, int i, BitSet set)
 	{
 		int j, k, l2, h2;
-		j = rowStarts[s] + i;
-		l2 = choiceStarts[j];
-		h2 = choiceStarts[j + 1];
+		j = storage.getRowStart(s) + i;
+		l2 = storage.getChoiceStart(j);
+		h2 = storage.getChoiceStart(j + 1);
 		for (k = l2; k < h2; k++) {
 			// Assume that only non-zero entries are stored
-			if (!set.get(cols[k])) {
+			if (!set.get(storage.getCol(k))) {
 				return false;
 			}
 		}
@@ -525,12 +555,12 @@ public class MDPSparse extends MDPExplicit
 	public boolean someSuccessorsInSet(int s, int i, BitSet set)
 	{
 		int j, k, l2, h2;
-		j = rowStarts[s] + i;
-		l2 = choiceStarts[j];
-		h2 = choiceStarts[j + 1];
+		j = storage.getRowStart(s) + i;
+		l2 = storage.getChoiceStart(j);
+		h2 = storage.getChoiceStart(j + 1);
 		for (k = l2; k < h2; k++) {
 			// Assume that only non-zero entries are stored
-			if (set.get(cols[k])) {
+			if (set.get(storage.getCol(k))) {
 				return true;
 			}
 		}
@@ -540,11 +570,11 @@ public class MDPSparse extends MDPExplicit
 	@Override
 	public Iterator<Integer> getSuccessorsIterator(final int s, final int i)
 	{
-		int start = choiceStarts[rowStarts[s] + i];
-		int end = choiceStarts[rowStarts[s] + i + 1];
+		int start = storage.getChoiceStart(storage.getRowStart(s) + i);
+		int end = storage.getChoiceStart(storage.getRowStart(s) + i + 1);
 		List<Integer> succs = new ArrayList<Integer>();
 		for (int j = start; j < end; j++) {
-			succs.add(cols[j]);
+			succs.add(storage.getCol(j));
 		}
 		return succs.iterator();
 	}
@@ -554,7 +584,7 @@ public class MDPSparse extends MDPExplicit
 	@Override
 	public int getNumTransitions(int s, int i)
 	{
-		return choiceStarts[rowStarts[s] + i + 1] - choiceStarts[rowStarts[s] + i];
+		return storage.getChoiceStart(storage.getRowStart(s) + i + 1) - storage.getChoiceStart(storage.getRowStart(s) + i);
 	}
 
 	@Override
@@ -562,9 +592,9 @@ public class MDPSparse extends MDPExplicit
 	{
 		return new Iterator<Entry<Integer, Double>>()
 		{
-			final int start = choiceStarts[rowStarts[s] + i];
+			final int start = storage.getChoiceStart(storage.getRowStart(s) + i);
 			int col = start;
-			final int end = choiceStarts[rowStarts[s] + i + 1];
+			final int end = storage.getChoiceStart(storage.getRowStart(s) + i + 1);
 
 			@Override
 			public boolean hasNext()
@@ -580,8 +610,8 @@ public class MDPSparse extends MDPExplicit
 				col++;
 				return new Entry<Integer, Double>()
 				{
-					int key = cols[i];
-					double value = nonZeros[i];
+					int key = storage.getCol(i);
+					double value = storage.getNonZero(i);
 
 					@Override
 					public Integer getKey()
@@ -618,15 +648,15 @@ public class MDPSparse extends MDPExplicit
 		boolean b1, some;
 		for (int i : new IterableStateSet(subset, numStates)) {
 			b1 = forall; // there exists or for all
-			l1 = rowStarts[i];
-			h1 = rowStarts[i + 1];
+			l1 = storage.getRowStart(i);
+			h1 = storage.getRowStart(i + 1);
 			for (j = l1; j < h1; j++) {
 				some = false;
-				l2 = choiceStarts[j];
-				h2 = choiceStarts[j + 1];
+				l2 = storage.getChoiceStart(j);
+				h2 = storage.getChoiceStart(j + 1);
 				for (k = l2; k < h2; k++) {
 					// Assume that only non-zero entries are stored
-					if (u.get(cols[k])) {
+					if (u.get(storage.getCol(k))) {
 						some = true;
 						break;
 					}
@@ -654,20 +684,20 @@ public class MDPSparse extends MDPExplicit
 		boolean b1, some, all;
 		for (int i : new IterableStateSet(subset, numStates)) {
 			b1 = true;
-			l1 = rowStarts[i];
-			h1 = rowStarts[i + 1];
+			l1 = storage.getRowStart(i);
+			h1 = storage.getRowStart(i + 1);
 			for (j = l1; j < h1; j++) {
 				some = false;
 				all = true;
-				l2 = choiceStarts[j];
-				h2 = choiceStarts[j + 1];
+				l2 = storage.getChoiceStart(j);
+				h2 = storage.getChoiceStart(j + 1);
 				for (k = l2; k < h2; k++) {
 					// Assume that only non-zero entries are stored
-					if (!u.get(cols[k])) {
+					if (!u.get(storage.getCol(k))) {
 						all = false;
 						break; // Stop early (already know b1 will be set to false)
 					}
-					if (v.get(cols[k])) {
+					if (v.get(storage.getCol(k))) {
 						some = true;
 					}
 				}
@@ -687,20 +717,20 @@ public class MDPSparse extends MDPExplicit
 		boolean b1, some, all;
 		for (int i : new IterableStateSet(subset, numStates)) {
 			b1 = false;
-			l1 = rowStarts[i];
-			h1 = rowStarts[i + 1];
+			l1 = storage.getRowStart(i);
+			h1 = storage.getRowStart(i + 1);
 			for (j = l1; j < h1; j++) {
 				some = false;
 				all = true;
-				l2 = choiceStarts[j];
-				h2 = choiceStarts[j + 1];
+				l2 = storage.getChoiceStart(j);
+				h2 = storage.getChoiceStart(j + 1);
 				for (k = l2; k < h2; k++) {
 					// Assume that only non-zero entries are stored
-					if (!u.get(cols[k])) {
+					if (!u.get(storage.getCol(k))) {
 						all = false;
 						break; // Stop early (already know b1 will not be set to true)
 					}
-					if (v.get(cols[k])) {
+					if (v.get(storage.getCol(k))) {
 						some = true;
 					}
 				}
@@ -729,19 +759,19 @@ public class MDPSparse extends MDPExplicit
 		boolean b1, some, all;
 		for (int i : new IterableStateSet(subset, numStates)) {
 			b1 = forall; // there exists or for all
-			l1 = rowStarts[i];
-			h1 = rowStarts[i + 1];
+			l1 = storage.getRowStart(i);
+			h1 = storage.getRowStart(i + 1);
 			for (j = l1; j < h1; j++) {
 				some = false;
 				all = true;
-				l2 = choiceStarts[j];
-				h2 = choiceStarts[j + 1];
+				l2 = storage.getChoiceStart(j);
+				h2 = storage.getChoiceStart(j + 1);
 				for (k = l2; k < h2; k++) {
 					// Assume that only non-zero entries are stored
-					if (v.get(cols[k])) {
+					if (v.get(storage.getCol(k))) {
 						some = true;
 					}
-					if (!u.get(cols[k])) {
+					if (!u.get(storage.getCol(k))) {
 						all = false;
 					}
 				}
@@ -767,17 +797,17 @@ public class MDPSparse extends MDPExplicit
 		int j, k, l2, h2;
 		boolean some, all;
 
-		j = rowStarts[s] + i;
+		j = storage.getRowStart(s) + i;
 		some = false;
 		all = true;
-		l2 = choiceStarts[j];
-		h2 = choiceStarts[j + 1];
+		l2 = storage.getChoiceStart(j);
+		h2 = storage.getChoiceStart(j + 1);
 		for (k = l2; k < h2; k++) {
 			// Assume that only non-zero entries are stored
-			if (v.get(cols[k])) {
+			if (v.get(storage.getCol(k))) {
 				some = true;
 			}
-			if (!u.get(cols[k])) {
+			if (!u.get(storage.getCol(k))) {
 				all = false;
 			}
 		}
@@ -795,15 +825,15 @@ public class MDPSparse extends MDPExplicit
 
 		minmax = 0;
 		first = true;
-		l1 = rowStarts[s];
-		h1 = rowStarts[s + 1];
+		l1 = storage.getRowStart(s);
+		h1 = storage.getRowStart(s + 1);
 		for (j = l1; j < h1; j++) {
 			// Compute sum for this distribution
 			d = 0.0;
-			l2 = choiceStarts[j];
-			h2 = choiceStarts[j + 1];
+			l2 = storage.getChoiceStart(j);
+			h2 = storage.getChoiceStart(j + 1);
 			for (k = l2; k < h2; k++) {
-				d += nonZeros[k] * vect[cols[k]];
+				d += storage.getNonZero(k) * vect[storage.getCol(k)];
 			}
 			// Check whether we have exceeded min/max so far
 			if (first || (min && d < minmax) || (!min && d > minmax)) {
@@ -827,6 +857,47 @@ public class MDPSparse extends MDPExplicit
 		return minmax;
 	}
 
+	@Override
+	public void mvMultMinMaxMulti(double vect[], int k, boolean min, double result[], BitSet subset, BitSet unknown[])
+	{
+		double d[] = new double[k], minmax[] = new double[k];
+		for (int s = subset.nextSetBit(0); s >= 0; s = subset.nextSetBit(s + 1)) {
+			int l1 = storage.getRowStart(s);
+			int h1 = storage.getRowStart(s + 1);
+			for (int o = 0; o < k; o++) {
+				minmax[o] = 0.0;
+			}
+			for (int j = l1; j < h1; j++) {
+				// Compute sums for this distribution, for all vectors at once
+				// (each transition is read once; the k values for each successor are adjacent)
+				for (int o = 0; o < k; o++) {
+					d[o] = 0.0;
+				}
+				int l2 = storage.getChoiceStart(j);
+				int h2 = storage.getChoiceStart(j + 1);
+				for (int t = l2; t < h2; t++) {
+					double prob = storage.getNonZero(t);
+					int base = storage.getCol(t) * k;
+					for (int o = 0; o < k; o++) {
+						d[o] += prob * vect[base + o];
+					}
+				}
+				// Check whether we have exceeded min/max so far
+				for (int o = 0; o < k; o++) {
+					if (j == l1 || (min && d[o] < minmax[o]) || (!min && d[o] > minmax[o])) {
+						minmax[o] = d[o];
+					}
+				}
+			}
+			int base = s * k;
+			for (int o = 0; o < k; o++) {
+				if (unknown[o].get(s)) {
+					result[base + o] = minmax[o];
+				}
+			}
+		}
+	}
+
 	@Override
 	public List<Integer> mvMultMinMaxSingleChoices(int s, double vect[], boolean min, double val)
 	{
@@ -837,15 +908,15 @@ public class MDPSparse extends MDPExplicit
 		// Create data structures to store strategy
 		res = new ArrayList<Integer>();
 		// One row of matrix-vector operation
-		l1 = rowStarts[s];
-		h1 = rowStarts[s + 1];
+		l1 = storage.getRowStart(s);
+		h1 = storage.getRowStart(s + 1);
 		for (j = l1; j < h1; j++) {
 			// Compute sum for this distribution
 			d = 0.0;
-			l2 = choiceStarts[j];
-			h2 = choiceStarts[j + 1];
+			l2 = storage.getChoiceStart(j);
+			h2 = storage.getChoiceStart(j + 1);
 			for (k = l2; k < h2; k++) {
-				d += nonZeros[k] * vect[cols[k]];
+				d += storage.getNonZero(k) * vect[storage.getCol(k)];
 			}
 			// Store strategy info if value matches
 			if (PrismUtils.doublesAreClose(val, d, 1e-12, false)) {
@@ -862,13 +933,13 @@ public class MDPSparse extends MDPExplicit
 		int j, k, l2, h2;
 		double d;
 
-		j = rowStarts[s] + i;
+		j = storage.getRowStart(s) + i;
 		// Compute sum for this distribution
 		d = 0.0;
-		l2 = choiceStarts[j];
-		h2 = choiceStarts[j + 1];
+		l2 = storage.getChoiceStart(j);
+		h2 = storage.getChoiceStart(j + 1);
 		for (k = l2; k < h2; k++) {
-			d += nonZeros[k] * vect[cols[k]];
+			d += storage.getNonZero(k) * vect[storage.getCol(k)];
 		}
 
 		return d;
@@ -883,19 +954,19 @@ public class MDPSparse extends MDPExplicit
 
 		minmax = 0;
 		first = true;
-		l1 = rowStarts[s];
-		h1 = rowStarts[s + 1];
+		l1 = storage.getRowStart(s);
+		h1 = storage.getRowStart(s + 1);
 		for (j = l1; j < h1; j++) {
 			diag = 1.0;
 			// Compute sum for this distribution
 			d = 0.0;
-			l2 = choiceStarts[j];
-			h2 = choiceStarts[j + 1];
+			l2 = storage.getChoiceStart(j);
+			h2 = storage.getChoiceStart(j + 1);
 			for (k = l2; k < h2; k++) {
-				if (cols[k] != s) {
-					d += nonZeros[k] * vect[cols[k]];
+				if (storage.getCol(k) != s) {
+					d += storage.getNonZero(k) * vect[storage.getCol(k)];
 				} else {
-					diag -= nonZeros[k];
+					diag -= storage.getNonZero(k);
 				}
 			}
 			if (diag > 0)
@@ -928,17 +999,17 @@ public class MDPSparse extends MDPExplicit
 		int j, k, l2, h2;
 		double diag, d;
 
-		j = rowStarts[s] + i;
+		j = storage.getRowStart(s) + i;
 		diag = 1.0;
 		// Compute sum for this distribution
 		d = 0.0;
-		l2 = choiceStarts[j];
-		h2 = choiceStarts[j + 1];
+		l2 = storage.getChoiceStart(j);
+		h2 = storage.getChoiceStart(j + 1);
 		for (k = l2; k < h2; k++) {
-			if (cols[k] != s) {
-				d += nonZeros[k] * vect[cols[k]];
+			if (storage.getCol(k) != s) {
+				d += storage.getNonZero(k) * vect[storage.getCol(k)];
 			} else {
-				diag -= nonZeros[k];
+				diag -= storage.getNonZero(k);
 			}
 		}
 		if (diag > 0)
@@ -956,15 +1027,15 @@ public class MDPSparse extends MDPExplicit
 
 		minmax = 0;
 		first = true;
-		l1 = rowStarts[s];
-		h1 = rowStarts[s + 1];
+		l1 = storage.getRowStart(s);
+		h1 = storage.getRowStart(s + 1);
 		for (j = l1; j < h1; j++) {
 			// Compute sum for this distribution
 			d = mdpRewards.getTransitionReward(s, j - l1);
-			l2 = choiceStarts[j];
-			h2 = choiceStarts[j + 1];
+			l2 = storage.getChoiceStart(j);
+			h2 = storage.getChoiceStart(j + 1);
 			for (k = l2; k < h2; k++) {
-				d += discount * nonZeros[k] * vect[cols[k]];
+				d += discount * storage.getNonZero(k) * vect[storage.getCol(k)];
 			}
 			// Check whether we have exceeded min/max so far
 			if (first || (min && d < minmax) || (!min && d > minmax)) {
@@ -999,15 +1070,15 @@ public class MDPSparse extends MDPExplicit
 
 		minmax = 0;
 		first = true;
-		l1 = rowStarts[s];
-		h1 = rowStarts[s + 1];
+		l1 = storage.getRowStart(s);
+		h1 = storage.getRowStart(s + 1);
 		for (j = l1; j < h1; j++) {
 			// Compute sum for this distribution
 			d = mdpRewards.getTransitionReward(s, j - l1);
-			l2 = choiceStarts[j];
-			h2 = choiceStarts[j + 1];
+			l2 = storage.getChoiceStart(j);
+			h2 = storage.getChoiceStart(j + 1);
 			for (k = l2; k < h2; k++) {
-				d += nonZeros[k] * vect[cols[k]];
+				d += storage.getNonZero(k) * vect[storage.getCol(k)];
 			}
 			// Check whether we have exceeded min/max so far
 			if (first || (min && d < minmax) || (!min && d > minmax)) {
@@ -1039,15 +1110,15 @@ public class MDPSparse extends MDPExplicit
 		int j, k, l2, h2;
 		double d;
 
-		j = rowStarts[s] + i;
+		j = storage.getRowStart(s) + i;
 		// Compute sum for this distribution
 		// TODO: use transition rewards when added to DTMCss
 		// d = mcRewards.getTransitionReward(s);
 		d = 0;
-		l2 = choiceStarts[j];
-		h2 = choiceStarts[j + 1];
+		l2 = storage.getChoiceStart(j);
+		h2 = storage.getChoiceStart(j + 1);
 		for (k = l2; k < h2; k++) {
-			d += nonZeros[k] * vect[cols[k]];
+			d += storage.getNonZero(k) * vect[storage.getCol(k)];
 		}
 		d += mcRewards.getStateReward(s);
 		return d;
@@ -1059,15 +1130,15 @@ public class MDPSparse extends MDPExplicit
 		int j, k, l2, h2;
 		double d;
 
-		j = rowStarts[s] + i;
+		j = storage.getRowStart(s) + i;
 		// Compute sum for this distribution
 		// TODO: use transition rewards when added to DTMCss
 		// d = mcRewards.getTransitionReward(s);
 		d = 0;
-		l2 = choiceStarts[j];
-		h2 = choiceStarts[j + 1];
+		l2 = storage.getChoiceStart(j);
+		h2 = storage.getChoiceStart(j + 1);
 		for (k = l2; k < h2; k++) {
-			d += nonZeros[k] * vect[cols[k]];
+			d += storage.getNonZero(k) * vect[storage.getCol(k)];
 		}
 		d += mdpRewards.getTransitionReward(s,i);
 		return d;
@@ -1082,19 +1153,19 @@ public class MDPSparse extends MDPExplicit
 
 		minmax = 0;
 		first = true;
-		l1 = rowStarts[s];
-		h1 = rowStarts[s + 1];
+		l1 = storage.getRowStart(s);
+		h1 = storage.getRowStart(s + 1);
 		for (j = l1; j < h1; j++) {
 			diag = 1.0;
-			// Compute sum for this distribution
-			d = mdpRewards.getTransitionReward(s, j - l1);
-			l2 = choiceStarts[j];
-			h2 = choiceStarts[j + 1];
+			// Compute sum for this distribution (including state reward, since it is also divided by diag)
+			d = mdpRewards.getStateReward(s) + mdpRewards.getTransitionReward(s, j - l1);
+			l2 = storage.getChoiceStart(j);
+			h2 = storage.getChoiceStart(j + 1);
 			for (k = l2; k < h2; k++) {
-				if (cols[k] != s) {
-					d += nonZeros[k] * vect[cols[k]];
+				if (storage.getCol(k) != s) {
+					d += storage.getNonZero(k) * vect[storage.getCol(k)];
 				} else {
-					diag -= nonZeros[k];
+					diag -= storage.getNonZero(k);
 				}
 			}
 			if (diag > 0)
@@ -1108,8 +1179,6 @@ public class MDPSparse extends MDPExplicit
 			}
 			first = false;
 		}
-		// Add state reward (doesn't affect min/max)
-		minmax += mdpRewards.getStateReward(s);
 		// If strategy generation is enabled, store optimal choice
 		if (strat != null & !first) {
 			// For max, only remember strictly better choices
@@ -1133,15 +1202,15 @@ public class MDPSparse extends MDPExplicit
 		// Create data structures to store strategy
 		res = new ArrayList<Integer>();
 		// One row of matrix-vector operation
-		l1 = rowStarts[s];
-		h1 = rowStarts[s + 1];
+		l1 = storage.getRowStart(s);
+		h1 = storage.getRowStart(s + 1);
 		for (j = l1; j < h1; j++) {
 			// Compute sum for this distribution
 			d = mdpRewards.getTransitionReward(s, j - l1);
-			l2 = choiceStarts[j];
-			h2 = choiceStarts[j + 1];
+			l2 = storage.getChoiceStart(j);
+			h2 = storage.getChoiceStart(j + 1);
 			for (k = l2; k < h2; k++) {
-				d += nonZeros[k] * vect[cols[k]];
+				d += storage.getNonZero(k) * vect[storage.getCol(k)];
 			}
 			d += mdpRewards.getStateReward(s);
 			// Store strategy info if value matches
@@ -1159,15 +1228,249 @@ public class MDPSparse extends MDPExplicit
 		for (int s : states) {
 			int j, l2, h2;
 			int k = strat[s];
-			j = rowStarts[s] + k;
-			l2 = choiceStarts[j];
-			h2 = choiceStarts[j + 1];
+			j = storage.getRowStart(s) + k;
+			l2 = storage.getChoiceStart(j);
+			h2 = storage.getChoiceStart(j + 1);
 			for (k = l2; k < h2; k++) {
-				dest[cols[k]] += nonZeros[k] * source[s];
+				dest[storage.getCol(k)] += storage.getNonZero(k) * source[s];
 			}
 		}
 	}
 
+	// Parallel (multi-threaded) matrix-vector operations
+
+	/**
+	 * Do a matrix-vector multiplication followed by min/max, i.e. one step of value iteration,
+	 * as for {@link #mvMultMinMax(double[], boolean, double[], BitSet, boolean, int[])},
+	 * but with the states split into contiguous blocks that are processed in parallel.
+	 * The result is identical to the sequential version.
+	 * @param pool Fork/join pool to use (one block of states per thread)
+	 */
+	public void mvMultMinMaxParallel(final double vect[], final boolean min, final double result[], final BitSet subset, final boolean complement,
+			final int strat[], ForkJoinPool pool)
+	{
+		doParallel(pool, new StateBlockOp()
+		{
+			@Override
+			public double apply(int lo, int hi)
+			{
+				for (int s = nextState(subset, complement, lo); s < hi; s = nextState(subset, complement, s + 1)) {
+					result[s] = mvMultMinMaxSingle(s, vect, min, strat);
+				}
+				return 0.0;
+			}
+		});
+	}
+
+	/**
+	 * Do a (block) Gauss-Seidel-style matrix-vector multiplication followed by min/max,
+	 * in parallel, i.e. a parallel version of {@link #mvMultGSMinMax(double[], boolean, BitSet, boolean, boolean, int[])}.
+	 * The states are split into contiguous blocks, one per thread. Within each block, values
+	 * are updated in place, as for Gauss-Seidel; values from other blocks are those from the
+	 * previous iteration (so the result is deterministic, but depends on the number of threads).
+	 * @param pool Fork/join pool to use (one block of states per thread)
+	 * @return The maximum difference between old/new elements of {@code vect}
+	 */
+	public double mvMultGSMinMaxParallel(final double vect[], final boolean min, final BitSet subset, final boolean complement, final boolean absolute,
+			final int strat[], ForkJoinPool pool)
+	{
+		final double old[] = vect.clone();
+		return doParallel(pool, new StateBlockOp()
+		{
+			@Override
+			public double apply(int lo, int hi)
+			{
+				double d, diff, maxDiff = 0.0;
+				for (int s = nextState(subset, complement, lo); s < hi; s = nextState(subset, complement, s + 1)) {
+					d = mvMultBlockJacMinMaxSingle(s, vect, old, lo, hi, null, min, strat);
+					diff = absolute ? (Math.abs(d - vect[s])) : (Math.abs(d - vect[s]) / d);
+					maxDiff = diff > maxDiff ? diff : maxDiff;
+					vect[s] = d;
+				}
+				return maxDiff;
+			}
+		});
+	}
+
+	/**
+	 * Do a matrix-vector multiplication and sum of rewards followed by min/max, i.e. one step of value iteration,
+	 * as for {@link #mvMultRewMinMax(double[], MDPRewards, boolean, double[], BitSet, boolean, int[])},
+	 * but with the states split into contiguous blocks that are processed in parallel.
+	 * The result is identical to the sequential version.
+	 * @param pool Fork/join pool to use (one block of states per thread)
+	 */
+	public void mvMultRewMinMaxParallel(final double vect[], final MDPRewards mdpRewards, final boolean min, final double result[], final BitSet subset,
+			final boolean complement, final int strat[], ForkJoinPool pool)
+	{
+		doParallel(pool, new StateBlockOp()
+		{
+			@Override
+			public double apply(int lo, int hi)
+			{
+				for (int s = nextState(subset, complement, lo); s < hi; s = nextState(subset, complement, s + 1)) {
+					result[s] = mvMultRewMinMaxSingle(s, vect, mdpRewards, min, strat);
+				}
+				return 0.0;
+			}
+		});
+	}
+
+	/**
+	 * Do a (block) Gauss-Seidel-style matrix-vector multiplication and sum of rewards followed by min/max,
+	 * in parallel, i.e. a parallel version of {@link #mvMultRewGSMinMax(double[], MDPRewards, boolean, BitSet, boolean, boolean, int[])}.
+	 * Blocks are handled as for {@link #mvMultGSMinMaxParallel(double[], boolean, BitSet, boolean, boolean, int[], ForkJoinPool)}.
+	 * @param pool Fork/join pool to use (one block of states per thread)
+	 * @return The maximum difference between old/new elements of {@code vect}
+	 */
+	public double mvMultRewGSMinMaxParallel(final double vect[], final MDPRewards mdpRewards, final boolean min, final BitSet subset, final boolean complement,
+			final boolean absolute, final int strat[], ForkJoinPool pool)
+	{
+		final double old[] = vect.clone();
+		return doParallel(pool, new StateBlockOp()
+		{
+			@Override
+			public double apply(int lo, int hi)
+			{
+				double d, diff, maxDiff = 0.0;
+				for (int s = nextState(subset, complement, lo); s < hi; s = nextState(subset, complement, s + 1)) {
+					d = mvMultBlockJacMinMaxSingle(s, vect, old, lo, hi, mdpRewards, min, strat);
+					diff = absolute ? (Math.abs(d - vect[s])) : (Math.abs(d - vect[s]) / d);
+					maxDiff = diff > maxDiff ? diff : maxDiff;
+					vect[s] = d;
+				}
+				return maxDiff;
+			}
+		});
+	}
+
+	/**
+	 * Do a matrix-vector multiplication and sum of discounted rewards followed by min/max,
+	 * as for {@link #mvDiscountedMultRewMinMax(double[], MDPRewards, boolean, double[], double, BitSet, boolean, int[])},
+	 * but with the states split into contiguous blocks that are processed in parallel.
+	 * The result is identical to the sequential version.
+	 * @param pool Fork/join pool to use (one block of states per thread)
+	 */
+	public void mvDiscountedMultRewMinMaxParallel(final double vect[], final MDPRewards mdpRewards, final boolean min, final double result[],
+			final double discount, final BitSet subset, final boolean complement, final int strat[], ForkJoinPool pool)
+	{
+		doParallel(pool, new StateBlockOp()
+		{
+			@Override
+			public double apply(int lo, int hi)
+			{
+				for (int s = nextState(subset, complement, lo); s < hi; s = nextState(subset, complement, s + 1)) {
+					result[s] = mvDiscountedMultRewMinMaxSingle(s, vect, mdpRewards, discount, min, strat);
+				}
+				return 0.0;
+			}
+		});
+	}
+
+	/**
+	 * Operation on a contiguous block of states [lo,hi), executed by a single thread.
+	 */
+	private interface StateBlockOp
+	{
+		/**
+		 * Apply the operation to states lo,...,hi-1 and return the maximum difference
+		 * between old/new values (or 0 if not relevant).
+		 */
+		public double apply(int lo, int hi);
+	}
+
+	/**
+	 * Split the states into contiguous blocks, one per thread of {@code pool},
+	 * apply {@code op} to each block in parallel and return the maximum of the results.
+	 */
+	private double doParallel(ForkJoinPool pool, final StateBlockOp op)
+	{
+		int numBlocks = Math.max(1, Math.min(pool.getParallelism(), numStates));
+		List<ForkJoinTask<Double>> tasks = new ArrayList<ForkJoinTask<Double>>(numBlocks);
+		for (int b = 0; b < numBlocks; b++) {
+			final int lo = (int) ((long) numStates * b / numBlocks);
+			final int hi = (int) ((long) numStates * (b + 1) / numBlocks);
+			tasks.add(pool.submit(new Callable<Double>()
+			{
+				@Override
+				public Double call()
+				{
+					return op.apply(lo, hi);
+				}
+			}));
+		}
+		double maxDiff = 0.0;
+		for (ForkJoinTask<Double> task : tasks) {
+			maxDiff = Math.max(maxDiff, task.join());
+		}
+		return maxDiff;
+	}
+
+	/**
+	 * Get the first state, from {@code s} onwards, in the set of states given by {@code subset}/{@code complement}
+	 * (as for {@link IterableStateSet}), or numStates if there is none.
+	 */
+	private int nextState(BitSet subset, boolean complement, int s)
+	{
+		if (subset == null) {
+			return complement ? numStates : s;
+		}
+		s = complement ? subset.nextClearBit(s) : subset.nextSetBit(s);
+		return (s < 0 || s >= numStates) ? numStates : s;
+	}
+
+	/**
+	 * Do a single row of Jacobi-style matrix-vector multiplication (and sum of rewards, if {@code mdpRewards}
+	 * is non-null) followed by min/max, for block Gauss-Seidel: values for states in the block [lo,hi)
+	 * are taken from {@code vect}, and for all other states from {@code old}.
+	 */
+	private double mvMultBlockJacMinMaxSingle(int s, double vect[], double old[], int lo, int hi, MDPRewards mdpRewards, boolean min, int strat[])
+	{
+		int j, k, c, l1, h1, l2, h2, stratCh = -1;
+		double diag, d, minmax;
+		boolean first;
+
+		minmax = 0;
+		first = true;
+		l1 = storage.getRowStart(s);
+		h1 = storage.getRowStart(s + 1);
+		for (j = l1; j < h1; j++) {
+			diag = 1.0;
+			// Compute sum for this distribution
+			d = (mdpRewards == null) ? 0.0 : mdpRewards.getStateReward(s) + mdpRewards.getTransitionReward(s, j - l1);
+			l2 = storage.getChoiceStart(j);
+			h2 = storage.getChoiceStart(j + 1);
+			for (k = l2; k < h2; k++) {
+				c = storage.getCol(k);
+				if (c != s) {
+					d += storage.getNonZero(k) * (c >= lo && c < hi ? vect[c] : old[c]);
+				} else {
+					diag -= storage.getNonZero(k);
+				}
+			}
+			if (diag > 0)
+				d /= diag;
+			// Check whether we have exceeded min/max so far
+			if (first || (min && d < minmax) || (!min && d > minmax)) {
+				minmax = d;
+				// If strategy generation is enabled, remember optimal choice
+				if (strat != null)
+					stratCh = j - l1;
+			}
+			first = false;
+		}
+		// If strategy generation is enabled, store optimal choice
+		if (strat != null & !first) {
+			// For max, only remember strictly better choices
+			if (min) {
+				strat[s] = stratCh;
+			} else if (strat[s] == -1 || minmax > vect[s]) {
+				strat[s] = stratCh;
+			}
+		}
+
+		return minmax;
+	}
+
 	// Standard methods
 
 	@Override
@@ -1181,8 +1484,8 @@ public class MDPSparse extends MDPExplicit
 			if (i > 0)
 				s += ", ";
 			s += i + ": [";
-			l1 = rowStarts[i];
-			h1 = rowStarts[i + 1];
+			l1 = storage.getRowStart(i);
+			h1 = storage.getRowStart(i + 1);
 			for (j = l1; j < h1; j++) {
 				if (j > l1)
 					s += ",";
@@ -1190,12 +1493,12 @@ public class MDPSparse extends MDPExplicit
 				if (o != null)
 					s += o + ":";
 				s += "{";
-				l2 = choiceStarts[j];
-				h2 = choiceStarts[j + 1];
+				l2 = storage.getChoiceStart(j);
+				h2 = storage.getChoiceStart(j + 1);
 				for (k = l2; k < h2; k++) {
 					if (k > l2)
 						s += ", ";
-					s += cols[k] + ":" + nonZeros[k];
+					s += storage.getCol(k) + ":" + storage.getNonZero(k);
 				}
 				s += "}";
 			}
@@ -1216,13 +1519,13 @@ public class MDPSparse extends MDPExplicit
 			return false;
 		if (!initialStates.equals(mdp.initialStates))
 			return false;
-		if (!Utils.doubleArraysAreEqual(nonZeros, mdp.nonZeros))
+		if (!Utils.doubleArraysAreEqual(storage.getNonZeros(), mdp.storage.getNonZeros()))
 			return false;
-		if (!Utils.intArraysAreEqual(cols, mdp.cols))
+		if (!Utils.intArraysAreEqual(storage.getCols(), mdp.storage.getCols()))
 			return false;
-		if (!Utils.intArraysAreEqual(choiceStarts, mdp.choiceStarts))
+		if (!Utils.intArraysAreEqual(storage.getChoiceStarts(), mdp.storage.getChoiceStarts()))
 			return false;
-		if (!Utils.intArraysAreEqual(rowStarts, mdp.rowStarts))
+		if (!Utils.intArraysAreEqual(storage.getRowStarts(), mdp.storage.getRowStarts()))
 			return false;
 		// TODO: compare actions (complicated: null = null,null,null,...)
 		return true;
@@ -0,0 +1,294 @@
+//==============================================================================
+//
+//	Copyright (c) 2002-
+//	Authors:
+//	* Dave Parker <david.parker@comlab.ox.ac.uk> (University of Oxford)
+//
+//------------------------------------------------------------------------------
+//
+//	This file is part of PRISM.
+//
+//	PRISM is free software; you can redistribute it and/or modify
+//	it under the terms of the GNU General Public License as published by
+//	the Free Software Foundation; either version 2 of the License, or
+//	(at your option) any later version.
+//
+//	PRISM is distributed in the hope that it will be useful,
+//	but WITHOUT ANY WARRANTY; without even the implied warranty of
+//	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//	GNU General Public License for more details.
+//
+//	You should have received a copy of the GNU General Public License
+//	along with PRISM; if not, write to the Free Software Foundation,
+//	Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+//
+//==============================================================================
+
+package explicit;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import prism.PrismException;
+import prism.PrismUtils;
+
+/**
+ * Builds an {@link MDPSparse} incrementally, writing choices straight into {@link SparseStorage}
+ * of the required type (grown as needed), rather than via an intermediate {@link MDPSimple}.
+ * Choices must be added to states in ascending order of state index, as is the case during
+ * model construction (where states are explored in the order that they are found).
+ * As for {@link MDPSimple}, a choice is not added if the state already has an identical one
+ * (same action label and distribution). Once all states have been added, {@link #build(int[])}
+ * creates the MDP, applying a state index permutation and sorting transitions within choices.
+ */
+class MDPSparseBuilder
+{
+	/** Type of storage to build */
+	private SparseStorage.Type type;
+	/** Storage for the choices added so far (in the order added, and with unsorted transitions) */
+	private SparseStorage storage;
+	/** Space available in {@code storage} */
+	private int maxStates, maxChoices, maxTransitions;
+	/** Number of states, choices and transitions added so far */
+	private int numStates, numChoices, numTransitions;
+	/** Last state whose (start of) row has been stored */
+	private int lastRow = -1;
+	/** Action labels (see {@link MDPSparse#actionList}) and their indices */
+	private List<Object> actionList = new ArrayList<Object>();
+	private Map<Object, Integer> actionIndices = new HashMap<Object, Integer>();
+	/** Initial states and deadlock states */
+	private List<Integer> initialStates = new ArrayList<Integer>();
+	private BitSet deadlocks = new BitSet();
+	/** Should deadlocks be fixed (by adding self-loops)? */
+	private boolean fixDeadlocks = false;
+
+	/**
+	 * Create a builder for an MDP stored in storage of type {@code type}.
+	 */
+	public MDPSparseBuilder(SparseStorage.Type type) throws PrismException
+	{
+		this.type = type;
+		maxStates = maxChoices = maxTransitions = 1024;
+		storage = SparseStorage.create(type, maxStates, maxChoices, maxTransitions, true);
+	}
+
+	/**
+	 * Add a new state and return its index.
+	 */
+	public int addState()
+	{
+		return numStates++;
+	}
+
+	/**
+	 * Add a state to the list of initial states.
+	 */
+	public void addInitialState(int s)
+	{
+		initialStates.add(s);
+	}
+
+	/**
+	 * Add a choice (distribution {@code distr}, labelled with {@code action}) to state {@code s},
+	 * unless there is already an identical one. Choices cannot be added to states before the last one used.
+	 */
+	public void addChoice(int s, Distribution distr, Object action) throws PrismException
+	{
+		if (s < lastRow) {
+			throw new PrismException("Choices must be added to states in order");
+		}
+		startRows(s);
+		int a = -1;
+		if (action != null) {
+			Integer i = actionIndices.get(action);
+			a = i == null ? -1 : i;
+		}
+		// Check for an identical choice (if the action is new, there cannot be one)
+		if (action == null || a != -1) {
+			for (int j = storage.getRowStart(s); j < numChoices; j++) {
+				if (storage.getActionIndex(j) == a && isEqual(j, distr)) {
+					return;
+				}
+			}
+		}
+		if (action != null && a == -1) {
+			a = actionList.size();
+			actionList.add(action);
+			actionIndices.put(action, a);
+		}
+		ensureSpace(numStates, numChoices + 1, numTransitions + distr.size());
+		storage.setActionIndex(numChoices, a);
+		for (Map.Entry<Integer, Double> e : distr) {
+			storage.setCol(numTransitions, e.getKey());
+			storage.setNonZero(numTransitions, e.getValue());
+			numTransitions++;
+		}
+		numChoices++;
+		storage.setChoiceStart(numChoices, numTransitions);
+	}
+
+	/**
+	 * Find deadlocks (states with no choices) amongst those added so far and, optionally, fix them
+	 * by adding self-loops when the MDP is built (as for {@link MDPSimple#findDeadlocks(boolean)}).
+	 */
+	public void findDeadlocks(boolean fix) throws PrismException
+	{
+		startRows(numStates);
+		for (int s = 0; s < numStates; s++) {
+			if (getNumChoices(s) == 0) {
+				deadlocks.set(s);
+			}
+		}
+		fixDeadlocks = fix;
+	}
+
+	/**
+	 * Build the MDP. Optionally, a state index permutation can be provided,
+	 * i.e. old state index i becomes index permut[i]. Transitions within choices
+	 * are sorted (by ascending order of column index). The storage used during construction is discarded.
+	 * <br>
+	 * Note that, while building, the storage used during construction (whose capacity, after growing,
+	 * can be up to twice the size of the model) and the final (exact size) storage both exist, so the peak
+	 * footprint (on/off the Java heap, or on disk for memory-mapped storage) is up to about three times that of the final MDP.
+	 * @param permut State space permutation (or null if none)
+	 */
+	public MDPSparse build(int permut[]) throws PrismException
+	{
+		startRows(numStates);
+		int permutInv[] = new int[numStates];
+		for (int s = 0; s < numStates; s++) {
+			permutInv[permut == null ? s : permut[s]] = s;
+		}
+		int numLoops = fixDeadlocks ? deadlocks.cardinality() : 0;
+		int numChoicesNew = numChoices + numLoops;
+		int numTransitionsNew = numTransitions + numLoops;
+		boolean actions = !actionList.isEmpty();
+		SparseStorage storageNew = SparseStorage.create(type, numStates, numChoicesNew, numTransitionsNew, actions);
+		int cols[] = new int[16];
+		double nonZeros[] = new double[16];
+		int j = 0, k = 0;
+		for (int s = 0; s < numStates; s++) {
+			int sOld = permutInv[s];
+			storageNew.setRowStart(s, j);
+			// Self-loop for a deadlock
+			if (fixDeadlocks && deadlocks.get(sOld)) {
+				storageNew.setChoiceStart(j++, k);
+				storageNew.setCol(k, s);
+				storageNew.setNonZero(k++, 1.0);
+			}
+			int h1 = storage.getRowStart(sOld + 1);
+			for (int jOld = storage.getRowStart(sOld); jOld < h1; jOld++) {
+				storageNew.setChoiceStart(j, k);
+				if (actions) {
+					storageNew.setActionIndex(j, storage.getActionIndex(jOld));
+				}
+				// Permute and sort (insertion sort, since choices are typically small)
+				int l2 = storage.getChoiceStart(jOld);
+				int n = storage.getChoiceStart(jOld + 1) - l2;
+				if (n > cols.length) {
+					cols = new int[2 * n];
+					nonZeros = new double[2 * n];
+				}
+				for (int i = 0; i < n; i++) {
+					int c = storage.getCol(l2 + i);
+					c = permut == null ? c : permut[c];
+					double d = storage.getNonZero(l2 + i);
+					int pos = i;
+					while (pos > 0 && cols[pos - 1] > c) {
+						cols[pos] = cols[pos - 1];
+						nonZeros[pos] = nonZeros[pos - 1];
+						pos--;
+					}
+					cols[pos] = c;
+					nonZeros[pos] = d;
+				}
+				for (int i = 0; i < n; i++) {
+					storageNew.setCol(k, cols[i]);
+					storageNew.setNonZero(k++, nonZeros[i]);
+				}
+				j++;
+			}
+		}
+		storageNew.setChoiceStart(numChoicesNew, numTransitionsNew);
+		storageNew.setRowStart(numStates, numChoicesNew);
+		storage.release();
+		storage = null;
+		// Create MDP
+		MDPSparse mdp = new MDPSparse(numStates, storageNew, actions ? actionList : null);
+		for (int s : initialStates) {
+			mdp.addInitialState(permut == null ? s : permut[s]);
+		}
+		for (int s = deadlocks.nextSetBit(0); s >= 0; s = deadlocks.nextSetBit(s + 1)) {
+			mdp.addDeadlockState(permut == null ? s : permut[s]);
+		}
+		return mdp;
+	}
+
+	/**
+	 * Get the number of choices added so far for state {@code s} (whose row must have been started).
+	 */
+	private int getNumChoices(int s)
+	{
+		return (s < lastRow ? storage.getRowStart(s + 1) : numChoices) - storage.getRowStart(s);
+	}
+
+	/**
+	 * Store the start of the rows of all states up to {@code s}, if not done already.
+	 */
+	private void startRows(int s) throws PrismException
+	{
+		if (s <= lastRow) {
+			return;
+		}
+		ensureSpace(s + 1, numChoices, numTransitions);
+		while (lastRow < s) {
+			storage.setRowStart(++lastRow, numChoices);
+		}
+	}
+
+	/**
+	 * Is choice {@code j} identical (up to a relative tolerance, as for {@link Distribution#equals(Object)})
+	 * to distribution {@code distr}?
+	 */
+	private boolean isEqual(int j, Distribution distr)
+	{
+		int l2 = storage.getChoiceStart(j);
+		int h2 = storage.getChoiceStart(j + 1);
+		if (h2 - l2 != distr.size()) {
+			return false;
+		}
+		for (int k = l2; k < h2; k++) {
+			int c = storage.getCol(k);
+			if (!distr.contains(c) || !PrismUtils.doublesAreClose(distr.get(c), storage.getNonZero(k), 1e-12, false)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Make sure there is space in {@code storage} for the given number of states/choices/transitions
+	 * (growing it geometrically if not).
+	 */
+	private void ensureSpace(int numStates, int numChoices, int numTransitions) throws PrismException
+	{
+		if (numStates <= maxStates && numChoices <= maxChoices && numTransitions <= maxTransitions) {
+			return;
+		}
+		maxStates = grow(maxStates, numStates);
+		maxChoices = grow(maxChoices, numChoices);
+		maxTransitions = grow(maxTransitions, numTransitions);
+		storage.resize(maxStates, maxChoices, maxTransitions, true);
+	}
+
+	private static int grow(int size, int required)
+	{
+		while (size < required) {
+			size = (int) Math.min(Integer.MAX_VALUE - 8, 2L * size);
+		}
+		return size;
+	}
+}
@@ -276,4 +276,16 @@ public interface Model
 	/** Clear any stored predecessor relation, e.g., because the model was modified */
 	public void clearPredecessorRelation();
 
+	/**
+	 * Get the cache of graph-analysis results (SCCs, MECs, precomputation results, ...)
+	 * for this model, creating it if necessary.
+	 */
+	public ModelAnalysisCache getAnalysisCache();
+
+	/**
+	 * Clear any cached graph-analysis results and any stored predecessor relation,
+	 * e.g., because the model was modified.
+	 */
+	public void clearAnalysisCache();
+
 }
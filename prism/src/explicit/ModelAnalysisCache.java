@@ -0,0 +1,319 @@
+//==============================================================================
+//
+//	Copyright (c) 2002-
+//	Authors:
+//	* Dave Parker <david.parker@comlab.ox.ac.uk> (University of Oxford)
+//
+//------------------------------------------------------------------------------
+//
+//	This file is part of PRISM.
+//
+//	PRISM is free software; you can redistribute it and/or modify
+//	it under the terms of the GNU General Public License as published by
+//	the Free Software Foundation; either version 2 of the License, or
+//	(at your option) any later version.
+//
+//	PRISM is distributed in the hope that it will be useful,
+//	but WITHOUT ANY WARRANTY; without even the implied warranty of
+//	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//	GNU General Public License for more details.
+//
+//	You should have received a copy of the GNU General Public License
+//	along with PRISM; if not, write to the Free Software Foundation,
+//	Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+//
+//==============================================================================
+
+
+package explicit;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A cache of analysis results for an explicit Model, so that they are not recomputed
+ * for each property checked on the same model: (B)SCC and MEC decompositions,
+ * the results of precomputation algorithms (e.g. prob0/prob1), keyed by their arguments,
+ * and, for CTMCs, the uniformised matrix and the most recent batch of transient probabilities.
+ * It is obtained via {@link Model#getAnalysisCache()}, alongside the stored predecessor relation.
+ * <p>
+ * The cache is cleared when the model is modified via its mutators
+ * (see {@link Model#clearAnalysisCache()}); as a further safeguard, it is also cleared
+ * if the number of states, transitions or choices of the model has changed since results were stored.
+ * Sets passed in or returned are copies, so can be freely modified by the caller.
+ */
+public class ModelAnalysisCache
+{
+	/** Maximum number of precomputation results stored */
+	private static final int MAX_PRECOMP_RESULTS = 64;
+
+	/** Size of the model when results were stored */
+	private int numStates = -1;
+	private int numTransitions = -1;
+	private int numChoices = -1;
+
+	/** SCCs (non-trivial) and states not in them */
+	private List<BitSet> sccs = null;
+	private BitSet notInSCCs = null;
+	/** BSCCs */
+	private List<BitSet> bsccs = null;
+	/** MECs of the whole model */
+	private List<BitSet> mecs = null;
+	/** Precomputation results (least recently used are discarded first) */
+	private Map<PrecompKey, BitSet> precompResults = new LinkedHashMap<PrecompKey, BitSet>(16, 0.75f, true)
+	{
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<PrecompKey, BitSet> eldest)
+		{
+			return size() > MAX_PRECOMP_RESULTS;
+		}
+	};
+	/** Uniformised matrix (for CTMCs) */
+	private UniformisedMatrix uniformisedMatrix = null;
+	/** Transient (backwards) probabilities, for each time bound, and the arguments they were computed for */
+	private Map<Double, double[]> transientProbs = null;
+	private BitSet transientTarget = null;
+	private BitSet transientNonAbs = null;
+	private double transientAcc;
+
+	/**
+	 * Key for a precomputation result: the name of the algorithm
+	 * (e.g. "prob0"), its state set arguments, and whether it is for min or max.
+	 */
+	private static class PrecompKey
+	{
+		private String alg;
+		private BitSet remain;
+		private BitSet target;
+		private boolean min;
+		private int hash;
+
+		public PrecompKey(String alg, BitSet remain, BitSet target, boolean min)
+		{
+			this.alg = alg;
+			this.remain = remain == null ? null : (BitSet) remain.clone();
+			this.target = (BitSet) target.clone();
+			this.min = min;
+			hash = alg.hashCode();
+			hash = 31 * hash + (remain == null ? 0 : remain.hashCode());
+			hash = 31 * hash + target.hashCode();
+			hash = 31 * hash + (min ? 1 : 0);
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object o)
+		{
+			if (!(o instanceof PrecompKey))
+				return false;
+			PrecompKey key = (PrecompKey) o;
+			return hash == key.hash && min == key.min && alg.equals(key.alg) && target.equals(key.target)
+					&& (remain == null ? key.remain == null : remain.equals(key.remain));
+		}
+	}
+
+	// Validity
+
+	/**
+	 * Clear all stored results.
+	 */
+	public synchronized void clear()
+	{
+		numStates = numTransitions = numChoices = -1;
+		sccs = null;
+		notInSCCs = null;
+		bsccs = null;
+		mecs = null;
+		precompResults.clear();
+		uniformisedMatrix = null;
+		transientProbs = null;
+		transientTarget = null;
+		transientNonAbs = null;
+	}
+
+	/**
+	 * Check that the stored results are (still) for a model of the same size as {@code model}
+	 * and, if not, clear them.
+	 */
+	private void checkModel(Model model)
+	{
+		int nc = model instanceof NondetModel ? ((NondetModel) model).getNumChoices() : 0;
+		if (numStates != model.getNumStates() || numTransitions != model.getNumTransitions() || numChoices != nc) {
+			clear();
+			numStates = model.getNumStates();
+			numTransitions = model.getNumTransitions();
+			numChoices = nc;
+		}
+	}
+
+	// SCCs/BSCCs
+
+	/**
+	 * Get the stored (non-trivial) SCCs for {@code model}, or null if not available.
+	 */
+	public synchronized List<BitSet> getSCCs(Model model)
+	{
+		checkModel(model);
+		return copy(sccs);
+	}
+
+	/**
+	 * Get the states not in any (non-trivial) SCC, as stored with the SCCs, or null if not available.
+	 */
+	public synchronized BitSet getNotInSCCs(Model model)
+	{
+		checkModel(model);
+		return notInSCCs == null ? null : (BitSet) notInSCCs.clone();
+	}
+
+	/**
+	 * Store the (non-trivial) SCCs for {@code model}, and the states not in any of them.
+	 */
+	public synchronized void setSCCs(Model model, List<BitSet> sccs, BitSet notInSCCs)
+	{
+		checkModel(model);
+		this.sccs = copy(sccs);
+		this.notInSCCs = (BitSet) notInSCCs.clone();
+	}
+
+	/**
+	 * Get the stored BSCCs for {@code model}, or null if not available.
+	 */
+	public synchronized List<BitSet> getBSCCs(Model model)
+	{
+		checkModel(model);
+		return copy(bsccs);
+	}
+
+	/**
+	 * Store the BSCCs for {@code model}.
+	 */
+	public synchronized void setBSCCs(Model model, List<BitSet> bsccs)
+	{
+		checkModel(model);
+		this.bsccs = copy(bsccs);
+	}
+
+	// MECs
+
+	/**
+	 * Get the stored MECs (of the whole model) for {@code model}, or null if not available.
+	 */
+	public synchronized List<BitSet> getMECs(Model model)
+	{
+		checkModel(model);
+		return copy(mecs);
+	}
+
+	/**
+	 * Store the MECs (of the whole model) for {@code model}.
+	 */
+	public synchronized void setMECs(Model model, List<BitSet> mecs)
+	{
+		checkModel(model);
+		this.mecs = copy(mecs);
+	}
+
+	// Precomputation results
+
+	/**
+	 * Get the stored result of precomputation algorithm {@code alg} on {@code model}
+	 * for the given arguments, or null if not available.
+	 * @param alg Name of the algorithm, e.g. "prob0"
+	 * @param remain Remain in these states (may be null)
+	 * @param target Target states
+	 * @param min Min or max (for nondeterministic models)
+	 */
+	public synchronized BitSet getPrecompResult(Model model, String alg, BitSet remain, BitSet target, boolean min)
+	{
+		checkModel(model);
+		BitSet result = precompResults.get(new PrecompKey(alg, remain, target, min));
+		return result == null ? null : (BitSet) result.clone();
+	}
+
+	/**
+	 * Store the result of precomputation algorithm {@code alg} on {@code model}
+	 * for the given arguments (see {@link #getPrecompResult(Model, String, BitSet, BitSet, boolean)}).
+	 */
+	public synchronized void setPrecompResult(Model model, String alg, BitSet remain, BitSet target, boolean min, BitSet result)
+	{
+		checkModel(model);
+		precompResults.put(new PrecompKey(alg, remain, target, min), (BitSet) result.clone());
+	}
+
+	// Uniformisation
+
+	/**
+	 * Get the stored uniformised matrix for CTMC {@code model} with uniformisation rate {@code q},
+	 * or null if not available. The matrix is not copied, so should not be modified.
+	 */
+	public synchronized UniformisedMatrix getUniformisedMatrix(Model model, double q)
+	{
+		checkModel(model);
+		return uniformisedMatrix != null && uniformisedMatrix.getUniformisationRate() == q ? uniformisedMatrix : null;
+	}
+
+	/**
+	 * Store the uniformised matrix for CTMC {@code model} (replacing any previously stored one).
+	 */
+	public synchronized void setUniformisedMatrix(Model model, UniformisedMatrix matrix)
+	{
+		checkModel(model);
+		this.uniformisedMatrix = matrix;
+	}
+
+	/**
+	 * Get the stored transient (backwards) probabilities for CTMC {@code model}, for time bound {@code t},
+	 * target states {@code target} and non-absorbing states {@code nonAbs}, computed to accuracy {@code acc},
+	 * or null if not available.
+	 */
+	public synchronized double[] getTransientBackwardsProbs(Model model, BitSet target, BitSet nonAbs, double acc, double t)
+	{
+		checkModel(model);
+		if (transientProbs == null || transientAcc != acc || !transientTarget.equals(target) || !transientNonAbs.equals(nonAbs))
+			return null;
+		double soln[] = transientProbs.get(t);
+		return soln == null ? null : soln.clone();
+	}
+
+	/**
+	 * Store the transient (backwards) probabilities for CTMC {@code model}, for each of the time bounds {@code ts}
+	 * (see {@link #getTransientBackwardsProbs(Model, BitSet, BitSet, double, double)}).
+	 * Only the most recently stored batch is kept.
+	 */
+	public synchronized void setTransientBackwardsProbs(Model model, BitSet target, BitSet nonAbs, double acc, double ts[], double solns[][])
+	{
+		checkModel(model);
+		transientProbs = new HashMap<Double, double[]>();
+		for (int i = 0; i < ts.length; i++) {
+			transientProbs.put(ts[i], solns[i].clone());
+		}
+		transientTarget = (BitSet) target.clone();
+		transientNonAbs = (BitSet) nonAbs.clone();
+		transientAcc = acc;
+	}
+
+	// Utility
+
+	private static List<BitSet> copy(List<BitSet> sets)
+	{
+		if (sets == null)
+			return null;
+		List<BitSet> copy = new ArrayList<BitSet>(sets.size());
+		for (BitSet set : sets) {
+			copy.add((BitSet) set.clone());
+		}
+		return copy;
+	}
+}
@@ -48,6 +48,9 @@ public class ModelCheckerResult
 	public double timeProb0 = 0.0;
 	// Strategy
 	public Strategy strat = null;
+	// Certified lower/upper bounds on the solution vector (if computed, e.g. by optimistic value iteration)
+	public double[] lowerBound = null;
+	public double[] upperBound = null;
 
 	/**
 	 * Clear all stored data, including setting of array pointers to null
@@ -55,7 +58,7 @@ public class ModelCheckerResult
 	 */
 	public void clear()
 	{
-		soln = lastSoln = null;
+		soln = lastSoln = lowerBound = upperBound = null;
 		numIters = 0;
 		timeTaken = timePre = timeProb0 = 0.0;
 	}
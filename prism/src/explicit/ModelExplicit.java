@@ -77,6 +77,11 @@ public abstract class ModelExplicit implements Model
 	 */
 	protected PredecessorRelation predecessorRelation = null;
 
+	/**
+	 * (Optionally) cached graph-analysis results, created on demand.
+	 */
+	protected ModelAnalysisCache analysisCache = null;
+
 	// Mutators
 
 	/**
@@ -128,6 +133,7 @@ public abstract class ModelExplicit implements Model
 	 */
 	public void initialise(int numStates)
 	{
+		clearAnalysisCache();
 		this.numStates = numStates;
 		initialStates = new ArrayList<Integer>();
 		deadlocks = new TreeSet<Integer>();
@@ -533,4 +539,22 @@ public abstract class ModelExplicit implements Model
 		predecessorRelation = null;
 	}
 
+	@Override
+	public synchronized ModelAnalysisCache getAnalysisCache()
+	{
+		if (analysisCache == null) {
+			analysisCache = new ModelAnalysisCache();
+		}
+		return analysisCache;
+	}
+
+	@Override
+	public void clearAnalysisCache()
+	{
+		predecessorRelation = null;
+		if (analysisCache != null) {
+			analysisCache.clear();
+		}
+	}
+
 }
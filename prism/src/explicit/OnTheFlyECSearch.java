@@ -0,0 +1,416 @@
+//==============================================================================
+//
+//	Copyright (c) 2002-
+//	Authors:
+//	* Dave Parker <d.a.parker@cs.bham.ac.uk> (University of Birmingham)
+//
+//------------------------------------------------------------------------------
+//
+//	This file is part of PRISM.
+//
+//	PRISM is free software; you can redistribute it and/or modify
+//	it under the terms of the GNU General Public License as published by
+//	the Free Software Foundation; either version 2 of the License, or
+//	(at your option) any later version.
+//
+//	PRISM is distributed in the hope that it will be useful,
+//	but WITHOUT ANY WARRANTY; without even the implied warranty of
+//	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//	GNU General Public License for more details.
+//
+//	You should have received a copy of the GNU General Public License
+//	along with PRISM; if not, write to the Free Software Foundation,
+//	Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+//
+//==============================================================================
+
+package explicit;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+import parser.State;
+import prism.ModelType;
+import prism.PrismComponent;
+import prism.PrismDevNullLog;
+import prism.PrismException;
+import prism.ProductModelGenerator;
+import acceptance.AcceptanceOmega;
+import acceptance.AcceptanceReach;
+
+/**
+ * Search for accepting end components (or, for DTMCs, accepting BSCCs) in the product of a DTMC/MDP
+ * and a deterministic automaton, while the product is being explored from a {@link ProductModelGenerator}.
+ * <br>
+ * The product is explored depth-first, and its SCCs are detected incrementally with Tarjan's algorithm.
+ * Once an SCC is complete, all states reachable from it have been explored, so it can be checked
+ * straight away: for a DTMC, whether it is an accepting BSCC; for an MDP, whether it contains
+ * an accepting end component (by an end component analysis restricted to the SCC).
+ * For reach (co-safe) acceptance, product states are accepting as soon as they are found.
+ * This means the search can stop as soon as an accepting EC/BSCC is found,
+ * without constructing the rest of the product.
+ */
+public class OnTheFlyECSearch extends PrismComponent
+{
+	// Product being explored, and its acceptance condition (over DA states)
+	private ProductModelGenerator prodModelGen;
+	private AcceptanceOmega acceptance;
+	private boolean isMDP;
+	private boolean fixDeadlocks = true;
+
+	// States found so far (and their DA states)
+	private IndexedSet<State> states;
+	private List<State> statesList;
+	private int[] daStates;
+	// Explored transitions: successors/probabilities of each choice, stored contiguously
+	// (choices of state s are choiceStart[s]...choiceEnd[s]-1, choice c has successors succStart[c]...succStart[c+1]-1)
+	private int[] choiceStart;
+	private int[] choiceEnd;
+	private int[] succStart;
+	private int[] succs;
+	private double[] probs;
+	private int numChoices;
+	private int numSuccs;
+
+	// Tarjan's algorithm: index/lowlink of each state (-1 if not yet visited), plus stack of SCC candidates
+	private int[] index;
+	private int[] lowlink;
+	private BitSet onStack;
+	private int[] sccStack;
+	private int sccStackSize;
+	private int counter;
+	// DFS (call) stack: state and position of next successor to visit
+	private int[] dfsStates;
+	private int[] dfsPos;
+	private int dfsSize;
+
+	// Product states in accepting ECs/BSCCs found so far
+	private BitSet acceptingStates;
+	// Has the product been fully explored?
+	private boolean complete;
+	// For checking ECs within an SCC
+	private LTLModelChecker mcLtl;
+
+	/**
+	 * Construct a new search for product {@code prodModelGen}, whose model is a DTMC or MDP,
+	 * with acceptance condition {@code acceptance} (over the states of the automaton).
+	 */
+	public OnTheFlyECSearch(PrismComponent parent, ProductModelGenerator prodModelGen, AcceptanceOmega acceptance) throws PrismException
+	{
+		super(parent);
+		this.prodModelGen = prodModelGen;
+		this.acceptance = acceptance;
+		isMDP = prodModelGen.getModelType() == ModelType.MDP;
+		mcLtl = new LTLModelChecker(this);
+		mcLtl.setLog(new PrismDevNullLog());
+	}
+
+	/**
+	 * Specify whether deadlock states should be given a self-loop (otherwise they cause an error).
+	 */
+	public void setFixDeadlocks(boolean fixDeadlocks)
+	{
+		this.fixDeadlocks = fixDeadlocks;
+	}
+
+	/**
+	 * Explore the product, from its (single) initial state, until an accepting EC/BSCC is found
+	 * (if {@code stopIfFound} is true) or the product has been fully explored.
+	 * @return whether an accepting EC/BSCC (reachable from the initial state) was found
+	 */
+	public boolean search(boolean stopIfFound) throws PrismException
+	{
+		int n = 1024;
+		states = new IndexedSet<State>();
+		statesList = new ArrayList<State>();
+		daStates = new int[n];
+		choiceStart = new int[n];
+		choiceEnd = new int[n];
+		index = new int[n];
+		lowlink = new int[n];
+		sccStack = new int[n];
+		dfsStates = new int[n];
+		dfsPos = new int[n];
+		succStart = new int[n + 1];
+		succs = new int[n];
+		probs = new double[n];
+		numChoices = numSuccs = 0;
+		onStack = new BitSet();
+		acceptingStates = new BitSet();
+		sccStackSize = dfsSize = counter = 0;
+		complete = false;
+
+		addState(prodModelGen.getInitialState());
+		if (visit(0) && stopIfFound)
+			return true;
+		while (dfsSize > 0) {
+			int s = dfsStates[dfsSize - 1];
+			int pos = dfsPos[dfsSize - 1];
+			if (pos < succStart[choiceEnd[s]]) {
+				// Next successor
+				dfsPos[dfsSize - 1]++;
+				int t = succs[pos];
+				if (index[t] == -1) {
+					if (visit(t) && stopIfFound)
+						return true;
+				} else if (onStack.get(t)) {
+					lowlink[s] = Math.min(lowlink[s], index[t]);
+				}
+			} else {
+				// All successors done: backtrack, and check SCC if s is its root
+				dfsSize--;
+				if (dfsSize > 0) {
+					int p = dfsStates[dfsSize - 1];
+					lowlink[p] = Math.min(lowlink[p], lowlink[s]);
+				}
+				if (lowlink[s] == index[s]) {
+					if (completeSCC(s) && stopIfFound)
+						return true;
+				}
+			}
+		}
+		complete = true;
+		return !acceptingStates.isEmpty();
+	}
+
+	/**
+	 * Get the number of product states found so far.
+	 */
+	public int getNumStates()
+	{
+		return statesList.size();
+	}
+
+	/**
+	 * Has the product been fully explored (i.e. did the last search not stop early)?
+	 */
+	public boolean isComplete()
+	{
+		return complete;
+	}
+
+	/**
+	 * Get the product states found to be in accepting ECs/BSCCs
+	 * (for reach acceptance, the states whose automaton state is a goal state).
+	 * Indices are as for {@link #buildMDP()}, with the initial state being 0.
+	 */
+	public BitSet getAcceptingStates()
+	{
+		return acceptingStates;
+	}
+
+	/**
+	 * Build the (explored part of the) product as an MDP (a DTMC being an MDP with one choice per state).
+	 * The initial state is 0.
+	 */
+	public MDPSimple buildMDP()
+	{
+		int n = statesList.size();
+		MDPSimple mdp = new MDPSimple(n);
+		mdp.addInitialState(0);
+		for (int s = 0; s < n; s++) {
+			for (int c = choiceStart[s]; c < choiceEnd[s]; c++) {
+				Distribution distr = new Distribution();
+				for (int k = succStart[c]; k < succStart[c + 1]; k++)
+					distr.add(succs[k], probs[k]);
+				mdp.addChoice(s, distr);
+			}
+		}
+		mdp.setStatesList(new ArrayList<State>(statesList));
+		return mdp;
+	}
+
+	// Private methods
+
+	/**
+	 * Add a (newly found) state, returning its index.
+	 */
+	private int addState(State state)
+	{
+		if (!states.add(state))
+			return states.getIndexOfLastAdd();
+		int s = statesList.size();
+		statesList.add(state);
+		if (s == index.length) {
+			int n = 2 * s;
+			daStates = Arrays.copyOf(daStates, n);
+			choiceStart = Arrays.copyOf(choiceStart, n);
+			choiceEnd = Arrays.copyOf(choiceEnd, n);
+			index = Arrays.copyOf(index, n);
+			lowlink = Arrays.copyOf(lowlink, n);
+			sccStack = Arrays.copyOf(sccStack, n);
+			dfsStates = Arrays.copyOf(dfsStates, n);
+			dfsPos = Arrays.copyOf(dfsPos, n);
+		}
+		index[s] = -1;
+		return s;
+	}
+
+	/**
+	 * Visit a state for the first time: explore it and push it onto the stacks.
+	 * @return whether the state is accepting (for reach acceptance)
+	 */
+	private boolean visit(int s) throws PrismException
+	{
+		index[s] = lowlink[s] = counter++;
+		sccStack[sccStackSize++] = s;
+		onStack.set(s);
+		boolean acc = explore(s);
+		dfsStates[dfsSize] = s;
+		dfsPos[dfsSize] = succStart[choiceStart[s]];
+		dfsSize++;
+		return acc;
+	}
+
+	/**
+	 * Explore a state, storing its choices/transitions (and adding any new successor states).
+	 * @return whether the state is accepting (for reach acceptance)
+	 */
+	private boolean explore(int s) throws PrismException
+	{
+		State state = statesList.get(s);
+		prodModelGen.exploreState(state);
+		daStates[s] = prodModelGen.getExploreDAState();
+		choiceStart[s] = numChoices;
+		int nc = prodModelGen.getNumChoices();
+		if (nc == 0) {
+			if (!fixDeadlocks)
+				throw new PrismException("Product has a deadlock state " + state);
+			addChoice();
+			addTransition(s, 1.0);
+		}
+		for (int i = 0; i < nc; i++) {
+			addChoice();
+			int nt = prodModelGen.getNumTransitions(i);
+			for (int j = 0; j < nt; j++) {
+				double p = prodModelGen.getTransitionProbability(i, j);
+				addTransition(addState(prodModelGen.computeTransitionTarget(i, j)), p);
+			}
+		}
+		choiceEnd[s] = numChoices;
+		succStart[numChoices] = numSuccs;
+		// For reach acceptance, goal states are accepting (and all their successors are too)
+		if (acceptance instanceof AcceptanceReach && ((AcceptanceReach) acceptance).getGoalStates().get(daStates[s])) {
+			acceptingStates.set(s);
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Start a new choice (of the state being explored).
+	 */
+	private void addChoice()
+	{
+		if (numChoices + 1 >= succStart.length)
+			succStart = Arrays.copyOf(succStart, 2 * succStart.length);
+		succStart[numChoices++] = numSuccs;
+	}
+
+	/**
+	 * Add a transition to the current choice.
+	 */
+	private void addTransition(int t, double p)
+	{
+		if (numSuccs == succs.length) {
+			succs = Arrays.copyOf(succs, 2 * numSuccs);
+			probs = Arrays.copyOf(probs, 2 * numSuccs);
+		}
+		succs[numSuccs] = t;
+		probs[numSuccs] = p;
+		numSuccs++;
+	}
+
+	/**
+	 * Pop the (now complete) SCC with root {@code root} from the stack and check it for acceptance.
+	 * @return whether the SCC is (DTMC) or contains (MDP) an accepting EC
+	 */
+	private boolean completeSCC(int root) throws PrismException
+	{
+		int start = sccStackSize;
+		do {
+			start--;
+			onStack.clear(sccStack[start]);
+		} while (sccStack[start] != root);
+		int members[] = Arrays.copyOfRange(sccStack, start, sccStackSize);
+		Arrays.sort(members);
+		sccStackSize = start;
+		// Reach acceptance: goal states were dealt with when explored
+		if (acceptance instanceof AcceptanceReach)
+			return false;
+		BitSet scc = new BitSet();
+		for (int s : members)
+			scc.set(s);
+		return isMDP ? checkSCCForMDP(members, scc) : checkSCCForDTMC(members, scc);
+	}
+
+	/**
+	 * Check whether a complete SCC of a DTMC product is an accepting BSCC (and if so store its states).
+	 */
+	private boolean checkSCCForDTMC(int members[], BitSet scc)
+	{
+		BitSet daSet = new BitSet();
+		for (int s : members) {
+			for (int k = succStart[choiceStart[s]]; k < succStart[choiceEnd[s]]; k++) {
+				if (!scc.get(succs[k]))
+					return false;
+			}
+			daSet.set(daStates[s]);
+		}
+		if (!acceptance.isBSCCAccepting(daSet))
+			return false;
+		acceptingStates.or(scc);
+		return true;
+	}
+
+	/**
+	 * Check whether a complete SCC of an MDP product contains an accepting EC (and if so store its states).
+	 */
+	private boolean checkSCCForMDP(final int members[], BitSet scc) throws PrismException
+	{
+		// Build sub-MDP for the SCC, with choices that stay in the SCC
+		// (state l of the sub-MDP is members[l]; members are sorted)
+		int n = members.length;
+		MDPSimple sub = new MDPSimple(n);
+		boolean hasChoices = false;
+		for (int l = 0; l < n; l++) {
+			int s = members[l];
+			for (int c = choiceStart[s]; c < choiceEnd[s]; c++) {
+				boolean inside = true;
+				for (int k = succStart[c]; k < succStart[c + 1] && inside; k++)
+					inside = scc.get(succs[k]);
+				if (!inside)
+					continue;
+				Distribution distr = new Distribution();
+				for (int k = succStart[c]; k < succStart[c + 1]; k++)
+					distr.add(Arrays.binarySearch(members, succs[k]), probs[k]);
+				sub.addChoice(l, distr);
+				hasChoices = true;
+			}
+		}
+		// Trivial SCC (no end components)
+		if (!hasChoices)
+			return false;
+		// Lift acceptance to the states of the sub-MDP and find accepting ECs
+		AcceptanceOmega accSub = acceptance.clone();
+		accSub.lift(new AcceptanceOmega.LiftBitSet()
+		{
+			@Override
+			public BitSet lift(BitSet daSet)
+			{
+				BitSet lifted = new BitSet();
+				for (int l = 0; l < members.length; l++) {
+					if (daSet.get(daStates[members[l]]))
+						lifted.set(l);
+				}
+				return lifted;
+			}
+		});
+		BitSet acc = mcLtl.findAcceptingECStates(sub, accSub);
+		for (int l = acc.nextSetBit(0); l >= 0; l = acc.nextSetBit(l + 1))
+			acceptingStates.set(members[l]);
+		return !acc.isEmpty();
+	}
+}
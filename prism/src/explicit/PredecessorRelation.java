@@ -27,29 +27,57 @@
 package explicit;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.BitSet;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Stack;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
 
 import prism.PrismComponent;
-import common.IterableBitSet;
 
 /**
  * A class for storing and accessing the predecessor relation of an explicit Model.
  * <p>
  * As Model only provide easy access to successors of states,
  * the predecessor relation is computed and stored for subsequent efficient access.
+ * It is stored in compressed sparse row form: the (distinct) predecessors of state {@code s} are
+ * {@code preStates[preStarts[s]]}, ..., {@code preStates[preStarts[s+1]-1]}, in increasing order.
+ * For nondeterministic models, an index of predecessor <i>choices</i> can also be built
+ * (on demand), which is used for the attractor computations
+ * ({@link #calculatePreStarForall(BitSet, BitSet)}, {@link #calculateProb1E(BitSet, BitSet, int[])}).
+ * <p>
+ * The searches keep the set of states that may still be added as an array of 64-bit words,
+ * from which states are claimed as they are found, so each state is expanded at most once.
+ * Optionally, given a thread pool, large search frontiers are expanded in parallel.
  * <p>
  * Note: Naturally, if the model changes, the predecessor relation
  * has to be recomputed to remain accurate.
  */
 public class PredecessorRelation
 {
-	/**
-	 * pre[i] provides the list of predecessors of state with index i.
-	 */
-	List<ArrayList<Integer>> pre;
+	/** The model */
+	private Model model;
+
+	/** Number of states */
+	protected int numStates;
+	/** Start of the predecessors of each state in {@code preStates} (size numStates+1) */
+	protected int preStarts[];
+	/** Predecessor states */
+	protected int preStates[];
+
+	// Index of predecessor choices (for a NondetModel, built on demand):
+	// the pairs (state, choice) with a transition to state t are the (choicePreStates[k], choicePreChoices[k])
+	// for k = choicePreStarts[t], ..., choicePreStarts[t+1]-1, where choices are indexed globally,
+	// i.e. choice i of state s has index choiceOffsets[s]+i
+	protected int choicePreStarts[];
+	protected int choicePreStates[];
+	protected int choicePreChoices[];
+	protected int choiceOffsets[];
 
 	/**
 	 * Constructor. Computes the predecessor relation for the given model
@@ -59,49 +87,190 @@ public class PredecessorRelation
 	 */
 	public PredecessorRelation(Model model)
 	{
-		pre = new ArrayList<ArrayList<Integer>>(model.getNumStates());
-		// construct the (empty) array list for all states
-		for (int s = 0; s < model.getNumStates(); s++) {
-			pre.add(s, new ArrayList<Integer>());
-		}
-
+		this.model = model;
+		numStates = model.getNumStates();
 		compute(model);
 	}
 
-	/** Compute the predecessor relation using getSuccessorsIterator. */
+	/**
+	 * Compute the predecessor relation: first extract the (distinct) successors of each state
+	 * (using getSuccessorsIterator, or directly from the storage of an MDPSparse),
+	 * then transpose, counting the predecessors of each state before filling them in.
+	 */
 	private void compute(Model model)
 	{
-		int n = model.getNumStates();
-
+		int n = numStates;
+		int succStarts[] = new int[n + 1];
+		int succs[];
+		int k = 0;
+		if (model instanceof MDPSparse) {
+			// Successors of all choices, removing duplicates
+			MDPSparse mdp = (MDPSparse) model;
+			int last[] = new int[n];
+			Arrays.fill(last, -1);
+			succs = new int[mdp.storage.getChoiceStart(mdp.storage.getRowStart(n))];
+			for (int s = 0; s < n; s++) {
+				succStarts[s] = k;
+				for (int j = mdp.storage.getChoiceStart(mdp.storage.getRowStart(s)); j < mdp.storage.getChoiceStart(mdp.storage.getRowStart(s + 1)); j++) {
+					int t = mdp.storage.getCol(j);
+					if (last[t] != s) {
+						last[t] = s;
+						succs[k++] = t;
+					}
+				}
+			}
+		} else {
+			// As getSuccessorsIterator guarantees that there are
+			// no duplicates in the successors, each state is added once
+			succs = new int[Math.max(16, model.getNumTransitions())];
+			for (int s = 0; s < n; s++) {
+				succStarts[s] = k;
+				Iterator<Integer> it = model.getSuccessorsIterator(s);
+				while (it.hasNext()) {
+					if (k == succs.length) {
+						succs = Arrays.copyOf(succs, 2 * succs.length);
+					}
+					succs[k++] = it.next();
+				}
+			}
+		}
+		succStarts[n] = k;
+		// Transpose
+		preStarts = new int[n + 1];
+		for (int j = 0; j < k; j++) {
+			preStarts[succs[j] + 1]++;
+		}
+		for (int t = 0; t < n; t++) {
+			preStarts[t + 1] += preStarts[t];
+		}
+		preStates = new int[k];
+		int pos[] = Arrays.copyOf(preStarts, n);
 		for (int s = 0; s < n; s++) {
-			Iterator<Integer> it = model.getSuccessorsIterator(s);
-			while (it.hasNext()) {
-				Integer successor = it.next();
+			for (int j = succStarts[s]; j < succStarts[s + 1]; j++) {
+				preStates[pos[succs[j]]++] = s;
+			}
+		}
+	}
 
-				// Add the current state s to pre[successor].
-				//
-				// As getSuccessorsIterator guarantees that
-				// there are no duplicates in the successors,
-				// s will be added to successor exactly once.
-				pre.get(successor).add(s);
+	/**
+	 * Build the index of predecessor choices, if not done already.
+	 * The model must be a {@link NondetModel}.
+	 */
+	private synchronized void buildChoiceIndex()
+	{
+		if (choicePreStarts != null)
+			return;
+		NondetModel ndModel = (NondetModel) model;
+		int n = numStates;
+		choiceOffsets = new int[n + 1];
+		for (int s = 0; s < n; s++) {
+			choiceOffsets[s + 1] = choiceOffsets[s] + ndModel.getNumChoices(s);
+		}
+		// Extract successors of each choice (CSR)
+		int numChoices = choiceOffsets[n];
+		int succStarts[];
+		int succs[];
+		if (model instanceof MDPSparse) {
+			MDPSparse mdp = (MDPSparse) model;
+			succStarts = mdp.storage.getChoiceStarts();
+			succs = mdp.storage.getCols();
+		} else {
+			succStarts = new int[numChoices + 1];
+			succs = new int[Math.max(16, model.getNumTransitions())];
+			int j = 0, k = 0;
+			for (int s = 0; s < n; s++) {
+				int nc = ndModel.getNumChoices(s);
+				for (int i = 0; i < nc; i++, j++) {
+					succStarts[j] = k;
+					Iterator<Integer> it = ndModel.getSuccessorsIterator(s, i);
+					while (it.hasNext()) {
+						if (k == succs.length) {
+							succs = Arrays.copyOf(succs, 2 * succs.length);
+						}
+						succs[k++] = it.next();
+					}
+				}
 			}
+			succStarts[numChoices] = k;
+		}
+		// Transpose
+		int numEntries = succStarts[numChoices];
+		int starts[] = new int[n + 1];
+		for (int j = 0; j < numEntries; j++) {
+			starts[succs[j] + 1]++;
 		}
+		for (int t = 0; t < n; t++) {
+			starts[t + 1] += starts[t];
+		}
+		int states[] = new int[numEntries];
+		int choices[] = new int[numEntries];
+		int pos[] = Arrays.copyOf(starts, n);
+		for (int s = 0; s < n; s++) {
+			for (int c = choiceOffsets[s]; c < choiceOffsets[s + 1]; c++) {
+				for (int j = succStarts[c]; j < succStarts[c + 1]; j++) {
+					int p = pos[succs[j]]++;
+					states[p] = s;
+					choices[p] = c;
+				}
+			}
+		}
+		choicePreStates = states;
+		choicePreChoices = choices;
+		choicePreStarts = starts;
 	}
 
 	/**
 	 * Get an Iterable over the predecessor states of {@code s}.
 	 */
-	public Iterable<Integer> getPre(int s)
+	public Iterable<Integer> getPre(final int s)
 	{
-		return pre.get(s);
+		return new Iterable<Integer>()
+		{
+			@Override
+			public Iterator<Integer> iterator()
+			{
+				return getPredecessorsIterator(s);
+			}
+		};
 	}
 
 	/**
 	 * Get an Iterator over the predecessor states of {@code s}.
 	 */
-	public Iterator<Integer> getPredecessorsIterator(int s)
+	public Iterator<Integer> getPredecessorsIterator(final int s)
 	{
-		return getPre(s).iterator();
+		return new Iterator<Integer>()
+		{
+			private int k = preStarts[s];
+
+			@Override
+			public boolean hasNext()
+			{
+				return k < preStarts[s + 1];
+			}
+
+			@Override
+			public Integer next()
+			{
+				if (k >= preStarts[s + 1])
+					throw new NoSuchElementException();
+				return preStates[k++];
+			}
+
+			@Override
+			public void remove()
+			{
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+	/**
+	 * Get the number of (distinct) predecessor states of {@code s}.
+	 */
+	public int getNumPredecessors(int s)
+	{
+		return preStarts[s + 1] - preStarts[s];
 	}
 
 	/**
@@ -129,7 +298,7 @@ public class PredecessorRelation
 
 
 	/**
-	 * Computes the set Pre*(target) via a DFS, i.e., all states that
+	 * Computes the set Pre*(target), i.e., all states that
 	 * are in {@code target} or can reach {@code target} via one or more transitions
 	 * from states contained in {@code remain}.
 	 * <br/>
@@ -149,47 +318,492 @@ public class PredecessorRelation
 	 */
 	public BitSet calculatePreStar(BitSet remain, BitSet target, BitSet absorbing)
 	{
-		BitSet result;
+		return calculatePreStar(remain, target, absorbing, null);
+	}
 
-		// all target states are in Pre*
-		result = (BitSet)target.clone();
+	/**
+	 * Computes the set Pre*(target), as for {@link #calculatePreStar(BitSet, BitSet, BitSet)}.
+	 * If {@code pool} is non-null, large frontiers of the search are expanded in parallel.
+	 *
+	 * @param remain restriction on the states that may occur
+	 *               on the path to target, {@code null} = all states
+	 * @param target The set of target states
+	 * @param absorbing (optional) set of states that should be considered to be absorbing,
+	 *               i.e., their outgoing edges are ignored, {@code null} = no states
+	 * @param pool (optional) thread pool for parallel frontier expansion
+	 * @return the set of states Pre*(target)
+	 */
+	public BitSet calculatePreStar(BitSet remain, BitSet target, BitSet absorbing, ForkJoinPool pool)
+	{
+		// the states that can still be added: remain, minus target and absorbing states
+		// (the edges from an absorbing predecessor are considered to not exist)
+		long open0[] = remain == null ? allWords(numStates) : toWords(remain);
+		andNot(open0, target);
+		if (absorbing != null)
+			andNot(open0, absorbing);
+		final WordSet open = new WordSet(open0, pool != null);
 
-		// the stack of states whose predecessors have to be considered
-		Stack<Integer> todo = new Stack<Integer>();
+		// each state is added to the frontier once: when it is claimed from the open set
+		explore(pool, toIntList(target), new FrontierStep()
+		{
+			@Override
+			public void expand(int t, IntList next)
+			{
+				for (int k = preStarts[t]; k < preStarts[t + 1]; k++) {
+					int p = preStates[k];
+					if (open.claim(p))
+						next.add(p);
+				}
+			}
+		});
 
-		// initial todo: all the target states
-		for (Integer s : IterableBitSet.getSetBits(target)) {
-			todo.add(s);
-		};
+		return claimed(target, open0, open);
+	}
+
+	/**
+	 * Computes the "universal" (attractor) version of Pre*(target) for a nondeterministic model,
+	 * i.e., the least set of states that contains {@code target} and all states in {@code remain}
+	 * for which <i>every</i> choice has at least one successor in the set.
+	 * (States in {@code remain} with no choices are trivially included.)
+	 * The complement of this set is the set of states from which target can be avoided
+	 * with probability 1, i.e. the result of Prob0 for min.
+	 * <br/>
+	 * Computed in time linear in the size of the model by counting, for each state,
+	 * the number of its choices that do not (yet) have a successor in the set.
+	 *
+	 * @param remain restriction on the states that may occur
+	 *               on the path to target, {@code null} = all states
+	 * @param target The set of target states
+	 * @return the set of states in the attractor
+	 */
+	public BitSet calculatePreStarForall(BitSet remain, BitSet target)
+	{
+		return calculatePreStarForall(remain, target, null);
+	}
+
+	/**
+	 * Computes the attractor of {@code target}, as for {@link #calculatePreStarForall(BitSet, BitSet)}.
+	 * If {@code pool} is non-null, large frontiers of the search are expanded in parallel.
+	 *
+	 * @param remain restriction on the states that may occur
+	 *               on the path to target, {@code null} = all states
+	 * @param target The set of target states
+	 * @param pool (optional) thread pool for parallel frontier expansion
+	 * @return the set of states in the attractor
+	 */
+	public BitSet calculatePreStarForall(BitSet remain, BitSet target, ForkJoinPool pool)
+	{
+		buildChoiceIndex();
+		final boolean concurrent = pool != null;
+		long open0[] = remain == null ? allWords(numStates) : toWords(remain);
+		andNot(open0, target);
+		final WordSet open = new WordSet(open0, concurrent);
+		// choices not yet known to have a successor in the result
+		final WordSet unhit = new WordSet(allWords(choiceOffsets[numStates]), concurrent);
+		// number of choices of each state not (yet) hit
+		final int remaining[] = concurrent ? null : new int[numStates];
+		final AtomicIntegerArray remainingAtomic = concurrent ? new AtomicIntegerArray(numStates) : null;
 
-		// the set of states that are finished
-		BitSet done = new BitSet();
+		IntList frontier = toIntList(target);
+		for (int s = 0; s < numStates; s++) {
+			int numChoices = choiceOffsets[s + 1] - choiceOffsets[s];
+			if (numChoices == 0) {
+				// states without choices
+				if (open.claim(s))
+					frontier.add(s);
+			} else if (concurrent) {
+				remainingAtomic.set(s, numChoices);
+			} else {
+				remaining[s] = numChoices;
+			}
+		}
+
+		explore(pool, frontier, new FrontierStep()
+		{
+			@Override
+			public void expand(int t, IntList next)
+			{
+				for (int k = choicePreStarts[t]; k < choicePreStarts[t + 1]; k++) {
+					int p = choicePreStates[k];
+					if (!open.get(p) || !unhit.claim(choicePreChoices[k]))
+						continue;
+					// only the thread hitting the last choice of p can claim it
+					int r = concurrent ? remainingAtomic.decrementAndGet(p) : --remaining[p];
+					if (r == 0 && open.claim(p))
+						next.add(p);
+				}
+			}
+		});
 
-		while (!todo.isEmpty()) {
-			int s = todo.pop();
-			// already considered?
-			if (done.get(s)) continue;
+		return claimed(target, open0, open);
+	}
 
-			done.set(s);
+	/**
+	 * Computes, for a nondeterministic model, the set of states for which there exists
+	 * a strategy to reach {@code target} with probability 1, while remaining in {@code remain},
+	 * i.e. the result of Prob1 for max (Prob1E).
+	 * <br/>
+	 * This is the usual nested fixed point, where each iteration of the outer loop
+	 * is a backwards search from {@code target}, using only choices whose successors all lie
+	 * within the current candidate set; when states are removed from that set, the choices
+	 * leading to them are discarded (via the index of predecessor choices).
+	 * <br/>
+	 * Optionally (if {@code strat} is non-null), for each resulting state not in {@code target},
+	 * an appropriate (memoryless) strategy choice is stored in {@code strat}.
+	 *
+	 * @param remain restriction on the states that may occur
+	 *               on the path to target, {@code null} = all states
+	 * @param target The set of target states
+	 * @param strat (optional) storage for strategy choice indices
+	 * @return the set of states for which target can be reached with probability 1
+	 */
+	public BitSet calculateProb1E(BitSet remain, BitSet target, int strat[])
+	{
+		return calculateProb1E(remain, target, strat, null);
+	}
+
+	/**
+	 * Computes the Prob1E states, as for {@link #calculateProb1E(BitSet, BitSet, int[])}.
+	 * If {@code pool} is non-null, large frontiers of the backwards searches are expanded in parallel.
+	 *
+	 * @param remain restriction on the states that may occur
+	 *               on the path to target, {@code null} = all states
+	 * @param target The set of target states
+	 * @param strat (optional) storage for strategy choice indices
+	 * @param pool (optional) thread pool for parallel frontier expansion
+	 * @return the set of states for which target can be reached with probability 1
+	 */
+	public BitSet calculateProb1E(BitSet remain, BitSet target, int strat[], ForkJoinPool pool)
+	{
+		buildChoiceIndex();
+		int numWords = words(numStates);
+		long remainWords[] = remain == null ? allWords(numStates) : toWords(remain);
+		long targetWords[] = toWords(target);
+		// current candidate set (initially all states)
+		long u[] = allWords(numStates);
+		// choices that can leave the candidate set
+		final long unsafe[] = new long[words(choiceOffsets[numStates])];
+		// choice used to add each state in the search
+		final int choice[] = new int[numStates];
 
-			// for each predecessor in the graph
-			for (int p : getPre(s)) {
-				if (absorbing != null && absorbing.get(p)) {
-					// predecessor is absorbing, thus the edge is considered to not exist
-					continue;
+		while (true) {
+			// Backwards search from target, via safe choices, claiming states of u (within remain)
+			long open0[] = new long[numWords];
+			for (int i = 0; i < numWords; i++) {
+				open0[i] = u[i] & remainWords[i] & ~targetWords[i];
+			}
+			final WordSet open = new WordSet(open0, pool != null);
+			explore(pool, toIntList(target), new FrontierStep()
+			{
+				@Override
+				public void expand(int t, IntList next)
+				{
+					for (int k = choicePreStarts[t]; k < choicePreStarts[t + 1]; k++) {
+						int c = choicePreChoices[k];
+						if (getBit(unsafe, c))
+							continue;
+						int p = choicePreStates[k];
+						if (open.claim(p)) {
+							choice[p] = c;
+							next.add(p);
+						}
+					}
 				}
-				if (remain == null || remain.get(p)) {
-					// can reach result (and is in remain)
-					result.set(p);
-					if (!done.get(p)) {
-						// add to stack
-						todo.add(p);
+			});
+			// Remove states that were not reached (a word at a time);
+			// choices leading to them become unsafe
+			long openFinal[] = open.toWords();
+			boolean removedAny = false;
+			for (int i = 0; i < numWords; i++) {
+				long r = targetWords[i] | (open0[i] & ~openFinal[i]);
+				long removed = u[i] & ~r;
+				u[i] = r;
+				while (removed != 0) {
+					removedAny = true;
+					int t = (i << 6) + Long.numberOfTrailingZeros(removed);
+					removed &= removed - 1;
+					for (int k = choicePreStarts[t]; k < choicePreStarts[t + 1]; k++) {
+						int c = choicePreChoices[k];
+						unsafe[c >>> 6] |= 1L << c;
 					}
 				}
 			}
+			if (!removedAny)
+				break;
 		}
 
+		BitSet result = BitSet.valueOf(u);
+		if (strat != null) {
+			for (int s = result.nextSetBit(0); s >= 0; s = result.nextSetBit(s + 1)) {
+				if (!target.get(s)) {
+					strat[s] = choice[s] - choiceOffsets[s];
+				}
+			}
+		}
 		return result;
 	}
 
+	/**
+	 * Expand a search from the states in {@code frontier} until no new states are found.
+	 * {@code step} is called once for each state added to the search; it adds newly found states to
+	 * the next frontier, so must claim them atomically (see {@link WordSet#claim(int)}).
+	 * Without a thread pool, the search is done in place, using {@code frontier} as a queue.
+	 * Otherwise, it is level-synchronous, with any frontier of at least {@link #PARALLEL_MIN_FRONTIER}
+	 * states split into chunks that are expanded in parallel.
+	 */
+	private static void explore(ForkJoinPool pool, IntList frontier, final FrontierStep step)
+	{
+		if (pool == null) {
+			for (int head = 0; head < frontier.size; head++) {
+				step.expand(frontier.data[head], frontier);
+			}
+			return;
+		}
+		while (frontier.size > 0) {
+			final IntList current = frontier;
+			IntList next = new IntList(current.size);
+			if (current.size < PARALLEL_MIN_FRONTIER) {
+				for (int j = 0; j < current.size; j++) {
+					step.expand(current.data[j], next);
+				}
+			} else {
+				int numChunks = Math.min(4 * pool.getParallelism(), current.size / (PARALLEL_MIN_FRONTIER / 4));
+				List<ForkJoinTask<IntList>> tasks = new ArrayList<ForkJoinTask<IntList>>();
+				for (int i = 0; i < numChunks; i++) {
+					final int lo = (int) ((long) current.size * i / numChunks);
+					final int hi = (int) ((long) current.size * (i + 1) / numChunks);
+					tasks.add(pool.submit(new Callable<IntList>()
+					{
+						@Override
+						public IntList call()
+						{
+							IntList found = new IntList(hi - lo);
+							for (int j = lo; j < hi; j++) {
+								step.expand(current.data[j], found);
+							}
+							return found;
+						}
+					}));
+				}
+				for (ForkJoinTask<IntList> task : tasks) {
+					next.addAll(task.join());
+				}
+			}
+			frontier = next;
+		}
+	}
+
+	/**
+	 * Returns {@code target}, plus the states claimed from the open set
+	 * (i.e., those in {@code open0} but no longer in {@code open}).
+	 */
+	private static BitSet claimed(BitSet target, long open0[], WordSet open)
+	{
+		long openFinal[] = open.toWords();
+		long claimed[] = new long[open0.length];
+		for (int i = 0; i < open0.length; i++) {
+			claimed[i] = open0[i] & ~openFinal[i];
+		}
+		BitSet result = (BitSet) target.clone();
+		result.or(BitSet.valueOf(claimed));
+		return result;
+	}
+
+	/** Minimum size of a frontier for it to be expanded in parallel */
+	private static final int PARALLEL_MIN_FRONTIER = 4096;
+
+	/** Number of 64-bit words needed for {@code n} bits */
+	private static int words(int n)
+	{
+		return (n + 63) >>> 6;
+	}
+
+	/** The words for the bits 0, ..., n-1 of {@code set} */
+	private long[] toWords(BitSet set)
+	{
+		long words[] = new long[words(numStates)];
+		long setWords[] = set.toLongArray();
+		System.arraycopy(setWords, 0, words, 0, Math.min(setWords.length, words.length));
+		return words;
+	}
+
+	/** The words with bits 0, ..., n-1 set */
+	private static long[] allWords(int n)
+	{
+		long words[] = new long[words(n)];
+		Arrays.fill(words, -1L);
+		if ((n & 63) != 0)
+			words[words.length - 1] = (1L << n) - 1;
+		return words;
+	}
+
+	/** Clear the bits of {@code set} in {@code words} */
+	private static void andNot(long words[], BitSet set)
+	{
+		long setWords[] = set.toLongArray();
+		for (int i = Math.min(setWords.length, words.length) - 1; i >= 0; i--) {
+			words[i] &= ~setWords[i];
+		}
+	}
+
+	private static boolean getBit(long words[], int i)
+	{
+		return (words[i >>> 6] & (1L << i)) != 0;
+	}
+
+	/** A list of the states in {@code set} */
+	private static IntList toIntList(BitSet set)
+	{
+		IntList list = new IntList(set.cardinality());
+		for (int s = set.nextSetBit(0); s >= 0; s = set.nextSetBit(s + 1)) {
+			list.add(s);
+		}
+		return list;
+	}
+
+	/**
+	 * The expansion of a single state of a search frontier (see {@link #explore}).
+	 */
+	private static abstract class FrontierStep
+	{
+		public abstract void expand(int t, IntList next);
+	}
+
+	/**
+	 * A set of states (or choices) stored as 64-bit words, from which elements can be claimed (removed),
+	 * either by a single thread (plain words) or concurrently (atomic words, updated by compare-and-set).
+	 */
+	private static final class WordSet
+	{
+		private final long words[];
+		private final AtomicLongArray atomicWords;
+
+		/** Constructor (the words are copied). */
+		WordSet(long words[], boolean concurrent)
+		{
+			this.words = concurrent ? null : words.clone();
+			this.atomicWords = concurrent ? new AtomicLongArray(words) : null;
+		}
+
+		boolean get(int i)
+		{
+			long word = words != null ? words[i >>> 6] : atomicWords.get(i >>> 6);
+			return (word & (1L << i)) != 0;
+		}
+
+		/** Remove {@code i}; returns true if it was in the set (i.e., it was claimed by this call). */
+		boolean claim(int i)
+		{
+			long mask = 1L << i;
+			if (words != null) {
+				long word = words[i >>> 6];
+				if ((word & mask) == 0)
+					return false;
+				words[i >>> 6] = word & ~mask;
+				return true;
+			}
+			while (true) {
+				long word = atomicWords.get(i >>> 6);
+				if ((word & mask) == 0)
+					return false;
+				if (atomicWords.compareAndSet(i >>> 6, word, word & ~mask))
+					return true;
+			}
+		}
+
+		long[] toWords()
+		{
+			if (words != null)
+				return words.clone();
+			long copy[] = new long[atomicWords.length()];
+			for (int i = 0; i < copy.length; i++) {
+				copy[i] = atomicWords.get(i);
+			}
+			return copy;
+		}
+	}
+
+	/**
+	 * A growable list of ints.
+	 */
+	private static final class IntList
+	{
+		private int data[];
+		private int size;
+
+		IntList(int capacity)
+		{
+			data = new int[Math.max(16, capacity)];
+		}
+
+		void add(int i)
+		{
+			if (size == data.length)
+				data = Arrays.copyOf(data, 2 * size);
+			data[size++] = i;
+		}
+
+		void addAll(IntList list)
+		{
+			if (size + list.size > data.length)
+				data = Arrays.copyOf(data, Math.max(2 * data.length, size + list.size));
+			System.arraycopy(list.data, 0, data, size, list.size);
+			size += list.size;
+		}
+	}
+
+
+	/**
+	 * Computes a BFS layering of the states that can reach {@code target} within at most
+	 * {@code k} transitions, from states contained in {@code remain} (or all states if {@code null}).
+	 * Layer i (for 1 &lt;= i &lt;= k) comprises the states not in {@code target} whose shortest
+	 * path to {@code target} has length i.
+	 * <br/>
+	 * The states are returned in order of increasing layer: the states of layer i are at indices
+	 * {@code layerEnd[i-1]} (inclusive) to {@code layerEnd[i]} (exclusive) of the result,
+	 * where {@code layerEnd} is an array of size k+1 provided by the caller (and {@code layerEnd[0]} = 0).
+	 *
+	 * @param remain restriction on the states that may occur
+	 *               on the path to target, {@code null} = all states
+	 * @param target The set of target states
+	 * @param k The maximum number of transitions
+	 * @param layerEnd Array of size k+1 in which to store the layer boundaries
+	 * @return the states in layers 1 to k
+	 */
+	public int[] calculateLayers(BitSet remain, BitSet target, int k, int layerEnd[])
+	{
+		int queue[] = new int[numStates];
+		int numTarget, start, end;
+
+		// all target states are in layer 0
+		BitSet seen = (BitSet) target.clone();
+		numTarget = 0;
+		for (int s = target.nextSetBit(0); s >= 0; s = target.nextSetBit(s + 1)) {
+			queue[numTarget++] = s;
+		}
+		start = 0;
+		end = numTarget;
+		layerEnd[0] = 0;
+
+		// explore one layer at a time
+		for (int i = 1; i <= k; i++) {
+			int tail = end;
+			for (int j = start; j < end; j++) {
+				int t = queue[j];
+				for (int l = preStarts[t]; l < preStarts[t + 1]; l++) {
+					int p = preStates[l];
+					if (!seen.get(p) && (remain == null || remain.get(p))) {
+						seen.set(p);
+						queue[tail++] = p;
+					}
+				}
+			}
+			start = end;
+			end = tail;
+			layerEnd[i] = end - numTarget;
+		}
+
+		return Arrays.copyOfRange(queue, numTarget, end);
+	}
+
 }
@@ -28,7 +28,10 @@ package explicit;
 
 import java.io.File;
 import java.util.BitSet;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
 
 import parser.ast.Coalition;
 import parser.ast.Expression;
@@ -86,15 +89,23 @@ public class ProbModelChecker extends NonProbModelChecker
 	protected SolnMethod solnMethod = SolnMethod.VALUE_ITERATION;
 	// Is non-convergence of an iterative method an error?
 	protected boolean errorOnNonConverge = true;
+	// Number of threads for parallel numerical computation (1 = sequential)
+	protected int numThreads = 1;
 	// Adversary export
 	protected boolean exportAdv = false;
 	protected String exportAdvFilename;
 
+	// Minimum number of states for which numerical computation is parallelised
+	protected static final int PARALLEL_MIN_STATES = 100000;
+
+	// Shared fork/join pools for parallel numerical computation, one per number of threads (created on demand)
+	private static Map<Integer, ForkJoinPool> parallelPools = new HashMap<Integer, ForkJoinPool>();
+
 	// Enums for flags/settings
 
 	// Method used for numerical solution
 	public enum LinEqMethod {
-		POWER, JACOBI, GAUSS_SEIDEL, BACKWARDS_GAUSS_SEIDEL, JOR, SOR, BACKWARDS_SOR;
+		POWER, JACOBI, GAUSS_SEIDEL, BACKWARDS_GAUSS_SEIDEL, JOR, SOR, BACKWARDS_SOR, BICGSTAB, GMRES, SPARSE_LU;
 		public String fullName()
 		{
 			switch (this) {
@@ -112,15 +123,29 @@ public class ProbModelChecker extends NonProbModelChecker
 				return "SOR";
 			case BACKWARDS_SOR:
 				return "Backwards SOR";
+			case BICGSTAB:
+				return "BiCGSTAB";
+			case GMRES:
+				return "GMRES";
+			case SPARSE_LU:
+				return "Sparse LU";
 			default:
 				return this.toString();
 			}
 		}
+
+		/**
+		 * Is this a method solved via {@link SparseLinEqSolver} (a Krylov or direct method)?
+		 */
+		public boolean isSparseSolverMethod()
+		{
+			return this == BICGSTAB || this == GMRES || this == SPARSE_LU;
+		}
 	};
 
 	// Method used for solving MDPs
 	public enum MDPSolnMethod {
-		VALUE_ITERATION, GAUSS_SEIDEL, POLICY_ITERATION, MODIFIED_POLICY_ITERATION, LINEAR_PROGRAMMING;
+		VALUE_ITERATION, GAUSS_SEIDEL, POLICY_ITERATION, MODIFIED_POLICY_ITERATION, LINEAR_PROGRAMMING, INTERVAL_ITERATION, OPTIMISTIC_VALUE_ITERATION;
 		public String fullName()
 		{
 			switch (this) {
@@ -134,6 +159,10 @@ public class ProbModelChecker extends NonProbModelChecker
 				return "Modified policy iteration";
 			case LINEAR_PROGRAMMING:
 				return "Linear programming";
+			case INTERVAL_ITERATION:
+				return "Interval iteration";
+			case OPTIMISTIC_VALUE_ITERATION:
+				return "Optimistic value iteration";
 			default:
 				return this.toString();
 			}
@@ -152,7 +181,7 @@ public class ProbModelChecker extends NonProbModelChecker
 
 	// Method used for numerical solution
 	public enum SolnMethod {
-		VALUE_ITERATION, GAUSS_SEIDEL, POLICY_ITERATION, MODIFIED_POLICY_ITERATION, LINEAR_PROGRAMMING
+		VALUE_ITERATION, GAUSS_SEIDEL, POLICY_ITERATION, MODIFIED_POLICY_ITERATION, LINEAR_PROGRAMMING, INTERVAL_ITERATION, OPTIMISTIC_VALUE_ITERATION
 	};
 
 	/**
@@ -181,6 +210,12 @@ public class ProbModelChecker extends NonProbModelChecker
 				setLinEqMethod(LinEqMethod.SOR);
 			} else if (s.equals("Backwards SOR")) {
 				setLinEqMethod(LinEqMethod.BACKWARDS_SOR);
+			} else if (s.equals("BiCGSTAB")) {
+				setLinEqMethod(LinEqMethod.BICGSTAB);
+			} else if (s.equals("GMRES")) {
+				setLinEqMethod(LinEqMethod.GMRES);
+			} else if (s.equals("Sparse LU")) {
+				setLinEqMethod(LinEqMethod.SPARSE_LU);
 			} else {
 				throw new PrismNotSupportedException("Explicit engine does not support linear equation solution method \"" + s + "\"");
 			}
@@ -196,6 +231,14 @@ public class ProbModelChecker extends NonProbModelChecker
 				setMDPSolnMethod(MDPSolnMethod.MODIFIED_POLICY_ITERATION);
 			} else if (s.equals("Linear programming")) {
 				setMDPSolnMethod(MDPSolnMethod.LINEAR_PROGRAMMING);
+			} else if (s.equals("Interval iteration")) {
+				// (also used for DTMCs/STPGs)
+				setMDPSolnMethod(MDPSolnMethod.INTERVAL_ITERATION);
+				setSolnMethod(SolnMethod.INTERVAL_ITERATION);
+			} else if (s.equals("Optimistic value iteration")) {
+				// (also used for DTMCs)
+				setMDPSolnMethod(MDPSolnMethod.OPTIMISTIC_VALUE_ITERATION);
+				setSolnMethod(SolnMethod.OPTIMISTIC_VALUE_ITERATION);
 			} else {
 				throw new PrismNotSupportedException("Explicit engine does not support MDP solution method \"" + s + "\"");
 			}
@@ -212,6 +255,8 @@ public class ProbModelChecker extends NonProbModelChecker
 			setTermCritParam(settings.getDouble(PrismSettings.PRISM_TERM_CRIT_PARAM));
 			// PRISM_MAX_ITERS
 			setMaxIters(settings.getInteger(PrismSettings.PRISM_MAX_ITERS));
+			// PRISM_NUM_THREADS
+			setNumThreads(settings.getInteger(PrismSettings.PRISM_NUM_THREADS));
 			// PRISM_PRECOMPUTATION
 			setPrecomp(settings.getBoolean(PrismSettings.PRISM_PRECOMPUTATION));
 			// PRISM_PROB0
@@ -249,6 +294,7 @@ public class ProbModelChecker extends NonProbModelChecker
 		setTermCrit(other.getTermCrit());
 		setTermCritParam(other.getTermCritParam());
 		setMaxIters(other.getMaxIters());
+		setNumThreads(other.getNumThreads());
 		setPrecomp(other.getPrecomp());
 		setProb0(other.getProb0());
 		setProb1(other.getProb1());
@@ -268,6 +314,7 @@ public class ProbModelChecker extends NonProbModelChecker
 		mainLog.print("termCrit = " + termCrit + " ");
 		mainLog.print("termCritParam = " + termCritParam + " ");
 		mainLog.print("maxIters = " + maxIters + " ");
+		mainLog.print("numThreads = " + numThreads + " ");
 		mainLog.print("precomp = " + precomp + " ");
 		mainLog.print("prob0 = " + prob0 + " ");
 		mainLog.print("prob1 = " + prob1 + " ");
@@ -326,6 +373,14 @@ public class ProbModelChecker extends NonProbModelChecker
 		this.maxIters = maxIters;
 	}
 
+	/**
+	 * Set number of threads for parallel numerical computation (0 = number of available processors).
+	 */
+	public void setNumThreads(int numThreads)
+	{
+		this.numThreads = numThreads > 0 ? numThreads : Runtime.getRuntime().availableProcessors();
+	}
+
 	/**
 	 * Set whether or not to use precomputation (Prob0, Prob1, etc.).
 	 */
@@ -424,6 +479,11 @@ public class ProbModelChecker extends NonProbModelChecker
 		return maxIters;
 	}
 
+	public int getNumThreads()
+	{
+		return numThreads;
+	}
+
 	public boolean getPrecomp()
 	{
 		return precomp;
@@ -462,6 +522,80 @@ public class ProbModelChecker extends NonProbModelChecker
 		return errorOnNonConverge;
 	}
 
+	/**
+	 * Get a fork/join pool to use for parallel numerical computation on a model with {@code numStates} states,
+	 * or null if this should be done sequentially (only one thread, or model too small to benefit).
+	 */
+	protected ForkJoinPool getParallelPool(int numStates)
+	{
+		if (numThreads <= 1 || numStates < PARALLEL_MIN_STATES) {
+			return null;
+		}
+		return getSharedParallelPool(numThreads);
+	}
+
+	/**
+	 * Get a fork/join pool for parallel (graph-based) analysis of a model with {@code numStates} states
+	 * by a component that is not itself a model checker, using the number of threads from
+	 * {@link PrismSettings#PRISM_NUM_THREADS} (if {@code settings} is non-null),
+	 * or null if this should be done sequentially.
+	 */
+	static ForkJoinPool getParallelPool(PrismSettings settings, int numStates)
+	{
+		if (settings == null || numStates < PARALLEL_MIN_STATES) {
+			return null;
+		}
+		int numThreads = settings.getInteger(PrismSettings.PRISM_NUM_THREADS);
+		if (numThreads <= 0) {
+			numThreads = Runtime.getRuntime().availableProcessors();
+		}
+		return numThreads > 1 ? getSharedParallelPool(numThreads) : null;
+	}
+
+	/**
+	 * Get the (shared) fork/join pool used for parallel numerical computation, with {@code numThreads} threads.
+	 * There is one pool for each number of threads requested, which is never shut down,
+	 * since it may still be in use elsewhere (its idle worker threads terminate anyway).
+	 */
+	static ForkJoinPool getSharedParallelPool(int numThreads)
+	{
+		synchronized (ProbModelChecker.class) {
+			ForkJoinPool pool = parallelPools.get(numThreads);
+			if (pool == null) {
+				pool = new ForkJoinPool(numThreads);
+				parallelPools.put(numThreads, pool);
+			}
+			return pool;
+		}
+	}
+
+	/**
+	 * Get the result of a precomputation algorithm (e.g. Prob0) stored in the model's
+	 * analysis cache (see {@link Model#getAnalysisCache()}) for the given arguments, or null if none.
+	 * @param model The model
+	 * @param alg Name of the algorithm, e.g. "Prob0" (also used for the log)
+	 * @param remain Remain in these states (may be null)
+	 * @param target Target states
+	 * @param min Min or max (for nondeterministic models)
+	 */
+	protected BitSet getCachedPrecompResult(Model model, String alg, BitSet remain, BitSet target, boolean min)
+	{
+		BitSet result = model.getAnalysisCache().getPrecompResult(model, alg, remain, target, min);
+		if (result != null) {
+			mainLog.println("Re-using previously computed " + alg + " result");
+		}
+		return result;
+	}
+
+	/**
+	 * Store the result of a precomputation algorithm in the model's analysis cache
+	 * (see {@link #getCachedPrecompResult(Model, String, BitSet, BitSet, boolean)}).
+	 */
+	protected void cachePrecompResult(Model model, String alg, BitSet remain, BitSet target, boolean min, BitSet result)
+	{
+		model.getAnalysisCache().setPrecompResult(model, alg, remain, target, min, result);
+	}
+
 	// Model checking functions
 
 	@Override
@@ -877,10 +1011,26 @@ public class ProbModelChecker extends NonProbModelChecker
 
 	/**
 	 * Construct rewards from a reward structure and a model.
+	 * For a model resulting from bisimulation minimisation, the reward structures
+	 * preserved by the minimisation are used instead, and for a model with stored
+	 * reward structures (see {@link #setStoredRewards(Model, java.util.Map)}), those are used.
 	 */
+	@Override
 	protected Rewards constructRewards(Model model, RewardStruct rewStruct) throws PrismException
 	{
 		Rewards rewards;
+		if (bisimRewards != null && model == bisimModel) {
+			rewards = bisimRewards.get(rewStruct);
+			if (rewards == null)
+				throw new PrismNotSupportedException("Reward structure was not preserved by bisimulation minimisation");
+			return rewards;
+		}
+		if (storedRewards != null && model == storedRewardsModel) {
+			rewards = storedRewards.get(rewStruct);
+			if (rewards == null)
+				throw new PrismException("Reward structure \"" + rewStruct.getName() + "\" is not stored with the model");
+			return rewards;
+		}
 		ConstructRewards constructRewards = new ConstructRewards(mainLog);
 		switch (model.getModelType()) {
 		case CTMC:
@@ -1138,6 +1288,10 @@ public class ProbModelChecker extends NonProbModelChecker
 			double multProbs[] = Utils.bitsetToDoubleArray(b, model.getNumStates());
 			res = ((DTMCModelChecker) this).computeSteadyStateBackwardsProbs((DTMC) model, multProbs);
 			break;
+		case CTMC:
+			multProbs = Utils.bitsetToDoubleArray(b, model.getNumStates());
+			res = ((CTMCModelChecker) this).computeSteadyStateBackwardsProbs((CTMC) model, multProbs);
+			break;
 		default:
 			throw new PrismNotSupportedException("Explicit engine does not yet handle the S operator for " + model.getModelType() + "s");
 		}
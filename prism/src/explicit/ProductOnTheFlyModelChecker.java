@@ -0,0 +1,392 @@
+//==============================================================================
+//
+//	Copyright (c) 2002-
+//	Authors:
+//	* Dave Parker <d.a.parker@cs.bham.ac.uk> (University of Birmingham)
+//
+//------------------------------------------------------------------------------
+//
+//	This file is part of PRISM.
+//
+//	PRISM is free software; you can redistribute it and/or modify
+//	it under the terms of the GNU General Public License as published by
+//	the Free Software Foundation; either version 2 of the License, or
+//	(at your option) any later version.
+//
+//	PRISM is distributed in the hope that it will be useful,
+//	but WITHOUT ANY WARRANTY; without even the implied warranty of
+//	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//	GNU General Public License for more details.
+//
+//	You should have received a copy of the GNU General Public License
+//	along with PRISM; if not, write to the Free Software Foundation,
+//	Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+//
+//==============================================================================
+
+package explicit;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+import parser.Values;
+import parser.ast.Expression;
+import parser.ast.ExpressionFilter;
+import parser.ast.ExpressionLabel;
+import parser.ast.ExpressionProb;
+import parser.ast.ExpressionReward;
+import parser.ast.ExpressionSS;
+import parser.ast.LabelList;
+import parser.ast.ModulesFile;
+import parser.ast.PropertiesFile;
+import parser.ast.RelOp;
+import parser.visitor.ASTTraverse;
+import prism.ModelType;
+import prism.OpRelOpBound;
+import prism.PrismComponent;
+import prism.PrismException;
+import prism.PrismLangException;
+import prism.PrismNotSupportedException;
+import prism.PrismSettings;
+import prism.ProductModelGenerator;
+import prism.Result;
+import simulator.ModulesFileModelGenerator;
+import acceptance.AcceptanceOmega;
+import acceptance.AcceptanceReach;
+import acceptance.AcceptanceType;
+import automata.DA;
+
+/**
+ * Model checker for P operators containing co-safe LTL formulas, for DTMCs and MDPs,
+ * which constructs the product of the model and a DFA on the fly, directly from the model
+ * description, rather than building the model first and then the product.
+ * Product states whose DFA state is either accepting or can no longer reach acceptance
+ * (e.g. a non-accepting sink) are not expanded, so parts of the original model that cannot
+ * affect the property are never constructed.
+ * <br>
+ * Qualitative P operators (P>0, P>=1, P<=0, P<1) with arbitrary LTL formulas are also supported:
+ * accepting end components/BSCCs are then searched for while the product is being explored
+ * (see {@link OnTheFlyECSearch}), stopping as soon as the answer is known.
+ */
+public class ProductOnTheFlyModelChecker extends PrismComponent
+{
+	// Model file
+	private ModulesFile modulesFile;
+	// Properties file
+	private PropertiesFile propertiesFile;
+	// Constants from model
+	private Values constantValues;
+	// Labels from the model
+	private LabelList labelListModel;
+	// Labels from the property file
+	private LabelList labelListProp;
+
+	// DFA (and its label expressions) for the property last passed to isSupported()
+	// (for qualitative properties, a DA for the path formula, negated if daNegated is true)
+	private Expression daExpr;
+	private DA<BitSet, ? extends AcceptanceOmega> da;
+	private List<Expression> labelExprs;
+	private boolean qualitative;
+	private boolean daNegated;
+
+	/**
+	 * Constructor.
+	 */
+	public ProductOnTheFlyModelChecker(PrismComponent parent, ModulesFile modulesFile, PropertiesFile propertiesFile) throws PrismException
+	{
+		super(parent);
+		this.modulesFile = modulesFile;
+		this.propertiesFile = propertiesFile;
+
+		// Get combined constant values from model/properties
+		constantValues = new Values();
+		constantValues.addValues(modulesFile.getConstantValues());
+		if (propertiesFile != null)
+			constantValues.addValues(propertiesFile.getConstantValues());
+		this.labelListModel = modulesFile.getLabelList();
+		this.labelListProp = propertiesFile == null ? null : propertiesFile.getLabelList();
+	}
+
+	/**
+	 * Can a property be checked with this model checker? This is the case for a P operator
+	 * on a DTMC/MDP with a single initial state, whose path formula is (syntactically) co-safe LTL
+	 * without time bounds, whose state subformulas can be evaluated directly on states
+	 * (i.e. no nested P/R/S operators, filters or built-in labels) and which can be translated
+	 * to a DFA (the DFA is built here and kept for a subsequent call to {@link #check(Expression)}).
+	 * If the P operator has a qualitative bound (P>0, P>=1, P<=0, P<1), the path formula can be
+	 * any LTL formula without time bounds (and a DA is built instead).
+	 */
+	public boolean isSupported(Expression expr) throws PrismException
+	{
+		if (!(modulesFile.getModelType() == ModelType.DTMC || modulesFile.getModelType() == ModelType.MDP)) {
+			return false;
+		}
+		if (!(expr instanceof ExpressionProb) || modulesFile.getInitialStates() != null) {
+			return false;
+		}
+		Expression pathExpr = expandLabels(((ExpressionProb) expr).getExpression());
+		if (Expression.containsTemporalTimeBounds(pathExpr)) {
+			return false;
+		}
+		boolean coSafe = Expression.isCoSafeLTLSyntactic(pathExpr, true);
+		OpRelOpBound opInfo = ((ExpressionProb) expr).getRelopBoundInfo(constantValues);
+		if (!coSafe && !isQualitative(opInfo)) {
+			return false;
+		}
+		try {
+			pathExpr.accept(new ASTTraverse()
+			{
+				public void visitPost(ExpressionProb e) throws PrismLangException
+				{
+					throw new PrismLangException("Nested P operator", e);
+				}
+
+				public void visitPost(ExpressionReward e) throws PrismLangException
+				{
+					throw new PrismLangException("Nested R operator", e);
+				}
+
+				public void visitPost(ExpressionSS e) throws PrismLangException
+				{
+					throw new PrismLangException("Nested S operator", e);
+				}
+
+				public void visitPost(ExpressionFilter e) throws PrismLangException
+				{
+					throw new PrismLangException("Nested filter", e);
+				}
+
+				public void visitPost(ExpressionLabel e) throws PrismLangException
+				{
+					throw new PrismLangException("Unexpanded label", e);
+				}
+			});
+		} catch (PrismLangException e) {
+			return false;
+		}
+		// Build DFA (or, for qualitative properties that are not co-safe, a DA)
+		LTLModelChecker mcLtl = new LTLModelChecker(this);
+		List<Expression> labelExprs = new ArrayList<Expression>();
+		DA<BitSet, ? extends AcceptanceOmega> da;
+		boolean daNegated = false;
+		if (coSafe) {
+			da = mcLtl.constructExpressionDAForLTLFormula(pathExpr, labelExprs, AcceptanceType.RABIN, AcceptanceType.REACH);
+		} else {
+			daNegated = negateForQualitative(opInfo, modulesFile.getModelType());
+			Expression daPathExpr = daNegated ? Expression.Not(Expression.Parenth(pathExpr)) : pathExpr;
+			da = mcLtl.constructExpressionDAForLTLFormula(daPathExpr, labelExprs, AcceptanceType.BUCHI, AcceptanceType.RABIN, AcceptanceType.GENERALIZED_RABIN,
+					AcceptanceType.REACH);
+		}
+		if (coSafe && !(da.getAcceptance() instanceof AcceptanceReach)) {
+			mainLog.println("Automaton is not a DFA: not using on-the-fly product construction");
+			return false;
+		}
+		for (int i = 0; i < labelExprs.size(); i++) {
+			labelExprs.set(i, (Expression) labelExprs.get(i).replaceConstants(constantValues).simplify());
+		}
+		this.daExpr = expr;
+		this.da = da;
+		this.labelExprs = labelExprs;
+		this.qualitative = !coSafe;
+		this.daNegated = daNegated;
+		return true;
+	}
+
+	/**
+	 * Is a P operator bound qualitative, i.e. one of P>0, P>=1, P<=0, P<1?
+	 */
+	private static boolean isQualitative(OpRelOpBound opInfo)
+	{
+		if (opInfo.isNumeric())
+			return false;
+		switch (opInfo.getRelOp()) {
+		case GT:
+		case LEQ:
+			return opInfo.getBound() == 0.0;
+		case GEQ:
+		case LT:
+			return opInfo.getBound() == 1.0;
+		default:
+			return false;
+		}
+	}
+
+	/**
+	 * For a qualitative P operator, is the property checked via the negated path formula?
+	 * Checking is reduced to whether there is a reachable accepting EC/BSCC for
+	 * the (possibly negated) path formula, or, for P>0 and P<1 on MDPs (i.e. Pmin>0 and Pmax<1),
+	 * whether the (negated) path formula holds with maximum probability 1.
+	 */
+	private static boolean negateForQualitative(OpRelOpBound opInfo, ModelType modelType)
+	{
+		switch (opInfo.getRelOp()) {
+		case GEQ:
+			return true;
+		case GT:
+			return modelType == ModelType.MDP;
+		case LT:
+			return modelType != ModelType.MDP;
+		default:
+			return false;
+		}
+	}
+
+	/**
+	 * Model check a property.
+	 */
+	public Result check(Expression expr) throws PrismException
+	{
+		Result res;
+		String resultString;
+		long timer;
+
+		// Starting model checking
+		timer = System.currentTimeMillis();
+
+		// Do model checking
+		if (expr != daExpr && !isSupported(expr)) {
+			throw new PrismNotSupportedException("On-the-fly product construction not supported for " + expr);
+		}
+		res = qualitative ? checkExpressionProbQualitative((ExpressionProb) expr) : checkExpressionProb((ExpressionProb) expr);
+
+		// Model checking complete
+		timer = System.currentTimeMillis() - timer;
+		mainLog.println("\nModel checking completed in " + (timer / 1000.0) + " secs.");
+
+		// Print result to log
+		resultString = "Result";
+		if (!("Result".equals(expr.getResultName())))
+			resultString += " (" + expr.getResultName().toLowerCase() + ")";
+		resultString += ": " + res;
+		mainLog.print("\n" + resultString + "\n");
+
+		// Return result
+		return res;
+	}
+
+	/**
+	 * Model check a P operator.
+	 */
+	private Result checkExpressionProb(ExpressionProb expr) throws PrismException
+	{
+		// Get info from P operator
+		OpRelOpBound opInfo = expr.getRelopBoundInfo(constantValues);
+		MinMax minMax = opInfo.getMinMax(modulesFile.getModelType());
+
+		// Build product on the fly (with pruning)
+		mainLog.println("\nConstructing product on the fly...");
+		ModulesFileModelGenerator prismModelGen = new ModulesFileModelGenerator(modulesFile, this);
+		ProductModelGenerator prodModelGen = new ProductModelGenerator(prismModelGen, da, labelExprs);
+		prodModelGen.setPruning(true);
+		ConstructModel constructModel = new ConstructModel(this);
+		constructModel.setFixDeadlocks(settings == null || settings.getBoolean(PrismSettings.PRISM_FIX_DEADLOCKS));
+		Model product = constructModel.constructModel(prodModelGen);
+		mainLog.print("\nProduct: " + product.infoString() + "\n");
+		if (product.getNumDeadlockStates() > 0 && !(settings == null || settings.getBoolean(PrismSettings.PRISM_FIX_DEADLOCKS))) {
+			throw new PrismException("Product contains " + product.getNumDeadlockStates() + " deadlock states");
+		}
+
+		// Compute reachability probabilities for accepting product states
+		BitSet acc = product.getLabelStates("_acc");
+		mainLog.println("\nComputing reachability probabilities...");
+		ModelCheckerResult res;
+		if (product.getModelType() == ModelType.DTMC) {
+			DTMCModelChecker mcDTMC = new DTMCModelChecker(this);
+			res = mcDTMC.computeReachProbs((DTMC) product, acc);
+		} else {
+			MDPModelChecker mcMDP = new MDPModelChecker(this);
+			res = mcMDP.computeReachProbs((MDP) product, acc, minMax.isMin());
+		}
+		double p = res.soln[product.getFirstInitialState()];
+
+		// For =? properties, just return value
+		if (opInfo.isNumeric()) {
+			return new Result(new Double(p));
+		}
+		// Otherwise, compare against bound
+		else {
+			double bound = opInfo.getBound();
+			boolean b;
+			switch (opInfo.getRelOp()) {
+			case GEQ:
+				b = p >= bound;
+				break;
+			case GT:
+				b = p > bound;
+				break;
+			case LEQ:
+				b = p <= bound;
+				break;
+			case LT:
+				b = p < bound;
+				break;
+			default:
+				throw new PrismNotSupportedException("Unsupported relational operator " + opInfo.getRelOp());
+			}
+			return new Result(new Boolean(b));
+		}
+	}
+
+	/**
+	 * Model check a P operator with a qualitative bound (P>0, P>=1, P<=0, P<1),
+	 * by searching for accepting ECs/BSCCs while building the product.
+	 * Writing E(psi) for "an accepting EC/BSCC for psi is reachable" (i.e. Pmax(psi)>0 or, for DTMCs, P(psi)>0):
+	 * P<=0 [phi] is !E(phi) and P>=1 [phi] is !E(!phi). For DTMCs, P>0 [phi] is E(phi) and P<1 [phi] is E(!phi).
+	 * For MDPs, P>0 [phi] is Pmax(!phi)<1 and P<1 [phi] is Pmax(phi)<1, which need the full product.
+	 */
+	private Result checkExpressionProbQualitative(ExpressionProb expr) throws PrismException
+	{
+		OpRelOpBound opInfo = expr.getRelopBoundInfo(constantValues);
+		boolean needProb1 = (opInfo.getRelOp() == RelOp.GT || opInfo.getRelOp() == RelOp.LT) && modulesFile.getModelType() == ModelType.MDP;
+
+		// Search for accepting ECs/BSCCs while building the product
+		mainLog.println("\nSearching for accepting " + (modulesFile.getModelType() == ModelType.MDP ? "end components" : "BSCCs")
+				+ " while constructing product on the fly" + (daNegated ? " (for negated path formula)" : "") + "...");
+		ModulesFileModelGenerator prismModelGen = new ModulesFileModelGenerator(modulesFile, this);
+		ProductModelGenerator prodModelGen = new ProductModelGenerator(prismModelGen, da, labelExprs);
+		if (da.getAcceptance() instanceof AcceptanceReach) {
+			prodModelGen.setPruning(true);
+		}
+		OnTheFlyECSearch search = new OnTheFlyECSearch(this, prodModelGen, da.getAcceptance());
+		search.setFixDeadlocks(settings == null || settings.getBoolean(PrismSettings.PRISM_FIX_DEADLOCKS));
+		boolean found = search.search(!needProb1);
+		if (search.isComplete()) {
+			mainLog.println("Product fully explored (" + search.getNumStates() + " states): " + (found ? "" : "no ") + "accepting states found");
+		} else {
+			mainLog.println("Accepting states found after exploring " + search.getNumStates() + " product states");
+		}
+
+		boolean b;
+		if (needProb1) {
+			// Pmax(psi)<1 iff the initial state is not in Prob1E for the accepting ECs
+			mainLog.println("\nComputing states with maximum probability 1 of reaching accepting end components...");
+			MDPModelChecker mcMDP = new MDPModelChecker(this);
+			BitSet prob1 = mcMDP.prob1(search.buildMDP(), null, search.getAcceptingStates(), false, null);
+			b = !prob1.get(0);
+		} else {
+			switch (opInfo.getRelOp()) {
+			case GT:
+			case LT:
+				b = found;
+				break;
+			default:
+				b = !found;
+				break;
+			}
+		}
+		return new Result(new Boolean(b));
+	}
+
+	/**
+	 * Expand property references and labels (from the model and properties file) in an expression.
+	 */
+	private Expression expandLabels(Expression expr) throws PrismLangException
+	{
+		expr = (Expression) expr.deepCopy().expandPropRefsAndLabels(propertiesFile, labelListModel);
+		if (labelListProp != null) {
+			expr = (Expression) expr.expandPropRefsAndLabels(propertiesFile, labelListProp);
+		}
+		return expr;
+	}
+}
@@ -673,8 +673,14 @@ public abstract class QuantAbstractRefine extends PrismComponent
 	protected void modelCheckAbstractionProbReach(boolean min) throws PrismException
 	{
 		ModelCheckerResult res = null;
+		STPG stpg = null;
 		int i, n;
 
+		// Games are solved on a (read-only) sparse copy, which is much faster to iterate over
+		if (abstractionType == ModelType.STPG) {
+			stpg = new STPGSparse((STPG) abstraction);
+		}
+
 		// Compute lower bounds
 		switch (abstractionType) {
 		case MDP:
@@ -696,9 +702,9 @@ public abstract class QuantAbstractRefine extends PrismComponent
 		case STPG:
 			if (optimise && refinementNum > 0) {
 				mc.setValIterDir(MDPModelChecker.ValIterDir.BELOW);
-				res = ((STPGModelChecker) mc).computeReachProbs((STPG) abstraction, null, target, true, min, lbSoln, known);
+				res = ((STPGModelChecker) mc).computeReachProbs(stpg, null, target, true, min, lbSoln, known);
 			} else {
-				res = ((STPGModelChecker) mc).computeReachProbs((STPG) abstraction, null, target, true, min, null, null);
+				res = ((STPGModelChecker) mc).computeReachProbs(stpg, null, target, true, min, null, null);
 			}
 			break;
 		default:
@@ -732,14 +738,14 @@ public abstract class QuantAbstractRefine extends PrismComponent
 			if (optimise) {
 				if (above) {
 					mc.setValIterDir(ValIterDir.ABOVE);
-					res = ((STPGModelChecker) mc).computeReachProbs((STPG) abstraction, null, target, false, min, ubSoln, known);
+					res = ((STPGModelChecker) mc).computeReachProbs(stpg, null, target, false, min, ubSoln, known);
 				} else {
 					mc.setValIterDir(ValIterDir.BELOW);
 					double lbCopy[] = Utils.cloneDoubleArray(lbSoln);
-					res = ((STPGModelChecker) mc).computeReachProbs((STPG) abstraction, null, target, false, min, lbCopy, known);
+					res = ((STPGModelChecker) mc).computeReachProbs(stpg, null, target, false, min, lbCopy, known);
 				}
 			} else {
-				res = ((STPGModelChecker) mc).computeReachProbs((STPG) abstraction, null, target, false, min, null, null);
+				res = ((STPGModelChecker) mc).computeReachProbs(stpg, null, target, false, min, null, null);
 			}
 			break;
 		default:
@@ -760,8 +766,14 @@ public abstract class QuantAbstractRefine extends PrismComponent
 	protected void modelCheckAbstractionReachBounded(boolean min) throws PrismException
 	{
 		ModelCheckerResult res;
+		STPG stpg = null;
 		double results[] = new double[reachBound + 1];
 
+		// Games are solved on a (read-only) sparse copy, which is much faster to iterate over
+		if (abstractionType == ModelType.STPG) {
+			stpg = new STPGSparse((STPG) abstraction);
+		}
+
 		// Compute lower bounds
 		switch (abstractionType) {
 		case MDP:
@@ -772,7 +784,7 @@ public abstract class QuantAbstractRefine extends PrismComponent
 					null, results);
 			break;
 		case STPG:
-			res = ((STPGModelChecker) mc).computeBoundedReachProbs((STPG) abstraction, null, target, reachBound, true, min, null,
+			res = ((STPGModelChecker) mc).computeBoundedReachProbs(stpg, null, target, reachBound, true, min, null,
 					results);
 			break;
 		default:
@@ -800,7 +812,7 @@ public abstract class QuantAbstractRefine extends PrismComponent
 					null, results);
 			break;
 		case STPG:
-			res = ((STPGModelChecker) mc).computeBoundedReachProbs((STPG) abstraction, null, target, reachBound, false, min, null,
+			res = ((STPGModelChecker) mc).computeBoundedReachProbs(stpg, null, target, reachBound, false, min, null,
 					results);
 			break;
 		default:
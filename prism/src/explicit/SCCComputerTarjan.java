@@ -24,20 +24,30 @@
 //	Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
 //	
 //==============================================================================
-
 package explicit;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.BitSet;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 import prism.PrismComponent;
 import prism.PrismException;
 
 /**
  * Tarjan's SCC algorithm operating on a Model object.
+ * <p>
+ * The depth-first search is iterative (using an explicit stack), so that it works for models
+ * with arbitrarily long paths without overflowing the Java stack, and all per-state information
+ * is stored in int arrays. The model's transition graph is accessed in compressed sparse row form:
+ * directly, for {@link MDPSparse} and {@link STPGSparse} models, or otherwise by first extracting
+ * the successors of each state into arrays (one pass over {@link Model#getSuccessorsIterator(int)}).
+ * For large models, if several threads are enabled, the SCCs are checked for being bottom in parallel.
+ * The SCCs are stored in the model's analysis cache (see {@link Model#getAnalysisCache()}),
+ * and re-used by later SCC/BSCC computations on the same model.
  */
 public class SCCComputerTarjan extends SCCComputer
 {
@@ -54,14 +64,9 @@ public class SCCComputerTarjan extends SCCComputer
 	/* States not in any BSCC */
 	private BitSet notInBSCCs;
 
-	/* Next index to give to a node */
-	private int index = 0;
-	/* Stack of nodes */
-	private List<Integer> stack = new LinkedList<Integer>();
-	/* List of nodes in the graph. Invariant: {@code nodeList.get(i).id == i} */
-	private ArrayList<Node> nodeList;
-	/* Nodes currently on the stack. */
-	private BitSet onStack;
+	/* Successors of each node i are succs[succStarts[i]], ..., succs[succStarts[i+1]-1] (possibly with duplicates) */
+	private int succs[];
+	private int succStarts[];
 
 	/**
 	 * Build (B)SCC computer for a given model.
@@ -71,11 +76,6 @@ public class SCCComputerTarjan extends SCCComputer
 		super(parent);
 		this.model = model;
 		this.numNodes = model.getNumStates();
-		this.nodeList = new ArrayList<Node>(numNodes);
-		for (int i = 0; i < numNodes; i++) {
-			nodeList.add(new Node(i));
-		}
-		onStack = new BitSet();
 	}
 
 	// Methods for SCCComputer interface
@@ -83,37 +83,66 @@ public class SCCComputerTarjan extends SCCComputer
 	@Override
 	public void computeSCCs()
 	{
-		tarjan();
-		// Now remove trivial SCCs
-		notInSCCs = new BitSet();
-		for (Iterator<BitSet> it = sccs.iterator(); it.hasNext(); ) {
-			BitSet scc = it.next();
-			if (scc.cardinality() == 1) {
-				int s = scc.nextSetBit(0);
-				if (!model.someSuccessorsInSet(s, scc)) {
-					it.remove(); // remove this SCC from sccs list
-					notInSCCs.set(s);
-				}
-			}
+		// Re-use the SCCs stored in the model's analysis cache, if available
+		ModelAnalysisCache cache = model.getAnalysisCache();
+		List<BitSet> cachedSCCs = cache.getSCCs(model);
+		BitSet cachedNotInSCCs = cache.getNotInSCCs(model);
+		if (cachedSCCs != null && cachedNotInSCCs != null) {
+			sccs = cachedSCCs;
+			notInSCCs = cachedNotInSCCs;
+			return;
 		}
+		// Trivial SCCs are not added to sccs; they are collected in notInSCCs
+		tarjan();
+		cache.setSCCs(model, sccs, notInSCCs);
 	}
 
 	@Override
 	public void computeBSCCs()
 	{
 		computeSCCs();
+		// Needed by isBottom() even if the SCCs were re-used from the cache (and so tarjan() was not run)
+		buildSuccessorArrays();
 		notInBSCCs = (BitSet) getNotInSCCs().clone();
-		int n = sccs.size();
-		for (int i = 0; i < n; i++) {
-			BitSet scc = sccs.get(i);
-			boolean bottom = true;
-			for (int s = scc.nextSetBit(0); s >= 0; s = scc.nextSetBit(s + 1)) {
-				if (!model.allSuccessorsInSet(s, scc)) {
-					bottom = false;
-					break;
+		final int n = sccs.size();
+		// Check which SCCs are bottom (in parallel, if enabled and worthwhile)
+		final boolean bottom[] = new boolean[n];
+		ForkJoinPool pool = n > 1 ? ProbModelChecker.getParallelPool(settings, numNodes) : null;
+		if (pool == null) {
+			for (int i = 0; i < n; i++) {
+				bottom[i] = isBottom(sccs.get(i));
+			}
+		} else {
+			// Split into ranges of SCCs of roughly equal total size, one task each
+			int chunk = Math.max(1, numNodes / (4 * pool.getParallelism()));
+			List<ForkJoinTask<?>> tasks = new ArrayList<ForkJoinTask<?>>();
+			int lo = 0, size = 0;
+			for (int i = 0; i < n; i++) {
+				size += sccs.get(i).cardinality();
+				if (size >= chunk || i == n - 1) {
+					final int from = lo, to = i + 1;
+					tasks.add(pool.submit(new Runnable()
+					{
+						@Override
+						public void run()
+						{
+							for (int j = from; j < to; j++) {
+								bottom[j] = isBottom(sccs.get(j));
+							}
+						}
+					}));
+					lo = i + 1;
+					size = 0;
 				}
 			}
-			if (bottom)
+			for (ForkJoinTask<?> task : tasks) {
+				task.join();
+			}
+		}
+		// Gather results (in SCC order)
+		for (int i = 0; i < n; i++) {
+			BitSet scc = sccs.get(i);
+			if (bottom[i])
 				bsccs.add(scc);
 			else
 				notInBSCCs.or(scc);
@@ -149,60 +178,185 @@ public class SCCComputerTarjan extends SCCComputer
 	/**
 	 * Execute Tarjan's algorithm. Determine maximal strongly connected components
 	 * (SCCS) for the graph of the model and stored in {@code sccs}.
+	 * Trivial SCCs (single states without a self-loop) are not stored
+	 * in {@code sccs} but in {@code notInSCCs}.
 	 */
 	public void tarjan()
 	{
-		for (int i = 0; i < numNodes; i++) {
-			if (nodeList.get(i).lowlink == -1)
-				tarjan(i);
-		}
+		int s, t, v, k, sp, dfsSp, nextIndex;
 
+		buildSuccessorArrays();
+		sccs.clear();
+		notInSCCs = new BitSet();
+		// Index and lowlink of each node (-1 = not yet visited)
+		int index[] = new int[numNodes];
+		int lowlink[] = new int[numNodes];
+		Arrays.fill(index, -1);
+		// Position of the next successor to explore, for each node on the DFS stack
+		int nextSucc[] = new int[numNodes];
+		// Tarjan's stack of nodes, and which nodes are on it
+		int stack[] = new int[numNodes];
+		BitSet onStack = new BitSet(numNodes);
+		// DFS stack (replacing recursion)
+		int dfsStack[] = new int[numNodes];
+
+		nextIndex = sp = dfsSp = 0;
+		for (s = 0; s < numNodes; s++) {
+			if (index[s] != -1)
+				continue;
+			// Visit s
+			index[s] = lowlink[s] = nextIndex++;
+			nextSucc[s] = succStarts[s];
+			stack[sp++] = s;
+			onStack.set(s);
+			dfsStack[dfsSp++] = s;
+			while (dfsSp > 0) {
+				v = dfsStack[dfsSp - 1];
+				k = nextSucc[v];
+				if (k < succStarts[v + 1]) {
+					// Explore next successor of v
+					nextSucc[v] = k + 1;
+					t = succs[k];
+					if (index[t] == -1) {
+						// Visit t (i.e. "recurse")
+						index[t] = lowlink[t] = nextIndex++;
+						nextSucc[t] = succStarts[t];
+						stack[sp++] = t;
+						onStack.set(t);
+						dfsStack[dfsSp++] = t;
+					} else if (onStack.get(t)) {
+						lowlink[v] = Math.min(lowlink[v], index[t]);
+					}
+				} else {
+					// All successors of v done (i.e. "return")
+					dfsSp--;
+					if (lowlink[v] == index[v] && stack[sp - 1] == v && !hasSelfLoop(v)) {
+						// Trivial SCC
+						onStack.clear(v);
+						sp--;
+						notInSCCs.set(v);
+					} else if (lowlink[v] == index[v]) {
+						BitSet component = new BitSet();
+						do {
+							t = stack[--sp];
+							onStack.clear(t);
+							component.set(t);
+						} while (t != v);
+						sccs.add(component);
+					}
+					if (dfsSp > 0) {
+						t = dfsStack[dfsSp - 1];
+						lowlink[t] = Math.min(lowlink[t], lowlink[v]);
+					}
+				}
+			}
+		}
 	}
 
-	private void tarjan(int i)
+	/**
+	 * Set up {@code succs}/{@code succStarts} for the model's transition graph,
+	 * reusing the model's own sparse storage where possible.
+	 */
+	private void buildSuccessorArrays()
 	{
-		final Node v = nodeList.get(i);
-		v.index = index;
-		v.lowlink = index;
-		index++;
-		stack.add(0, i);
-		onStack.set(i);
-		Iterator<Integer> it = model.getSuccessorsIterator(i);
-		while (it.hasNext()) {
-			int e = it.next();
-			Node n = nodeList.get(e);
-			if (n.index == -1) {
-				tarjan(e);
-				v.lowlink = Math.min(v.lowlink, n.lowlink);
-			} else if (onStack.get(e)) {
-				v.lowlink = Math.min(v.lowlink, n.index);
+		if (succStarts != null) {
+			return;
+		}
+		succStarts = new int[numNodes + 1];
+		if (model instanceof MDPSparse) {
+			MDPSparse mdp = (MDPSparse) model;
+			for (int s = 0; s <= numNodes; s++) {
+				succStarts[s] = mdp.storage.getChoiceStart(mdp.storage.getRowStart(s));
+			}
+			succs = mdp.storage.getCols();
+		} else if (model instanceof STPGSparse) {
+			STPGSparse stpg = (STPGSparse) model;
+			for (int s = 0; s <= numNodes; s++) {
+				succStarts[s] = stpg.distrStarts[stpg.choiceStarts[stpg.rowStarts[s]]];
+			}
+			succs = stpg.cols;
+		} else {
+			int size = Math.max(16, model.getNumTransitions());
+			int k = 0;
+			succs = new int[size];
+			for (int s = 0; s < numNodes; s++) {
+				succStarts[s] = k;
+				Iterator<Integer> it = model.getSuccessorsIterator(s);
+				while (it.hasNext()) {
+					if (k == succs.length) {
+						succs = Arrays.copyOf(succs, 2 * succs.length);
+					}
+					succs[k++] = it.next();
+				}
 			}
+			succStarts[numNodes] = k;
 		}
-		if (v.lowlink == v.index) {
-			int n;
-			BitSet component = new BitSet();
-			do {
-				n = stack.remove(0);
-				onStack.set(n, false);
-				component.set(n);
-			} while (n != i);
-			sccs.add(component);
+	}
+
+	/**
+	 * Check whether an SCC is bottom, i.e., has no transitions leaving it.
+	 */
+	private boolean isBottom(BitSet scc)
+	{
+		for (int s = scc.nextSetBit(0); s >= 0; s = scc.nextSetBit(s + 1)) {
+			for (int k = succStarts[s]; k < succStarts[s + 1]; k++) {
+				if (!scc.get(succs[k])) {
+					return false;
+				}
+			}
 		}
+		return true;
 	}
 
 	/**
-	 * A small class wrapping a node.
-	 * It carries extra information necessary for Tarjan's algorithm.
+	 * Check whether node {@code s} has a self-loop.
 	 */
-	protected static class Node
+	private boolean hasSelfLoop(int s)
 	{
-		public int lowlink = -1;
-		public int index = -1;
-		public int id;
+		for (int k = succStarts[s]; k < succStarts[s + 1]; k++) {
+			if (succs[k] == s)
+				return true;
+		}
+		return false;
+	}
 
-		public Node(int id)
-		{
-			this.id = id;
+	/**
+	 * Simple regression check: compute the SCCs of a small DTMC and then, with a second
+	 * SCC computer (which re-uses the SCCs from the model's analysis cache), its BSCCs,
+	 * comparing the latter with those computed without the cache.
+	 * Run as: PRISM_MAINCLASS=explicit.SCCComputerTarjan bin/prism
+	 */
+	public static void main(String args[])
+	{
+		try {
+			// 0 -> {1,2}, 1 <-> 3 (BSCC), 2 <-> 4 -> 5 (BSCC, self-loop)
+			DTMCSimple dtmc = new DTMCSimple(6);
+			dtmc.setProbability(0, 1, 0.5);
+			dtmc.setProbability(0, 2, 0.5);
+			dtmc.setProbability(1, 3, 1.0);
+			dtmc.setProbability(3, 1, 1.0);
+			dtmc.setProbability(2, 4, 1.0);
+			dtmc.setProbability(4, 2, 0.5);
+			dtmc.setProbability(4, 5, 0.5);
+			dtmc.setProbability(5, 5, 1.0);
+			dtmc.addInitialState(0);
+			// BSCCs without the cache
+			SCCComputerTarjan sccComputer = new SCCComputerTarjan(null, dtmc);
+			sccComputer.computeBSCCs();
+			List<BitSet> bsccs = sccComputer.getBSCCs();
+			// SCCs, then BSCCs re-using the cached SCCs
+			dtmc.clearAnalysisCache();
+			new SCCComputerTarjan(null, dtmc).computeSCCs();
+			sccComputer = new SCCComputerTarjan(null, dtmc);
+			sccComputer.computeBSCCs();
+			System.out.println("BSCCs: " + bsccs + ", with cached SCCs: " + sccComputer.getBSCCs());
+			if (!bsccs.equals(sccComputer.getBSCCs())) {
+				System.out.println("Error: BSCCs differ");
+				System.exit(1);
+			}
+		} catch (PrismException e) {
+			System.out.println(e);
+			System.exit(1);
 		}
 	}
 }
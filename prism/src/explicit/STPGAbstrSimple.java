@@ -119,6 +119,7 @@ public class STPGAbstrSimple extends ModelExplicit implements STPG, NondetModelS
 		if (i >= numStates || i < 0)
 			return;
 		// Clear data structures and update stats
+		clearAnalysisCache();
 		List<DistributionSet> list = trans.get(i);
 		numDistrSets -= list.size();
 		for (DistributionSet set : list) {
@@ -142,6 +143,7 @@ public class STPGAbstrSimple extends ModelExplicit implements STPG, NondetModelS
 	@Override
 	public void addStates(int numToAdd)
 	{
+		clearAnalysisCache();
 		for (int i = 0; i < numToAdd; i++) {
 			trans.add(new ArrayList<DistributionSet>());
 		}
@@ -263,6 +265,7 @@ public class STPGAbstrSimple extends ModelExplicit implements STPG, NondetModelS
 			if (i != -1)
 				return i;
 		}
+		clearAnalysisCache();
 		set.add(newSet);
 		// Update stats
 		numDistrSets++;
@@ -781,9 +784,9 @@ public class STPGAbstrSimple extends ModelExplicit implements STPG, NondetModelS
 					} else {
 						diag -= prob;
 					}
-					if (diag > 0)
-						d /= diag;
 				}
+				if (diag > 0)
+					d /= diag;
 				// Check whether we have exceeded min/max so far
 				if (first2 || (min2 && d < minmax2) || (!min2 && d > minmax2))
 					minmax2 = d;
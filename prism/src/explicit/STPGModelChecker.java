@@ -30,6 +30,7 @@ package explicit;
 import java.util.BitSet;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
 
 import common.IterableBitSet;
 
@@ -154,6 +155,9 @@ public class STPGModelChecker extends ProbModelChecker
 		if (solnMethod == SolnMethod.VALUE_ITERATION && valIterDir == ValIterDir.ABOVE && !(precomp && prob0)) {
 			throw new PrismException("Precomputation (Prob0) must be enabled for value iteration from above");
 		}
+		if (solnMethod == SolnMethod.INTERVAL_ITERATION && !(precomp && prob0)) {
+			throw new PrismException("Precomputation (Prob0) must be enabled for interval iteration");
+		}
 
 		// Are we generating an optimal adversary?
 		genAdv = exportAdv;
@@ -210,6 +214,9 @@ public class STPGModelChecker extends ProbModelChecker
 		case GAUSS_SEIDEL:
 			res = computeReachProbsGaussSeidel(stpg, no, yes, min1, min2, init, known);
 			break;
+		case INTERVAL_ITERATION:
+			res = computeReachProbsIntervalIter(stpg, no, yes, min1, min2, init, known);
+			break;
 		default:
 			throw new PrismException("Unknown STPG solution method " + solnMethod);
 		}
@@ -398,7 +405,7 @@ public class STPGModelChecker extends ProbModelChecker
 		BitSet unknown;
 		int i, n, iters;
 		double soln[], soln2[], tmpsoln[], initVal;
-		int adv[] = null;
+		int adv[] = null, nestedAdv[] = null;
 		boolean genAdv, done;
 		long timer;
 
@@ -448,6 +455,7 @@ public class STPGModelChecker extends ProbModelChecker
 			for (i = 0; i < n; i++) {
 				adv[i] = -1;
 			}
+			nestedAdv = createNestedAdv(stpg);
 		}
 
 		// Start iterations
@@ -456,7 +464,7 @@ public class STPGModelChecker extends ProbModelChecker
 		while (!done && iters < maxIters) {
 			iters++;
 			// Matrix-vector multiply and min/max ops
-			stpg.mvMultMinMax(soln, min1, min2, soln2, unknown, false, genAdv ? adv : null);
+			mvMultMinMax(stpg, soln, min1, min2, soln2, unknown, false, adv, nestedAdv);
 			// Check termination
 			done = PrismUtils.doublesAreClose(soln, soln2, termCritParam, termCrit == TermCrit.ABSOLUTE);
 			// Swap vectors for next iter
@@ -481,12 +489,7 @@ public class STPGModelChecker extends ProbModelChecker
 
 		// Print adversary
 		if (genAdv) {
-			PrismLog out = new PrismFileLog(exportAdvFilename);
-			for (i = 0; i < n; i++) {
-				out.println(i + " " + (adv[i] != -1 ? stpg.getAction(i, adv[i]) : "-"));
-			}
-			out.println();
-			out.close();
+			exportAdv(stpg, adv, nestedAdv);
 		}
 
 		// Return results
@@ -497,6 +500,124 @@ public class STPGModelChecker extends ProbModelChecker
 		return res;
 	}
 
+	/**
+	 * Compute reachability probabilities using interval iteration,
+	 * i.e. value iteration from below and from above at the same time,
+	 * stopping when the two bounds are within the required precision.
+	 * Requires Prob0 precomputation to have been done. End components are not collapsed,
+	 * so if a maximising player can remain forever in unknown states, the upper bound
+	 * may not converge, in which case an error is reported.
+	 * @param stpg The STPG
+	 * @param no Probability 0 states
+	 * @param yes Probability 1 states
+	 * @param min1 Min or max probabilities for player 1 (true=min, false=max)
+	 * @param min2 Min or max probabilities for player 2 (true=min, false=max)
+	 * @param init Optionally, an initial solution vector (only used for 'known' states) 
+	 * @param known Optionally, a set of states for which the exact answer is known
+	 * Note: if 'known' is specified (i.e. is non-null, 'init' must also be given and is used for the exact values.  
+	 */
+	protected ModelCheckerResult computeReachProbsIntervalIter(STPG stpg, BitSet no, BitSet yes, boolean min1, boolean min2, double init[], BitSet known)
+			throws PrismException
+	{
+		ModelCheckerResult res = null;
+		BitSet unknown;
+		int i, n, iters;
+		double lower[], lower2[], upper[], upper2[], tmpsoln[];
+		int adv[] = null, nestedAdv[] = null;
+		boolean genAdv, done;
+		long timer;
+
+		// Are we generating an optimal adversary?
+		genAdv = exportAdv;
+
+		// Start interval iteration
+		timer = System.currentTimeMillis();
+		if (verbosity >= 1)
+			mainLog.println("Starting interval iteration (" + (min1 ? "min" : "max") + (min2 ? "min" : "max") + ")...");
+
+		// Store num states
+		n = stpg.getNumStates();
+
+		// Create solution vectors
+		lower = new double[n];
+		lower2 = new double[n];
+		upper = new double[n];
+		upper2 = new double[n];
+
+		// Initialise solution vectors. Use (where available) the following in order of preference:
+		// (1) exact answer, if already known; (2) 1.0/0.0 if in yes/no; (3) 0.0 (lower) or 1.0 (upper)
+		for (i = 0; i < n; i++) {
+			if (known != null && known.get(i)) {
+				lower[i] = lower2[i] = upper[i] = upper2[i] = init[i];
+			} else {
+				lower[i] = lower2[i] = yes.get(i) ? 1.0 : 0.0;
+				upper[i] = upper2[i] = no.get(i) ? 0.0 : 1.0;
+			}
+		}
+
+		// Determine set of states actually need to compute values for
+		unknown = new BitSet();
+		unknown.set(0, n);
+		unknown.andNot(yes);
+		unknown.andNot(no);
+		if (known != null)
+			unknown.andNot(known);
+
+		// Create/initialise adversary storage
+		if (genAdv) {
+			adv = new int[n];
+			for (i = 0; i < n; i++) {
+				adv[i] = -1;
+			}
+			nestedAdv = createNestedAdv(stpg);
+		}
+
+		// Start iterations
+		iters = 0;
+		done = false;
+		while (!done && iters < maxIters) {
+			iters++;
+			// Matrix-vector multiply and min/max ops
+			mvMultMinMax(stpg, lower, min1, min2, lower2, unknown, false, adv, nestedAdv);
+			mvMultMinMax(stpg, upper, min1, min2, upper2, unknown, false, null, null);
+			// Check termination
+			done = PrismUtils.doublesAreClose(lower2, upper2, termCritParam, termCrit == TermCrit.ABSOLUTE);
+			// Swap vectors for next iter
+			tmpsoln = lower;
+			lower = lower2;
+			lower2 = tmpsoln;
+			tmpsoln = upper;
+			upper = upper2;
+			upper2 = tmpsoln;
+		}
+
+		// Finished interval iteration
+		timer = System.currentTimeMillis() - timer;
+		if (verbosity >= 1) {
+			mainLog.print("Interval iteration (" + (min1 ? "min" : "max") + (min2 ? "min" : "max") + ")");
+			mainLog.println(" took " + iters + " iterations and " + timer / 1000.0 + " seconds.");
+		}
+
+		// Non-convergence is an error (usually)
+		if (!done && errorOnNonConverge) {
+			String msg = "Iterative method did not converge within " + iters + " iterations.";
+			msg += "\nConsider using a different numerical method or increasing the maximum number of iterations";
+			throw new PrismException(msg);
+		}
+
+		// Print adversary
+		if (genAdv) {
+			exportAdv(stpg, adv, nestedAdv);
+		}
+
+		// Return results (midpoint of the two bounds)
+		res = new ModelCheckerResult();
+		res.soln = PrismUtils.midpoint(lower, upper);
+		res.numIters = iters;
+		res.timeTaken = timer / 1000.0;
+		return res;
+	}
+
 	/**
 	 * Compute reachability probabilities using Gauss-Seidel.
 	 * @param stpg The STPG
@@ -515,9 +636,13 @@ public class STPGModelChecker extends ProbModelChecker
 		BitSet unknown;
 		int i, n, iters;
 		double soln[], initVal, maxDiff;
-		boolean done;
+		int adv[] = null, nestedAdv[] = null;
+		boolean genAdv, done;
 		long timer;
 
+		// Are we generating an optimal adversary? (only supported for STPGSparse)
+		genAdv = exportAdv && stpg instanceof STPGSparse;
+
 		// Start value iteration
 		timer = System.currentTimeMillis();
 		if (verbosity >= 1)
@@ -554,13 +679,22 @@ public class STPGModelChecker extends ProbModelChecker
 		if (known != null)
 			unknown.andNot(known);
 
+		// Create/initialise adversary storage
+		if (genAdv) {
+			adv = new int[n];
+			for (i = 0; i < n; i++) {
+				adv[i] = -1;
+			}
+			nestedAdv = createNestedAdv(stpg);
+		}
+
 		// Start iterations
 		iters = 0;
 		done = false;
 		while (!done && iters < maxIters) {
 			iters++;
 			// Matrix-vector multiply and min/max ops
-			maxDiff = stpg.mvMultGSMinMax(soln, min1, min2, unknown, false, termCrit == TermCrit.ABSOLUTE);
+			maxDiff = mvMultGSMinMax(stpg, soln, min1, min2, unknown, false, termCrit == TermCrit.ABSOLUTE, adv, nestedAdv);
 			// Check termination
 			done = maxDiff < termCritParam;
 		}
@@ -579,6 +713,11 @@ public class STPGModelChecker extends ProbModelChecker
 			throw new PrismException(msg);
 		}
 
+		// Print adversary
+		if (genAdv) {
+			exportAdv(stpg, adv, nestedAdv);
+		}
+
 		// Return results
 		res = new ModelCheckerResult();
 		res.soln = soln;
@@ -688,7 +827,7 @@ public class STPGModelChecker extends ProbModelChecker
 		while (iters < k) {
 			iters++;
 			// Matrix-vector multiply and min/max ops
-			stpg.mvMultMinMax(soln, min1, min2, soln2, target, true, null);
+			mvMultMinMax(stpg, soln, min1, min2, soln2, target, true, null, null);
 			// Store intermediate results if required
 			// (compute min/max value over initial states for this step)
 			if (results != null) {
@@ -792,6 +931,9 @@ public class STPGModelChecker extends ProbModelChecker
 		case VALUE_ITERATION:
 			res = computeReachRewardsValIter(stpg, rewards, target, inf, min1, min2, init, known);
 			break;
+		case INTERVAL_ITERATION:
+			res = computeReachRewardsIntervalIter(stpg, rewards, target, inf, min1, min2, init, known);
+			break;
 		default:
 			throw new PrismException("Unknown STPG solution method " + solnMethod);
 		}
@@ -872,7 +1014,7 @@ public class STPGModelChecker extends ProbModelChecker
 			//mainLog.println(soln);
 			iters++;
 			// Matrix-vector multiply and min/max ops
-			stpg.mvMultRewMinMax(soln, rewards, min1, min2, soln2, unknown, false, null);
+			mvMultRewMinMax(stpg, soln, rewards, min1, min2, soln2, unknown, false, null);
 			// Check termination
 			done = PrismUtils.doublesAreClose(soln, soln2, termCritParam, termCrit == TermCrit.ABSOLUTE);
 			// Swap vectors for next iter
@@ -903,6 +1045,266 @@ public class STPGModelChecker extends ProbModelChecker
 		return res;
 	}
 
+	/**
+	 * Compute expected reachability rewards using interval iteration,
+	 * i.e. value iteration from below and from above at the same time,
+	 * stopping when the two bounds are within the required precision.
+	 * The initial upper bound is computed by {@link #computeReachRewardsUpperBound}.
+	 * @param stpg The STPG
+	 * @param rewards The rewards
+	 * @param target Target states
+	 * @param inf States for which reward is infinite
+	 * @param min1 Min or max rewards for player 1 (true=min, false=max)
+	 * @param min2 Min or max rewards for player 2 (true=min, false=max)
+	 * @param init Optionally, an initial solution vector (only used for 'known' states) 
+	 * @param known Optionally, a set of states for which the exact answer is known
+	 * Note: if 'known' is specified (i.e. is non-null, 'init' must also be given and is used for the exact values.
+	 */
+	protected ModelCheckerResult computeReachRewardsIntervalIter(STPG stpg, STPGRewards rewards, BitSet target, BitSet inf, boolean min1, boolean min2,
+			double init[], BitSet known) throws PrismException
+	{
+		ModelCheckerResult res;
+		BitSet unknown, rest;
+		int i, n, iters;
+		double lower[], lower2[], upper[], upper2[], tmpsoln[], upperBound;
+		boolean done;
+		long timer;
+
+		// Start interval iteration
+		timer = System.currentTimeMillis();
+		if (verbosity >= 1)
+			mainLog.println("Starting interval iteration (" + (min1 ? "min" : "max") + (min2 ? "min" : "max") + ")...");
+
+		// Store num states
+		n = stpg.getNumStates();
+
+		// Compute initial upper bound (for all states not in target/inf)
+		rest = new BitSet();
+		rest.set(0, n);
+		rest.andNot(target);
+		rest.andNot(inf);
+		upperBound = computeReachRewardsUpperBound(stpg, rewards, target, rest);
+		if (verbosity >= 1)
+			mainLog.println("Upper bound for rewards: " + upperBound);
+
+		// Create solution vectors
+		lower = new double[n];
+		lower2 = new double[n];
+		upper = new double[n];
+		upper2 = new double[n];
+
+		// Initialise solution vectors. Use (where available) the following in order of preference:
+		// (1) exact answer, if already known; (2) 0.0/infinity if in target/inf; (3) 0.0 (lower) or the upper bound (upper)
+		for (i = 0; i < n; i++) {
+			if (known != null && known.get(i)) {
+				lower[i] = lower2[i] = upper[i] = upper2[i] = init[i];
+			} else if (target.get(i)) {
+				lower[i] = lower2[i] = upper[i] = upper2[i] = 0.0;
+			} else if (inf.get(i)) {
+				lower[i] = lower2[i] = upper[i] = upper2[i] = Double.POSITIVE_INFINITY;
+			} else {
+				lower[i] = lower2[i] = 0.0;
+				upper[i] = upper2[i] = upperBound;
+			}
+		}
+
+		// Determine set of states actually need to compute values for
+		unknown = (BitSet) rest.clone();
+		if (known != null)
+			unknown.andNot(known);
+
+		// Start iterations
+		iters = 0;
+		done = false;
+		while (!done && iters < maxIters) {
+			iters++;
+			// Matrix-vector multiply and min/max ops
+			mvMultRewMinMax(stpg, lower, rewards, min1, min2, lower2, unknown, false, null);
+			mvMultRewMinMax(stpg, upper, rewards, min1, min2, upper2, unknown, false, null);
+			// Check termination
+			done = PrismUtils.doublesAreClose(lower2, upper2, termCritParam, termCrit == TermCrit.ABSOLUTE);
+			// Swap vectors for next iter
+			tmpsoln = lower;
+			lower = lower2;
+			lower2 = tmpsoln;
+			tmpsoln = upper;
+			upper = upper2;
+			upper2 = tmpsoln;
+		}
+
+		// Finished interval iteration
+		timer = System.currentTimeMillis() - timer;
+		if (verbosity >= 1) {
+			mainLog.print("Interval iteration (" + (min1 ? "min" : "max") + (min2 ? "min" : "max") + ")");
+			mainLog.println(" took " + iters + " iterations and " + timer / 1000.0 + " seconds.");
+		}
+
+		// Non-convergence is an error (usually)
+		if (!done && errorOnNonConverge) {
+			String msg = "Iterative method did not converge within " + iters + " iterations.";
+			msg += "\nConsider using a different numerical method or increasing the maximum number of iterations";
+			throw new PrismException(msg);
+		}
+
+		// Return results (midpoint of the two bounds)
+		res = new ModelCheckerResult();
+		res.soln = PrismUtils.midpoint(lower, upper);
+		res.numIters = iters;
+		res.timeTaken = timer / 1000.0;
+		return res;
+	}
+
+	/**
+	 * Compute an upper bound on the expected reward to reach {@code target} from any of the states in {@code rest}.
+	 * This uses k-step bounded reachability probabilities, minimised over both players: if, from all states
+	 * in {@code rest}, target is reached within k steps with probability at least p, then the expected number
+	 * of steps to reach target is at most k/p, and the expected reward at most k/p times the maximum reward per step.
+	 * k is increased until p is at least 1/2 (or k reaches maxIters), keeping the best bound found.
+	 * This requires target to be reached with probability 1 under all strategies; if not, an exception is thrown.
+	 */
+	protected double computeReachRewardsUpperBound(STPG stpg, STPGRewards rewards, BitSet target, BitSet rest) throws PrismException
+	{
+		int n = stpg.getNumStates();
+		double soln[] = new double[n];
+		double soln2[] = new double[n];
+		double tmpsoln[];
+
+		// Maximum reward for one step
+		double maxRew = 0.0;
+		for (int s = rest.nextSetBit(0); s >= 0; s = rest.nextSetBit(s + 1)) {
+			maxRew = Math.max(maxRew, stpg.mvMultRewMinMaxSingle(s, soln, rewards, false, false, null));
+		}
+		if (maxRew == 0.0 || rest.isEmpty()) {
+			return 0.0;
+		}
+
+		// Compute bounded reachability probabilities and the best bound k/p over k
+		for (int s = target.nextSetBit(0); s >= 0; s = target.nextSetBit(s + 1)) {
+			soln[s] = soln2[s] = 1.0;
+		}
+		double bestSteps = Double.POSITIVE_INFINITY;
+		int k = 0;
+		double p = 0.0;
+		while (p < 0.5 && k < maxIters) {
+			k++;
+			mvMultMinMax(stpg, soln, true, true, soln2, rest, false, null, null);
+			tmpsoln = soln;
+			soln = soln2;
+			soln2 = tmpsoln;
+			p = 1.0;
+			for (int s = rest.nextSetBit(0); s >= 0; s = rest.nextSetBit(s + 1)) {
+				p = Math.min(p, soln[s]);
+			}
+			if (p > 0.0) {
+				bestSteps = Math.min(bestSteps, k / p);
+			}
+		}
+		if (Double.isInfinite(bestSteps)) {
+			throw new PrismException("Could not compute an upper bound for expected rewards (target not reached under all strategies)");
+		}
+		return maxRew * bestSteps;
+	}
+
+	// Adversary generation
+
+	/**
+	 * Create storage for nested (player 2) adversary choices, if {@code stpg} supports it
+	 * (i.e. is an {@link STPGSparse}), with all entries initialised to -1; otherwise return null.
+	 */
+	protected int[] createNestedAdv(STPG stpg)
+	{
+		if (!(stpg instanceof STPGSparse)) {
+			return null;
+		}
+		int nestedAdv[] = new int[stpg.getNumChoices()];
+		for (int i = 0; i < nestedAdv.length; i++) {
+			nestedAdv[i] = -1;
+		}
+		return nestedAdv;
+	}
+
+	/**
+	 * Export an adversary to the file {@code exportAdvFilename}: for each state, the (top-level) choice
+	 * and, if available, the index of the nested (player 2) choice made for it.
+	 * Top-level choices are given as action labels, or as indices for nested choices without an action.
+	 */
+	protected void exportAdv(STPG stpg, int adv[], int nestedAdv[])
+	{
+		PrismLog out = new PrismFileLog(exportAdvFilename);
+		int n = stpg.getNumStates();
+		for (int i = 0; i < n; i++) {
+			if (adv[i] == -1) {
+				out.println(i + " -");
+			} else if (nestedAdv != null && stpg.isChoiceNested(i, adv[i])) {
+				Object action = stpg.getAction(i, adv[i]);
+				int j = nestedAdv[((STPGSparse) stpg).getChoiceIndex(i, adv[i])];
+				out.println(i + " " + (action != null ? action : adv[i]) + " " + (j != -1 ? j : "-"));
+			} else {
+				out.println(i + " " + stpg.getAction(i, adv[i]));
+			}
+		}
+		out.println();
+		out.close();
+	}
+
+	// Matrix-vector operations (done in parallel where possible)
+
+	/**
+	 * Do a matrix-vector multiplication followed by min/max (see {@link STPG#mvMultMinMax}),
+	 * in parallel if the STPG is an {@link STPGSparse} and parallelism is enabled and worthwhile
+	 * (see {@link #getParallelPool(int)}). Nested (player 2) adversary choices are only stored for an {@link STPGSparse}.
+	 */
+	protected void mvMultMinMax(STPG stpg, double vect[], boolean min1, boolean min2, double result[], BitSet subset, boolean complement, int adv[],
+			int nestedAdv[])
+	{
+		if (stpg instanceof STPGSparse) {
+			ForkJoinPool pool = getParallelPool(stpg.getNumStates());
+			if (pool != null) {
+				((STPGSparse) stpg).mvMultMinMaxParallel(vect, min1, min2, result, subset, complement, adv, nestedAdv, pool);
+			} else {
+				((STPGSparse) stpg).mvMultMinMax(vect, min1, min2, result, subset, complement, adv, nestedAdv);
+			}
+		} else {
+			stpg.mvMultMinMax(vect, min1, min2, result, subset, complement, adv);
+		}
+	}
+
+	/**
+	 * Do a Gauss-Seidel-style matrix-vector multiplication followed by min/max (see {@link STPG#mvMultGSMinMax}),
+	 * using parallel block Gauss-Seidel if the STPG is an {@link STPGSparse} and parallelism is enabled and worthwhile
+	 * (see {@link #getParallelPool(int)}). Adversary choices are only stored for an {@link STPGSparse}.
+	 */
+	protected double mvMultGSMinMax(STPG stpg, double vect[], boolean min1, boolean min2, BitSet subset, boolean complement, boolean absolute, int adv[],
+			int nestedAdv[])
+	{
+		if (stpg instanceof STPGSparse) {
+			ForkJoinPool pool = getParallelPool(stpg.getNumStates());
+			if (pool != null) {
+				return ((STPGSparse) stpg).mvMultGSMinMaxParallel(vect, min1, min2, subset, complement, absolute, adv, nestedAdv, pool);
+			} else {
+				return ((STPGSparse) stpg).mvMultGSMinMax(vect, min1, min2, subset, complement, absolute, adv, nestedAdv);
+			}
+		} else {
+			return stpg.mvMultGSMinMax(vect, min1, min2, subset, complement, absolute);
+		}
+	}
+
+	/**
+	 * Do a matrix-vector multiplication and sum of rewards followed by min/max (see {@link STPG#mvMultRewMinMax}),
+	 * in parallel if the STPG is an {@link STPGSparse} and parallelism is enabled and worthwhile
+	 * (see {@link #getParallelPool(int)}).
+	 */
+	protected void mvMultRewMinMax(STPG stpg, double vect[], STPGRewards rewards, boolean min1, boolean min2, double result[], BitSet subset,
+			boolean complement, int adv[])
+	{
+		ForkJoinPool pool = (stpg instanceof STPGSparse) ? getParallelPool(stpg.getNumStates()) : null;
+		if (pool != null) {
+			((STPGSparse) stpg).mvMultRewMinMaxParallel(vect, rewards, min1, min2, result, subset, complement, adv, pool);
+		} else {
+			stpg.mvMultRewMinMax(vect, rewards, min1, min2, result, subset, complement, adv);
+		}
+	}
+
 	/**
 	 * Simple test program.
 	 */
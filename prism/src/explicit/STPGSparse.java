@@ -0,0 +1,1095 @@
+//==============================================================================
+//
+//	Copyright (c) 2002-
+//	Authors:
+//	* Dave Parker <david.parker@comlab.ox.ac.uk> (University of Oxford)
+//
+//------------------------------------------------------------------------------
+//
+//	This file is part of PRISM.
+//
+//	PRISM is free software; you can redistribute it and/or modify
+//	it under the terms of the GNU General Public License as published by
+//	the Free Software Foundation; either version 2 of the License, or
+//	(at your option) any later version.
+//
+//	PRISM is distributed in the hope that it will be useful,
+//	but WITHOUT ANY WARRANTY; without even the implied warranty of
+//	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//	GNU General Public License for more details.
+//
+//	You should have received a copy of the GNU General Public License
+//	along with PRISM; if not, write to the Free Software Foundation,
+//	Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+//
+//==============================================================================
+
+package explicit;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import common.IterableStateSet;
+import explicit.rewards.STPGRewards;
+import prism.ModelType;
+import prism.PrismException;
+import prism.PrismLog;
+import prism.PrismNotSupportedException;
+import prism.PrismUtils;
+import strat.MDStrategy;
+
+/**
+ * Sparse matrix (non-mutable) explicit-state representation of a stochastic two-player game (STPG).
+ * This is much faster to access than {@link STPGAbstrSimple} or {@link STPGExplicit} and more compact,
+ * but it has to be built all in one go (from another STPG) and can't be modified afterwards.
+ * <p>
+ * Both kinds of STPG are stored in the same way, with three levels of row indices:
+ * each state has a list of (top-level) choices, made by the player who owns the state;
+ * each choice comprises a list of (nested) choices, made by player 2; and each of these
+ * is a distribution over states, stored as for {@link MDPSparse}. For an {@link STPGAbstrSimple}
+ * all states are owned by player 1 and all choices are nested; for an {@link STPGExplicit},
+ * states are owned by either player and each choice contains a single (non-nested) distribution.
+ * <p>
+ * Optimal strategies are stored as two arrays: {@code strat}, indexed by state, giving the top-level
+ * choice (for the state's owner), and {@code nestedStrat}, indexed by top-level choice (see
+ * {@link #getChoiceIndex(int, int)}), giving the nested choice (for player 2).
+ */
+public class STPGSparse extends ModelExplicit implements STPG
+{
+	// Sparse matrix storing transition function
+	/** Owner (1 or 2) of each state, i.e. the player making its top-level choices (array of size numStates) */
+	protected int players[];
+	/** Probabilities for each transition (array of size numTransitions) */
+	protected double nonZeros[];
+	/** Column (destination) indices for each transition (array of size numTransitions) */
+	protected int cols[];
+	/** Indices into nonZeros/cols giving the start of the transitions for each distribution;
+	 * array is of size numDistrs+1 and last entry is always equal to numTransitions */
+	protected int distrStarts[];
+	/** Indices into distrStarts giving the start of the distributions for each top-level choice;
+	 * array is of size numChoices+1 and last entry is always equal to numDistrs */
+	protected int choiceStarts[];
+	/** Indices into choiceStarts giving the start of the top-level choices for each state;
+	 * array is of size numStates+1 and last entry is always equal to numChoices */
+	protected int rowStarts[];
+	/** Which top-level choices are nested (i.e. are chosen between by player 2) */
+	protected BitSet nested;
+
+	// Action labels
+	/** Array of action labels for top-level choices;
+	 * if null, there are no actions; otherwise, is an array of size numChoices */
+	protected Object actions[];
+	/** Array of action labels for nested choices;
+	 * if null, there are no actions; otherwise, is an array of size numDistrs */
+	protected Object nestedActions[];
+
+	// Other statistics
+	protected int numChoices;
+	protected int numDistrs;
+	protected int numTransitions;
+	protected int maxNumChoices;
+	protected int maxNumDistrs;
+
+	// Constructors
+
+	/**
+	 * Copy constructor (from any other STPG, e.g. an {@link STPGAbstrSimple} or {@link STPGExplicit}).
+	 * Indices of states, choices and nested choices are preserved.
+	 */
+	public STPGSparse(STPG stpg)
+	{
+		int s, i, j, n, nj, c, d, t;
+		initialise(stpg.getNumStates());
+		if (stpg instanceof ModelExplicit) {
+			copyFrom((ModelExplicit) stpg);
+		} else {
+			for (int in : stpg.getInitialStates()) {
+				addInitialState(in);
+			}
+		}
+		// First pass: count choices, distributions and transitions
+		numChoices = numDistrs = numTransitions = 0;
+		for (s = 0; s < numStates; s++) {
+			n = stpg.getNumChoices(s);
+			numChoices += n;
+			maxNumChoices = Math.max(maxNumChoices, n);
+			for (i = 0; i < n; i++) {
+				if (stpg.isChoiceNested(s, i)) {
+					if (stpg instanceof STPGAbstrSimple) {
+						DistributionSet set = ((STPGAbstrSimple) stpg).getChoice(s, i);
+						for (Distribution distr : set) {
+							numTransitions += distr.size();
+						}
+						nj = set.size();
+					} else {
+						nj = stpg.getNumNestedChoices(s, i);
+						for (j = 0; j < nj; j++) {
+							numTransitions += stpg.getNumNestedTransitions(s, i, j);
+						}
+					}
+				} else {
+					nj = 1;
+					numTransitions += stpg.getNumTransitions(s, i);
+				}
+				numDistrs += nj;
+				maxNumDistrs = Math.max(maxNumDistrs, nj);
+			}
+		}
+		// Second pass: copy transition function
+		players = new int[numStates];
+		nonZeros = new double[numTransitions];
+		cols = new int[numTransitions];
+		distrStarts = new int[numDistrs + 1];
+		choiceStarts = new int[numChoices + 1];
+		rowStarts = new int[numStates + 1];
+		nested = new BitSet();
+		actions = new Object[numChoices];
+		nestedActions = new Object[numDistrs];
+		boolean hasActions = false, hasNestedActions = false;
+		c = d = t = 0;
+		for (s = 0; s < numStates; s++) {
+			players[s] = stpg.getPlayer(s);
+			rowStarts[s] = c;
+			n = stpg.getNumChoices(s);
+			for (i = 0; i < n; i++) {
+				choiceStarts[c] = d;
+				actions[c] = stpg.getAction(s, i);
+				hasActions |= actions[c] != null;
+				if (stpg.isChoiceNested(s, i)) {
+					nested.set(c);
+					if (stpg instanceof STPGAbstrSimple) {
+						DistributionSet set = ((STPGAbstrSimple) stpg).getChoice(s, i);
+						for (Distribution distr : set) {
+							distrStarts[d] = t;
+							nestedActions[d] = set.getAction();
+							hasNestedActions |= nestedActions[d] != null;
+							d++;
+							for (Map.Entry<Integer, Double> e : distr) {
+								cols[t] = e.getKey();
+								nonZeros[t] = e.getValue();
+								t++;
+							}
+						}
+					} else {
+						nj = stpg.getNumNestedChoices(s, i);
+						for (j = 0; j < nj; j++) {
+							distrStarts[d] = t;
+							nestedActions[d] = stpg.getNestedAction(s, i, j);
+							hasNestedActions |= nestedActions[d] != null;
+							d++;
+							t = copyTransitions(stpg.getNestedTransitionsIterator(s, i, j), t);
+						}
+					}
+				} else {
+					distrStarts[d] = t;
+					d++;
+					t = copyTransitions(stpg.getTransitionsIterator(s, i), t);
+				}
+				c++;
+			}
+		}
+		distrStarts[numDistrs] = numTransitions;
+		choiceStarts[numChoices] = numDistrs;
+		rowStarts[numStates] = numChoices;
+		if (!hasActions) {
+			actions = null;
+		}
+		if (!hasNestedActions) {
+			nestedActions = null;
+		}
+	}
+
+	/**
+	 * Copy the transitions from an iterator into cols/nonZeros, starting at index {@code t};
+	 * return the index after the last one copied.
+	 */
+	private int copyTransitions(Iterator<Entry<Integer, Double>> it, int t)
+	{
+		if (it != null) {
+			while (it.hasNext()) {
+				Entry<Integer, Double> e = it.next();
+				cols[t] = e.getKey();
+				nonZeros[t] = e.getValue();
+				t++;
+			}
+		}
+		return t;
+	}
+
+	// Mutators (other)
+
+	@Override
+	public void initialise(int numStates)
+	{
+		super.initialise(numStates);
+		numChoices = numDistrs = numTransitions = 0;
+		maxNumChoices = maxNumDistrs = 0;
+		actions = nestedActions = null;
+	}
+
+	@Override
+	public void buildFromPrismExplicit(String filename) throws PrismException
+	{
+		throw new PrismNotSupportedException("Import not supported for STPGSparse; build an STPGAbstrSimple and convert it");
+	}
+
+	// Accessors (for Model)
+
+	@Override
+	public ModelType getModelType()
+	{
+		return ModelType.STPG;
+	}
+
+	@Override
+	public int getNumTransitions()
+	{
+		return numTransitions;
+	}
+
+	@Override
+	public Iterator<Integer> getSuccessorsIterator(final int s)
+	{
+		// Need to build set to avoid duplicates
+		// So not necessarily the fastest method to access successors
+		int start = distrStarts[choiceStarts[rowStarts[s]]];
+		int end = distrStarts[choiceStarts[rowStarts[s + 1]]];
+		HashSet<Integer> succs = new HashSet<Integer>();
+		for (int k = start; k < end; k++) {
+			succs.add(cols[k]);
+		}
+		return succs.iterator();
+	}
+
+	@Override
+	public boolean isSuccessor(int s1, int s2)
+	{
+		int start = distrStarts[choiceStarts[rowStarts[s1]]];
+		int end = distrStarts[choiceStarts[rowStarts[s1 + 1]]];
+		for (int k = start; k < end; k++) {
+			if (cols[k] == s2)
+				return true;
+		}
+		return false;
+	}
+
+	@Override
+	public boolean allSuccessorsInSet(int s, BitSet set)
+	{
+		int start = distrStarts[choiceStarts[rowStarts[s]]];
+		int end = distrStarts[choiceStarts[rowStarts[s + 1]]];
+		for (int k = start; k < end; k++) {
+			if (!set.get(cols[k]))
+				return false;
+		}
+		return true;
+	}
+
+	@Override
+	public boolean someSuccessorsInSet(int s, BitSet set)
+	{
+		int start = distrStarts[choiceStarts[rowStarts[s]]];
+		int end = distrStarts[choiceStarts[rowStarts[s + 1]]];
+		for (int k = start; k < end; k++) {
+			if (set.get(cols[k]))
+				return true;
+		}
+		return false;
+	}
+
+	@Override
+	public void findDeadlocks(boolean fix) throws PrismException
+	{
+		for (int i = 0; i < numStates; i++) {
+			// Note that no choices is a deadlock, not an empty choice
+			if (getNumChoices(i) == 0) {
+				addDeadlockState(i);
+				if (fix) {
+					throw new PrismException("Can't fix deadlocks in an STPGSparse since it cannot be modified after construction");
+				}
+			}
+		}
+	}
+
+	@Override
+	public void checkForDeadlocks(BitSet except) throws PrismException
+	{
+		for (int i = 0; i < numStates; i++) {
+			if (getNumChoices(i) == 0 && (except == null || !except.get(i)))
+				throw new PrismException("STPG has a deadlock in state " + i);
+		}
+	}
+
+	@Override
+	public void exportToPrismExplicitTra(PrismLog out)
+	{
+		// Output transitions to .tra file (in the same format as STPGAbstrSimple)
+		out.print(numStates + " " + numChoices + " " + numDistrs + " " + numTransitions + "\n");
+		for (int s = 0; s < numStates; s++) {
+			for (int i = rowStarts[s]; i < rowStarts[s + 1]; i++) {
+				for (int j = choiceStarts[i]; j < choiceStarts[i + 1]; j++) {
+					for (int k = distrStarts[j]; k < distrStarts[j + 1]; k++) {
+						// Note use of PrismUtils.formatDouble to match PRISM-exported files
+						out.print(s + " " + (i - rowStarts[s]) + " " + (j - choiceStarts[i]) + " " + cols[k] + " " + PrismUtils.formatDouble(nonZeros[k]) + "\n");
+					}
+				}
+			}
+		}
+	}
+
+	@Override
+	protected void exportTransitionsToDotFile(int s, PrismLog out)
+	{
+		String nij, nijk;
+		for (int i = rowStarts[s]; i < rowStarts[s + 1]; i++) {
+			nij = "n" + s + "_" + (i - rowStarts[s]);
+			out.print(s + " -> " + nij + " [ arrowhead=none,label=\"" + (i - rowStarts[s]) + "\" ];\n");
+			out.print(nij + " [ shape=circle,width=0.1,height=0.1,label=\"\" ];\n");
+			for (int j = choiceStarts[i]; j < choiceStarts[i + 1]; j++) {
+				nijk = nij + "_" + (j - choiceStarts[i]);
+				out.print(nij + " -> " + nijk + " [ arrowhead=none,label=\"" + (j - choiceStarts[i]) + "\" ];\n");
+				out.print(nijk + " [ shape=point,label=\"\" ];\n");
+				for (int k = distrStarts[j]; k < distrStarts[j + 1]; k++) {
+					out.print(nijk + " -> " + cols[k] + " [ label=\"" + nonZeros[k] + "\" ];\n");
+				}
+			}
+		}
+	}
+
+	@Override
+	public void exportToDotFileWithStrat(PrismLog out, BitSet mark, int strat[])
+	{
+		throw new RuntimeException("Not yet supported");
+	}
+
+	@Override
+	public void exportToPrismLanguage(String filename) throws PrismException
+	{
+		throw new PrismNotSupportedException("Export to STPG PRISM models not supported");
+	}
+
+	@Override
+	public String infoString()
+	{
+		String s = "";
+		s += numStates + " states (" + getNumInitialStates() + " initial)";
+		s += ", " + numTransitions + " transitions";
+		s += ", " + numDistrs + " choices";
+		s += ", " + numChoices + " choice sets";
+		s += ", p1max/avg = " + maxNumChoices + "/" + PrismUtils.formatDouble2dp(((double) numChoices) / numStates);
+		s += ", p2max/avg = " + maxNumDistrs + "/" + PrismUtils.formatDouble2dp(((double) numDistrs) / numChoices);
+		return s;
+	}
+
+	@Override
+	public String infoStringTable()
+	{
+		String s = "";
+		s += "States:      " + numStates + " (" + getNumInitialStates() + " initial)\n";
+		s += "Transitions: " + numTransitions + "\n";
+		s += "Choices:     " + numDistrs + "\n";
+		s += "P1 max/avg:  " + maxNumChoices + "/" + PrismUtils.formatDouble2dp(((double) numChoices) / numStates) + "\n";
+		s += "P2 max/avg:  " + maxNumDistrs + "/" + PrismUtils.formatDouble2dp(((double) numDistrs) / numChoices) + "\n";
+		return s;
+	}
+
+	// Accessors (for NondetModel)
+
+	@Override
+	public int getNumChoices(int s)
+	{
+		return rowStarts[s + 1] - rowStarts[s];
+	}
+
+	@Override
+	public int getMaxNumChoices()
+	{
+		return maxNumChoices;
+	}
+
+	@Override
+	public int getNumChoices()
+	{
+		return numChoices;
+	}
+
+	@Override
+	public Object getAction(int s, int i)
+	{
+		return actions == null ? null : actions[rowStarts[s] + i];
+	}
+
+	@Override
+	public boolean areAllChoiceActionsUnique()
+	{
+		HashSet<Object> sActions = new HashSet<Object>();
+		for (int s = 0; s < numStates; s++) {
+			int n = getNumChoices(s);
+			if (n > 1) {
+				sActions.clear();
+				for (int i = 0; i < n; i++) {
+					if (!sActions.add(getAction(s, i))) {
+						return false;
+					}
+				}
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public boolean allSuccessorsInSet(int s, int i, BitSet set)
+	{
+		int c = rowStarts[s] + i;
+		for (int k = distrStarts[choiceStarts[c]]; k < distrStarts[choiceStarts[c + 1]]; k++) {
+			if (!set.get(cols[k]))
+				return false;
+		}
+		return true;
+	}
+
+	@Override
+	public boolean someSuccessorsInSet(int s, int i, BitSet set)
+	{
+		int c = rowStarts[s] + i;
+		for (int k = distrStarts[choiceStarts[c]]; k < distrStarts[choiceStarts[c + 1]]; k++) {
+			if (set.get(cols[k]))
+				return true;
+		}
+		return false;
+	}
+
+	@Override
+	public Iterator<Integer> getSuccessorsIterator(final int s, final int i)
+	{
+		// Need to build set to avoid duplicates
+		int c = rowStarts[s] + i;
+		HashSet<Integer> succs = new HashSet<Integer>();
+		for (int k = distrStarts[choiceStarts[c]]; k < distrStarts[choiceStarts[c + 1]]; k++) {
+			succs.add(cols[k]);
+		}
+		return succs.iterator();
+	}
+
+	@Override
+	public Model constructInducedModel(MDStrategy strat)
+	{
+		throw new RuntimeException("Not implemented");
+	}
+
+	// Accessors (for STPG)
+
+	@Override
+	public int getPlayer(int s)
+	{
+		return players[s];
+	}
+
+	@Override
+	public int getNumTransitions(int s, int i)
+	{
+		int c = rowStarts[s] + i;
+		// Nested choices have no (direct) transitions
+		return nested.get(c) ? 0 : distrStarts[choiceStarts[c] + 1] - distrStarts[choiceStarts[c]];
+	}
+
+	@Override
+	public Iterator<Entry<Integer, Double>> getTransitionsIterator(int s, int i)
+	{
+		int c = rowStarts[s] + i;
+		// Nested choices have no (direct) transitions
+		return nested.get(c) ? null : getDistrIterator(choiceStarts[c]);
+	}
+
+	@Override
+	public boolean isChoiceNested(int s, int i)
+	{
+		return nested.get(rowStarts[s] + i);
+	}
+
+	@Override
+	public int getNumNestedChoices(int s, int i)
+	{
+		int c = rowStarts[s] + i;
+		return nested.get(c) ? choiceStarts[c + 1] - choiceStarts[c] : 0;
+	}
+
+	@Override
+	public Object getNestedAction(int s, int i, int j)
+	{
+		int c = rowStarts[s] + i;
+		return (nestedActions == null || !nested.get(c)) ? null : nestedActions[choiceStarts[c] + j];
+	}
+
+	@Override
+	public int getNumNestedTransitions(int s, int i, int j)
+	{
+		int c = rowStarts[s] + i;
+		if (!nested.get(c) || j >= choiceStarts[c + 1] - choiceStarts[c])
+			return 0;
+		return distrStarts[choiceStarts[c] + j + 1] - distrStarts[choiceStarts[c] + j];
+	}
+
+	@Override
+	public Iterator<Entry<Integer, Double>> getNestedTransitionsIterator(int s, int i, int j)
+	{
+		int c = rowStarts[s] + i;
+		if (!nested.get(c) || j >= choiceStarts[c + 1] - choiceStarts[c])
+			return null;
+		return getDistrIterator(choiceStarts[c] + j);
+	}
+
+	/**
+	 * Get an iterator over the transitions of the {@code d}th distribution (counting over all states/choices).
+	 */
+	private Iterator<Entry<Integer, Double>> getDistrIterator(final int d)
+	{
+		return new Iterator<Entry<Integer, Double>>()
+		{
+			int k = distrStarts[d];
+			final int end = distrStarts[d + 1];
+
+			@Override
+			public boolean hasNext()
+			{
+				return k < end;
+			}
+
+			@Override
+			public Entry<Integer, Double> next()
+			{
+				Entry<Integer, Double> e = new AbstractMap.SimpleImmutableEntry<Integer, Double>(cols[k], nonZeros[k]);
+				k++;
+				return e;
+			}
+
+			@Override
+			public void remove()
+			{
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+	@Override
+	public void prob0step(BitSet subset, BitSet u, boolean forall1, boolean forall2, BitSet result)
+	{
+		for (int s : new IterableStateSet(subset, numStates)) {
+			result.set(s, prob01stepSingle(s, u, null, (players[s] == 1) ? forall1 : forall2, forall2));
+		}
+	}
+
+	@Override
+	public void prob1step(BitSet subset, BitSet u, BitSet v, boolean forall1, boolean forall2, BitSet result)
+	{
+		for (int s : new IterableStateSet(subset, numStates)) {
+			result.set(s, prob01stepSingle(s, u, v, (players[s] == 1) ? forall1 : forall2, forall2));
+		}
+	}
+
+	/**
+	 * Do a single row of a Prob0 step (if {@code v} is null, checking that a distribution
+	 * has some successor in {@code u}) or a Prob1 step (checking that a distribution has some
+	 * successor in {@code v} and all successors in {@code u}), with quantification over the
+	 * top-level and nested choices given by {@code forallTop} and {@code forallNested}.
+	 */
+	private boolean prob01stepSingle(int s, BitSet u, BitSet v, boolean forallTop, boolean forallNested)
+	{
+		int l1 = rowStarts[s], h1 = rowStarts[s + 1];
+		for (int i = l1; i < h1; i++) {
+			boolean b2 = forallNested;
+			int l2 = choiceStarts[i], h2 = choiceStarts[i + 1];
+			for (int j = l2; j < h2; j++) {
+				boolean some = false, all = true;
+				int l3 = distrStarts[j], h3 = distrStarts[j + 1];
+				for (int k = l3; k < h3; k++) {
+					if (v == null) {
+						if (u.get(cols[k])) {
+							some = true;
+							break;
+						}
+					} else {
+						if (v.get(cols[k]))
+							some = true;
+						if (!u.get(cols[k])) {
+							all = false;
+							break;
+						}
+					}
+				}
+				if ((some && all) != forallNested) {
+					b2 = !forallNested;
+					break;
+				}
+			}
+			if (b2 != forallTop) {
+				return !forallTop;
+			}
+		}
+		return forallTop;
+	}
+
+	@Override
+	public void mvMultMinMax(double vect[], boolean min1, boolean min2, double result[], BitSet subset, boolean complement, int strat[])
+	{
+		mvMultMinMax(vect, min1, min2, result, subset, complement, strat, null);
+	}
+
+	/**
+	 * Do a matrix-vector multiplication followed by min/max, i.e. one step of value iteration,
+	 * as for {@link #mvMultMinMax(double[], boolean, boolean, double[], BitSet, boolean, int[])},
+	 * optionally storing optimal choices for both players.
+	 * @param strat Storage for (top-level) choices for each state (optional: null means don't store)
+	 * @param nestedStrat Storage for nested (player 2) choices for each top-level choice (optional: null means don't store)
+	 */
+	public void mvMultMinMax(double vect[], boolean min1, boolean min2, double result[], BitSet subset, boolean complement, int strat[], int nestedStrat[])
+	{
+		for (int s : new IterableStateSet(subset, numStates, complement)) {
+			result[s] = mvMultMinMaxSingle(s, vect, null, min1, min2, strat, nestedStrat);
+		}
+	}
+
+	@Override
+	public double mvMultMinMaxSingle(int s, double vect[], boolean min1, boolean min2)
+	{
+		return mvMultMinMaxSingle(s, vect, null, min1, min2, null, null);
+	}
+
+	@Override
+	public List<Integer> mvMultMinMaxSingleChoices(int s, double vect[], boolean min1, boolean min2, double val)
+	{
+		return mvMultMinMaxSingleChoices(s, vect, null, min1, min2, val);
+	}
+
+	@Override
+	public double mvMultGSMinMax(double vect[], boolean min1, boolean min2, BitSet subset, boolean complement, boolean absolute)
+	{
+		return mvMultGSMinMax(vect, min1, min2, subset, complement, absolute, null, null);
+	}
+
+	/**
+	 * Do a Gauss-Seidel-style matrix-vector multiplication followed by min/max,
+	 * as for {@link #mvMultGSMinMax(double[], boolean, boolean, BitSet, boolean, boolean)},
+	 * optionally storing optimal choices for both players.
+	 * @param strat Storage for (top-level) choices for each state (optional: null means don't store)
+	 * @param nestedStrat Storage for nested (player 2) choices for each top-level choice (optional: null means don't store)
+	 */
+	public double mvMultGSMinMax(double vect[], boolean min1, boolean min2, BitSet subset, boolean complement, boolean absolute, int strat[],
+			int nestedStrat[])
+	{
+		double d, diff, maxDiff = 0.0;
+		for (int s : new IterableStateSet(subset, numStates, complement)) {
+			d = mvMultJacMinMaxSingle(s, vect, null, -1, -1, null, min1, min2, strat, nestedStrat);
+			diff = absolute ? (Math.abs(d - vect[s])) : (Math.abs(d - vect[s]) / d);
+			maxDiff = diff > maxDiff ? diff : maxDiff;
+			vect[s] = d;
+		}
+		return maxDiff;
+	}
+
+	@Override
+	public double mvMultJacMinMaxSingle(int s, double vect[], boolean min1, boolean min2)
+	{
+		return mvMultJacMinMaxSingle(s, vect, null, -1, -1, null, min1, min2, null, null);
+	}
+
+	/**
+	 * Do a matrix-vector multiplication and sum of rewards followed by min/max, i.e. one step of value iteration.
+	 * State rewards are included, as for {@link STPGExplicit} (unlike {@link STPGAbstrSimple}, which ignores them).
+	 */
+	@Override
+	public void mvMultRewMinMax(double vect[], STPGRewards rewards, boolean min1, boolean min2, double result[], BitSet subset, boolean complement, int strat[])
+	{
+		for (int s : new IterableStateSet(subset, numStates, complement)) {
+			result[s] = mvMultMinMaxSingle(s, vect, rewards, min1, min2, strat, null);
+		}
+	}
+
+	@Override
+	public double mvMultRewMinMaxSingle(int s, double vect[], STPGRewards rewards, boolean min1, boolean min2, int strat[])
+	{
+		return mvMultMinMaxSingle(s, vect, rewards, min1, min2, strat, null);
+	}
+
+	@Override
+	public List<Integer> mvMultRewMinMaxSingleChoices(int s, double vect[], STPGRewards rewards, boolean min1, boolean min2, double val)
+	{
+		return mvMultMinMaxSingleChoices(s, vect, rewards, min1, min2, val);
+	}
+
+	// Parallel (multi-threaded) matrix-vector operations
+
+	/**
+	 * Do a matrix-vector multiplication followed by min/max, i.e. one step of value iteration,
+	 * as for {@link #mvMultMinMax(double[], boolean, boolean, double[], BitSet, boolean, int[], int[])},
+	 * but with the states split into contiguous blocks that are processed in parallel.
+	 * The result is identical to the sequential version.
+	 * @param pool Fork/join pool to use (one block of states per thread)
+	 */
+	public void mvMultMinMaxParallel(final double vect[], final boolean min1, final boolean min2, final double result[], final BitSet subset,
+			final boolean complement, final int strat[], final int nestedStrat[], ForkJoinPool pool)
+	{
+		doParallel(pool, new StateBlockOp()
+		{
+			@Override
+			public double apply(int lo, int hi)
+			{
+				for (int s = nextState(subset, complement, lo); s < hi; s = nextState(subset, complement, s + 1)) {
+					result[s] = mvMultMinMaxSingle(s, vect, null, min1, min2, strat, nestedStrat);
+				}
+				return 0.0;
+			}
+		});
+	}
+
+	/**
+	 * Do a (block) Gauss-Seidel-style matrix-vector multiplication followed by min/max, in parallel,
+	 * i.e. a parallel version of {@link #mvMultGSMinMax(double[], boolean, boolean, BitSet, boolean, boolean, int[], int[])}.
+	 * The states are split into contiguous blocks, one per thread. Within each block, values
+	 * are updated in place, as for Gauss-Seidel; values from other blocks are those from the
+	 * previous iteration (so the result is deterministic, but depends on the number of threads).
+	 * @param pool Fork/join pool to use (one block of states per thread)
+	 * @return The maximum difference between old/new elements of {@code vect}
+	 */
+	public double mvMultGSMinMaxParallel(final double vect[], final boolean min1, final boolean min2, final BitSet subset, final boolean complement,
+			final boolean absolute, final int strat[], final int nestedStrat[], ForkJoinPool pool)
+	{
+		final double old[] = vect.clone();
+		return doParallel(pool, new StateBlockOp()
+		{
+			@Override
+			public double apply(int lo, int hi)
+			{
+				double d, diff, maxDiff = 0.0;
+				for (int s = nextState(subset, complement, lo); s < hi; s = nextState(subset, complement, s + 1)) {
+					d = mvMultJacMinMaxSingle(s, vect, old, lo, hi, null, min1, min2, strat, nestedStrat);
+					diff = absolute ? (Math.abs(d - vect[s])) : (Math.abs(d - vect[s]) / d);
+					maxDiff = diff > maxDiff ? diff : maxDiff;
+					vect[s] = d;
+				}
+				return maxDiff;
+			}
+		});
+	}
+
+	/**
+	 * Do a matrix-vector multiplication and sum of rewards followed by min/max, i.e. one step of value iteration,
+	 * as for {@link #mvMultRewMinMax(double[], STPGRewards, boolean, boolean, double[], BitSet, boolean, int[])},
+	 * but with the states split into contiguous blocks that are processed in parallel.
+	 * The result is identical to the sequential version.
+	 * @param pool Fork/join pool to use (one block of states per thread)
+	 */
+	public void mvMultRewMinMaxParallel(final double vect[], final STPGRewards rewards, final boolean min1, final boolean min2, final double result[],
+			final BitSet subset, final boolean complement, final int strat[], ForkJoinPool pool)
+	{
+		doParallel(pool, new StateBlockOp()
+		{
+			@Override
+			public double apply(int lo, int hi)
+			{
+				for (int s = nextState(subset, complement, lo); s < hi; s = nextState(subset, complement, s + 1)) {
+					result[s] = mvMultMinMaxSingle(s, vect, rewards, min1, min2, strat, null);
+				}
+				return 0.0;
+			}
+		});
+	}
+
+	/**
+	 * Operation on a contiguous block of states [lo,hi), executed by a single thread.
+	 */
+	private interface StateBlockOp
+	{
+		/**
+		 * Apply the operation to states lo,...,hi-1 and return the maximum difference
+		 * between old/new values (or 0 if not relevant).
+		 */
+		public double apply(int lo, int hi);
+	}
+
+	/**
+	 * Split the states into contiguous blocks, one per thread of {@code pool},
+	 * apply {@code op} to each block in parallel and return the maximum of the results.
+	 */
+	private double doParallel(ForkJoinPool pool, final StateBlockOp op)
+	{
+		int numBlocks = Math.max(1, Math.min(pool.getParallelism(), numStates));
+		List<ForkJoinTask<Double>> tasks = new ArrayList<ForkJoinTask<Double>>(numBlocks);
+		for (int b = 0; b < numBlocks; b++) {
+			final int lo = (int) ((long) numStates * b / numBlocks);
+			final int hi = (int) ((long) numStates * (b + 1) / numBlocks);
+			tasks.add(pool.submit(new Callable<Double>()
+			{
+				@Override
+				public Double call()
+				{
+					return op.apply(lo, hi);
+				}
+			}));
+		}
+		double maxDiff = 0.0;
+		for (ForkJoinTask<Double> task : tasks) {
+			maxDiff = Math.max(maxDiff, task.join());
+		}
+		return maxDiff;
+	}
+
+	/**
+	 * Get the first state, from {@code s} onwards, in the set of states given by {@code subset}/{@code complement}
+	 * (as for {@link IterableStateSet}), or numStates if there is none.
+	 */
+	private int nextState(BitSet subset, boolean complement, int s)
+	{
+		if (subset == null) {
+			return complement ? numStates : s;
+		}
+		s = complement ? subset.nextClearBit(s) : subset.nextSetBit(s);
+		return (s < 0 || s >= numStates) ? numStates : s;
+	}
+
+	// Single-row matrix-vector operations
+
+	/**
+	 * Do a single row of matrix-vector multiplication (and sum of rewards, if {@code rewards} is non-null)
+	 * followed by min/max, the top-level choice being made by the owner of state {@code s} and nested ones by player 2.
+	 * @param strat Storage for (top-level) choices for each state (optional: null means don't store)
+	 * @param nestedStrat Storage for nested (player 2) choices for each top-level choice (optional: null means don't store)
+	 */
+	private double mvMultMinMaxSingle(int s, double vect[], STPGRewards rewards, boolean min1, boolean min2, int strat[], int nestedStrat[])
+	{
+		int i, j, k, l1, h1, l2, h2, l3, h3, stratCh = -1, nestedStratCh = -1;
+		double d, minmax1, minmax2;
+		boolean min, first1, first2;
+
+		min = (players[s] == 1) ? min1 : min2;
+		minmax1 = 0;
+		first1 = true;
+		l1 = rowStarts[s];
+		h1 = rowStarts[s + 1];
+		for (i = l1; i < h1; i++) {
+			minmax2 = 0;
+			first2 = true;
+			l2 = choiceStarts[i];
+			h2 = choiceStarts[i + 1];
+			for (j = l2; j < h2; j++) {
+				// Compute sum for this distribution
+				d = (rewards != null && nested.get(i)) ? rewards.getNestedTransitionReward(s, i - l1, j - l2) : 0.0;
+				l3 = distrStarts[j];
+				h3 = distrStarts[j + 1];
+				for (k = l3; k < h3; k++) {
+					d += nonZeros[k] * vect[cols[k]];
+				}
+				// Check whether we have exceeded min/max so far
+				// (on ties, keep any previously stored strategy choice, which is needed for max)
+				if (first2 || (min2 && d < minmax2) || (!min2 && d > minmax2) || (d == minmax2 && nestedStrat != null && nestedStrat[i] == j - l2)) {
+					minmax2 = d;
+					nestedStratCh = j - l2;
+				}
+				first2 = false;
+			}
+			if (nestedStrat != null && !first2) {
+				nestedStrat[i] = nestedStratCh;
+			}
+			if (rewards != null) {
+				minmax2 += rewards.getTransitionReward(s, i - l1);
+			}
+			// Check whether we have exceeded min/max so far (keeping stored strategy choices on ties, as above)
+			if (first1 || (min && minmax2 < minmax1) || (!min && minmax2 > minmax1) || (minmax2 == minmax1 && strat != null && strat[s] == i - l1)) {
+				minmax1 = minmax2;
+				stratCh = i - l1;
+			}
+			first1 = false;
+		}
+		// If strategy generation is enabled, store optimal choice
+		if (strat != null && !first1) {
+			strat[s] = stratCh;
+		}
+		// Add state reward (doesn't affect min/max)
+		if (rewards != null) {
+			minmax1 += rewards.getStateReward(s);
+		}
+
+		return minmax1;
+	}
+
+	/**
+	 * Do a single row of Jacobi-style matrix-vector multiplication (and sum of rewards, if {@code rewards} is non-null)
+	 * followed by min/max, as for {@link #mvMultMinMaxSingle(int, double[], STPGRewards, boolean, boolean, int[], int[])}.
+	 * If {@code old} is non-null, values for states outside the block [lo,hi) are taken from {@code old}
+	 * rather than {@code vect} (for block Gauss-Seidel).
+	 */
+	private double mvMultJacMinMaxSingle(int s, double vect[], double old[], int lo, int hi, STPGRewards rewards, boolean min1, boolean min2, int strat[],
+			int nestedStrat[])
+	{
+		int i, j, k, c, l1, h1, l2, h2, l3, h3, stratCh = -1, nestedStratCh = -1;
+		double diag, d, minmax1, minmax2;
+		boolean min, first1, first2;
+
+		min = (players[s] == 1) ? min1 : min2;
+		minmax1 = 0;
+		first1 = true;
+		l1 = rowStarts[s];
+		h1 = rowStarts[s + 1];
+		for (i = l1; i < h1; i++) {
+			minmax2 = 0;
+			first2 = true;
+			l2 = choiceStarts[i];
+			h2 = choiceStarts[i + 1];
+			for (j = l2; j < h2; j++) {
+				diag = 1.0;
+				// Compute sum for this distribution
+				d = (rewards != null && nested.get(i)) ? rewards.getNestedTransitionReward(s, i - l1, j - l2) : 0.0;
+				l3 = distrStarts[j];
+				h3 = distrStarts[j + 1];
+				for (k = l3; k < h3; k++) {
+					c = cols[k];
+					if (c != s) {
+						d += nonZeros[k] * (old == null || (c >= lo && c < hi) ? vect[c] : old[c]);
+					} else {
+						diag -= nonZeros[k];
+					}
+				}
+				if (diag > 0)
+					d /= diag;
+				// Check whether we have exceeded min/max so far
+				// (on ties, keep any previously stored strategy choice, which is needed for max)
+				if (first2 || (min2 && d < minmax2) || (!min2 && d > minmax2) || (d == minmax2 && nestedStrat != null && nestedStrat[i] == j - l2)) {
+					minmax2 = d;
+					nestedStratCh = j - l2;
+				}
+				first2 = false;
+			}
+			if (nestedStrat != null && !first2) {
+				nestedStrat[i] = nestedStratCh;
+			}
+			if (rewards != null) {
+				minmax2 += rewards.getTransitionReward(s, i - l1);
+			}
+			// Check whether we have exceeded min/max so far (keeping stored strategy choices on ties, as above)
+			if (first1 || (min && minmax2 < minmax1) || (!min && minmax2 > minmax1) || (minmax2 == minmax1 && strat != null && strat[s] == i - l1)) {
+				minmax1 = minmax2;
+				stratCh = i - l1;
+			}
+			first1 = false;
+		}
+		// If strategy generation is enabled, store optimal choice
+		if (strat != null && !first1) {
+			strat[s] = stratCh;
+		}
+		// Add state reward (doesn't affect min/max)
+		if (rewards != null) {
+			minmax1 += rewards.getStateReward(s);
+		}
+
+		return minmax1;
+	}
+
+	/**
+	 * Determine the top-level choices for state {@code s} which achieve value {@code val}
+	 * after one step of value iteration from {@code vect} (with rewards, if {@code rewards} is non-null).
+	 */
+	private List<Integer> mvMultMinMaxSingleChoices(int s, double vect[], STPGRewards rewards, boolean min1, boolean min2, double val)
+	{
+		int i, j, k, l1, h1, l2, h2;
+		double d, minmax2;
+		boolean first2;
+		List<Integer> res;
+
+		// Create data structures to store strategy
+		res = new ArrayList<Integer>();
+		// One row of matrix-vector operation
+		l1 = rowStarts[s];
+		h1 = rowStarts[s + 1];
+		for (i = l1; i < h1; i++) {
+			minmax2 = 0;
+			first2 = true;
+			l2 = choiceStarts[i];
+			h2 = choiceStarts[i + 1];
+			for (j = l2; j < h2; j++) {
+				// Compute sum for this distribution
+				d = (rewards != null && nested.get(i)) ? rewards.getNestedTransitionReward(s, i - l1, j - l2) : 0.0;
+				for (k = distrStarts[j]; k < distrStarts[j + 1]; k++) {
+					d += nonZeros[k] * vect[cols[k]];
+				}
+				// Check whether we have exceeded min/max so far
+				if (first2 || (min2 && d < minmax2) || (!min2 && d > minmax2))
+					minmax2 = d;
+				first2 = false;
+			}
+			if (rewards != null) {
+				minmax2 += rewards.getTransitionReward(s, i - l1) + rewards.getStateReward(s);
+			}
+			// Store strategy info if value matches
+			if (PrismUtils.doublesAreClose(val, minmax2, 1e-12, false)) {
+				res.add(i - l1);
+			}
+		}
+
+		return res;
+	}
+
+	// Accessors (other)
+
+	/**
+	 * Get the index of the {@code i}th top-level choice of state {@code s},
+	 * counting over all states, as used to index nested strategies.
+	 */
+	public int getChoiceIndex(int s, int i)
+	{
+		return rowStarts[s] + i;
+	}
+
+	/**
+	 * Get the total number of nested choices (distributions) over all states.
+	 */
+	public int getNumNestedChoices()
+	{
+		return numDistrs;
+	}
+
+	// Standard methods
+
+	@Override
+	public String toString()
+	{
+		String s = "[ ";
+		for (int i = 0; i < numStates; i++) {
+			if (i > 0)
+				s += ", ";
+			s += i + "(P-" + players[i] + "): [";
+			for (int c = rowStarts[i]; c < rowStarts[i + 1]; c++) {
+				if (c > rowStarts[i])
+					s += ", ";
+				if (actions != null && actions[c] != null)
+					s += actions[c] + ":";
+				if (nested.get(c))
+					s += "[";
+				for (int j = choiceStarts[c]; j < choiceStarts[c + 1]; j++) {
+					if (j > choiceStarts[c])
+						s += ", ";
+					s += "{";
+					for (int k = distrStarts[j]; k < distrStarts[j + 1]; k++) {
+						if (k > distrStarts[j])
+							s += ", ";
+						s += cols[k] + "=" + nonZeros[k];
+					}
+					s += "}";
+				}
+				if (nested.get(c))
+					s += "]";
+			}
+			s += "]";
+		}
+		s += " ]";
+		return s;
+	}
+}
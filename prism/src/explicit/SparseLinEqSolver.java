@@ -0,0 +1,608 @@
+//==============================================================================
+//
+//	Copyright (c) 2002-
+//	Authors:
+//	* Dave Parker <d.a.parker@cs.bham.ac.uk> (University of Birmingham)
+//
+//------------------------------------------------------------------------------
+//
+//	This file is part of PRISM.
+//
+//	PRISM is free software; you can redistribute it and/or modify
+//	it under the terms of the GNU General Public License as published by
+//	the Free Software Foundation; either version 2 of the License, or
+//	(at your option) any later version.
+//
+//	PRISM is distributed in the hope that it will be useful,
+//	but WITHOUT ANY WARRANTY; without even the implied warranty of
+//	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//	GNU General Public License for more details.
+//
+//	You should have received a copy of the GNU General Public License
+//	along with PRISM; if not, write to the Free Software Foundation,
+//	Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+//
+//==============================================================================
+
+package explicit;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import prism.PrismException;
+import prism.PrismUtils;
+
+/**
+ * Solution of the sparse linear equation systems arising from DTMC reachability problems,
+ * i.e. (I - P) x = b, where P is the transition matrix restricted to a subset of "unknown" states
+ * and b collects the contributions of all other states (whose values are fixed),
+ * or from steady-state computation for a BSCC (see {@link #createForSteadyState(DTMC, BitSet, int)}).
+ * The matrix is stored in compressed sparse row (CSR) format over the unknown states only.
+ * Three solution methods are provided: BiCGSTAB and restarted GMRES (both Krylov subspace
+ * methods, with Jacobi (diagonal) preconditioning) and a direct sparse LU factorisation.
+ * The latter needs no pivoting since I - P is a non-singular M-matrix (assuming all unknown
+ * states can reach a fixed one), but may suffer from fill-in, so is intended for small/medium systems.
+ */
+public class SparseLinEqSolver
+{
+	/** Number of rows/columns */
+	protected int m;
+	/** Index of each unknown state in the system (-1 for other states) */
+	protected int index[];
+	/** Model state for each row */
+	protected int states[];
+	/** CSR matrix: start of each row in cols/vals (size m+1) */
+	protected int rowStarts[];
+	/** CSR matrix: column indices */
+	protected int cols[];
+	/** CSR matrix: values */
+	protected double vals[];
+	/** Diagonal entries of the matrix */
+	protected double diag[];
+	/** Right-hand side */
+	protected double b[];
+
+	/** Number of iterations performed by the last call to an iterative method */
+	protected int iters;
+
+	/**
+	 * Build the linear equation system for the values of the states in {@code unknown} of a DTMC:
+	 * x(s) = sum_t P(s,t) x(t) + c(s), where x(t) = fixed[t] for states t not in {@code unknown}.
+	 * The constant terms c(s) (e.g. rewards) are 0 here, but can be added with {@link #addToRHS(int, double)}.
+	 * @param dtmc The DTMC
+	 * @param unknown The states to solve for
+	 * @param fixed Values for all other states (must be finite for any state reachable in one step from {@code unknown})
+	 */
+	public SparseLinEqSolver(DTMC dtmc, BitSet unknown, double fixed[])
+	{
+		int r;
+		initIndex(dtmc.getNumStates(), unknown);
+		// Count entries (upper bound: transitions plus diagonal)
+		int nnz = m;
+		for (r = 0; r < m; r++) {
+			nnz += dtmc.getNumTransitions(states[r]);
+		}
+		rowStarts = new int[m + 1];
+		cols = new int[nnz];
+		vals = new double[nnz];
+		diag = new double[m];
+		b = new double[m];
+		int k = 0;
+		for (r = 0; r < m; r++) {
+			rowStarts[r] = k;
+			diag[r] = 1.0;
+			Iterator<Map.Entry<Integer, Double>> iter = dtmc.getTransitionsIterator(states[r]);
+			while (iter.hasNext()) {
+				Map.Entry<Integer, Double> e = iter.next();
+				int t = e.getKey();
+				double p = e.getValue();
+				int c = index[t];
+				if (c == r) {
+					diag[r] -= p;
+				} else if (c >= 0) {
+					cols[k] = c;
+					vals[k] = -p;
+					k++;
+				} else {
+					b[r] += p * fixed[t];
+				}
+			}
+			// Store diagonal too, for matrix-vector multiplication
+			cols[k] = r;
+			vals[k] = diag[r];
+			k++;
+		}
+		rowStarts[m] = k;
+	}
+
+	/**
+	 * Build the linear equation system for the steady-state probabilities of a BSCC of a DTMC.
+	 * Since the solution of x = x P is only unique up to scaling, the (unnormalised) value of
+	 * a reference state {@code ref} is fixed to 1. For the other states t of the BSCC, this gives
+	 * x(t) = sum_s x(s) P(s,t) + P(ref,t), i.e. (I - Q^T) x = P(ref,.), where Q is P restricted to
+	 * the BSCC minus {@code ref}. Since all states of the BSCC can reach {@code ref}, this is again
+	 * a non-singular M-matrix. The solution needs to be normalised afterwards.
+	 * @param dtmc The DTMC
+	 * @param bscc The BSCC
+	 * @param ref The reference state (in {@code bscc})
+	 */
+	public static SparseLinEqSolver createForSteadyState(DTMC dtmc, BitSet bscc, int ref)
+	{
+		SparseLinEqSolver solver = new SparseLinEqSolver();
+		BitSet unknown = (BitSet) bscc.clone();
+		unknown.clear(ref);
+		solver.initIndex(dtmc.getNumStates(), unknown);
+		solver.buildTransposed(dtmc, bscc, ref);
+		return solver;
+	}
+
+	private SparseLinEqSolver()
+	{
+	}
+
+	/**
+	 * Set up the mapping between model states and rows for the states in {@code unknown}.
+	 */
+	private void initIndex(int n, BitSet unknown)
+	{
+		m = unknown.cardinality();
+		index = new int[n];
+		states = new int[m];
+		int r = 0;
+		for (int s = 0; s < n; s++) {
+			if (unknown.get(s)) {
+				states[r] = s;
+				index[s] = r++;
+			} else {
+				index[s] = -1;
+			}
+		}
+	}
+
+	/**
+	 * Build the (transposed) matrix and right-hand side for {@link #createForSteadyState(DTMC, BitSet, int)}.
+	 */
+	private void buildTransposed(DTMC dtmc, BitSet bscc, int ref)
+	{
+		// Count entries in each row (i.e. incoming transitions for each state), plus diagonal
+		rowStarts = new int[m + 1];
+		for (int s = bscc.nextSetBit(0); s >= 0; s = bscc.nextSetBit(s + 1)) {
+			if (s == ref) {
+				continue;
+			}
+			Iterator<Map.Entry<Integer, Double>> iter = dtmc.getTransitionsIterator(s);
+			while (iter.hasNext()) {
+				int c = index[iter.next().getKey()];
+				if (c >= 0 && c != index[s]) {
+					rowStarts[c + 1]++;
+				}
+			}
+		}
+		for (int r = 0; r < m; r++) {
+			rowStarts[r + 1] += rowStarts[r] + 1;
+		}
+		cols = new int[rowStarts[m]];
+		vals = new double[rowStarts[m]];
+		diag = new double[m];
+		b = new double[m];
+		Arrays.fill(diag, 1.0);
+		// Fill in entries: transition s->t gives entry (t,s)
+		int next[] = Arrays.copyOf(rowStarts, m);
+		for (int s = bscc.nextSetBit(0); s >= 0; s = bscc.nextSetBit(s + 1)) {
+			int c = index[s];
+			Iterator<Map.Entry<Integer, Double>> iter = dtmc.getTransitionsIterator(s);
+			while (iter.hasNext()) {
+				Map.Entry<Integer, Double> e = iter.next();
+				int r = index[e.getKey()];
+				double p = e.getValue();
+				if (r < 0) {
+					continue;
+				}
+				if (s == ref) {
+					b[r] += p;
+				} else if (r == c) {
+					diag[r] -= p;
+				} else {
+					cols[next[r]] = c;
+					vals[next[r]] = -p;
+					next[r]++;
+				}
+			}
+		}
+		// Store diagonal too, for matrix-vector multiplication
+		for (int r = 0; r < m; r++) {
+			cols[next[r]] = r;
+			vals[next[r]] = diag[r];
+		}
+	}
+
+	/**
+	 * Get the number of unknowns.
+	 */
+	public int getSize()
+	{
+		return m;
+	}
+
+	/**
+	 * Get the number of iterations performed by the last call to an iterative method.
+	 */
+	public int getNumIters()
+	{
+		return iters;
+	}
+
+	/**
+	 * Add {@code d} to the right-hand side for model state {@code s} (which must be in the unknown set).
+	 */
+	public void addToRHS(int s, double d)
+	{
+		b[index[s]] += d;
+	}
+
+	/**
+	 * Solve using BiCGSTAB, with Jacobi preconditioning.
+	 * @param soln Solution vector, indexed by model state; the entries for unknown states
+	 * are used as the initial guess and overwritten with the solution (others are untouched)
+	 * @param tol Termination tolerance (see {@link #isConverged})
+	 * @param absolute Whether the tolerance is absolute (rather than relative)
+	 * @param maxIters Maximum number of iterations
+	 */
+	public void solveBiCGSTAB(double soln[], double tol, boolean absolute, int maxIters) throws PrismException
+	{
+		double x[] = getInitial(soln);
+		double r[] = new double[m], rhat[], p[] = new double[m], v[] = new double[m];
+		double phat[] = new double[m], s[] = new double[m], shat[] = new double[m], t[] = new double[m];
+		double rho = 1.0, rhoNew, alpha = 1.0, omega = 1.0, beta, d;
+		boolean done;
+
+		residual(x, r);
+		rhat = r.clone();
+		iters = 0;
+		done = isConverged(x, r, tol, absolute);
+		while (!done && iters < maxIters) {
+			iters++;
+			rhoNew = dot(rhat, r);
+			if (rhoNew == 0.0) {
+				// Breakdown: restart with a new shadow residual
+				residual(x, r);
+				rhat = r.clone();
+				rho = alpha = omega = 1.0;
+				Arrays.fill(p, 0.0);
+				Arrays.fill(v, 0.0);
+				done = isConverged(x, r, tol, absolute);
+				continue;
+			}
+			beta = (rhoNew / rho) * (alpha / omega);
+			for (int i = 0; i < m; i++) {
+				p[i] = r[i] + beta * (p[i] - omega * v[i]);
+				phat[i] = p[i] / diag[i];
+			}
+			mult(phat, v);
+			alpha = rhoNew / dot(rhat, v);
+			for (int i = 0; i < m; i++) {
+				s[i] = r[i] - alpha * v[i];
+			}
+			for (int i = 0; i < m; i++) {
+				shat[i] = s[i] / diag[i];
+			}
+			mult(shat, t);
+			d = dot(t, t);
+			omega = d == 0.0 ? 0.0 : dot(t, s) / d;
+			for (int i = 0; i < m; i++) {
+				x[i] += alpha * phat[i] + omega * shat[i];
+				r[i] = s[i] - omega * t[i];
+			}
+			done = isConverged(x, r, tol, absolute);
+			rho = rhoNew;
+			if (omega == 0.0 && !done) {
+				// Stagnation: restart
+				residual(x, r);
+				rhat = r.clone();
+				rho = alpha = omega = 1.0;
+				Arrays.fill(p, 0.0);
+				Arrays.fill(v, 0.0);
+			}
+		}
+		if (!done) {
+			throw new PrismException("BiCGSTAB did not converge within " + iters + " iterations");
+		}
+		setSolution(x, soln);
+	}
+
+	/**
+	 * Solve using restarted GMRES, with Jacobi (right) preconditioning.
+	 * @param soln Solution vector, indexed by model state; the entries for unknown states
+	 * are used as the initial guess and overwritten with the solution (others are untouched)
+	 * @param tol Termination tolerance (see {@link #isConverged})
+	 * @param absolute Whether the tolerance is absolute (rather than relative)
+	 * @param maxIters Maximum number of iterations (i.e. matrix-vector multiplications)
+	 * @param restart Number of iterations after which GMRES is restarted
+	 */
+	public void solveGMRES(double soln[], double tol, boolean absolute, int maxIters, int restart) throws PrismException
+	{
+		double x[] = getInitial(soln);
+		double r[] = new double[m], w[] = new double[m], z[] = new double[m];
+		double beta, tmp;
+		int j, k, kk;
+		boolean done;
+
+		restart = Math.max(1, Math.min(restart, m));
+		double V[][] = new double[restart + 1][];
+		double H[][] = new double[restart + 1][restart];
+		double cs[] = new double[restart], sn[] = new double[restart], g[] = new double[restart + 1], y[] = new double[restart];
+
+		iters = 0;
+		residual(x, r);
+		beta = norm(r);
+		done = isConverged(x, r, tol, absolute);
+		while (!done && iters < maxIters) {
+			// Start Arnoldi process
+			V[0] = new double[m];
+			for (int i = 0; i < m; i++) {
+				V[0][i] = r[i] / beta;
+			}
+			Arrays.fill(g, 0.0);
+			g[0] = beta;
+			for (k = 0; k < restart && iters < maxIters; k++) {
+				iters++;
+				// w = A M^-1 v_k
+				for (int i = 0; i < m; i++) {
+					z[i] = V[k][i] / diag[i];
+				}
+				mult(z, w);
+				// Modified Gram-Schmidt
+				for (j = 0; j <= k; j++) {
+					H[j][k] = dot(w, V[j]);
+					for (int i = 0; i < m; i++) {
+						w[i] -= H[j][k] * V[j][i];
+					}
+				}
+				H[k + 1][k] = norm(w);
+				if (H[k + 1][k] != 0.0) {
+					V[k + 1] = new double[m];
+					for (int i = 0; i < m; i++) {
+						V[k + 1][i] = w[i] / H[k + 1][k];
+					}
+				}
+				// Apply previous Givens rotations to new column, then compute new one
+				for (j = 0; j < k; j++) {
+					tmp = cs[j] * H[j][k] + sn[j] * H[j + 1][k];
+					H[j + 1][k] = -sn[j] * H[j][k] + cs[j] * H[j + 1][k];
+					H[j][k] = tmp;
+				}
+				tmp = Math.hypot(H[k][k], H[k + 1][k]);
+				cs[k] = H[k][k] / tmp;
+				sn[k] = H[k + 1][k] / tmp;
+				H[k][k] = tmp;
+				H[k + 1][k] = 0.0;
+				g[k + 1] = -sn[k] * g[k];
+				g[k] = cs[k] * g[k];
+				// (stop early if the residual for this cycle has reduced enough)
+				if (Math.abs(g[k + 1]) <= tol * beta || V[k + 1] == null) {
+					k++;
+					break;
+				}
+			}
+			// Solve upper triangular system H y = g and update x += M^-1 V y
+			kk = k;
+			for (j = kk - 1; j >= 0; j--) {
+				y[j] = g[j];
+				for (int l = j + 1; l < kk; l++) {
+					y[j] -= H[j][l] * y[l];
+				}
+				y[j] /= H[j][j];
+			}
+			for (j = 0; j < kk; j++) {
+				for (int i = 0; i < m; i++) {
+					x[i] += y[j] * V[j][i] / diag[i];
+				}
+			}
+			for (j = 1; j <= restart; j++) {
+				V[j] = null;
+			}
+			// Check (true) residual
+			residual(x, r);
+			beta = norm(r);
+			done = isConverged(x, r, tol, absolute);
+		}
+		if (!done) {
+			throw new PrismException("GMRES did not converge within " + iters + " iterations");
+		}
+		setSolution(x, soln);
+	}
+
+	/**
+	 * Solve directly, using a sparse LU factorisation (without pivoting).
+	 * @param soln Solution vector, indexed by model state; the entries for unknown states
+	 * are overwritten with the solution (others are untouched)
+	 */
+	public void solveLU(double soln[]) throws PrismException
+	{
+		int lStarts[] = new int[m + 1], uStarts[] = new int[m + 1];
+		IntList lCols = new IntList(), uCols = new IntList();
+		DoubleList lVals = new DoubleList(), uVals = new DoubleList();
+		double uDiag[] = new double[m];
+		double w[] = new double[m];
+		boolean inRow[] = new boolean[m];
+		IntList pattern = new IntList();
+		PriorityQueue<Integer> lower = new PriorityQueue<Integer>();
+
+		// Row-by-row (Doolittle) factorisation, using a dense work vector for the current row
+		for (int i = 0; i < m; i++) {
+			lStarts[i] = lCols.size;
+			uStarts[i] = uCols.size;
+			// Scatter row i of the matrix into the work vector
+			for (int k = rowStarts[i]; k < rowStarts[i + 1]; k++) {
+				int c = cols[k];
+				w[c] = vals[k];
+				inRow[c] = true;
+				pattern.add(c);
+				if (c < i) {
+					lower.add(c);
+				}
+			}
+			// Eliminate entries below the diagonal, in increasing column order (including fill-in)
+			while (!lower.isEmpty()) {
+				int k = lower.poll();
+				double l = w[k] / uDiag[k];
+				if (l == 0.0) {
+					continue;
+				}
+				lCols.add(k);
+				lVals.add(l);
+				for (int kk = uStarts[k]; kk < uStarts[k + 1]; kk++) {
+					int c = uCols.data[kk];
+					if (!inRow[c]) {
+						inRow[c] = true;
+						w[c] = 0.0;
+						pattern.add(c);
+						if (c < i) {
+							lower.add(c);
+						}
+					}
+					w[c] -= l * uVals.data[kk];
+				}
+			}
+			// Store upper part of row i and clear work vector
+			for (int kk = 0; kk < pattern.size; kk++) {
+				int c = pattern.data[kk];
+				if (c > i && w[c] != 0.0) {
+					uCols.add(c);
+					uVals.add(w[c]);
+				}
+				inRow[c] = false;
+			}
+			uDiag[i] = w[i];
+			for (int kk = 0; kk < pattern.size; kk++) {
+				w[pattern.data[kk]] = 0.0;
+			}
+			pattern.size = 0;
+			if (uDiag[i] == 0.0) {
+				throw new PrismException("Sparse LU factorisation failed: matrix is singular");
+			}
+		}
+		lStarts[m] = lCols.size;
+		uStarts[m] = uCols.size;
+
+		// Forward substitution (L has unit diagonal), then backward substitution
+		double x[] = b.clone();
+		for (int i = 0; i < m; i++) {
+			for (int k = lStarts[i]; k < lStarts[i + 1]; k++) {
+				x[i] -= lVals.data[k] * x[lCols.data[k]];
+			}
+		}
+		for (int i = m - 1; i >= 0; i--) {
+			for (int k = uStarts[i]; k < uStarts[i + 1]; k++) {
+				x[i] -= uVals.data[k] * x[uCols.data[k]];
+			}
+			x[i] /= uDiag[i];
+		}
+		iters = 0;
+		setSolution(x, soln);
+	}
+
+	// Private helpers
+
+	private double[] getInitial(double soln[])
+	{
+		// (non-finite values, e.g. from a previous solution, are replaced with 0)
+		double x[] = new double[m];
+		for (int r = 0; r < m; r++) {
+			double d = soln[states[r]];
+			x[r] = Double.isInfinite(d) || Double.isNaN(d) ? 0.0 : d;
+		}
+		return x;
+	}
+
+	private void setSolution(double x[], double soln[])
+	{
+		for (int r = 0; r < m; r++) {
+			soln[states[r]] = x[r];
+		}
+	}
+
+	/** Compute result = A x */
+	private void mult(double x[], double result[])
+	{
+		for (int i = 0; i < m; i++) {
+			double d = 0.0;
+			for (int k = rowStarts[i]; k < rowStarts[i + 1]; k++) {
+				d += vals[k] * x[cols[k]];
+			}
+			result[i] = d;
+		}
+	}
+
+	/** Compute r = b - A x */
+	private void residual(double x[], double r[])
+	{
+		mult(x, r);
+		for (int i = 0; i < m; i++) {
+			r[i] = b[i] - r[i];
+		}
+	}
+
+	/**
+	 * Check convergence, for current solution {@code x} and residual {@code r}.
+	 * Since {@code x + r} is the result of one step of value iteration (Jacobi without the
+	 * diagonal scaling) from {@code x}, we use the same termination criterion as
+	 * the iterative methods, i.e., x and x + r are close (absolute/relative error).
+	 */
+	private boolean isConverged(double x[], double r[], double tol, boolean absolute)
+	{
+		for (int i = 0; i < m; i++) {
+			if (!PrismUtils.doublesAreClose(x[i], x[i] + r[i], tol, absolute)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static double dot(double x[], double y[])
+	{
+		double d = 0.0;
+		for (int i = 0; i < x.length; i++) {
+			d += x[i] * y[i];
+		}
+		return d;
+	}
+
+	private static double norm(double x[])
+	{
+		return Math.sqrt(dot(x, x));
+	}
+
+	/** Simple growable int array */
+	private static class IntList
+	{
+		int data[] = new int[16];
+		int size = 0;
+
+		void add(int i)
+		{
+			if (size == data.length) {
+				data = Arrays.copyOf(data, 2 * size);
+			}
+			data[size++] = i;
+		}
+	}
+
+	/** Simple growable double array */
+	private static class DoubleList
+	{
+		double data[] = new double[16];
+		int size = 0;
+
+		void add(double d)
+		{
+			if (size == data.length) {
+				data = Arrays.copyOf(data, 2 * size);
+			}
+			data[size++] = d;
+		}
+	}
+}
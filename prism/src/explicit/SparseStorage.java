@@ -0,0 +1,619 @@
+//==============================================================================
+//
+//	Copyright (c) 2002-
+//	Authors:
+//	* Dave Parker <david.parker@comlab.ox.ac.uk> (University of Oxford)
+//
+//------------------------------------------------------------------------------
+//
+//	This file is part of PRISM.
+//
+//	PRISM is free software; you can redistribute it and/or modify
+//	it under the terms of the GNU General Public License as published by
+//	the Free Software Foundation; either version 2 of the License, or
+//	(at your option) any later version.
+//
+//	PRISM is distributed in the hope that it will be useful,
+//	but WITHOUT ANY WARRANTY; without even the implied warranty of
+//	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//	GNU General Public License for more details.
+//
+//	You should have received a copy of the GNU General Public License
+//	along with PRISM; if not, write to the Free Software Foundation,
+//	Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+//
+//==============================================================================
+
+package explicit;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+import prism.PrismException;
+
+/**
+ * Storage for the transition function of a sparse explicit-state model in compressed sparse row (CSR) form,
+ * i.e. the arrays described for {@link MDPSparse}: rowStarts (size numStates+1), choiceStarts (size numChoices+1),
+ * cols and nonZeros (size numTransitions), plus (optionally) an action label index for each choice.
+ * For DTMCs/CTMCs ({@link DTMCSparse}, {@link CTMCSparse}), there is one choice per state.
+ * <br><br>
+ * The arrays are kept either on the Java heap or outside it, in direct buffers or memory-mapped files
+ * (which avoids garbage collection overheads and heap limits for very large models), but are accessed
+ * in the same way, so that a single model implementation can be used for all of them.
+ * Off-heap arrays are each limited to 2GB, e.g. 2^28 transitions.
+ */
+public abstract class SparseStorage
+{
+	/** Where the arrays are stored */
+	public enum Type {
+		HEAP, OFF_HEAP, MEMORY_MAPPED
+	};
+
+	/** Number of states, choices and transitions that there is space for */
+	protected int numStates;
+	protected int numChoices;
+	protected int numTransitions;
+	/** Are action label indices stored? */
+	protected boolean actions;
+
+	/**
+	 * Create (zero-initialised) storage of type {@code type}, with space for the given number of states/choices/transitions.
+	 * @param actions Whether to store action label indices
+	 */
+	public static SparseStorage create(Type type, int numStates, int numChoices, int numTransitions, boolean actions) throws PrismException
+	{
+		SparseStorage storage = type == Type.HEAP ? new Heap() : new OffHeap(type == Type.MEMORY_MAPPED);
+		storage.resize(numStates, numChoices, numTransitions, actions);
+		return storage;
+	}
+
+	/**
+	 * Create (zero-initialised) storage on the Java heap, with space for the given number of states/choices/transitions.
+	 * @param actions Whether to store action label indices
+	 */
+	public static SparseStorage createHeap(int numStates, int numChoices, int numTransitions, boolean actions)
+	{
+		Heap storage = new Heap();
+		storage.resize(numStates, numChoices, numTransitions, actions);
+		return storage;
+	}
+
+	/**
+	 * Create (heap) storage from existing arrays, without copying them. There are no action label indices.
+	 */
+	public static SparseStorage wrap(int rowStarts[], int choiceStarts[], int cols[], double nonZeros[])
+	{
+		Heap storage = new Heap();
+		storage.numStates = rowStarts.length - 1;
+		storage.numChoices = choiceStarts.length - 1;
+		storage.numTransitions = cols.length;
+		storage.rowStarts = rowStarts;
+		storage.choiceStarts = choiceStarts;
+		storage.cols = cols;
+		storage.nonZeros = nonZeros;
+		return storage;
+	}
+
+	/**
+	 * Create (off-heap) storage from existing buffers, e.g. views of a memory-mapped model file, without copying them.
+	 * The buffers should be indexed from 0 and have the sizes given above.
+	 * @param actionIndices Action label index for each choice (optional, can be null)
+	 * @param mapped Are the buffers memory-mapped files (rather than direct buffers)?
+	 */
+	public static SparseStorage wrap(IntBuffer rowStarts, IntBuffer choiceStarts, IntBuffer cols, DoubleBuffer nonZeros, IntBuffer actionIndices, boolean mapped)
+	{
+		OffHeap storage = new OffHeap(mapped);
+		storage.numStates = rowStarts.limit() - 1;
+		storage.numChoices = choiceStarts.limit() - 1;
+		storage.numTransitions = cols.limit();
+		storage.actions = actionIndices != null;
+		storage.rowStarts = rowStarts;
+		storage.choiceStarts = choiceStarts;
+		storage.cols = cols;
+		storage.nonZeros = nonZeros;
+		storage.actionIndices = actionIndices;
+		return storage;
+	}
+
+	// Accessors
+
+	/**
+	 * Get where the arrays are stored.
+	 */
+	public abstract Type getType();
+
+	/**
+	 * Get the index (into choiceStarts) of the first choice of state {@code s}.
+	 */
+	public abstract int getRowStart(int s);
+
+	/**
+	 * Get the index (into cols/nonZeros) of the first transition of choice {@code j}.
+	 */
+	public abstract int getChoiceStart(int j);
+
+	/**
+	 * Get the column (destination) index of transition {@code k}.
+	 */
+	public abstract int getCol(int k);
+
+	/**
+	 * Get the probability (or rate) of transition {@code k}.
+	 */
+	public abstract double getNonZero(int k);
+
+	/**
+	 * Get the action label index of choice {@code j} (-1 if none, or if no indices are stored).
+	 */
+	public abstract int getActionIndex(int j);
+
+	/**
+	 * Are action label indices stored?
+	 */
+	public boolean hasActions()
+	{
+		return actions;
+	}
+
+	// Mutators
+
+	public abstract void setRowStart(int s, int j);
+
+	public abstract void setChoiceStart(int j, int k);
+
+	public abstract void setCol(int k, int col);
+
+	public abstract void setNonZero(int k, double d);
+
+	/**
+	 * Set the action label index of choice {@code j} (only possible if indices are stored).
+	 */
+	public abstract void setActionIndex(int j, int a);
+
+	/**
+	 * Change the number of states/choices/transitions there is space for, keeping existing contents
+	 * (up to the new size), e.g. to grow the storage while a model is being constructed.
+	 * @param actions Whether to store action label indices
+	 */
+	public abstract void resize(int numStates, int numChoices, int numTransitions, boolean actions) throws PrismException;
+
+	// Bulk access
+
+	/**
+	 * Get the rowStarts array. For heap storage, this is the array itself (which should not be modified);
+	 * otherwise it is a copy on the heap.
+	 */
+	public int[] getRowStarts()
+	{
+		int a[] = new int[numStates + 1];
+		for (int s = 0; s <= numStates; s++) {
+			a[s] = getRowStart(s);
+		}
+		return a;
+	}
+
+	/**
+	 * Get the choiceStarts array (see {@link #getRowStarts()} for when this is a copy).
+	 */
+	public int[] getChoiceStarts()
+	{
+		int a[] = new int[numChoices + 1];
+		for (int j = 0; j <= numChoices; j++) {
+			a[j] = getChoiceStart(j);
+		}
+		return a;
+	}
+
+	/**
+	 * Get the cols array (see {@link #getRowStarts()} for when this is a copy).
+	 */
+	public int[] getCols()
+	{
+		int a[] = new int[numTransitions];
+		for (int k = 0; k < numTransitions; k++) {
+			a[k] = getCol(k);
+		}
+		return a;
+	}
+
+	/**
+	 * Get the nonZeros array (see {@link #getRowStarts()} for when this is a copy).
+	 */
+	public double[] getNonZeros()
+	{
+		double a[] = new double[numTransitions];
+		for (int k = 0; k < numTransitions; k++) {
+			a[k] = getNonZero(k);
+		}
+		return a;
+	}
+
+	/**
+	 * Copy the four CSR arrays (in full) to the given buffers, at their current positions.
+	 */
+	public abstract void copyTo(IntBuffer rowStarts, IntBuffer choiceStarts, IntBuffer cols, DoubleBuffer nonZeros);
+
+	/**
+	 * Release any resources (temporary files of memory-mapped storage) held by this storage,
+	 * which should not be used afterwards. Does nothing for storage on the heap.
+	 */
+	public void release()
+	{
+	}
+
+	/**
+	 * Storage in arrays on the Java heap.
+	 */
+	private static class Heap extends SparseStorage
+	{
+		private int rowStarts[];
+		private int choiceStarts[];
+		private int cols[];
+		private double nonZeros[];
+		private int actionIndices[];
+
+		@Override
+		public Type getType()
+		{
+			return Type.HEAP;
+		}
+
+		@Override
+		public int getRowStart(int s)
+		{
+			return rowStarts[s];
+		}
+
+		@Override
+		public int getChoiceStart(int j)
+		{
+			return choiceStarts[j];
+		}
+
+		@Override
+		public int getCol(int k)
+		{
+			return cols[k];
+		}
+
+		@Override
+		public double getNonZero(int k)
+		{
+			return nonZeros[k];
+		}
+
+		@Override
+		public int getActionIndex(int j)
+		{
+			return actionIndices == null ? -1 : actionIndices[j];
+		}
+
+		@Override
+		public void setRowStart(int s, int j)
+		{
+			rowStarts[s] = j;
+		}
+
+		@Override
+		public void setChoiceStart(int j, int k)
+		{
+			choiceStarts[j] = k;
+		}
+
+		@Override
+		public void setCol(int k, int col)
+		{
+			cols[k] = col;
+		}
+
+		@Override
+		public void setNonZero(int k, double d)
+		{
+			nonZeros[k] = d;
+		}
+
+		@Override
+		public void setActionIndex(int j, int a)
+		{
+			actionIndices[j] = a;
+		}
+
+		@Override
+		public void resize(int numStates, int numChoices, int numTransitions, boolean actions)
+		{
+			rowStarts = rowStarts == null ? new int[numStates + 1] : Arrays.copyOf(rowStarts, numStates + 1);
+			choiceStarts = choiceStarts == null ? new int[numChoices + 1] : Arrays.copyOf(choiceStarts, numChoices + 1);
+			cols = cols == null ? new int[numTransitions] : Arrays.copyOf(cols, numTransitions);
+			nonZeros = nonZeros == null ? new double[numTransitions] : Arrays.copyOf(nonZeros, numTransitions);
+			if (!actions) {
+				actionIndices = null;
+			} else if (actionIndices == null) {
+				actionIndices = new int[numChoices];
+				Arrays.fill(actionIndices, -1);
+			} else {
+				int old = actionIndices.length;
+				actionIndices = Arrays.copyOf(actionIndices, numChoices);
+				if (numChoices > old) {
+					Arrays.fill(actionIndices, old, numChoices, -1);
+				}
+			}
+			this.numStates = numStates;
+			this.numChoices = numChoices;
+			this.numTransitions = numTransitions;
+			this.actions = actions;
+		}
+
+		@Override
+		public int[] getRowStarts()
+		{
+			return rowStarts;
+		}
+
+		@Override
+		public int[] getChoiceStarts()
+		{
+			return choiceStarts;
+		}
+
+		@Override
+		public int[] getCols()
+		{
+			return cols;
+		}
+
+		@Override
+		public double[] getNonZeros()
+		{
+			return nonZeros;
+		}
+
+		@Override
+		public void copyTo(IntBuffer rowStarts, IntBuffer choiceStarts, IntBuffer cols, DoubleBuffer nonZeros)
+		{
+			rowStarts.put(this.rowStarts, 0, numStates + 1);
+			choiceStarts.put(this.choiceStarts, 0, numChoices + 1);
+			cols.put(this.cols, 0, numTransitions);
+			nonZeros.put(this.nonZeros, 0, numTransitions);
+		}
+	}
+
+	/**
+	 * Storage in (native byte order) direct buffers or memory-mapped files, outside the Java heap.
+	 */
+	private static class OffHeap extends SparseStorage
+	{
+		private IntBuffer rowStarts;
+		private IntBuffer choiceStarts;
+		private IntBuffer cols;
+		private DoubleBuffer nonZeros;
+		private IntBuffer actionIndices;
+		/** Are the buffers memory-mapped files (rather than direct buffers)? */
+		private boolean mapped;
+		/** For memory-mapped storage, the temporary file for each array (indexed as below) and the size of its current mapping */
+		private File files[] = new File[5];
+		private long mappedSizes[] = new long[5];
+		private static final int ROW_STARTS = 0, CHOICE_STARTS = 1, COLS = 2, NON_ZEROS = 3, ACTION_INDICES = 4;
+
+		public OffHeap(boolean mapped)
+		{
+			this.mapped = mapped;
+		}
+
+		@Override
+		public Type getType()
+		{
+			return mapped ? Type.MEMORY_MAPPED : Type.OFF_HEAP;
+		}
+
+		@Override
+		public int getRowStart(int s)
+		{
+			return rowStarts.get(s);
+		}
+
+		@Override
+		public int getChoiceStart(int j)
+		{
+			return choiceStarts.get(j);
+		}
+
+		@Override
+		public int getCol(int k)
+		{
+			return cols.get(k);
+		}
+
+		@Override
+		public double getNonZero(int k)
+		{
+			return nonZeros.get(k);
+		}
+
+		@Override
+		public int getActionIndex(int j)
+		{
+			return actionIndices == null ? -1 : actionIndices.get(j);
+		}
+
+		@Override
+		public void setRowStart(int s, int j)
+		{
+			rowStarts.put(s, j);
+		}
+
+		@Override
+		public void setChoiceStart(int j, int k)
+		{
+			choiceStarts.put(j, k);
+		}
+
+		@Override
+		public void setCol(int k, int col)
+		{
+			cols.put(k, col);
+		}
+
+		@Override
+		public void setNonZero(int k, double d)
+		{
+			nonZeros.put(k, d);
+		}
+
+		@Override
+		public void setActionIndex(int j, int a)
+		{
+			actionIndices.put(j, a);
+		}
+
+		@Override
+		public void resize(int numStates, int numChoices, int numTransitions, boolean actions) throws PrismException
+		{
+			rowStarts = resize(ROW_STARTS, rowStarts, numStates + 1);
+			choiceStarts = resize(CHOICE_STARTS, choiceStarts, numChoices + 1);
+			cols = resize(COLS, cols, numTransitions);
+			boolean remapped = isRemapped(NON_ZEROS);
+			DoubleBuffer nonZerosNew = allocateBuffer(NON_ZEROS, 8L * numTransitions).asDoubleBuffer();
+			if (nonZeros != null && !remapped) {
+				nonZerosNew.put(view(nonZeros, Math.min(this.numTransitions, numTransitions)));
+			}
+			nonZeros = nonZerosNew;
+			if (!actions) {
+				actionIndices = null;
+				releaseFile(ACTION_INDICES);
+			} else {
+				int old = actionIndices == null ? 0 : this.numChoices;
+				actionIndices = resize(ACTION_INDICES, actionIndices, numChoices);
+				for (int j = old; j < numChoices; j++) {
+					actionIndices.put(j, -1);
+				}
+			}
+			this.numStates = numStates;
+			this.numChoices = numChoices;
+			this.numTransitions = numTransitions;
+			this.actions = actions;
+		}
+
+		/**
+		 * Get a buffer of size {@code size} for array {@code a}, with the contents of {@code buf} (if non-null),
+		 * i.e. a remapping of the same file (for memory-mapped storage) or a new buffer that {@code buf} is copied to.
+		 */
+		private IntBuffer resize(int a, IntBuffer buf, int size) throws PrismException
+		{
+			boolean remapped = isRemapped(a);
+			IntBuffer bufNew = allocateBuffer(a, 4L * size).asIntBuffer();
+			if (buf != null && !remapped) {
+				bufNew.put(view(buf, Math.min(buf.limit(), size)));
+			}
+			return bufNew;
+		}
+
+		/**
+		 * Will (re)allocating array {@code a} just remap the file that currently backs it,
+		 * i.e. is it memory-mapped from a temporary file of this storage (not, e.g., wrapped from a model file)?
+		 */
+		private boolean isRemapped(int a)
+		{
+			return mapped && files[a] != null;
+		}
+
+		@Override
+		public void release()
+		{
+			for (int a = 0; a < files.length; a++) {
+				releaseFile(a);
+			}
+		}
+
+		/**
+		 * Delete the temporary file for array {@code a}, if any (on most platforms, any existing mapping remains valid).
+		 */
+		private void releaseFile(int a)
+		{
+			if (files[a] != null) {
+				files[a].delete();
+				files[a] = null;
+				mappedSizes[a] = 0;
+			}
+		}
+
+		@Override
+		public void copyTo(IntBuffer rowStarts, IntBuffer choiceStarts, IntBuffer cols, DoubleBuffer nonZeros)
+		{
+			rowStarts.put(view(this.rowStarts, numStates + 1));
+			choiceStarts.put(view(this.choiceStarts, numChoices + 1));
+			cols.put(view(this.cols, numTransitions));
+			nonZeros.put(view(this.nonZeros, numTransitions));
+		}
+
+		private static IntBuffer view(IntBuffer buf, int size)
+		{
+			IntBuffer view = buf.duplicate();
+			view.position(0);
+			view.limit(size);
+			return view;
+		}
+
+		private static DoubleBuffer view(DoubleBuffer buf, int size)
+		{
+			DoubleBuffer view = buf.duplicate();
+			view.position(0);
+			view.limit(size);
+			return view;
+		}
+
+		/**
+		 * Allocate a (native byte order) buffer of size {@code numBytes} outside the Java heap for array {@code a},
+		 * either as a direct buffer or as a mapping of the array's temporary file (deleted on exit, or by {@link #release()}).
+		 * There is a single file per array, which is grown as needed, so that resizing just remaps it
+		 * (the contents are kept, and any previous mapping should no longer be used).
+		 */
+		private ByteBuffer allocateBuffer(int a, long numBytes) throws PrismException
+		{
+			if (numBytes > Integer.MAX_VALUE) {
+				throw new PrismException("Model too large for off-heap storage (" + numBytes + " bytes needed for a single array)");
+			}
+			ByteBuffer buf;
+			if (mapped) {
+				try {
+					if (files[a] == null) {
+						files[a] = File.createTempFile("prism-model", ".bin");
+						files[a].deleteOnExit();
+					}
+					RandomAccessFile raf = new RandomAccessFile(files[a], "rw");
+					try {
+						// Grow the file if needed (the new part is zero-filled)
+						long fileLength = raf.length();
+						if (fileLength < numBytes) {
+							raf.setLength(numBytes);
+						}
+						// (the mapping remains valid after the channel is closed)
+						buf = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, numBytes);
+						// If the file was previously mapped with a smaller size (i.e. shrunk), clear the part being re-used
+						for (long i = mappedSizes[a]; i < Math.min(fileLength, numBytes); i++) {
+							buf.put((int) i, (byte) 0);
+						}
+						mappedSizes[a] = numBytes;
+					} finally {
+						raf.close();
+					}
+				} catch (IOException e) {
+					throw new PrismException("Could not create memory-mapped model storage: " + e.getMessage());
+				}
+			} else {
+				try {
+					buf = ByteBuffer.allocateDirect((int) numBytes);
+				} catch (OutOfMemoryError e) {
+					throw new PrismException("Out of memory allocating off-heap model storage (try increasing -XX:MaxDirectMemorySize or using memory-mapped storage)");
+				}
+			}
+			return buf.order(ByteOrder.nativeOrder());
+		}
+	}
+}
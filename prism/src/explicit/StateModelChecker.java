@@ -52,15 +52,18 @@ import parser.ast.ExpressionIdent;
 import parser.ast.ExpressionLabel;
 import parser.ast.ExpressionLiteral;
 import parser.ast.ExpressionProp;
+import parser.ast.ExpressionReward;
 import parser.ast.ExpressionUnaryOp;
 import parser.ast.ExpressionVar;
 import parser.ast.LabelList;
 import parser.ast.ModulesFile;
 import parser.ast.PropertiesFile;
 import parser.ast.Property;
+import parser.ast.RewardStruct;
 import parser.type.TypeBool;
 import parser.type.TypeDouble;
 import parser.type.TypeInt;
+import parser.visitor.ASTTraverse;
 import parser.visitor.ASTTraverseModify;
 import parser.visitor.ReplaceLabels;
 import prism.Filter;
@@ -74,6 +77,7 @@ import prism.PrismLog;
 import prism.PrismNotSupportedException;
 import prism.PrismSettings;
 import prism.Result;
+import explicit.rewards.Rewards;
 
 /**
  * Super class for explicit-state model checkers.
@@ -112,6 +116,13 @@ public class StateModelChecker extends PrismComponent
 
 	// Do bisimulation minimisation before model checking?
 	protected boolean doBisim = false;
+	// Model resulting from bisimulation minimisation, and the reward structures preserved for it
+	protected Model bisimModel = null;
+	protected Map<RewardStruct, Rewards> bisimRewards = null;
+
+	// Reward structures stored with a model (e.g. in a binary model file), used instead of building them
+	protected Model storedRewardsModel = null;
+	protected Map<RewardStruct, Rewards> storedRewards = null;
 
 	// Model info (for reward structures, etc.)
 	protected ModulesFile modulesFile = null;
@@ -123,6 +134,9 @@ public class StateModelChecker extends PrismComponent
 	// Constants (extracted from model/properties)
 	protected Values constantValues;
 
+	// Values of (undefined) properties file constants for all steps of the current experiment, if any
+	protected List<Values> pfConstantsSweep = null;
+
 	// The filter to be applied to the current property
 	protected Filter currentFilter;
 
@@ -207,6 +221,8 @@ public class StateModelChecker extends PrismComponent
 		setStoreVector(other.getStoreVector());
 		setGenStrat(other.getGenStrat());
 		setDoBisim(other.getDoBisim());
+		setPFConstantsSweep(other.getPFConstantsSweep());
+		setStoredRewards(other.storedRewardsModel, other.storedRewards);
 	}
 
 	/**
@@ -291,6 +307,29 @@ public class StateModelChecker extends PrismComponent
 		this.doBisim = doBisim;
 	}
 
+	/**
+	 * Specify the values of the (undefined) properties file constants for all steps of
+	 * the experiment that the current property is being checked for (null if none).
+	 * This allows, e.g., results for several time bounds to be computed together.
+	 */
+	public void setPFConstantsSweep(List<Values> pfConstantsSweep)
+	{
+		this.pfConstantsSweep = pfConstantsSweep;
+	}
+
+	/**
+	 * Specify reward structures that are stored with model {@code model} (e.g. imported along with it
+	 * from a binary model file), to be used for R operators when checking that model,
+	 * rather than building them from the reward structure definitions (null if none).
+	 * @param model The model that the rewards are for
+	 * @param storedRewards Rewards for each reward structure of the model
+	 */
+	public void setStoredRewards(Model model, Map<RewardStruct, Rewards> storedRewards)
+	{
+		this.storedRewardsModel = model;
+		this.storedRewards = storedRewards;
+	}
+
 	// Get methods for flags/settings
 
 	public int getVerbosity()
@@ -362,6 +401,11 @@ public class StateModelChecker extends PrismComponent
 		return doBisim;
 	}
 
+	public List<Values> getPFConstantsSweep()
+	{
+		return pfConstantsSweep;
+	}
+
 	/** Get the constant values (both from the modules file and the properties file) */
 	public Values getConstantValues()
 	{
@@ -420,13 +464,28 @@ public class StateModelChecker extends PrismComponent
 		expr = exprFilter;
 
 		// If required, do bisimulation minimisation
+		bisimModel = null;
+		bisimRewards = null;
 		if (doBisim) {
 			mainLog.println("\nPerforming bisimulation minimisation...");
 			ArrayList<String> propNames = new ArrayList<String>();
 			ArrayList<BitSet> propBSs = new ArrayList<BitSet>();
 			Expression exprNew = checkMaximalPropositionalFormulas(model, expr.deepCopy(), propNames, propBSs);
+			// The reward structures used in the property must be preserved too
+			List<RewardStruct> rewStructs = getRewardStructsUsed(exprNew);
+			List<Rewards> rewards = new ArrayList<Rewards>();
+			for (RewardStruct rewStruct : rewStructs) {
+				mainLog.println("Building reward structure...");
+				rewards.add(constructRewards(model, rewStruct));
+			}
+			List<Rewards> rewardsNew = new ArrayList<Rewards>();
 			Bisimulation bisim = new Bisimulation(this);
-			model = bisim.minimise(model, propNames, propBSs);
+			model = bisim.minimise(model, propNames, propBSs, rewards, rewardsNew);
+			bisimModel = model;
+			bisimRewards = new HashMap<RewardStruct, Rewards>();
+			for (int i = 0; i < rewStructs.size(); i++) {
+				bisimRewards.put(rewStructs.get(i), rewardsNew.get(i));
+			}
 			mainLog.println("Modified property: " + exprNew);
 			expr = exprNew;
 		}
@@ -434,7 +493,12 @@ public class StateModelChecker extends PrismComponent
 		// Do model checking and store result vector
 		timer = System.currentTimeMillis();
 		// check expression for all states (null => statesOfInterest=all)
-		vals = checkExpression(model, expr, null);
+		try {
+			vals = checkExpression(model, expr, null);
+		} finally {
+			bisimModel = null;
+			bisimRewards = null;
+		}
 		timer = System.currentTimeMillis() - timer;
 		mainLog.println("\nTime for model checking: " + timer / 1000.0 + " seconds.");
 
@@ -453,6 +517,38 @@ public class StateModelChecker extends PrismComponent
 		return result;
 	}
 
+	/**
+	 * Get the (distinct) reward structures referred to by the R operators in an expression.
+	 */
+	protected List<RewardStruct> getRewardStructsUsed(Expression expr) throws PrismException
+	{
+		final List<ExpressionReward> exprRews = new ArrayList<ExpressionReward>();
+		expr.accept(new ASTTraverse()
+		{
+			@Override
+			public void visitPost(ExpressionReward e) throws PrismLangException
+			{
+				exprRews.add(e);
+			}
+		});
+		List<RewardStruct> rewStructs = new ArrayList<RewardStruct>();
+		for (ExpressionReward exprRew : exprRews) {
+			RewardStruct rewStruct = exprRew.getRewardStructByIndexObject(modelInfo, constantValues);
+			if (!rewStructs.contains(rewStruct)) {
+				rewStructs.add(rewStruct);
+			}
+		}
+		return rewStructs;
+	}
+
+	/**
+	 * Construct rewards from a reward structure and a model.
+	 */
+	protected Rewards constructRewards(Model model, RewardStruct rewStruct) throws PrismException
+	{
+		throw new PrismNotSupportedException("Cannot build rewards for " + model.getModelType() + "s");
+	}
+
 	/**
 	 * Model check an expression and return a vector result values over all states.
 	 * Information about states and model constants should be attached to the model.
@@ -67,6 +67,7 @@ public class SubNondetModel implements NondetModel
 	 * (Optionally) the stored predecessor relation. Becomes inaccurate after the model is changed!
 	 */
 	protected PredecessorRelation predecessorRelation;
+	protected ModelAnalysisCache analysisCache;
 
 	private int numTransitions = 0;
 	private int maxNumChoices = 0;
@@ -527,4 +528,22 @@ public class SubNondetModel implements NondetModel
 	public void clearPredecessorRelation() {
 		predecessorRelation = null;
 	}
+
+	@Override
+	public synchronized ModelAnalysisCache getAnalysisCache()
+	{
+		if (analysisCache == null) {
+			analysisCache = new ModelAnalysisCache();
+		}
+		return analysisCache;
+	}
+
+	@Override
+	public void clearAnalysisCache()
+	{
+		predecessorRelation = null;
+		if (analysisCache != null) {
+			analysisCache.clear();
+		}
+	}
 }
@@ -0,0 +1,237 @@
+//==============================================================================
+//
+//	Copyright (c) 2002-
+//	Authors:
+//	* Dave Parker <david.parker@comlab.ox.ac.uk> (University of Oxford)
+//
+//------------------------------------------------------------------------------
+//
+//	This file is part of PRISM.
+//
+//	PRISM is free software; you can redistribute it and/or modify
+//	it under the terms of the GNU General Public License as published by
+//	the Free Software Foundation; either version 2 of the License, or
+//	(at your option) any later version.
+//
+//	PRISM is distributed in the hope that it will be useful,
+//	but WITHOUT ANY WARRANTY; without even the implied warranty of
+//	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//	GNU General Public License for more details.
+//
+//	You should have received a copy of the GNU General Public License
+//	along with PRISM; if not, write to the Free Software Foundation,
+//	Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+//
+//==============================================================================
+
+package explicit;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import parser.State;
+import parser.VarList;
+import parser.ast.ModulesFile;
+import prism.PrismException;
+import prism.PrismSettings;
+
+/**
+ * Symmetry reduction for explicit-state model construction.
+ * A set of (equally sized) blocks of variables is declared to be fully symmetric,
+ * i.e. interchangeable. Each state is replaced by a canonical representative, in which
+ * the blocks are sorted (lexicographically by their values), so that all states which
+ * differ only by a permutation of the blocks are mapped to the same state.
+ * The resulting model is the quotient under the symmetry; this is only sound
+ * if the model and the properties to be checked are actually symmetric in these blocks.
+ */
+public class SymmetryReduction
+{
+	/** Variable indices for each block (all of the same size) */
+	protected int blocks[][];
+	/** Size of each block */
+	protected int blockSize;
+
+	/**
+	 * Create symmetry reduction for a list of symmetric blocks of variables.
+	 * Corresponding variables in each block must have the same type and range.
+	 * @param varList Variable info
+	 * @param blocks Variable indices for each block
+	 */
+	public SymmetryReduction(VarList varList, int blocks[][]) throws PrismException
+	{
+		this.blocks = blocks;
+		blockSize = blocks.length == 0 ? 0 : blocks[0].length;
+		for (int b = 1; b < blocks.length; b++) {
+			if (blocks[b].length != blockSize) {
+				throw new PrismException("Symmetric blocks must contain the same number of variables");
+			}
+			for (int i = 0; i < blockSize; i++) {
+				int v0 = blocks[0][i], v = blocks[b][i];
+				if (!varList.getType(v).equals(varList.getType(v0)) || varList.getLow(v) != varList.getLow(v0) || varList.getHigh(v) != varList.getHigh(v0)) {
+					throw new PrismException("Variables \"" + varList.getName(v0) + "\" and \"" + varList.getName(v) + "\" are not symmetric (different types/ranges)");
+				}
+			}
+		}
+	}
+
+	/**
+	 * Create symmetry reduction for a PRISM model, based on the relevant PRISM settings.
+	 * This is either specified in terms of modules ({@link PrismSettings#PRISM_SYMM_RED_PARAMS}:
+	 * the number of modules before and after the symmetric ones, as for the symbolic engines)
+	 * or variables ({@link PrismSettings#PRISM_SYMM_RED_VARS}: blocks separated by semicolons,
+	 * each a comma-separated list of variable names, e.g. "a1,b1;a2,b2;a3,b3").
+	 * Returns null if symmetry reduction is not enabled.
+	 */
+	public static SymmetryReduction createFromSettings(PrismSettings settings, ModulesFile modulesFile) throws PrismException
+	{
+		if (settings == null) {
+			return null;
+		}
+		String symmVars = settings.getString(PrismSettings.PRISM_SYMM_RED_VARS);
+		if (symmVars != null && !"".equals(symmVars)) {
+			return createForVariables(modulesFile.createVarList(), symmVars);
+		}
+		String symmParams = settings.getString(PrismSettings.PRISM_SYMM_RED_PARAMS);
+		if (symmParams != null && !"".equals(symmParams)) {
+			String ss[] = symmParams.trim().split(" ");
+			if (ss.length != 2) {
+				throw new PrismException("Invalid parameters for symmetry reduction");
+			}
+			try {
+				int numBefore = Integer.parseInt(ss[0].trim());
+				int numAfter = Integer.parseInt(ss[1].trim());
+				return createForModules(modulesFile.createVarList(), modulesFile.getNumModules(), numBefore, numAfter);
+			} catch (NumberFormatException e) {
+				throw new PrismException("Invalid parameters for symmetry reduction");
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Create symmetry reduction in which the local variables of some modules form the symmetric blocks.
+	 * @param varList Variable info
+	 * @param numModules Total number of modules
+	 * @param numBefore Number of modules before the symmetric ones
+	 * @param numAfter Number of modules after the symmetric ones
+	 */
+	public static SymmetryReduction createForModules(VarList varList, int numModules, int numBefore, int numAfter) throws PrismException
+	{
+		int numSymm = numModules - (numBefore + numAfter);
+		if (numBefore < 0 || numAfter < 0 || numSymm < 1) {
+			throw new PrismException("Invalid parameters for symmetry reduction");
+		}
+		List<List<Integer>> blockList = new ArrayList<List<Integer>>();
+		for (int m = 0; m < numSymm; m++) {
+			blockList.add(new ArrayList<Integer>());
+		}
+		int n = varList.getNumVars();
+		for (int v = 0; v < n; v++) {
+			int m = varList.getModule(v) - numBefore;
+			if (m >= 0 && m < numSymm) {
+				blockList.get(m).add(v);
+			}
+		}
+		return new SymmetryReduction(varList, toArray(blockList));
+	}
+
+	/**
+	 * Create symmetry reduction from a string giving blocks of variables
+	 * (blocks separated by semicolons, each a comma-separated list of variable names).
+	 * @param varList Variable info
+	 * @param spec The blocks, e.g. "a1,b1;a2,b2;a3,b3"
+	 */
+	public static SymmetryReduction createForVariables(VarList varList, String spec) throws PrismException
+	{
+		List<List<Integer>> blockList = new ArrayList<List<Integer>>();
+		for (String block : spec.split(";")) {
+			List<Integer> vars = new ArrayList<Integer>();
+			for (String name : block.split(",")) {
+				int v = varList.getIndex(name.trim());
+				if (v == -1) {
+					throw new PrismException("Unknown variable \"" + name.trim() + "\" in symmetry reduction parameters");
+				}
+				vars.add(v);
+			}
+			blockList.add(vars);
+		}
+		return new SymmetryReduction(varList, toArray(blockList));
+	}
+
+	private static int[][] toArray(List<List<Integer>> blockList)
+	{
+		int blocks[][] = new int[blockList.size()][];
+		for (int b = 0; b < blocks.length; b++) {
+			List<Integer> vars = blockList.get(b);
+			blocks[b] = new int[vars.size()];
+			for (int i = 0; i < blocks[b].length; i++) {
+				blocks[b][i] = vars.get(i);
+			}
+		}
+		return blocks;
+	}
+
+	/**
+	 * Get the number of symmetric blocks.
+	 */
+	public int getNumBlocks()
+	{
+		return blocks.length;
+	}
+
+	/**
+	 * Get the canonical representative of a state, i.e. the state with the symmetric blocks sorted.
+	 * If the state is already canonical, it is returned unchanged; otherwise, a new State is returned.
+	 */
+	public State canonicalise(State state)
+	{
+		int numBlocks = blocks.length;
+		// Insertion sort of block order (usually only a few blocks)
+		int order[] = null;
+		for (int b = 1; b < numBlocks; b++) {
+			int c = b;
+			while (c > 0 && compareBlocks(state, order == null ? c - 1 : order[c - 1], order == null ? c : order[c]) > 0) {
+				if (order == null) {
+					order = new int[numBlocks];
+					for (int i = 0; i < numBlocks; i++) {
+						order[i] = i;
+					}
+				}
+				int tmp = order[c - 1];
+				order[c - 1] = order[c];
+				order[c] = tmp;
+				c--;
+			}
+		}
+		if (order == null) {
+			return state;
+		}
+		// Build permuted state
+		State stateNew = new State(state);
+		for (int b = 0; b < numBlocks; b++) {
+			if (order[b] != b) {
+				for (int i = 0; i < blockSize; i++) {
+					stateNew.varValues[blocks[b][i]] = state.varValues[blocks[order[b]][i]];
+				}
+			}
+		}
+		return stateNew;
+	}
+
+	/**
+	 * Compare the values of blocks {@code b1} and {@code b2} in a state (lexicographically).
+	 */
+	@SuppressWarnings("unchecked")
+	protected int compareBlocks(State state, int b1, int b2)
+	{
+		for (int i = 0; i < blockSize; i++) {
+			Object o1 = state.varValues[blocks[b1][i]];
+			Object o2 = state.varValues[blocks[b2][i]];
+			int res = ((Comparable<Object>) o1).compareTo(o2);
+			if (res != 0) {
+				return res;
+			}
+		}
+		return 0;
+	}
+}
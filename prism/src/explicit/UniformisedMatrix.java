@@ -0,0 +1,271 @@
+//==============================================================================
+//
+//	Copyright (c) 2002-
+//	Authors:
+//	* Dave Parker <david.parker@comlab.ox.ac.uk> (University of Oxford)
+//
+//------------------------------------------------------------------------------
+//
+//	This file is part of PRISM.
+//
+//	PRISM is free software; you can redistribute it and/or modify
+//	it under the terms of the GNU General Public License as published by
+//	the Free Software Foundation; either version 2 of the License, or
+//	(at your option) any later version.
+//
+//	PRISM is distributed in the hope that it will be useful,
+//	but WITHOUT ANY WARRANTY; without even the implied warranty of
+//	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//	GNU General Public License for more details.
+//
+//	You should have received a copy of the GNU General Public License
+//	along with PRISM; if not, write to the Free Software Foundation,
+//	Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+//
+//==============================================================================
+
+package explicit;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * The transition probability matrix of the uniformised DTMC of a CTMC,
+ * stored explicitly in compressed sparse row (CSR) form, for use in uniformisation-based
+ * transient computations. As for {@link DTMCUniformisedSimple}, non-diagonal entries
+ * are rate/q and the diagonal entry (if non-zero) is 1 - (sum of non-diagonal rates)/q.
+ * <p>
+ * Unlike the implicit version, entries are computed once, rather than on every multiplication,
+ * and matrix-vector multiplications can be done in parallel (split into contiguous blocks of rows).
+ * The most recently built matrix for a CTMC is cached with it (see {@link #getUniformisedMatrix(CTMC, double)}).
+ */
+public class UniformisedMatrix
+{
+	/** Number of states */
+	protected int numStates;
+	/** Uniformisation rate */
+	protected double q;
+	/** Matrix entries (by row) */
+	protected double nonZeros[];
+	/** Column indices of matrix entries */
+	protected int cols[];
+	/** Indices into nonZeros/cols of the start of each row (length numStates + 1) */
+	protected int rowStarts[];
+	/** Transposed matrix, stored in the same way (built on demand, for parallel vector-matrix multiplication) */
+	protected double nonZerosT[];
+	protected int colsT[];
+	protected int rowStartsT[];
+
+	/**
+	 * Get the uniformised matrix for CTMC {@code ctmc} with uniformisation rate {@code q}.
+	 * The matrix is stored in the CTMC's analysis cache (see {@link Model#getAnalysisCache()}),
+	 * so it is re-used while the same CTMC and rate are requested and is released along with the CTMC.
+	 */
+	public static UniformisedMatrix getUniformisedMatrix(CTMC ctmc, double q)
+	{
+		ModelAnalysisCache cache = ctmc.getAnalysisCache();
+		UniformisedMatrix matrix = cache.getUniformisedMatrix(ctmc, q);
+		if (matrix == null) {
+			matrix = new UniformisedMatrix(ctmc, q);
+			cache.setUniformisedMatrix(ctmc, matrix);
+		}
+		return matrix;
+	}
+
+	/**
+	 * Constructor: build the uniformised matrix for CTMC {@code ctmc} with uniformisation rate {@code q}.
+	 */
+	public UniformisedMatrix(CTMC ctmc, double q)
+	{
+		this.q = q;
+		numStates = ctmc.getNumStates();
+		int maxSize = ctmc.getNumTransitions() + numStates;
+		nonZeros = new double[maxSize];
+		cols = new int[maxSize];
+		rowStarts = new int[numStates + 1];
+		int j = 0;
+		for (int s = 0; s < numStates; s++) {
+			rowStarts[s] = j;
+			double sum = 0.0;
+			Iterator<Map.Entry<Integer, Double>> iter = ctmc.getTransitionsIterator(s);
+			while (iter.hasNext()) {
+				Map.Entry<Integer, Double> e = iter.next();
+				int k = e.getKey();
+				double rate = e.getValue();
+				// Non-diagonal entries
+				if (k != s) {
+					sum += rate;
+					cols[j] = k;
+					nonZeros[j] = rate / q;
+					j++;
+				}
+			}
+			// Diagonal entry
+			if (sum < q) {
+				cols[j] = s;
+				nonZeros[j] = 1 - sum / q;
+				j++;
+			}
+		}
+		rowStarts[numStates] = j;
+	}
+
+	/**
+	 * Get the uniformisation rate.
+	 */
+	public double getUniformisationRate()
+	{
+		return q;
+	}
+
+	/**
+	 * Do a matrix-vector multiplication, i.e. result = P * vect, for the states in {@code nonAbs};
+	 * all other states are treated as absorbing, i.e. result[s] = vect[s].
+	 * If {@code pool} is non-null, blocks of rows are processed in parallel.
+	 * @param vect Vector to multiply by
+	 * @param result Vector to store result in
+	 * @param nonAbs States *not* to be made absorbing (optional: null means "all")
+	 * @param pool Fork/join pool to use (optional: null means sequential)
+	 */
+	public void mvMult(final double vect[], final double result[], final BitSet nonAbs, ForkJoinPool pool)
+	{
+		RowBlockOp op = new RowBlockOp()
+		{
+			@Override
+			public void apply(int lo, int hi)
+			{
+				for (int s = lo; s < hi; s++) {
+					if (nonAbs != null && !nonAbs.get(s)) {
+						result[s] = vect[s];
+						continue;
+					}
+					double d = 0.0;
+					int l = rowStarts[s + 1];
+					for (int j = rowStarts[s]; j < l; j++) {
+						d += nonZeros[j] * vect[cols[j]];
+					}
+					result[s] = d;
+				}
+			}
+		};
+		if (pool == null) {
+			op.apply(0, numStates);
+		} else {
+			doParallel(pool, op);
+		}
+	}
+
+	/**
+	 * Do a vector-matrix multiplication, i.e. result = vect * P.
+	 * If {@code pool} is non-null, this is done in parallel, using the transposed matrix
+	 * (which is built the first time this is needed).
+	 * @param vect Vector to multiply by
+	 * @param result Vector to store result in
+	 * @param pool Fork/join pool to use (optional: null means sequential)
+	 */
+	public void vmMult(final double vect[], final double result[], ForkJoinPool pool)
+	{
+		if (pool == null) {
+			for (int s = 0; s < numStates; s++) {
+				result[s] = 0.0;
+			}
+			for (int s = 0; s < numStates; s++) {
+				int l = rowStarts[s + 1];
+				for (int j = rowStarts[s]; j < l; j++) {
+					result[cols[j]] += nonZeros[j] * vect[s];
+				}
+			}
+			return;
+		}
+		buildTransposed();
+		doParallel(pool, new RowBlockOp()
+		{
+			@Override
+			public void apply(int lo, int hi)
+			{
+				for (int s = lo; s < hi; s++) {
+					double d = 0.0;
+					int l = rowStartsT[s + 1];
+					for (int j = rowStartsT[s]; j < l; j++) {
+						d += nonZerosT[j] * vect[colsT[j]];
+					}
+					result[s] = d;
+				}
+			}
+		});
+	}
+
+	/**
+	 * Build the transposed matrix, if not already done.
+	 */
+	private synchronized void buildTransposed()
+	{
+		if (rowStartsT != null) {
+			return;
+		}
+		int nnz = rowStarts[numStates];
+		double nonZerosT[] = new double[nnz];
+		int colsT[] = new int[nnz];
+		int rowStartsT[] = new int[numStates + 1];
+		// Count entries in each column, then compute start positions
+		for (int j = 0; j < nnz; j++) {
+			rowStartsT[cols[j] + 1]++;
+		}
+		for (int s = 0; s < numStates; s++) {
+			rowStartsT[s + 1] += rowStartsT[s];
+		}
+		int next[] = new int[numStates];
+		System.arraycopy(rowStartsT, 0, next, 0, numStates);
+		for (int s = 0; s < numStates; s++) {
+			int l = rowStarts[s + 1];
+			for (int j = rowStarts[s]; j < l; j++) {
+				int k = next[cols[j]]++;
+				colsT[k] = s;
+				nonZerosT[k] = nonZeros[j];
+			}
+		}
+		this.nonZerosT = nonZerosT;
+		this.colsT = colsT;
+		this.rowStartsT = rowStartsT;
+	}
+
+	/**
+	 * Operation on a contiguous block of rows [lo,hi), executed by a single thread.
+	 */
+	private interface RowBlockOp
+	{
+		public void apply(int lo, int hi);
+	}
+
+	/**
+	 * Split the rows into contiguous blocks, one per thread of {@code pool},
+	 * and apply {@code op} to each block in parallel.
+	 */
+	private void doParallel(ForkJoinPool pool, final RowBlockOp op)
+	{
+		int numBlocks = Math.max(1, Math.min(pool.getParallelism(), numStates));
+		List<ForkJoinTask<Object>> tasks = new ArrayList<ForkJoinTask<Object>>(numBlocks);
+		for (int b = 0; b < numBlocks; b++) {
+			final int lo = (int) ((long) numStates * b / numBlocks);
+			final int hi = (int) ((long) numStates * (b + 1) / numBlocks);
+			tasks.add(pool.submit(new Callable<Object>()
+			{
+				@Override
+				public Object call()
+				{
+					op.apply(lo, hi);
+					return null;
+				}
+			}));
+		}
+		for (ForkJoinTask<Object> task : tasks) {
+			task.join();
+		}
+	}
+}
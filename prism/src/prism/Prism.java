@@ -33,7 +33,9 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import jdd.JDD;
 import jdd.JDDNode;
@@ -54,6 +56,7 @@ import parser.ast.LabelList;
 import parser.ast.ModulesFile;
 import parser.ast.PropertiesFile;
 import parser.ast.Property;
+import parser.ast.RewardStruct;
 import pta.DigitalClocks;
 import pta.PTAModelChecker;
 import simulator.GenerateSimulationPath;
@@ -71,6 +74,9 @@ import explicit.DTMCModelChecker;
 import explicit.FastAdaptiveUniformisation;
 import explicit.FastAdaptiveUniformisationModelChecker;
 import explicit.MCTSModelChecker;
+import explicit.ProductOnTheFlyModelChecker;
+import explicit.SymmetryReduction;
+import explicit.rewards.ConstructRewards;
 
 /**
  * Main class for all PRISM's core functionality.
@@ -117,6 +123,9 @@ public class Prism extends PrismComponent implements PrismSettingsListener
 	public static final int BSOR = 9;
 	public static final int PSOR = 10;
 	public static final int BPSOR = 11;
+	public static final int BICGSTAB = 12;
+	public static final int GMRES = 13;
+	public static final int SPARSELU = 14;
 
 	// methods for solving MDPs
 	public static final int MDP_VALITER = 1;
@@ -200,6 +209,8 @@ public class Prism extends PrismComponent implements PrismSettingsListener
 	protected boolean genStrat = false;
 	// Do bisimulation minimisation before model checking?
 	protected boolean doBisim = false;
+	// Values of properties file constants for all steps of the current experiment (if any)
+	protected List<Values> pfConstantsSweep = null;
 
 	// A few miscellaneous options (i.e. defunct/hidden/undocumented/etc.)
 	// See constructor below for default values
@@ -243,7 +254,7 @@ public class Prism extends PrismComponent implements PrismSettingsListener
 	//------------------------------------------------------------------------------
 
 	private enum ModelSource {
-		PRISM_MODEL, MODEL_GENERATOR, EXPLICIT_FILES, BUILT_MODEL
+		PRISM_MODEL, MODEL_GENERATOR, EXPLICIT_FILES, BINARY_FILE, BUILT_MODEL
 	}
 
 	// Info about currently loaded model, if any
@@ -269,6 +280,9 @@ public class Prism extends PrismComponent implements PrismSettingsListener
 	private File explicitFilesLabelsFile = null;
 	private int explicitFilesNumStates = -1;
 
+	// Info for binary file load
+	private explicit.BinaryModelFile binaryModelFile = null;
+
 	// Has the CUDD library been initialised yet?
 	private boolean cuddStarted = false;
 
@@ -605,6 +619,16 @@ public class Prism extends PrismComponent implements PrismSettingsListener
 		this.doBisim = doBisim;
 	}
 
+	/**
+	 * Specify the values of the (undefined) properties file constants for all steps of an experiment
+	 * that is about to be run, one property check per step (or null once it has finished).
+	 * This allows the explicit engine to compute results for several steps at once, e.g. for a range of time bounds.
+	 */
+	public void setPFConstantsSweep(List<Values> pfConstantsSweep)
+	{
+		this.pfConstantsSweep = pfConstantsSweep;
+	}
+
 	public void setDoReach(boolean b) throws PrismException
 	{
 		doReach = b;
@@ -1824,6 +1848,29 @@ public class Prism extends PrismComponent implements PrismSettingsListener
 		return currentModulesFile;
 	}
 
+	/**
+	 * Load a binary model file (see {@link explicit.BinaryModelFile}) for subsequent model building.
+	 * The file is memory-mapped, rather than parsed, and can only be built with the explicit engine.
+	 * A corresponding ModulesFile object is created and returned.
+	 * @param file The binary model file
+	 */
+	public ModulesFile loadModelFromBinaryFile(File file) throws PrismException
+	{
+		currentModelSource = ModelSource.BINARY_FILE;
+		// Clear any existing built model(s)
+		clearBuiltModel();
+		// Open file and construct ModulesFile
+		binaryModelFile = new explicit.BinaryModelFile(file);
+		currentModulesFile = binaryModelFile.buildModulesFile();
+		// Reset dependent info
+		currentModelType = currentModulesFile.getModelType();
+		currentDefinedMFConstants = null;
+		currentModel = null;
+		currentModelExpl = null;
+
+		return currentModulesFile;
+	}
+
 	/**
 	 * Get the type of the currently stored model.
 	 * @return
@@ -1939,6 +1986,7 @@ public class Prism extends PrismComponent implements PrismSettingsListener
 					}
 					ConstructModel constructModel = new ConstructModel(this);
 					constructModel.setFixDeadlocks(getFixDeadlocks());
+					constructModel.setSymmetryReduction(SymmetryReduction.createFromSettings(settings, currentModulesFile));
 					currentModelExpl = constructModel.constructModel(currentModelGenerator);
 					currentModel = null;
 				}
@@ -1966,6 +2014,14 @@ public class Prism extends PrismComponent implements PrismSettingsListener
 					throw new PrismNotSupportedException("Explicit import not yet supported for explicit engine");
 				}
 				break;
+			case BINARY_FILE:
+				if (!getExplicit()) {
+					mainLog.printWarning("Switching to explicit engine to import binary model file");
+					setEngine(Prism.EXPLICIT);
+				}
+				currentModelExpl = binaryModelFile.buildModel(currentModulesFile.createVarList());
+				currentModel = null;
+				break;
 			default:
 				throw new PrismException("Don't know how to build model from source " + currentModelSource);
 			}
@@ -2155,6 +2211,48 @@ public class Prism extends PrismComponent implements PrismSettingsListener
 			tmpLog.close();
 	}
 
+	/**
+	 * Export the currently loaded model (transitions, states, labels and reward structures)
+	 * to a binary file (see {@link explicit.BinaryModelFile}), which can be re-loaded
+	 * using {@link #loadModelFromBinaryFile(File)} without parsing. Explicit engine only.
+	 * @param file File to export to
+	 */
+	public void exportToBinaryFile(File file) throws PrismException
+	{
+		if (!getExplicit()) {
+			throw new PrismNotSupportedException("Binary model export is only supported by the explicit engine");
+		}
+
+		// Build model, if necessary
+		buildModelIfRequired();
+
+		// print message
+		mainLog.println("\nExporting model in binary format to file \"" + file + "\"...");
+
+		// Build reward structures
+		List<String> rewardNames = new ArrayList<String>();
+		List<explicit.rewards.Rewards> rewards = new ArrayList<explicit.rewards.Rewards>();
+		if (currentModelSource == ModelSource.BINARY_FILE) {
+			// Rewards for a model imported from a binary file are just copied
+			rewardNames.addAll(binaryModelFile.getRewardNames());
+			rewards.addAll(binaryModelFile.getRewards());
+		} else if (currentModulesFile != null) {
+			ConstructRewards constructRewards = new ConstructRewards(mainLog);
+			for (int r = 0; r < currentModulesFile.getNumRewardStructs(); r++) {
+				RewardStruct rewStr = currentModulesFile.getRewardStruct(r);
+				try {
+					rewards.add(constructRewards.buildRewardStructure(currentModelExpl, rewStr, currentModulesFile.getConstantValues()));
+					rewardNames.add(rewStr.getName());
+				} catch (PrismException e) {
+					mainLog.printWarning("Reward structure " + (r + 1) + " not exported (" + e.getMessage() + ")");
+				}
+			}
+		}
+
+		// do export
+		explicit.BinaryModelFile.exportModel(currentModelExpl, null, rewardNames, rewards, file);
+	}
+
 	/**
 	 * Export the currently loaded model's transition matrix to a Spy file.
 	 * @param file File to export to
@@ -2797,6 +2895,13 @@ public class Prism extends PrismComponent implements PrismSettingsListener
 			fauMC = new FastAdaptiveUniformisationModelChecker(this, currentModulesFile, propertiesFile);
 			return fauMC.check(prop.getExpression());
 		}
+		// For on-the-fly product construction (co-safe LTL, explicit engine)
+		if (getExplicit() && currentModelSource == ModelSource.PRISM_MODEL && settings.getBoolean(PrismSettings.PRISM_PRODUCT_ON_THE_FLY)) {
+			ProductOnTheFlyModelChecker otfMC = new ProductOnTheFlyModelChecker(this, currentModulesFile, propertiesFile);
+			if (otfMC.isSupported(prop.getExpression())) {
+				return otfMC.check(prop.getExpression());
+			}
+		}
 		// For MCTS
 		if (currentModelType == ModelType.MDP && settings.getString(PrismSettings.PRISM_MDP_SOLN_METHOD).equals("MCTS")) {
 			MCTSModelChecker mctsMC;
@@ -2812,6 +2917,12 @@ public class Prism extends PrismComponent implements PrismSettingsListener
 				setEngine(Prism.EXPLICIT);
 			}
 		}
+		else if (currentModelType == ModelType.DTMC && getLinEqMethod() >= Prism.BICGSTAB && !getExplicit()) {
+			mainLog.printWarning("Switching to explicit engine to allow use of chosen linear equation solution method.");
+			engineSwitch = true;
+			lastEngine = getEngine();
+			setEngine(Prism.EXPLICIT);
+		}
 		try {
 			// Build model, if necessary
 			buildModelIfRequired();
@@ -3291,7 +3402,8 @@ public class Prism extends PrismComponent implements PrismSettingsListener
 			//TODO: probs = mcDTMC.doSteadyState((DTMC) model, fileIn);
 			probs = mcDTMC.doSteadyState((DTMC) model, (File) null);
 		} else if (model.getModelType() == ModelType.CTMC) {
-			throw new PrismException("Not implemented yet");
+			CTMCModelChecker mcCTMC = new CTMCModelChecker(this);
+			probs = mcCTMC.doSteadyState((CTMC) model);
 		} else {
 			throw new PrismException("Steady-state probabilities only computed for DTMCs/CTMCs");
 		}
@@ -3344,8 +3456,7 @@ public class Prism extends PrismComponent implements PrismSettingsListener
 
 		// FAU
 		if (currentModelType == ModelType.CTMC && settings.getString(PrismSettings.PRISM_TRANSIENT_METHOD).equals("Fast adaptive uniformisation")) {
-			ModulesFileModelGenerator prismModelGen = new ModulesFileModelGenerator(currentModulesFile, this);
-			FastAdaptiveUniformisation fau = new FastAdaptiveUniformisation(this, prismModelGen);
+			FastAdaptiveUniformisation fau = new FastAdaptiveUniformisation(this, currentModulesFile);
 			fau.setConstantValues(currentModulesFile.getConstantValues());
 			probsExpl = fau.doTransient(time, fileIn, currentModel);
 		}
@@ -3451,8 +3562,7 @@ public class Prism extends PrismComponent implements PrismSettingsListener
 
 			// FAU
 			if (currentModelType == ModelType.CTMC && settings.getString(PrismSettings.PRISM_TRANSIENT_METHOD).equals("Fast adaptive uniformisation")) {
-				ModulesFileModelGenerator prismModelGen = new ModulesFileModelGenerator(currentModulesFile, this);
-				FastAdaptiveUniformisation fau = new FastAdaptiveUniformisation(this, prismModelGen);
+				FastAdaptiveUniformisation fau = new FastAdaptiveUniformisation(this, currentModulesFile);
 				fau.setConstantValues(currentModulesFile.getConstantValues());
 				if (i == 0) {
 					probsExpl = fau.doTransient(timeDouble, fileIn, currentModel);
@@ -3660,6 +3770,17 @@ public class Prism extends PrismComponent implements PrismSettingsListener
 		mc.setStoreVector(storeVector);
 		mc.setGenStrat(genStrat);
 		mc.setDoBisim(doBisim);
+		mc.setPFConstantsSweep(pfConstantsSweep);
+		// For a model imported from a binary file, use the reward structures stored in the file
+		// (the reward structures of the corresponding modules file are just placeholders)
+		if (currentModelSource == ModelSource.BINARY_FILE && currentModelExpl != null) {
+			List<explicit.rewards.Rewards> rewards = binaryModelFile.getRewards();
+			Map<RewardStruct, explicit.rewards.Rewards> storedRewards = new HashMap<RewardStruct, explicit.rewards.Rewards>();
+			for (int r = 0; r < rewards.size(); r++) {
+				storedRewards.put(currentModulesFile.getRewardStruct(r), rewards.get(r));
+			}
+			mc.setStoredRewards(currentModelExpl, storedRewards);
+		}
 
 		return mc;
 	}
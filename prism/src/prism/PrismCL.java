@@ -61,6 +61,7 @@ public class PrismCL implements PrismModelListener
 	private boolean importpepa = false;
 	private boolean importprismpp = false;
 	private boolean importtrans = false;
+	private boolean importbinary = false;
 	private boolean importstates = false;
 	private boolean importlabels = false;
 	private boolean importinitdist = false;
@@ -72,6 +73,7 @@ public class PrismCL implements PrismModelListener
 	private boolean exportstates = false;
 	private boolean exportlabels = false;
 	private boolean exportspy = false;
+	private boolean exportbinary = false;
 	private boolean exportdot = false;
 	private boolean exporttransdot = false;
 	private boolean exporttransdotstates = false;
@@ -128,6 +130,7 @@ public class PrismCL implements PrismModelListener
 	private String exportStatesFilename = null;
 	private String exportLabelsFilename = null;
 	private String exportSpyFilename = null;
+	private String exportBinaryFilename = null;
 	private String exportDotFilename = null;
 	private String exportTransDotFilename = null;
 	private String exportTransDotStatesFilename = null;
@@ -338,7 +341,11 @@ public class PrismCL implements PrismModelListener
 					}
 				}
 				// otherwise, treat each case individually
+				// (but let the model checker know about all of them, so it can share work between them)
 				else {
+					if (!param && undefinedConstants[j].getNumPropertyIterations() > 1) {
+						prism.setPFConstantsSweep(undefinedConstants[j].getAllPFConstantValues());
+					}
 					for (k = 0; k < undefinedConstants[j].getNumPropertyIterations(); k++) {
 
 						try {
@@ -431,6 +438,7 @@ public class PrismCL implements PrismModelListener
 						// iterate to next property
 						undefinedConstants[j].iterateProperty();
 					}
+					prism.setPFConstantsSweep(null);
 				}
 
 				// in case of build failure during model checking, store as result for any further properties and continue
@@ -563,6 +571,9 @@ public class PrismCL implements PrismModelListener
 				}
 				mainLog.println("...");
 				modulesFile = prism.loadModelFromExplicitFiles(sf, new File(modelFilename), lf, typeOverride);
+			} else if (importbinary) {
+				mainLog.print("\nImporting binary model file \"" + modelFilename + "\"...\n");
+				modulesFile = prism.loadModelFromBinaryFile(new File(modelFilename));
 			} else {
 				mainLog.print("\nParsing model file \"" + modelFilename + "\"...\n");
 				modulesFile = prism.parseModelFile(new File(modelFilename), typeOverride);
@@ -605,7 +616,7 @@ public class PrismCL implements PrismModelListener
 
 		// Load model into PRISM (if not done already)
 		try {
-			if (!importtrans) {
+			if (!importtrans && !importbinary) {
 				prism.loadPRISMModel(modulesFile);
 			}
 		} catch (PrismException e) {
@@ -729,6 +740,17 @@ public class PrismCL implements PrismModelListener
 			}
 		}
 
+		// export model to binary file
+		if (exportbinary) {
+			try {
+				prism.exportToBinaryFile(new File(exportBinaryFilename));
+			}
+			// in case of error, report it and proceed
+			catch (PrismException e) {
+				error(e.getMessage());
+			}
+		}
+
 		// export mtbdd to dot file
 		if (exportdot) {
 			try {
@@ -1185,6 +1207,10 @@ public class PrismCL implements PrismModelListener
 				else if (sw.equals("importtrans")) {
 					importtrans = true;
 				}
+				// import model from binary file
+				else if (sw.equals("importbinary")) {
+					importbinary = true;
+				}
 				// import states for explicit model import
 				else if (sw.equals("importstates")) {
 					if (i < args.length - 1) {
@@ -1276,6 +1302,15 @@ public class PrismCL implements PrismModelListener
 						errorAndExit("No file specified for -" + sw + " switch");
 					}
 				}
+				// export model to binary file
+				else if (sw.equals("exportbinary")) {
+					if (i < args.length - 1) {
+						exportbinary = true;
+						exportBinaryFilename = args[++i];
+					} else {
+						errorAndExit("No file specified for -" + sw + " switch");
+					}
+				}
 				// export state rewards to file
 				else if (sw.equals("exportstaterewards")) {
 					if (i < args.length - 1) {
@@ -2229,6 +2264,7 @@ public class PrismCL implements PrismModelListener
 		mainLog.println("-importpepa .................... Model description is in PEPA, not the PRISM language");
 		mainLog.println("-importmodel <files> ........... Import the model directly from text file(s)");
 		mainLog.println("-importtrans <file> ............ Import the transition matrix directly from a text file");
+		mainLog.println("-importbinary .................. Model file is a binary file (created with -exportbinary)");
 		mainLog.println("-importstates <file>............ Import the list of states directly from a text file");
 		mainLog.println("-importlabels <file>............ Import the list of labels directly from a text file");
 		mainLog.println("-importinitdist <file>.......... Specify the initial probability distribution for transient analysis");
@@ -2240,6 +2276,7 @@ public class PrismCL implements PrismModelListener
 		mainLog.println("-exportresults <file[:options]>  Export the results of model checking to a file");
 		mainLog.println("-exportmodel <files[:options]> . Export the built model to file(s)");
 		mainLog.println("-exporttrans <file> ............ Export the transition matrix to a file");
+		mainLog.println("-exportbinary <file> ........... Export the built model to a binary file (explicit engine only)");
 		mainLog.println("-exportstaterewards <file> ..... Export the state rewards vector to a file");
 		mainLog.println("-exporttransrewards <file> ..... Export the transition rewards matrix to a file");
 		mainLog.println("-exportrewards <file1> <file2>.. Export state/transition rewards to files 1/2");
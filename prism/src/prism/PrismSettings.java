@@ -78,6 +78,8 @@ public class PrismSettings implements Observer
 	public static final	String PRISM_PROB0							= "prism.prob0";
 	public static final	String PRISM_PROB1							= "prism.prob1";
 	public static final	String PRISM_PRE_REL					= "prism.preRel";
+	public static final	String PRISM_REDUCE_MAYBE				= "prism.reduceMaybe";
+	public static final	String PRISM_EXPLICIT_STORAGE				= "prism.explicitStorage";
 	public static final	String PRISM_FIX_DEADLOCKS					= "prism.fixDeadlocks";
 	public static final	String PRISM_DO_PROB_CHECKS					= "prism.doProbChecks";
 	public static final	String PRISM_SUM_ROUND_OFF					= "prism.sumRoundOff";
@@ -89,6 +91,7 @@ public class PrismSettings implements Observer
 	public static final	String PRISM_TERM_CRIT						= "prism.termCrit";//"prism.termination";
 	public static final	String PRISM_TERM_CRIT_PARAM				= "prism.termCritParam";//"prism.terminationEpsilon";
 	public static final	String PRISM_MAX_ITERS						= "prism.maxIters";//"prism.maxIterations";
+	public static final	String PRISM_NUM_THREADS					= "prism.numThreads";
 	
 	public static final	String PRISM_CUDD_MAX_MEM					= "prism.cuddMaxMem";
 	public static final	String PRISM_CUDD_EPSILON					= "prism.cuddEpsilon";
@@ -100,13 +103,17 @@ public class PrismSettings implements Observer
 	public static final	String PRISM_EXTRA_DD_INFO					= "prism.extraDDInfo";
 	public static final	String PRISM_EXTRA_REACH_INFO				= "prism.extraReachInfo";
 	public static final String PRISM_SCC_METHOD						= "prism.sccMethod";
+	public static final String PRISM_BISIM_METHOD					= "prism.bisimMethod";
 	public static final String PRISM_SYMM_RED_PARAMS					= "prism.symmRedParams";
+	public static final String PRISM_SYMM_RED_VARS					= "prism.symmRedVars";
 	public static final	String PRISM_EXACT_ENABLED					= "prism.exact.enabled";
 	public static final String PRISM_PTA_METHOD					= "prism.ptaMethod";
 	public static final String PRISM_TRANSIENT_METHOD				= "prism.transientMethod";
 	public static final String PRISM_AR_OPTIONS					= "prism.arOptions";
 	public static final String PRISM_PATH_VIA_AUTOMATA				= "prism.pathViaAutomata";
 	public static final String PRISM_NO_DA_SIMPLIFY				= "prism.noDaSimplify";
+	public static final String PRISM_PRODUCT_ON_THE_FLY			= "prism.productOnTheFly";
+	public static final String PRISM_PRODUCT_BISIM				= "prism.productBisim";
 	public static final String PRISM_EXPORT_ADV					= "prism.exportAdv";
 	public static final String PRISM_EXPORT_ADV_FILENAME			= "prism.exportAdvFilename";
 	
@@ -234,11 +241,11 @@ public class PrismSettings implements Observer
 			{ CHOICE_TYPE,		PRISM_TRANSIENT_METHOD,					"Transient probability computation method",	"3.3",		"Uniformisation",															"Uniformisation,Fast adaptive uniformisation",																
 																			"Which method to use for computing transient probabilities in CTMCs." },
 			// NUMERICAL SOLUTION OPTIONS:
-			{ CHOICE_TYPE,		PRISM_LIN_EQ_METHOD,					"Linear equations method",				"2.1",			"Jacobi",																	"Power,Jacobi,Gauss-Seidel,Backwards Gauss-Seidel,Pseudo-Gauss-Seidel,Backwards Pseudo-Gauss-Seidel,JOR,SOR,Backwards SOR,Pseudo-SOR,Backwards Pseudo-SOR",
+			{ CHOICE_TYPE,		PRISM_LIN_EQ_METHOD,					"Linear equations method",				"2.1",			"Jacobi",																	"Power,Jacobi,Gauss-Seidel,Backwards Gauss-Seidel,Pseudo-Gauss-Seidel,Backwards Pseudo-Gauss-Seidel,JOR,SOR,Backwards SOR,Pseudo-SOR,Backwards Pseudo-SOR,BiCGSTAB,GMRES,Sparse LU",
 																			"Which iterative method to use when solving linear equation systems." },
 			{ DOUBLE_TYPE,		PRISM_LIN_EQ_METHOD_PARAM,				"Over-relaxation parameter",			"2.1",			new Double(0.9),															"",																							
 																			"Over-relaxation parameter for iterative numerical methods such as JOR/SOR." },
-			{ CHOICE_TYPE,		PRISM_MDP_SOLN_METHOD,					"MDP solution method",				"4.0",			"Value iteration",																"Value iteration,Gauss-Seidel,Policy iteration,Modified policy iteration,Linear programming,MCTS",
+			{ CHOICE_TYPE,		PRISM_MDP_SOLN_METHOD,					"MDP solution method",				"4.0",			"Value iteration",																"Value iteration,Gauss-Seidel,Policy iteration,Modified policy iteration,Linear programming,MCTS,Interval iteration,Optimistic value iteration",
 																			"Which method to use when solving Markov decision processes." },
 			{ CHOICE_TYPE,		PRISM_MDP_MULTI_SOLN_METHOD,			"MDP multi-objective solution method",				"4.0.3",			"Value iteration",											"Value iteration,Gauss-Seidel,Linear programming",
 																			"Which method to use when solving multi-objective queries on Markov decision processes." },
@@ -248,6 +255,8 @@ public class PrismSettings implements Observer
 																			"Epsilon value to use for checking termination of iterative numerical methods." },
 			{ INTEGER_TYPE,		PRISM_MAX_ITERS,						"Termination max. iterations",			"2.1",			new Integer(10000),															"0,",																						
 																			"Maximum number of iterations to perform if iterative methods do not converge." },
+			{ INTEGER_TYPE,		PRISM_NUM_THREADS,						"Number of threads",					"4.3.1",		new Integer(1),																"0,",																						
+																			"Number of threads to use for parallel numerical computation on large models (explicit engine and fast adaptive uniformisation only; 0 means one per available processor)." },
 			// MODEL CHECKING OPTIONS:
 			{ BOOLEAN_TYPE,		PRISM_PRECOMPUTATION,					"Use precomputation",					"2.1",			new Boolean(true),															"",																							
 																			"Whether to use model checking precomputation algorithms (Prob0, Prob1, etc.), where optional." },
@@ -257,6 +266,10 @@ public class PrismSettings implements Observer
 																			"Whether to use model checking precomputation algorithm Prob1 (if precomputation enabled)." },
 			{ BOOLEAN_TYPE,		PRISM_PRE_REL,							"Use predecessor relation",		"4.2.1",		new Boolean(true),											"",
 																			"Whether to use a pre-computed predecessor relation in several algorithms." },
+			{ BOOLEAN_TYPE,		PRISM_REDUCE_MAYBE,						"Reduce model before solving",		"4.3.1",		new Boolean(false),											"",
+																			"For MDP reachability probabilities (explicit engine), solve on a reduced model comprising only the states whose probability is not determined by precomputation (not when generating strategies)." },
+			{ CHOICE_TYPE,		PRISM_EXPLICIT_STORAGE,					"Explicit model storage",				"4.3.1",		"Heap",																		"Heap,Off-heap,Memory-mapped",
+																			"Where to store the transition matrix of sparse explicit-engine models (MDPs): on the Java heap, in off-heap (direct) buffers or in memory-mapped temporary files." },
 			{ BOOLEAN_TYPE,		PRISM_FAIRNESS,							"Use fairness",							"2.1",			new Boolean(false),															"",																							
 																			"Constrain to fair adversaries when model checking MDPs." },
 			{ BOOLEAN_TYPE,		PRISM_FIX_DEADLOCKS,					"Automatically fix deadlocks",			"4.0.3",		new Boolean(true),															"",																							
@@ -269,14 +282,22 @@ public class PrismSettings implements Observer
 																			"Use steady-state detection during CTMC transient probability computation." },
 			{ CHOICE_TYPE,		PRISM_SCC_METHOD,						"SCC decomposition method",				"3.2",			"Lockstep",																	"Xie-Beerel,Lockstep,SCC-Find",																
 																			"Which algorithm to use for (symbolic) decomposition of a graph into strongly connected components (SCCs)." },
+			{ CHOICE_TYPE,		PRISM_BISIM_METHOD,						"Bisimulation minimisation method",		"4.3.1",		"Splitters",																"Splitters,Signatures",																
+																			"Which algorithm to use for (explicit engine) bisimulation minimisation of DTMCs/CTMCs: splitter-based refinement, in O(m log n) time, or iterative signature-based refinement (MDPs always use signatures)." },
 			{ STRING_TYPE,		PRISM_SYMM_RED_PARAMS,					"Symmetry reduction parameters",		"3.2",			"",																	"",																
 																			"Parameters for symmetry reduction (format: \"i j\" where i and j are the number of modules before and after the symmetric ones; empty string means symmetry reduction disabled)." },
+			{ STRING_TYPE,		PRISM_SYMM_RED_VARS,					"Symmetry reduction variables",			"4.3.1",		"",																	"",																
+																			"Blocks of variables to treat as symmetric in explicit-state model construction (format: \"a1,b1;a2,b2;...\", i.e. blocks separated by semicolons; empty string means not used)." },
 			{ STRING_TYPE,		PRISM_AR_OPTIONS,						"Abstraction refinement options",		"3.3",			"",																	"",																
 																			"Various options passed to the asbtraction-refinement engine (e.g. for PTA model checking)." },
 			{ BOOLEAN_TYPE,		PRISM_PATH_VIA_AUTOMATA,				"All path formulas via automata",			"4.2.1",			new Boolean(false),									"",
 																			"Handle all path formulas via automata constructions." },
 			{ BOOLEAN_TYPE,		PRISM_NO_DA_SIMPLIFY,				"Do not simplify deterministic automata",			"4.3",			new Boolean(false),									"",
 																			"Do not attempt to simplify deterministic automata, acceptance conditions (for debugging)." },
+			{ BOOLEAN_TYPE,		PRISM_PRODUCT_ON_THE_FLY,			"On-the-fly product construction",			"4.3.1",			new Boolean(false),									"",
+																			"For co-safe LTL properties of DTMCs/MDPs (explicit engine), build the product with the automaton directly from the model description, without building the model first, and do not expand product states that can no longer affect acceptance." },
+			{ BOOLEAN_TYPE,		PRISM_PRODUCT_BISIM,				"Minimise LTL products",			"4.3.1",			new Boolean(false),									"",
+																			"For LTL properties of MDPs (explicit engine), perform bisimulation minimisation of the product with the automaton before solving it (not when generating strategies)." },
 
 			// MULTI-OBJECTIVE MODEL CHECKING OPTIONS:
 			{ INTEGER_TYPE,		PRISM_MULTI_MAX_POINTS,					"Max. multi-objective corner points",			"4.0.3",			new Integer(50),															"0,",																						
@@ -964,6 +985,12 @@ public class PrismSettings implements Observer
 			set(PRISM_LIN_EQ_METHOD, "Pseudo-SOR");
 		} else if (sw.equals("bpsor")) {
 			set(PRISM_LIN_EQ_METHOD, "Backwards Pseudo-SOR");
+		} else if (sw.equals("bicgstab")) {
+			set(PRISM_LIN_EQ_METHOD, "BiCGSTAB");
+		} else if (sw.equals("gmres")) {
+			set(PRISM_LIN_EQ_METHOD, "GMRES");
+		} else if (sw.equals("sparselu") || sw.equals("lu")) {
+			set(PRISM_LIN_EQ_METHOD, "Sparse LU");
 		} else if (sw.equals("valiter")) {
 			set(PRISM_MDP_SOLN_METHOD, "Value iteration");
 			set(PRISM_MDP_MULTI_SOLN_METHOD, "Value iteration");
@@ -976,6 +1003,10 @@ public class PrismSettings implements Observer
 			set(PRISM_MDP_MULTI_SOLN_METHOD, "Linear programming");
 		} else if (sw.equals("mcts")) {
 			set(PRISM_MDP_SOLN_METHOD, "MCTS");
+		} else if (sw.equals("intervaliter") || sw.equals("ii")) {
+			set(PRISM_MDP_SOLN_METHOD, "Interval iteration");
+		} else if (sw.equals("optimisticvaliter") || sw.equals("ovi")) {
+			set(PRISM_MDP_SOLN_METHOD, "Optimistic value iteration");
 		}
 		// Linear equation solver over-relaxation parameter
 		else if (sw.equals("omega")) {
@@ -1027,6 +1058,21 @@ public class PrismSettings implements Observer
 				throw new PrismException("No value specified for -" + sw + " switch");
 			}
 		}
+		// Number of threads
+		else if (sw.equals("threads")) {
+			if (i < args.length - 1) {
+				try {
+					j = Integer.parseInt(args[++i]);
+					if (j < 0)
+						throw new NumberFormatException("");
+					set(PRISM_NUM_THREADS, j);
+				} catch (NumberFormatException e) {
+					throw new PrismException("Invalid value for -" + sw + " switch");
+				}
+			} else {
+				throw new PrismException("No value specified for -" + sw + " switch");
+			}
+		}
 		
 		// MODEL CHECKING OPTIONS:
 		
@@ -1044,6 +1090,26 @@ public class PrismSettings implements Observer
 		else if (sw.equals("noprerel")) {
 			set(PRISM_PRE_REL, false);
 		}
+		// Reduce model to "maybe" states before solving
+		else if (sw.equals("reducemaybe")) {
+			set(PRISM_REDUCE_MAYBE, true);
+		}
+		// Storage for sparse explicit models
+		else if (sw.equals("explicitstorage")) {
+			if (i < args.length - 1) {
+				s = args[++i];
+				if (s.equals("heap"))
+					set(PRISM_EXPLICIT_STORAGE, "Heap");
+				else if (s.equals("offheap"))
+					set(PRISM_EXPLICIT_STORAGE, "Off-heap");
+				else if (s.equals("mmap"))
+					set(PRISM_EXPLICIT_STORAGE, "Memory-mapped");
+				else
+					throw new PrismException("Unrecognised option for -" + sw + " switch (options are: heap, offheap, mmap)");
+			} else {
+				throw new PrismException("No parameter specified for -" + sw + " switch");
+			}
+		}
 		// Fix deadlocks on/off
 		else if (sw.equals("fixdl")) {
 			set(PRISM_FIX_DEADLOCKS, true);
@@ -1097,6 +1163,20 @@ public class PrismSettings implements Observer
 				throw new PrismException("No parameter specified for -" + sw + " switch");
 			}
 		}
+		// Bisimulation minimisation algorithm
+		else if (sw.equals("bisimmethod")) {
+			if (i < args.length - 1) {
+				s = args[++i];
+				if (s.equals("splitters"))
+					set(PRISM_BISIM_METHOD, "Splitters");
+				else if (s.equals("signatures"))
+					set(PRISM_BISIM_METHOD, "Signatures");
+				else
+					throw new PrismException("Unrecognised option for -" + sw + " switch (options are: splitters, signatures)");
+			} else {
+				throw new PrismException("No parameter specified for -" + sw + " switch");
+			}
+		}
 		// Enable symmetry reduction
 		else if (sw.equals("symm")) {
 			if (i < args.length - 2) {
@@ -1105,6 +1185,14 @@ public class PrismSettings implements Observer
 				throw new PrismException("-symm switch requires two parameters (num. modules before/after symmetric ones)");
 			}
 		}
+		// Enable symmetry reduction (explicit engine, blocks of variables)
+		else if (sw.equals("symmvars")) {
+			if (i < args.length - 1) {
+				set(PRISM_SYMM_RED_VARS, args[++i]);
+			} else {
+				throw new PrismException("No parameter specified for -" + sw + " switch");
+			}
+		}
 		// Abstraction-refinement engine options string (append if already partially specified)
 		else if (sw.equals("aroptions")) {
 			if (i < args.length - 1) {
@@ -1126,6 +1214,14 @@ public class PrismSettings implements Observer
 		else if (sw.equals("nodasimplify")) {
 			set(PRISM_NO_DA_SIMPLIFY, true);
 		}
+		// Build products for co-safe LTL on the fly
+		else if (sw.equals("productotf")) {
+			set(PRISM_PRODUCT_ON_THE_FLY, true);
+		}
+		// Minimise LTL products before solving
+		else if (sw.equals("productbisim")) {
+			set(PRISM_PRODUCT_BISIM, true);
+		}
 
 		
 		// MULTI-OBJECTIVE MODEL CHECKING OPTIONS:
@@ -1602,6 +1698,9 @@ public class PrismSettings implements Observer
 		mainLog.println("-bsor .......................... Use Backwards SOR for numerical computation");
 		mainLog.println("-psor .......................... Use Pseudo SOR for numerical computation");
 		mainLog.println("-bpsor ......................... Use Backwards Pseudo SOR for numerical computation");
+		mainLog.println("-bicgstab ...................... Use BiCGSTAB for numerical computation (explicit engine)");
+		mainLog.println("-gmres ......................... Use GMRES for numerical computation (explicit engine)");
+		mainLog.println("-sparselu (or -lu) ............. Use sparse LU factorisation for numerical computation (explicit engine)");
 		mainLog.println("-omega <x> ..................... Set over-relaxation parameter (for JOR/SOR/...) [default: 0.9]");
 		mainLog.println();
 		mainLog.println("SOLUTION METHODS (MDPS):");
@@ -1609,18 +1708,23 @@ public class PrismSettings implements Observer
 		mainLog.println("-gaussseidel (or -gs) .......... Use Gauss-Seidel value iteration for solving MDPs");
 		mainLog.println("-politer ....................... Use policy iteration for solving MDPs");
 		mainLog.println("-modpoliter .................... Use modified policy iteration for solving MDPs");
+		mainLog.println("-intervaliter (or -ii) ......... Use interval iteration (explicit engine; also for DTMCs/games)");
+		mainLog.println("-optimisticvaliter (or -ovi) ... Use optimistic value iteration (explicit engine; also for DTMCs)");
 		mainLog.println();
 		mainLog.println("SOLUTION METHOD SETTINGS");
 		mainLog.println("-relative (or -rel) ............ Use relative error for detecting convergence [default]");
 		mainLog.println("-absolute (or -abs) ............ Use absolute error for detecting convergence");
 		mainLog.println("-epsilon <x> (or -e <x>) ....... Set value of epsilon (for convergence check) [default: 1e-6]");
 		mainLog.println("-maxiters <n> .................. Set max number of iterations [default: 10000]");
+		mainLog.println("-threads <n> ................... Number of threads for parallel numerical computation (explicit engine, FAU) [default: 1]");
 		mainLog.println();
 		mainLog.println("MODEL CHECKING OPTIONS:");
 		mainLog.println("-nopre ......................... Skip precomputation algorithms (where optional)");
 		mainLog.println("-noprob0 ....................... Skip precomputation algorithm Prob0 (where optional)");
 		mainLog.println("-noprob1 ....................... Skip precomputation algorithm Prob1 (where optional)");
 		mainLog.println("-noprerel ...................... Do not pre-compute/use predecessor relation, e.g. for precomputation");
+		mainLog.println("-reducemaybe ................... Solve MDP reachability on a reduced model of the \"maybe\" states only");
+		mainLog.println("-explicitstorage <name> ........ Storage for sparse explicit models (heap, offheap, mmap) [default: heap]");
 		mainLog.println("-fair .......................... Use fairness (for model checking of MDPs)");
 		mainLog.println("-nofair ........................ Don't use fairness (for model checking of MDPs) [default]");
 		mainLog.println("-fixdl ......................... Automatically put self-loops in deadlock states [default]");
@@ -1630,10 +1734,14 @@ public class PrismSettings implements Observer
 		mainLog.println("-zerorewardcheck ............... Check for absence of zero-reward loops");
 		mainLog.println("-nossdetect .................... Disable steady-state detection for CTMC transient computations");
 		mainLog.println("-sccmethod <name> .............. Specify (symbolic) SCC computation method (xiebeerel, lockstep, sccfind)");
+		mainLog.println("-bisimmethod <name> ............ Specify (explicit) bisimulation minimisation method (splitters, signatures)");
 		mainLog.println("-symm <string> ................. Symmetry reduction options string");
+		mainLog.println("-symmvars <string> ............. Blocks of symmetric variables for explicit engine (e.g. \"a1,b1;a2,b2\")");
 		mainLog.println("-aroptions <string> ............ Abstraction-refinement engine options string");
 		mainLog.println("-pathviaautomata ............... Handle all path formulas via automata constructions");
 		mainLog.println("-nodasimplify .................. Do not attempt to simplify deterministic automata, acceptance conditions");
+		mainLog.println("-productotf .................... Build co-safe LTL products on the fly, without building the model first");
+		mainLog.println("-productbisim .................. Perform bisimulation minimisation of LTL products (MDPs) before solving");
 		mainLog.println("-exportadv <file> .............. Export an adversary from MDP model checking (as a DTMC)");
 		mainLog.println("-exportadvmdp <file> ........... Export an adversary from MDP model checking (as an MDP)");
 		mainLog.println("-ltl2datool <exec> ............. Run executable <exec> to convert LTL formulas to deterministic automata");
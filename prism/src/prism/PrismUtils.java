@@ -133,6 +133,22 @@ public class PrismUtils
 		return true;
 	}
 
+	/**
+	 * Compute the midpoint of two arrays of doubles (e.g. lower/upper bounds),
+	 * storing the result in the first array, which is also returned.
+	 */
+	public static double[] midpoint(double lower[], double upper[])
+	{
+		int i, n;
+		n = Math.min(lower.length, upper.length);
+		for (i = 0; i < n; i++) {
+			if (lower[i] != upper[i]) {
+				lower[i] = lower[i] + (upper[i] - lower[i]) / 2.0;
+			}
+		}
+		return lower;
+	}
+
 	/**
 	 * See if two doubles are (nearly) equal.
 	 */
@@ -71,6 +71,13 @@ public class ProductModelGenerator implements ModelGenerator
 	protected State exploreModelState;
 	/** The DA part of exploreState */
 	protected int exploreDaState;
+	/** Is exploreState pruned (i.e. left unexpanded and given a single self-loop)? */
+	protected boolean explorePruned;
+
+	/** Should product states that can no longer affect (reach) acceptance be pruned? */
+	protected boolean prune = false;
+	/** For pruning: DA states from which a goal state can be reached (null if not pruning) */
+	protected BitSet daStatesReachingGoal = null;
 	
 	// Constructor(s)
 	
@@ -103,7 +110,37 @@ public class ProductModelGenerator implements ModelGenerator
 	{
 		return daVar;
 	}
+
+	/**
+	 * Set whether product states that can no longer affect acceptance should be pruned,
+	 * i.e. not expanded but given a single self-loop instead. This is only done for
+	 * reach (co-safe) acceptance, for states whose DA component is either a goal state
+	 * or a state from which no goal state can be reached (e.g. a non-accepting sink).
+	 * Such product states satisfy (or violate) the property regardless of how the model
+	 * continues, so their successors need not be constructed.
+	 */
+	public void setPruning(boolean prune)
+	{
+		this.prune = prune;
+		daStatesReachingGoal = prune ? da.getStatesReachingGoal() : null;
+	}
+
+	/**
+	 * Is the state currently being explored pruned (see {@link #setPruning(boolean)})?
+	 */
+	public boolean isPrunedState()
+	{
+		return explorePruned;
+	}
 	
+	/**
+	 * Get the DA state of the state currently being explored.
+	 */
+	public int getExploreDAState()
+	{
+		return exploreDaState;
+	}
+
 	/**
 	 * Assuming the product is build with a reach acceptance,
 	 * is the state currently being explored a goal state?
@@ -243,6 +280,7 @@ public class ProductModelGenerator implements ModelGenerator
 		exploreModelState = exploreState.substate(0, numVars - 1);
 		modelGen.exploreState(exploreModelState);
 		exploreDaState = ((Integer) exploreState.varValues[numVars - 1]).intValue();
+		explorePruned = daStatesReachingGoal != null && (isReachAcceptanceGoalState() || !daStatesReachingGoal.get(exploreDaState));
 	}
 
 	@Override
@@ -254,48 +292,52 @@ public class ProductModelGenerator implements ModelGenerator
 	@Override
 	public int getNumChoices() throws PrismException
 	{
-		return modelGen.getNumChoices();
+		return explorePruned ? 1 : modelGen.getNumChoices();
 	}
 
 	@Override
 	public int getNumTransitions() throws PrismException
 	{
-		return modelGen.getNumTransitions();
+		return explorePruned ? 1 : modelGen.getNumTransitions();
 	}
 
 	@Override
 	public int getNumTransitions(int i) throws PrismException
 	{
-		return modelGen.getNumTransitions(i);
+		return explorePruned ? 1 : modelGen.getNumTransitions(i);
 	}
 
 	@Override
 	public Object getTransitionAction(int i) throws PrismException
 	{
-		return modelGen.getTransitionAction(i);
+		return explorePruned ? null : modelGen.getTransitionAction(i);
 	}
 
 	@Override
 	public Object getTransitionAction(int i, int offset) throws PrismException
 	{
-		return modelGen.getTransitionAction(i, offset);
+		return explorePruned ? null : modelGen.getTransitionAction(i, offset);
 	}
 
 	@Override
 	public Object getChoiceAction(int i) throws PrismException
 	{
-		return modelGen.getChoiceAction(i);
+		return explorePruned ? null : modelGen.getChoiceAction(i);
 	}
 
 	@Override
 	public double getTransitionProbability(int i, int offset) throws PrismException
 	{
-		return modelGen.getTransitionProbability(i, offset);
+		return explorePruned ? 1.0 : modelGen.getTransitionProbability(i, offset);
 	}
 
 	@Override
 	public State computeTransitionTarget(int i, int offset) throws PrismException
 	{
+		// Pruned states just have a self-loop
+		if (explorePruned) {
+			return exploreState;
+		}
 		State sTarget = modelGen.computeTransitionTarget(i, offset);
 		return new State(sTarget, new State(1).setValue(0, getDASuccessor(exploreDaState, sTarget)));
 	}
@@ -303,13 +345,13 @@ public class ProductModelGenerator implements ModelGenerator
 	@Override
 	public boolean isLabelTrue(String label) throws PrismException
 	{
-		return "_acc".equals(label) ? false : modelGen.isLabelTrue(label); // TODO
+		return "_acc".equals(label) ? isReachAcceptanceGoalState() : modelGen.isLabelTrue(label);
 	}
 
 	@Override
 	public boolean isLabelTrue(int i) throws PrismException
 	{
-		return i < modelGen.getNumLabels() ? modelGen.isLabelTrue(i) : false; // TODO
+		return i < modelGen.getNumLabels() ? modelGen.isLabelTrue(i) : isReachAcceptanceGoalState();
 	}
 
 	@Override
@@ -346,6 +388,6 @@ public class ProductModelGenerator implements ModelGenerator
 			bsLabels.set(k, labelExprs.get(Integer.parseInt(da.getAPList().get(k).substring(1))).evaluateBoolean(s));
 		}
 		// Find/return successor
-		return da.getEdgeDestByLabel(da.getStartState(), bsLabels);
+		return da.getEdgeDestByLabel(q, bsLabels);
 	}
 }
@@ -796,6 +796,22 @@ public class UndefinedConstants
 		return pfValues;
 	}
 
+	/**
+	 * Get the values of the properties file constants for all property iterations,
+	 * starting from the current one. The iterator is cycled through once,
+	 * so it is left at the same point as before the call.
+	 */
+	public List<Values> getAllPFConstantValues()
+	{
+		int n = getNumPropertyIterations();
+		List<Values> all = new ArrayList<Values>(n);
+		for (int i = 0; i < n; i++) {
+			all.add(pfValues);
+			iterateProperty();
+		}
+		return all;
+	}
+
 	/**
 	 * Get the values for non-ranging model constants, i.e. each constant that has range 1.
 	 */
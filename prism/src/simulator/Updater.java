@@ -30,6 +30,7 @@ import java.util.*;
 
 import parser.*;
 import parser.ast.*;
+import parser.type.*;
 import prism.*;
 
 public class Updater extends PrismComponent
@@ -51,6 +52,16 @@ public class Updater extends PrismComponent
 	protected int synchModuleCounts[];
 	// Model info/stats
 	protected int numRewardStructs;
+	
+	// Guard index:
+	// Element m of guardIndexVars is the index (in varList) of the variable used to
+	// bucket the commands of module m, or -1 if the module's commands are not indexed
+	protected int guardIndexVars[];
+	// Element m,k of guardIndexCands is the (ascending) list of indices of the commands
+	// of module m whose guard may be true when variable guardIndexVars[m] has (encoded) value k
+	protected int guardIndexCands[][][];
+	// Max. range of a variable for it to be used for guard indexing
+	protected static final int GUARD_INDEX_MAX_RANGE = 1024;
 
 	// Temporary storage:
 
@@ -117,6 +128,13 @@ public class Updater extends PrismComponent
 		for (j = 0; j < numSynchs + 1; j++) {
 			enabledModules[j] = new BitSet(numModules);
 		}
+		
+		// Build guard index for each module
+		guardIndexVars = new int[numModules];
+		guardIndexCands = new int[numModules][][];
+		for (i = 0; i < numModules; i++) {
+			buildGuardIndexForModule(i);
+		}
 	}
 
 	/**
@@ -313,6 +331,25 @@ public class Updater extends PrismComponent
 		int i, j, n;
 
 		module = modulesFile.getModule(m);
+		// If there is a guard index for this module, only check the candidate commands
+		// for the current value of the indexing variable (these are stored in ascending
+		// order, so choices are still generated in the same order as without the index)
+		// (if the variable is out of range, e.g. due to an overflow, fall back to checking all commands)
+		int k = guardIndexVars[m] == -1 ? -1 : varList.encodeToInt(guardIndexVars[m], state.varValues[guardIndexVars[m]]);
+		if (k >= 0 && k < guardIndexCands[m].length) {
+			int cands[] = guardIndexCands[m][k];
+			n = cands.length;
+			for (i = 0; i < n; i++) {
+				command = module.getCommand(cands[i]);
+				if (command.getGuard().evaluateBoolean(state)) {
+					j = command.getSynchIndex();
+					updateLists.get(m).get(j).add(command.getUpdates());
+					enabledSynchs.set(j);
+					enabledModules[j].set(m);
+				}
+			}
+			return;
+		}
 		n = module.getNumCommands();
 		for (i = 0; i < n; i++) {
 			command = module.getCommand(i);
@@ -325,6 +362,147 @@ public class Updater extends PrismComponent
 		}
 	}
 
+	/**
+	 * Build the guard index for the 'm'th module, i.e. pick a variable that
+	 * many of its command guards require to equal some constant (e.g. "loc=3")
+	 * and bucket the commands according to the value of this variable.
+	 * Commands whose guard does not fix the variable are included in every bucket.
+	 * If no suitable variable exists, guardIndexVars[m] is set to -1.
+	 * @param m The module index
+	 */
+	protected void buildGuardIndexForModule(int m)
+	{
+		Module module;
+		int i, k, n, v, range, best, bestCount;
+
+		guardIndexVars[m] = -1;
+		guardIndexCands[m] = null;
+		module = modulesFile.getModule(m);
+		n = module.getNumCommands();
+		
+		// For each command, find the variables fixed by its guard (var -> encoded value)
+		List<Map<Integer, Integer>> fixedVars = new ArrayList<Map<Integer, Integer>>(n);
+		Map<Integer, Integer> counts = new HashMap<Integer, Integer>();
+		for (i = 0; i < n; i++) {
+			Map<Integer, Integer> fixed = new HashMap<Integer, Integer>();
+			extractFixedVars(module.getCommand(i).getGuard(), fixed);
+			fixedVars.add(fixed);
+			for (Integer var : fixed.keySet()) {
+				Integer c = counts.get(var);
+				counts.put(var, c == null ? 1 : c + 1);
+			}
+		}
+		
+		// Pick the (small-domain) variable fixed by the most guards
+		best = -1;
+		bestCount = 1;
+		for (Map.Entry<Integer, Integer> e : counts.entrySet()) {
+			v = e.getKey();
+			if (varList.getRange(v) > GUARD_INDEX_MAX_RANGE)
+				continue;
+			if (e.getValue() > bestCount || (e.getValue() == bestCount && best != -1 && v < best)) {
+				best = v;
+				bestCount = e.getValue();
+			}
+		}
+		if (best == -1)
+			return;
+		
+		// Build the buckets
+		range = varList.getRange(best);
+		List<List<Integer>> buckets = new ArrayList<List<Integer>>(range);
+		for (k = 0; k < range; k++) {
+			buckets.add(new ArrayList<Integer>());
+		}
+		for (i = 0; i < n; i++) {
+			Integer val = fixedVars.get(i).get(best);
+			if (val == null) {
+				for (k = 0; k < range; k++) {
+					buckets.get(k).add(i);
+				}
+			} else if (val >= 0 && val < range) {
+				buckets.get(val).add(i);
+			}
+			// (otherwise, the guard can never be true)
+		}
+		guardIndexCands[m] = new int[range][];
+		for (k = 0; k < range; k++) {
+			List<Integer> bucket = buckets.get(k);
+			guardIndexCands[m][k] = new int[bucket.size()];
+			for (i = 0; i < bucket.size(); i++) {
+				guardIndexCands[m][k][i] = bucket.get(i);
+			}
+		}
+		guardIndexVars[m] = best;
+	}
+
+	/**
+	 * Find conjuncts of the form "var=c", "c=var", "b" or "!b" in a guard
+	 * (for constant c and Boolean variable b) and store the variable index
+	 * and encoded value for each in 'fixed'. If a variable is required to take
+	 * two different values, the guard is unsatisfiable and the value -1 is stored.
+	 */
+	private void extractFixedVars(Expression expr, Map<Integer, Integer> fixed)
+	{
+		int var = -1;
+		Expression val = null;
+
+		if (expr instanceof ExpressionUnaryOp) {
+			ExpressionUnaryOp exprUnary = (ExpressionUnaryOp) expr;
+			if (exprUnary.getOperator() == ExpressionUnaryOp.PARENTH) {
+				extractFixedVars(exprUnary.getOperand(), fixed);
+				return;
+			}
+			if (exprUnary.getOperator() == ExpressionUnaryOp.NOT && exprUnary.getOperand() instanceof ExpressionVar) {
+				var = varList.getIndex(((ExpressionVar) exprUnary.getOperand()).getName());
+				val = Expression.False();
+			}
+		} else if (expr instanceof ExpressionVar) {
+			var = varList.getIndex(((ExpressionVar) expr).getName());
+			val = Expression.True();
+		} else if (expr instanceof ExpressionBinaryOp) {
+			ExpressionBinaryOp exprBinary = (ExpressionBinaryOp) expr;
+			if (exprBinary.getOperator() == ExpressionBinaryOp.AND) {
+				extractFixedVars(exprBinary.getOperand1(), fixed);
+				extractFixedVars(exprBinary.getOperand2(), fixed);
+				return;
+			}
+			if (exprBinary.getOperator() == ExpressionBinaryOp.EQ) {
+				if (exprBinary.getOperand1() instanceof ExpressionVar && exprBinary.getOperand2().isConstant()) {
+					var = varList.getIndex(((ExpressionVar) exprBinary.getOperand1()).getName());
+					val = exprBinary.getOperand2();
+				} else if (exprBinary.getOperand2() instanceof ExpressionVar && exprBinary.getOperand1().isConstant()) {
+					var = varList.getIndex(((ExpressionVar) exprBinary.getOperand2()).getName());
+					val = exprBinary.getOperand1();
+				}
+			}
+		}
+		if (var == -1 || val == null)
+			return;
+		// Only bounded integer and Boolean variables can be used for indexing
+		DeclarationType declType = varList.getDeclaration(var).getDeclType();
+		if (!(declType instanceof DeclarationInt || declType instanceof DeclarationBool))
+			return;
+		// Evaluate/encode the value; give up on this conjunct if not possible
+		int enc;
+		try {
+			Object o = val.evaluate();
+			if (varList.getType(var) instanceof TypeInt && o instanceof Integer) {
+				enc = varList.encodeToInt(var, o);
+			} else if (varList.getType(var) instanceof TypeBool && o instanceof Boolean) {
+				enc = varList.encodeToInt(var, o);
+			} else {
+				return;
+			}
+		} catch (PrismLangException e) {
+			return;
+		}
+		if (enc < 0 || enc >= varList.getRange(var))
+			enc = -1;
+		Integer prev = fixed.get(var);
+		fixed.put(var, (prev == null || prev == enc) ? enc : -1);
+	}
+
 	/**
 	 * Create a new Choice object (currently ChoiceListFlexi) based on an Updates object
 	 * and a (global) state. Check for negative probabilities/rates and, if appropriate,
@@ -292,6 +292,10 @@ public class GUIExperiment
 							continue;
 						}
 					} else {
+						// let the model checker know about all property constant values, so it can share work between them
+						if (!useSimulation && undefinedConstants.getNumPropertyIterations() > 1) {
+							prism.setPFConstantsSweep(undefinedConstants.getAllPFConstantValues());
+						}
 						// iterate through as many properties as necessary
 						for (k = 0; k < undefinedConstants.getNumPropertyIterations(); k++) {
 							// interrupt if requested
@@ -342,6 +346,7 @@ public class GUIExperiment
 							undefinedConstants.iterateProperty();
 							yield();
 						}
+						prism.setPFConstantsSweep(null);
 					}
 					// iterate to next model
 					undefinedConstants.iterateModel();
@@ -363,6 +368,7 @@ public class GUIExperiment
 				if (results.containsErrors())
 					errorDialog("One or more errors occured during this experiment.\nSelect \"View results\" or check the log for more information");
 			} catch (InterruptedException e) {
+				prism.setPFConstantsSweep(null);
 				try {
 					SwingUtilities.invokeAndWait(new Runnable()
 					{